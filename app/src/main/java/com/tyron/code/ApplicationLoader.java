@@ -14,6 +14,7 @@ import androidx.preference.PreferenceManager;
 import com.developer.crashx.config.CrashConfig;
 import com.tyron.actions.ActionManager;
 import com.tyron.builder.BuildModule;
+import com.tyron.code.language.textmate.TokenizeCheckpoints;
 import com.tyron.code.ui.editor.action.CloseAllEditorAction;
 import com.tyron.code.ui.editor.action.CloseFileEditorAction;
 import com.tyron.code.ui.editor.action.CloseOtherEditorAction;
@@ -23,6 +24,8 @@ import com.tyron.code.ui.editor.action.text.TextActionGroup;
 import com.tyron.code.ui.file.action.NewFileActionGroup;
 import com.tyron.code.ui.file.action.ImportFileActionGroup;
 import com.tyron.code.ui.file.action.file.DeleteFileAction;
+import com.tyron.code.ui.file.action.java.FormatFilesAction;
+import com.tyron.code.ui.file.action.java.LintFilesAction;
 import com.tyron.code.ui.main.action.compile.CompileActionGroup;
 import com.tyron.code.ui.main.action.debug.DebugActionGroup;
 import com.tyron.code.ui.main.action.other.FormatAction;
@@ -53,6 +56,8 @@ import com.tyron.selection.xml.XmlExpandSelectionProvider;
 
 import com.tyron.code.event.EventManager;
 
+import java.io.File;
+
 public class ApplicationLoader extends Application {
 
     private static ApplicationLoader sInstance;
@@ -71,7 +76,7 @@ public class ApplicationLoader extends Application {
         super.onCreate();
         setupTheme();
 
-        mEventManager = new EventManager();
+        mEventManager = new EventManager(null, EventManager.newDispatchExecutor(2));
 
         sInstance = this;
         applicationContext = this;
@@ -80,6 +85,7 @@ public class ApplicationLoader extends Application {
         CompletionModule.initialize(applicationContext);
         XmlCompletionModule.initialize(applicationContext);
         BuildModule.initialize(applicationContext);
+        TokenizeCheckpoints.setDirectory(new File(getCacheDir(), "textmate-checkpoints"));
 
         CrashConfig.Builder.create()
                 .backgroundMode(CrashConfig.BACKGROUND_MODE_SHOW_CUSTOM)
@@ -161,6 +167,8 @@ public class ApplicationLoader extends Application {
             // file manager actions
             manager.registerAction(NewFileActionGroup.ID, new NewFileActionGroup());
             manager.registerAction(DeleteFileAction.ID, new DeleteFileAction());
+            manager.registerAction(FormatFilesAction.ID, new FormatFilesAction());
+            manager.registerAction(LintFilesAction.ID, new LintFilesAction());
             if(Build.VERSION.SDK_INT<Build.VERSION_CODES.R) {
                 manager.registerAction(ImportFileActionGroup.ID,new ImportFileActionGroup());
             }
@@ -5,14 +5,18 @@ import android.os.Bundle;
 
 import androidx.annotation.NonNull;
 
+import com.tyron.code.language.textmate.BaseIncrementalAnalyzeManager;
 import com.tyron.code.language.textmate.CodeBlockUtils;
+import com.tyron.code.language.textmate.StackElementCodec;
+import com.tyron.code.language.textmate.TextmateGrammars;
+import com.tyron.code.language.textmate.TokenizeCheckpoints;
+import com.tyron.code.ui.editor.impl.text.rosemoe.CodeEditorView;
 import com.tyron.editor.Editor;
 
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.List;
 
-import io.github.rosemoe.sora.lang.analysis.AsyncIncrementalAnalyzeManager;
 import io.github.rosemoe.sora.lang.styling.CodeBlock;
 import io.github.rosemoe.sora.lang.styling.Span;
 import io.github.rosemoe.sora.lang.styling.TextStyle;
@@ -24,7 +28,6 @@ import io.github.rosemoe.sora.textmate.core.grammar.IGrammar;
 import io.github.rosemoe.sora.textmate.core.grammar.ITokenizeLineResult2;
 import io.github.rosemoe.sora.textmate.core.grammar.StackElement;
 import io.github.rosemoe.sora.textmate.core.internal.grammar.StackElementMetadata;
-import io.github.rosemoe.sora.textmate.core.registry.Registry;
 import io.github.rosemoe.sora.textmate.core.theme.FontStyle;
 import io.github.rosemoe.sora.textmate.core.theme.IRawTheme;
 import io.github.rosemoe.sora.textmate.core.theme.Theme;
@@ -32,19 +35,21 @@ import io.github.rosemoe.sora.textmate.languageconfiguration.ILanguageConfigurat
 import io.github.rosemoe.sora.textmate.languageconfiguration.internal.LanguageConfigurator;
 import io.github.rosemoe.sora.textmate.languageconfiguration.internal.supports.Folding;
 import io.github.rosemoe.sora.util.ArrayList;
+import io.github.rosemoe.sora.util.IntPair;
 import io.github.rosemoe.sora.widget.schemes.EditorColorScheme;
 
 /**
- * A text mate analyzer which does not use a TextMateLanguage
+ * A text mate analyzer which does not use a TextMateLanguage. The grammars are shared by every
+ * analyzer through {@link TextmateGrammars}.
  */
-public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackElement, Span> {
+public class BaseTextmateAnalyzer extends BaseIncrementalAnalyzeManager<StackElement, Span> {
 
     /**
      * Maximum for code block count
      */
     public static int MAX_FOLDING_REGIONS_FOR_INDENT_LIMIT = 5000;
 
-    private final Registry registry = new Registry();
+    private final String grammarName;
     private final IGrammar grammar;
     private Theme theme;
     private final Editor editor;
@@ -55,10 +60,10 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
                                 InputStream grammarIns,
                                 Reader languageConfiguration,
                                 IRawTheme theme) throws Exception {
-        registry.setTheme(theme);
         this.editor = editor;
-        this.theme = Theme.createFromRawTheme(theme);
-        this.grammar = registry.loadGrammarFromPathSync(grammarName, grammarIns);
+        this.grammarName = grammarName;
+        this.theme = TextmateGrammars.setTheme(theme);
+        this.grammar = TextmateGrammars.getGrammar(grammarName, grammarIns);
         if (languageConfiguration != null) {
             LanguageConfigurator languageConfigurator =
                     new LanguageConfigurator(languageConfiguration);
@@ -80,7 +85,7 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
         }
         try {
             FoldingRegions foldingRegions =
-                    IndentRange.computeRanges(model, editor.getTabCount(), folding.getOffSide(),
+                    CodeBlockUtils.computeRanges(model, editor.getTabCount(), folding.getOffSide(),
                                                  folding, MAX_FOLDING_REGIONS_FOR_INDENT_LIMIT,
                                                  delegate);
             for (int i = 0; i < foldingRegions.length() && !delegate.isCancelled(); i++) {
@@ -127,17 +132,18 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
     }
 
     @Override
-    public synchronized LineTokenizeResult<StackElement, Span> tokenizeLine(CharSequence lineC, StackElement state) {
+    public Result<StackElement, Span> tokenizeLine(CharSequence lineC, StackElement state) {
         String line = lineC.toString();
         ArrayList<Span> tokens = new ArrayList<>();
-        ITokenizeLineResult2 lineTokens = grammar.tokenizeLine2(line, state);
-        int tokensLength = lineTokens.getTokens().length / 2;
+        ITokenizeLineResult2 lineTokens = TextmateGrammars.tokenizeLine(grammar, line, state);
+        int[] lineTokenArray = lineTokens.getTokens();
+        int tokensLength = lineTokenArray.length / 2;
         for (int i = 0; i < tokensLength; i++) {
-            int startIndex = lineTokens.getTokens()[2 * i];
+            int startIndex = lineTokenArray[2 * i];
             if (i == 0 && startIndex != 0) {
                 tokens.add(Span.obtain(0, EditorColorScheme.TEXT_NORMAL));
             }
-            int metadata = lineTokens.getTokens()[2 * i + 1];
+            int metadata = lineTokenArray[2 * i + 1];
             int foreground = StackElementMetadata.getForeground(metadata);
             int fontStyle = StackElementMetadata.getFontStyle(metadata);
             Span span = Span.obtain(startIndex, TextStyle
@@ -153,7 +159,32 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
 
             tokens.add(span);
         }
-        return new LineTokenizeResult<>(lineTokens.getRuleStack(), null, tokens);
+        return new Result<>(lineTokens.getRuleStack(), null, tokens);
+    }
+
+    @Override
+    protected long getVisibleLines() {
+        if (editor instanceof CodeEditorView) {
+            CodeEditorView view = (CodeEditorView) editor;
+            int first = view.getFirstVisibleLine();
+            int last = view.getLastVisibleLine();
+            if (last > first) {
+                return IntPair.pack(first, last + 1);
+            }
+        }
+        return super.getVisibleLines();
+    }
+
+    @Override
+    protected String getCheckpointsName() {
+        // the states refer to the rules of the grammar and to the colors of the theme
+        return grammarName + "@" + TextmateGrammars.getFingerprint(grammar)
+                + "@" + TextmateGrammars.getThemeFingerprint();
+    }
+
+    @Override
+    protected TokenizeCheckpoints.StateCodec<StackElement> getStateCodec() {
+        return StackElementCodec.INSTANCE;
     }
 
     @Override
@@ -177,8 +208,7 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
     }
 
     public void updateTheme(IRawTheme theme) {
-        registry.setTheme(theme);
-        this.theme = Theme.createFromRawTheme(theme);
+        this.theme = TextmateGrammars.setTheme(theme);
     }
 
     protected Theme getTheme() {
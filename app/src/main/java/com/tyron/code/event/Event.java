@@ -52,6 +52,19 @@ public abstract class Event {
         return false;
     }
 
+    /**
+     * Check whether this event can be coalesced. When events are posted faster than they
+     * are delivered, a pending coalescable event is replaced by the newer event of the same
+     * type, so receivers only get the latest one.
+     * Events that describe the latest state (such as diagnostics updates) can be coalesced,
+     * events that describe a change usually can not.
+     *
+     * @see EventManager#postEvent(Event)
+     */
+    public boolean canCoalesce() {
+        return false;
+    }
+
     /**
      * Intercept the event.
      * <p>
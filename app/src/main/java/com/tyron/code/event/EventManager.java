@@ -5,15 +5,21 @@ import androidx.annotation.Nullable;
 import androidx.lifecycle.DefaultLifecycleObserver;
 import androidx.lifecycle.LifecycleOwner;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import com.tyron.common.logging.IdeLog;
+
+import java.util.ArrayDeque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This class manages event dispatching in editor.
@@ -28,17 +34,25 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * of using its parent classes. For instance, if you register a receiver with the event type
  * {@link Event},
  * no event will be sent to your receiver.
+ * <p>
+ * The receivers of each event type are kept in a copy-on-write list, so dispatching never
+ * blocks on subscribing or on the dispatching of other event types. Events can be dispatched
+ * on the caller thread with {@link #dispatchEvent(Event)} or queued with
+ * {@link #postEvent(Event)}, which coalesces pending events that {@link Event#canCoalesce()}
+ * and optionally delivers them on an executor.
  *
  * @author Rosemoe
  */
 public final class EventManager {
 
+    private static final Logger LOG = IdeLog.getCurrentLogger(EventManager.class);
+
     @SuppressWarnings("rawtypes")
     private final Map<Class<?>, Receivers> receivers;
-    private final ReadWriteLock lock;
     private boolean enabled;
     private final EventManager parent;
     private final List<EventManager> children;
+    private final Executor executor;
     private boolean detached = false;
 
     /**
@@ -51,17 +65,48 @@ public final class EventManager {
     /**
      * Create an EventManager with the given parent.
      * Null for no parent.
+     * Posted events are delivered on the executor of the parent.
      */
     public EventManager(@Nullable EventManager parent) {
-        receivers = new HashMap<>();
+        this(parent, parent == null ? null : parent.executor);
+    }
+
+    /**
+     * Create an EventManager with the given parent and the executor to deliver posted events on.
+     * Null for no parent, and null executor to deliver posted events on the thread that posts
+     * them.
+     *
+     * @see #newDispatchExecutor(int)
+     */
+    public EventManager(@Nullable EventManager parent, @Nullable Executor executor) {
+        receivers = new ConcurrentHashMap<>();
         this.parent = parent;
-        lock = new ReentrantReadWriteLock();
-        children = new Vector<>();
+        this.executor = executor;
+        children = new CopyOnWriteArrayList<>();
         if (parent != null) {
             parent.children.add(this);
         }
     }
 
+    /**
+     * Create a bounded executor for posted events.
+     * When all threads are busy and the queue is full, the event is delivered on the thread
+     * that posts it, which slows down publishers that post faster than receivers can handle.
+     *
+     * @param threads Max count of threads delivering events at the same time
+     */
+    public static ThreadPoolExecutor newDispatchExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(64), runnable -> {
+            Thread thread = new Thread(runnable, "EventDispatcher-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Set enabled.
      * Disabled EventManager will not deliver event to its subscribers or children.
@@ -124,28 +169,9 @@ public final class EventManager {
     @NonNull
     @SuppressWarnings("unchecked")
     <T extends Event> Receivers<T> getReceivers(@NonNull Class<T> type) {
-        lock.readLock()
-                .lock();
-        Receivers<T> result;
-        try {
-            result = receivers.get(type);
-        } finally {
-            lock.readLock()
-                    .unlock();
-        }
+        Receivers<T> result = receivers.get(type);
         if (result == null) {
-            lock.writeLock()
-                    .lock();
-            try {
-                result = receivers.get(type);
-                if (result == null) {
-                    result = new Receivers<>();
-                    receivers.put(type, result);
-                }
-            } finally {
-                lock.writeLock()
-                        .unlock();
-            }
+            result = receivers.computeIfAbsent(type, it -> new Receivers<>());
         }
         return result;
     }
@@ -160,18 +186,9 @@ public final class EventManager {
     public <T extends Event> SubscriptionReceipt<T> subscribeEvent(@NonNull Class<T> eventType,
                                                                    @NonNull EventReceiver<T> receiver) {
         Receivers<T> receivers = getReceivers(eventType);
-        receivers.lock.writeLock()
-                .lock();
-        try {
-            List<EventReceiver<T>> list = receivers.receivers;
-            if (list.contains(receiver)) {
-                throw new IllegalArgumentException(
-                        "the receiver is already registered for this type");
-            }
-            list.add(receiver);
-        } finally {
-            receivers.lock.writeLock()
-                    .unlock();
+        if (!receivers.receivers.addIfAbsent(receiver)) {
+            throw new IllegalArgumentException(
+                    "the receiver is already registered for this type");
         }
         return new SubscriptionReceipt<>(eventType, receiver, this);
     }
@@ -191,6 +208,9 @@ public final class EventManager {
 
     /**
      * Dispatch the given event to its receivers registered in this manager.
+     * <p>
+     * The event is delivered to the receivers that are registered when the dispatch starts,
+     * receivers that subscribe or unsubscribe during the dispatch do not change who gets it.
      *
      * @param event Event to dispatch
      * @param <T>   Event type
@@ -200,23 +220,14 @@ public final class EventManager {
     public <T extends Event> boolean dispatchEvent(@NonNull T event) {
         // Safe cast
         Receivers<T> receivers = getReceivers((Class<T>) event.getClass());
-        receivers.lock.readLock()
-                .lock();
-        EventReceiver<T>[] receiverArr;
-        int count;
-        try {
-            count = receivers.receivers.size();
-            receiverArr = obtainBuffer(count);
-            receivers.receivers.toArray(receiverArr);
-        } finally {
-            receivers.lock.readLock()
-                    .unlock();
-        }
         List<EventReceiver<T>> unsubscribedReceivers = null;
         try {
             Unsubscribe unsubscribe = new Unsubscribe();
-            for (int i = 0; i < count && !event.isIntercepted(); i++) {
-                EventReceiver<T> receiver = receiverArr[i];
+            // the iterator of a copy-on-write list works on a snapshot
+            for (EventReceiver<T> receiver : receivers.receivers) {
+                if (event.isIntercepted()) {
+                    break;
+                }
                 receiver.onReceive(event, unsubscribe);
                 if (unsubscribe.isUnsubscribed()) {
                     if (unsubscribedReceivers == null) {
@@ -228,75 +239,120 @@ public final class EventManager {
             }
         } finally {
             if (unsubscribedReceivers != null) {
-                receivers.lock.writeLock()
-                        .lock();
-                try {
-                    receivers.receivers.removeAll(unsubscribedReceivers);
-                } finally {
-                    receivers.lock.writeLock()
-                            .unlock();
-                }
+                // one copy of the list for all the receivers
+                receivers.receivers.removeAll(unsubscribedReceivers);
             }
-            recycleBuffer(receiverArr);
         }
-        for (int i = 0; i < children.size() && !event.isIntercepted(); i++) {
-            EventManager sub = null;
-            try {
-                sub = children.get(i);
-            } catch (IndexOutOfBoundsException e) {
-                // concurrent mod ignored
-            }
-            if (sub != null) {
-                sub.dispatchEvent(event);
+        for (EventManager sub : children) {
+            if (event.isIntercepted()) {
+                break;
             }
+            sub.dispatchEvent(event);
         }
         return event.isIntercepted();
     }
 
     /**
-     * Internal class for saving receivers of each type
+     * Queue the given event to be dispatched to its receivers registered in this manager.
+     * <p>
+     * The events of each type are dispatched one at a time in the order they were posted, so
+     * every receiver gets them in that order. If the last pending event of the type can be
+     * coalesced, it is replaced by the given event.
+     * <p>
+     * The events are dispatched on the executor of this manager. Without an executor, they
+     * are dispatched on the thread that posts an event while no other thread is dispatching
+     * events of the type, other threads only queue their events and return.
+     * <p>
+     * A receiver that throws an exception does not stop the dispatching, the exception is
+     * logged and the following events are still dispatched.
      *
-     * @param <T> Event type
+     * @param event Event to post
+     * @param <T>   Event type
+     * @see #dispatchEvent(Event)
      */
-    static class Receivers<T extends Event> {
-
-        ReadWriteLock lock = new ReentrantReadWriteLock();
-
-        List<EventReceiver<T>> receivers = new ArrayList<>();
-
-    }
-
-    private final EventReceiver<?>[][] caches = new EventReceiver[5][];
-
     @SuppressWarnings("unchecked")
-    private <V extends Event> EventReceiver<V>[] obtainBuffer(int size) {
-        EventReceiver<V>[] res = null;
-        synchronized (this) {
-            for (int i = 0; i < caches.length; i++) {
-                if (caches[i] != null && caches[i].length >= size) {
-                    res = (EventReceiver<V>[]) caches[i];
-                    caches[i] = null;
-                    break;
-                }
+    public <T extends Event> void postEvent(@NonNull T event) {
+        // Safe cast
+        Receivers<T> receivers = getReceivers((Class<T>) event.getClass());
+        boolean schedule;
+        synchronized (receivers.pending) {
+            T last = receivers.pending.peekLast();
+            if (last != null && last.canCoalesce()) {
+                receivers.pending.pollLast();
             }
+            receivers.pending.addLast(event);
+            schedule = !receivers.draining;
+            receivers.draining = true;
         }
-        if (res == null) {
-            res = new EventReceiver[size];
+        if (!schedule) {
+            return;
         }
-        return res;
-    }
-
-    private synchronized void recycleBuffer(EventReceiver<?>[] array) {
-        if (array == null) {
+        if (executor == null) {
+            drain(receivers);
             return;
         }
-        for (int i = 0; i < caches.length; i++) {
-            if (caches[i] == null) {
-                Arrays.fill(array, null);
-                caches[i] = array;
-                break;
+        boolean scheduled = false;
+        try {
+            executor.execute(() -> drain(receivers));
+            scheduled = true;
+        } finally {
+            if (!scheduled) {
+                // the event stays queued, the next posted event schedules the dispatching
+                synchronized (receivers.pending) {
+                    receivers.draining = false;
+                }
+            }
+        }
+    }
+
+    private <T extends Event> void drain(Receivers<T> receivers) {
+        boolean drained = false;
+        try {
+            while (true) {
+                T event;
+                synchronized (receivers.pending) {
+                    event = receivers.pending.pollFirst();
+                    if (event == null) {
+                        receivers.draining = false;
+                        drained = true;
+                        return;
+                    }
+                }
+                try {
+                    dispatchEvent(event);
+                } catch (RuntimeException e) {
+                    LOG.log(Level.SEVERE, "Failed to dispatch " + event.getClass().getName(), e);
+                }
+            }
+        } finally {
+            if (!drained) {
+                // an Error stopped the dispatching, the next posted event starts it again
+                synchronized (receivers.pending) {
+                    receivers.draining = false;
+                }
             }
         }
     }
 
+    /**
+     * Internal class for saving receivers of each type
+     *
+     * @param <T> Event type
+     */
+    static class Receivers<T extends Event> {
+
+        final CopyOnWriteArrayList<EventReceiver<T>> receivers = new CopyOnWriteArrayList<>();
+
+        /**
+         * Posted events waiting to be dispatched, guarded by itself
+         */
+        final ArrayDeque<T> pending = new ArrayDeque<>();
+
+        /**
+         * Whether a thread is dispatching the pending events
+         */
+        boolean draining;
+
+    }
+
 }
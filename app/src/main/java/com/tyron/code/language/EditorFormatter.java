@@ -2,6 +2,10 @@ package com.tyron.code.language;
 
 import androidx.annotation.NonNull;
 
+import com.tyron.code.util.FormatEditUtils;
+
+import java.util.List;
+
 /**
  * Marker interface for languages that support formatting
  */
@@ -16,4 +20,20 @@ public interface EditorFormatter {
      */
     @NonNull
     CharSequence format(@NonNull CharSequence text, int startIndex, int endIndex);
+
+    /**
+     * Computes the edits that format the given CharSequence on the specified start and end
+     * indices. Applying only these edits keeps the rest of the document and the undo history
+     * intact. By default, the changed lines between the text and the result of
+     * {@link #format(CharSequence, int, int)} are used.
+     *
+     * @param text The text to format.
+     * @param startIndex The 0-based index of where the format starts
+     * @param endIndex The 0-based index of where the format ends
+     * @return The edits sorted by offset, relative to the given text
+     */
+    @NonNull
+    default List<FormatEdit> formatEdits(@NonNull CharSequence text, int startIndex, int endIndex) {
+        return FormatEditUtils.computeEdits(text, format(text, startIndex, endIndex));
+    }
 }
@@ -0,0 +1,52 @@
+package com.tyron.code.language;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A single replacement produced by an {@link EditorFormatter}, offsets are relative to the
+ * text that was formatted.
+ */
+public class FormatEdit {
+
+    private final int mOffset;
+    private final int mLength;
+    private final String mText;
+
+    public FormatEdit(int offset, int length, @NonNull String text) {
+        mOffset = offset;
+        mLength = length;
+        mText = text;
+    }
+
+    /**
+     * @return the start index of the replaced range
+     */
+    public int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * @return the length of the replaced range
+     */
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * @return the text that replaces the range
+     */
+    @NonNull
+    public String getText() {
+        return mText;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "FormatEdit{" +
+               "offset=" + mOffset +
+               ", length=" + mLength +
+               ", text='" + mText + '\'' +
+               '}';
+    }
+}
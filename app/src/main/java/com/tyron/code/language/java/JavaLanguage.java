@@ -11,6 +11,7 @@ import com.google.googlejavaformat.java.FormatterException;
 import com.google.googlejavaformat.java.JavaFormatterOptions;
 import com.tyron.code.language.CompletionItemWrapper;
 import com.tyron.code.language.EditorFormatter;
+import com.tyron.code.language.FormatEdit;
 import com.tyron.code.analyzer.BaseTextmateAnalyzer;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.editor.Editor;
@@ -143,6 +144,20 @@ public class JavaLanguage implements Language, EditorFormatter {
                                                      end - start);
     }
 
+    @NonNull
+    @Override
+    public List<FormatEdit> formatEdits(@NonNull CharSequence contents, int start, int end) {
+        List<com.tyron.eclipse.formatter.FormatEdit> edits =
+                com.tyron.eclipse.formatter.Formatter.formatEdits(contents.toString(),
+                                                                  start,
+                                                                  end - start);
+        List<FormatEdit> result = new ArrayList<>(edits.size());
+        for (com.tyron.eclipse.formatter.FormatEdit edit : edits) {
+            result.add(new FormatEdit(edit.getOffset(), edit.getLength(), edit.getText()));
+        }
+        return result;
+    }
+
     @Override
     public SymbolPairMatch getSymbolPairs() {
         return new SymbolPairMatch.DefaultSymbolPairs();
@@ -24,7 +24,6 @@ import io.github.rosemoe.sora.lang.styling.Spans;
 import io.github.rosemoe.sora.lang.styling.Styles;
 import io.github.rosemoe.sora.text.CharPosition;
 import io.github.rosemoe.sora.text.Content;
-import io.github.rosemoe.sora.text.ContentLine;
 import io.github.rosemoe.sora.text.ContentReference;
 import io.github.rosemoe.sora.util.IntPair;
 import io.github.rosemoe.sora.widget.schemes.EditorColorScheme;
@@ -42,6 +41,29 @@ public abstract class BaseIncrementalAnalyzeManager<S, T> implements Incremental
     private final static int MSG_MOD = MSG_BASE + 2;
     private final static int MSG_EXIT = MSG_BASE + 3;
 
+    /**
+     * The number of lines tokenized first when the visible lines are not known
+     */
+    private final static int DEFAULT_VISIBLE_LINES = 100;
+
+    private final ViewportTokenizer.LineTokenizer<S, Result<S, T>> lineTokenizer =
+            new ViewportTokenizer.LineTokenizer<S, Result<S, T>>() {
+                @Override
+                public Result<S, T> tokenizeLine(CharSequence line, S state) {
+                    return BaseIncrementalAnalyzeManager.this.tokenizeLine(line, state);
+                }
+
+                @Override
+                public S getState(Result<S, T> result) {
+                    return result.state;
+                }
+
+                @Override
+                public boolean stateEquals(S state, S another) {
+                    return BaseIncrementalAnalyzeManager.this.stateEquals(state, another);
+                }
+            };
+
     @Override
     public void setReceiver(StyleReceiver receiver) {
         this.receiver = receiver;
@@ -87,6 +109,7 @@ public abstract class BaseIncrementalAnalyzeManager<S, T> implements Incremental
         final Content text = ref.getReference().copyText(false);
         text.setUndoEnabled(false);
         thread = new LooperThread(() -> thread.handler.sendMessage(thread.handler.obtainMessage(MSG_INIT, text)));
+        thread.visibleLines = getVisibleLines();
         thread.setName("AsyncAnalyzer-" + nextThreadId());
         increaseRunCount();
         thread.start();
@@ -95,6 +118,38 @@ public abstract class BaseIncrementalAnalyzeManager<S, T> implements Incremental
 
     public abstract Result<S, T> tokenizeLine(CharSequence line, S state);
 
+    /**
+     * Called on the thread that requests the analysis, the visible lines are tokenized before
+     * the rest of the text.
+     *
+     * @return the first visible line and the line after the last visible line packed with
+     * {@link IntPair#pack(int, int)}
+     */
+    protected long getVisibleLines() {
+        return IntPair.pack(0, DEFAULT_VISIBLE_LINES);
+    }
+
+    /**
+     * The tokenizer checkpoints of texts are kept for texts that are analyzed again. Analyzers
+     * that share the tokenizer states with each other should return the same name.
+     *
+     * @return the name the checkpoints of this analyzer are kept under, or null to not keep
+     * them
+     */
+    @Nullable
+    protected String getCheckpointsName() {
+        return null;
+    }
+
+    /**
+     * @return the codec used to write the checkpoints to disk, or null to only keep them in
+     * memory
+     */
+    @Nullable
+    protected TokenizeCheckpoints.StateCodec<S> getStateCodec() {
+        return null;
+    }
+
     @Override
     public Result<S, T> getState(int line) {
         final LooperThread thread = this.thread;
@@ -188,6 +243,7 @@ public abstract class BaseIncrementalAnalyzeManager<S, T> implements Incremental
         Styles styles;
         LockedSpans spans;
         Runnable callback;
+        long visibleLines;
         CodeBlockAnalyzeDelegate
                 delegate = new CodeBlockAnalyzeDelegate(this);
 
@@ -202,16 +258,59 @@ public abstract class BaseIncrementalAnalyzeManager<S, T> implements Incremental
 
         private void initialize() {
             styles = new Styles(spans = new LockedSpans());
-            S state = getInitialState();
+            int lineCount = shadowed.getLineCount();
+            String name = getCheckpointsName();
+            String key = name == null ? null : name + ":" + lineCount + ":"
+                    + TokenizeCheckpoints.hash(lineCount, shadowed::getLine);
+            TokenizeCheckpoints.StateCodec<S> codec = getStateCodec();
+            TokenizeCheckpoints<S> checkpoints = TokenizeCheckpoints.obtain(key, lineCount, codec);
+            ViewportTokenizer<S, Result<S, T>> tokenizer = new ViewportTokenizer<>(lineTokenizer,
+                    getInitialState(), checkpoints, lineCount, shadowed::getLine);
+
+            // color the visible lines first, from the nearest known state above them
+            int firstVisible = Math.min(IntPair.getFirst(visibleLines), lineCount);
+            int endVisible = Math.max(firstVisible,
+                    Math.min(IntPair.getSecond(visibleLines), lineCount));
+            tokenizer.tokenizeRange(firstVisible, endVisible);
+            if (abort) {
+                return;
+            }
+            List<Result<S, T>> visible = new ArrayList<>(endVisible - firstVisible);
             Spans.Modifier mdf = spans.modify();
-            for (int i = 0;i < shadowed.getLineCount();i++) {
-                ContentLine line = shadowed.getLine(i);
-                Result<S, T> result = tokenizeLine(line, state);
-                state = result.state;
-                List<Span> spans = result.spans != null ? result. spans :generateSpansForLine(result);
+            for (int i = 0; i < endVisible; i++) {
+                Result<S, T> result = i >= firstVisible ? tokenizer.getResult(i) : null;
+                if (result != null) {
+                    visible.add(result);
+                    mdf.addLineAt(i, result.spans != null ? result.spans :
+                            generateSpansForLine(result));
+                } else {
+                    List<Span> lineSpans = new ArrayList<>();
+                    lineSpans.add(Span.obtain(0, EditorColorScheme.TEXT_NORMAL));
+                    mdf.addLineAt(i, lineSpans);
+                }
+            }
+            tryUpdate();
+
+            if (!tokenizer.fill(() -> abort)) {
+                return;
+            }
+            for (int i = 0; i < lineCount; i++) {
+                Result<S, T> result = tokenizer.getResult(i);
+                boolean shown = i >= firstVisible && i < endVisible
+                        && visible.get(i - firstVisible) == result;
+                if (!shown) {
+                    List<Span> lineSpans = result.spans != null ? result.spans :
+                            generateSpansForLine(result);
+                    if (i < endVisible) {
+                        mdf.setSpansOnLine(i, lineSpans);
+                    } else {
+                        mdf.addLineAt(i, lineSpans);
+                    }
+                }
                 states.add(result.clearSpans());
-                mdf.addLineAt(i, spans);
             }
+            TokenizeCheckpoints.save(key, checkpoints, codec);
+
             styles.blocks = computeBlocks(shadowed, delegate);
             styles.setSuppressSwitch(delegate.suppressSwitch);
             tryUpdate();
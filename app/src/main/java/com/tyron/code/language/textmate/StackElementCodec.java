@@ -0,0 +1,106 @@
+package com.tyron.code.language.textmate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.rosemoe.sora.textmate.core.grammar.StackElement;
+import io.github.rosemoe.sora.textmate.core.internal.grammar.ScopeListElement;
+
+/**
+ * Writes the rule stacks of the TextMate grammars. The stacks refer to the rules by their ids,
+ * they can only be read for a grammar with the same {@link TextmateGrammars#getFingerprint
+ * fingerprint}, and the colors of the scopes are only valid for a theme with the same
+ * {@link TextmateGrammars#getThemeFingerprint() fingerprint}.
+ * <p>
+ * The scope lists are shared by the elements of a stack, each one is written once and then
+ * referred to by its index.
+ */
+public class StackElementCodec implements TokenizeCheckpoints.StateCodec<StackElement> {
+
+    public static final StackElementCodec INSTANCE = new StackElementCodec();
+
+    private StackElementCodec() {
+    }
+
+    @Override
+    public void write(DataOutput out, StackElement state) throws IOException {
+        Deque<StackElement> frames = new ArrayDeque<>();
+        for (StackElement frame = state; frame != null; frame = frame.parent) {
+            frames.push(frame);
+        }
+
+        Map<ScopeListElement, Integer> indices = new IdentityHashMap<>();
+        List<ScopeListElement> scopes = new ArrayList<>();
+        for (StackElement frame : frames) {
+            addScopes(frame.nameScopesList, indices, scopes);
+            addScopes(frame.contentNameScopesList, indices, scopes);
+        }
+        out.writeInt(scopes.size());
+        for (ScopeListElement scope : scopes) {
+            out.writeInt(scope.parent == null ? -1 : indices.get(scope.parent));
+            out.writeUTF(scope.scope);
+            out.writeInt(scope.metadata);
+        }
+
+        // from the root to the top of the stack, -1 for a null state
+        out.writeInt(state == null ? -1 : frames.size());
+        for (StackElement frame : frames) {
+            out.writeInt(frame.ruleId);
+            out.writeInt(frame.getEnterPos());
+            out.writeBoolean(frame.endRule != null);
+            if (frame.endRule != null) {
+                out.writeUTF(frame.endRule);
+            }
+            out.writeInt(indexOf(frame.nameScopesList, indices));
+            out.writeInt(indexOf(frame.contentNameScopesList, indices));
+        }
+    }
+
+    @Override
+    public StackElement read(DataInput in) throws IOException {
+        int scopeCount = in.readInt();
+        ScopeListElement[] scopes = new ScopeListElement[scopeCount];
+        for (int i = 0; i < scopeCount; i++) {
+            int parent = in.readInt();
+            String scope = in.readUTF();
+            int metadata = in.readInt();
+            scopes[i] = new ScopeListElement(parent == -1 ? null : scopes[parent], scope, metadata);
+        }
+
+        int frameCount = in.readInt();
+        StackElement state = null;
+        for (int i = 0; i < frameCount; i++) {
+            int ruleId = in.readInt();
+            int enterPos = in.readInt();
+            String endRule = in.readBoolean() ? in.readUTF() : null;
+            int nameScopes = in.readInt();
+            int contentNameScopes = in.readInt();
+            state = new StackElement(state, ruleId, enterPos, endRule,
+                    nameScopes == -1 ? null : scopes[nameScopes],
+                    contentNameScopes == -1 ? null : scopes[contentNameScopes]);
+        }
+        return state;
+    }
+
+    private static void addScopes(ScopeListElement scope, Map<ScopeListElement, Integer> indices,
+                                  List<ScopeListElement> scopes) {
+        if (scope == null || indices.containsKey(scope)) {
+            return;
+        }
+        // the parents are written before their children
+        addScopes(scope.parent, indices, scopes);
+        indices.put(scope, scopes.size());
+        scopes.add(scope);
+    }
+
+    private static int indexOf(ScopeListElement scope, Map<ScopeListElement, Integer> indices) {
+        return scope == null ? -1 : indices.get(scope);
+    }
+}
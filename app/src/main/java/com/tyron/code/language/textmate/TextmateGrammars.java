@@ -0,0 +1,222 @@
+package com.tyron.code.language.textmate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import io.github.rosemoe.sora.textmate.core.grammar.IGrammar;
+import io.github.rosemoe.sora.textmate.core.grammar.ITokenizeLineResult2;
+import io.github.rosemoe.sora.textmate.core.grammar.StackElement;
+import io.github.rosemoe.sora.textmate.core.registry.Registry;
+import io.github.rosemoe.sora.textmate.core.theme.IRawTheme;
+import io.github.rosemoe.sora.textmate.core.theme.IRawThemeSetting;
+import io.github.rosemoe.sora.textmate.core.theme.IThemeSetting;
+import io.github.rosemoe.sora.textmate.core.theme.Theme;
+
+/**
+ * Process wide registry of the compiled TextMate grammars and the current theme. A grammar is
+ * read and its rules compiled once, every editor that uses it shares the compiled rules and
+ * regular expressions.
+ * <p>
+ * The compiled rules of a grammar cache the results of their regular expressions, so a
+ * grammar is only used by one thread at a time through {@link #tokenizeLine}. Different
+ * grammars tokenize in parallel. Loading a grammar and changing the theme modify every
+ * grammar of the registry and wait until no grammar is in use.
+ */
+public class TextmateGrammars {
+
+    private static class LoadedGrammar {
+        final IGrammar grammar;
+        final String fingerprint;
+        final Object lock = new Object();
+
+        LoadedGrammar(IGrammar grammar, String fingerprint) {
+            this.grammar = grammar;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Held for reading while a grammar tokenizes, and for writing while the registry is
+     * modified
+     */
+    private static final ReadWriteLock sRegistryLock = new ReentrantReadWriteLock();
+
+    private static final Registry sRegistry = new Registry();
+    private static final Map<String, LoadedGrammar> sGrammarsByName = new HashMap<>();
+    private static final Map<IGrammar, LoadedGrammar> sGrammars = new IdentityHashMap<>();
+
+    private static IRawTheme sRawTheme;
+    private static Theme sTheme;
+    private static String sThemeFingerprint;
+
+    /**
+     * Returns the grammar with the given name, the stream is only read the first time the
+     * grammar is requested. The stream is closed.
+     */
+    public static IGrammar getGrammar(String grammarName, InputStream grammarIns) throws Exception {
+        try {
+            sRegistryLock.writeLock().lock();
+            try {
+                LoadedGrammar loaded = sGrammarsByName.get(grammarName);
+                if (loaded == null) {
+                    byte[] contents = readFully(grammarIns);
+                    // the ids of the rules depend on the grammars that can be included
+                    TreeSet<String> included = new TreeSet<>(sGrammarsByName.keySet());
+                    IGrammar grammar = sRegistry.loadGrammarFromPathSync(grammarName,
+                            new ByteArrayInputStream(contents));
+                    // compiles the rules now, so their ids do not depend on the first text
+                    grammar.tokenizeLine2("");
+
+                    MessageDigest digest = newDigest();
+                    digest.update(contents);
+                    digest.update(included.toString().getBytes(StandardCharsets.UTF_8));
+                    loaded = new LoadedGrammar(grammar, toHex(digest.digest()));
+                    sGrammarsByName.put(grammarName, loaded);
+                    sGrammars.put(grammar, loaded);
+                }
+                return loaded.grammar;
+            } finally {
+                sRegistryLock.writeLock().unlock();
+            }
+        } finally {
+            try {
+                grammarIns.close();
+            } catch (IOException ignored) {
+                // the grammar has been read already
+            }
+        }
+    }
+
+    /**
+     * Tokenizes a line with a grammar returned by {@link #getGrammar(String, InputStream)}.
+     */
+    public static ITokenizeLineResult2 tokenizeLine(IGrammar grammar, String line,
+                                                    StackElement state) {
+        sRegistryLock.readLock().lock();
+        try {
+            LoadedGrammar loaded = getLoadedGrammar(grammar);
+            synchronized (loaded.lock) {
+                return grammar.tokenizeLine2(line, state);
+            }
+        } finally {
+            sRegistryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The ids of the rules in the tokenizer states are only valid for the grammar they were
+     * created with, states created with another grammar must not be reused.
+     *
+     * @return a hash of the contents of the grammar and of the grammars it could include,
+     * the same in every process
+     */
+    public static String getFingerprint(IGrammar grammar) {
+        sRegistryLock.readLock().lock();
+        try {
+            return getLoadedGrammar(grammar).fingerprint;
+        } finally {
+            sRegistryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the theme of every grammar.
+     *
+     * @return the theme created from the raw theme
+     */
+    public static Theme setTheme(IRawTheme rawTheme) {
+        sRegistryLock.writeLock().lock();
+        try {
+            if (rawTheme != sRawTheme || sTheme == null) {
+                sRegistry.setTheme(rawTheme);
+                sRawTheme = rawTheme;
+                sTheme = Theme.createFromRawTheme(rawTheme);
+                sThemeFingerprint = fingerprint(rawTheme);
+            }
+            return sTheme;
+        } finally {
+            sRegistryLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The tokenizer states include the colors of the scopes, states created with another
+     * theme must not be reused.
+     *
+     * @return a hash of the settings of the current theme, the same in every process
+     */
+    public static String getThemeFingerprint() {
+        sRegistryLock.readLock().lock();
+        try {
+            return sThemeFingerprint;
+        } finally {
+            sRegistryLock.readLock().unlock();
+        }
+    }
+
+    private static LoadedGrammar getLoadedGrammar(IGrammar grammar) {
+        LoadedGrammar loaded = sGrammars.get(grammar);
+        if (loaded == null) {
+            throw new IllegalArgumentException("The grammar " + grammar.getScopeName()
+                    + " was not loaded by TextmateGrammars");
+        }
+        return loaded;
+    }
+
+    private static String fingerprint(IRawTheme rawTheme) {
+        StringBuilder settings = new StringBuilder();
+        if (rawTheme != null) {
+            settings.append(rawTheme.getName());
+            if (rawTheme.getSettings() != null) {
+                for (IRawThemeSetting rawSetting : rawTheme.getSettings()) {
+                    IThemeSetting setting = rawSetting.getSetting();
+                    settings.append('\n').append(rawSetting.getScope());
+                    if (setting != null) {
+                        settings.append(' ').append(setting.getFontStyle())
+                                .append(' ').append(setting.getForeground())
+                                .append(' ').append(setting.getBackground());
+                    }
+                }
+            }
+        }
+        return toHex(newDigest().digest(settings.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,291 @@
+package com.tyron.code.language.textmate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * The tokenizer states at the start of every {@link #INTERVAL}-th line of a text. Tokenizing
+ * a line only needs the state of the line before it, so any line can be tokenized by starting
+ * from the nearest checkpoint above it instead of from the start of the text.
+ * <p>
+ * Checkpoints of fully tokenized texts are saved under a key which includes the hash of the
+ * text, so a file that is opened again can be colored from any line immediately. The most
+ * recent ones are kept in memory, and if a {@link #setDirectory(File) directory} is set and
+ * the states can be written with a {@link StateCodec} they are also written to a file named
+ * after the hash of the key, to be read by the next process.
+ *
+ * @param <S> the type of the tokenizer state
+ */
+public class TokenizeCheckpoints<S> {
+
+    /**
+     * Writes and reads the tokenizer states to and from the checkpoint files
+     */
+    public interface StateCodec<S> {
+
+        void write(DataOutput out, S state) throws IOException;
+
+        S read(DataInput in) throws IOException;
+    }
+
+    public static final int INTERVAL = 64;
+
+    private static final int MAX_CACHED_TEXTS = 32;
+
+    private static final int MAX_FILES = 256;
+
+    private static final int FILE_VERSION = 1;
+
+    private static final String FILE_EXTENSION = ".checkpoints";
+
+    private static final Map<String, TokenizeCheckpoints<?>> sCache =
+            new LinkedHashMap<String, TokenizeCheckpoints<?>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TokenizeCheckpoints<?>> eldest) {
+                    return size() > MAX_CACHED_TEXTS;
+                }
+            };
+
+    private static File sDirectory;
+
+    /**
+     * Sets the directory the checkpoints are written to, null to only keep them in memory.
+     */
+    public static void setDirectory(File directory) {
+        synchronized (sCache) {
+            sDirectory = directory;
+        }
+    }
+
+    /**
+     * Returns a copy of the checkpoints saved for the given key, or empty checkpoints if there
+     * are none.
+     *
+     * @param codec reads the states of the checkpoint file of the key when they are not in
+     *              memory, may be null
+     */
+    @SuppressWarnings("unchecked")
+    public static <S> TokenizeCheckpoints<S> obtain(String key, int lineCount,
+                                                    StateCodec<S> codec) {
+        if (key == null) {
+            return new TokenizeCheckpoints<>(lineCount);
+        }
+        synchronized (sCache) {
+            TokenizeCheckpoints<S> checkpoints = (TokenizeCheckpoints<S>) sCache.get(key);
+            if (checkpoints == null && codec != null && sDirectory != null) {
+                checkpoints = read(getFile(key), key, codec);
+                if (checkpoints != null) {
+                    sCache.put(key, checkpoints);
+                }
+            }
+            if (checkpoints != null && checkpoints.mLineCount == lineCount) {
+                return checkpoints.copy();
+            }
+        }
+        return new TokenizeCheckpoints<>(lineCount);
+    }
+
+    /**
+     * Saves the checkpoints of a fully tokenized text.
+     *
+     * @param codec writes the states to the checkpoint file of the key, may be null
+     */
+    public static <S> void save(String key, TokenizeCheckpoints<S> checkpoints,
+                                StateCodec<S> codec) {
+        if (key == null) {
+            return;
+        }
+        synchronized (sCache) {
+            sCache.put(key, checkpoints.copy());
+            if (codec != null && sDirectory != null) {
+                write(getFile(key), key, checkpoints, codec);
+                prune(sDirectory);
+            }
+        }
+    }
+
+    /**
+     * Clears the checkpoints kept in memory, the files are kept.
+     */
+    public static void clearCache() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+    }
+
+    /**
+     * SHA-256 of the lines of a text, used as a part of the keys
+     */
+    public static String hash(int lineCount, IntFunction<? extends CharSequence> lines) {
+        MessageDigest digest = TextmateGrammars.newDigest();
+        byte[] buffer = new byte[8192];
+        int size = 0;
+        for (int i = 0; i < lineCount; i++) {
+            CharSequence line = lines.apply(i);
+            for (int j = 0; j <= line.length(); j++) {
+                char c = j < line.length() ? line.charAt(j) : '\n';
+                if (size == buffer.length) {
+                    digest.update(buffer, 0, size);
+                    size = 0;
+                }
+                buffer[size++] = (byte) (c >> 8);
+                buffer[size++] = (byte) c;
+            }
+        }
+        digest.update(buffer, 0, size);
+        return TextmateGrammars.toHex(digest.digest());
+    }
+
+    private static File getFile(String key) {
+        byte[] hash = TextmateGrammars.newDigest().digest(key.getBytes(StandardCharsets.UTF_8));
+        return new File(sDirectory, TextmateGrammars.toHex(hash) + FILE_EXTENSION);
+    }
+
+    private static <S> TokenizeCheckpoints<S> read(File file, String key, StateCodec<S> codec) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            TokenizeCheckpoints<S> checkpoints = new TokenizeCheckpoints<>(in.readInt());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int index = in.readInt();
+                checkpoints.mStates[index] = codec.read(in);
+                checkpoints.mKnown.set(index);
+            }
+            // the files that are read are the last to be pruned
+            file.setLastModified(System.currentTimeMillis());
+            return checkpoints;
+        } catch (IOException | RuntimeException e) {
+            // a file of an older version or a partially written file, tokenize again
+            file.delete();
+            return null;
+        }
+    }
+
+    private static <S> void write(File file, String key, TokenizeCheckpoints<S> checkpoints,
+                                  StateCodec<S> codec) {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(key);
+            out.writeInt(checkpoints.mLineCount);
+            out.writeInt(checkpoints.getCount());
+            for (int i = checkpoints.mKnown.nextSetBit(0); i >= 0;
+                 i = checkpoints.mKnown.nextSetBit(i + 1)) {
+                out.writeInt(i);
+                codec.write(out, checkpoints.getState(i * INTERVAL));
+            }
+        } catch (IOException | RuntimeException e) {
+            // the checkpoints are only kept in memory
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Deletes the least recently used files when there are more than {@link #MAX_FILES}
+     */
+    private static void prune(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null || files.length <= MAX_FILES) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - MAX_FILES; i++) {
+            files[i].delete();
+        }
+    }
+
+    private final int mLineCount;
+    private final Object[] mStates;
+    /** Whether a checkpoint is recorded, the state itself may be null */
+    private final BitSet mKnown;
+
+    public TokenizeCheckpoints(int lineCount) {
+        mLineCount = lineCount;
+        mStates = new Object[lineCount / INTERVAL + 1];
+        mKnown = new BitSet(mStates.length);
+    }
+
+    private TokenizeCheckpoints(TokenizeCheckpoints<S> other) {
+        mLineCount = other.mLineCount;
+        mStates = Arrays.copyOf(other.mStates, other.mStates.length);
+        mKnown = (BitSet) other.mKnown.clone();
+    }
+
+    public TokenizeCheckpoints<S> copy() {
+        return new TokenizeCheckpoints<>(this);
+    }
+
+    /**
+     * Records the state at the start of the given line, lines that are not at a checkpoint
+     * are ignored.
+     */
+    public void record(int line, S state) {
+        if (line % INTERVAL != 0 || line >= mLineCount) {
+            return;
+        }
+        int index = line / INTERVAL;
+        mStates[index] = state;
+        mKnown.set(index);
+    }
+
+    /**
+     * Forgets every checkpoint
+     */
+    public void clear() {
+        Arrays.fill(mStates, null);
+        mKnown.clear();
+    }
+
+    /**
+     * @return the line of the nearest checkpoint at or above the given line, -1 if there is
+     * none
+     */
+    public int getNearestLine(int line) {
+        int index = Math.min(line, mLineCount) / INTERVAL;
+        int known = mKnown.previousSetBit(index);
+        return known == -1 ? -1 : known * INTERVAL;
+    }
+
+    /**
+     * @return the state at the start of a line returned by {@link #getNearestLine(int)}
+     */
+    @SuppressWarnings("unchecked")
+    public S getState(int line) {
+        return (S) mStates[line / INTERVAL];
+    }
+
+    public int getCount() {
+        return mKnown.cardinality();
+    }
+}
@@ -0,0 +1,145 @@
+package com.tyron.code.language.textmate;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+
+/**
+ * Tokenizes the lines of a text starting with the lines that are visible.
+ * <p>
+ * The visible lines are tokenized from the nearest {@link TokenizeCheckpoints checkpoint}
+ * above them. The whole text is then tokenized in order by {@link #fill(BooleanSupplier)},
+ * which reuses the lines that were already tokenized from the same state. The results are
+ * always the same as tokenizing every line in order from the first one.
+ * <p>
+ * Not thread safe, a tokenizer is used by the thread that analyzes the text.
+ *
+ * @param <S> the type of the tokenizer state
+ * @param <R> the type of the result of a line
+ */
+public class ViewportTokenizer<S, R> {
+
+    public interface LineTokenizer<S, R> {
+
+        R tokenizeLine(CharSequence line, S state);
+
+        /**
+         * @return the state at the end of the line of the result
+         */
+        S getState(R result);
+
+        boolean stateEquals(S state, S another);
+    }
+
+    private final LineTokenizer<S, R> mTokenizer;
+    private final S mInitialState;
+    private final TokenizeCheckpoints<S> mCheckpoints;
+    private final int mLineCount;
+    private final IntFunction<? extends CharSequence> mLines;
+
+    private final Object[] mResults;
+    /** The state each tokenized line was tokenized from */
+    private final Object[] mStartStates;
+    /** The lines before this one are tokenized in order from the first line */
+    private int mFilledLines;
+
+    public ViewportTokenizer(LineTokenizer<S, R> tokenizer,
+                             S initialState,
+                             TokenizeCheckpoints<S> checkpoints,
+                             int lineCount,
+                             IntFunction<? extends CharSequence> lines) {
+        mTokenizer = tokenizer;
+        mInitialState = initialState;
+        mCheckpoints = checkpoints;
+        mLineCount = lineCount;
+        mLines = lines;
+        mResults = new Object[lineCount];
+        mStartStates = new Object[lineCount];
+    }
+
+    /**
+     * Tokenizes the lines from {@code from} (inclusive) to {@code to} (exclusive), starting
+     * from the nearest checkpoint above them.
+     *
+     * @return the number of lines that were tokenized
+     */
+    public int tokenizeRange(int from, int to) {
+        from = Math.max(0, Math.min(from, mLineCount));
+        to = Math.max(from, Math.min(to, mLineCount));
+
+        int line = mCheckpoints.getNearestLine(from);
+        if (line != -1) {
+            try {
+                return tokenizeRange(line, mCheckpoints.getState(line), to);
+            } catch (RuntimeException e) {
+                // a checkpoint read from a file which the grammar can not continue from,
+                // the lines are tokenized again by fill() if the state was wrong
+                mCheckpoints.clear();
+            }
+        }
+        return tokenizeRange(0, mInitialState, to);
+    }
+
+    private int tokenizeRange(int line, S state, int to) {
+        int count = 0;
+        for (; line < to; line++) {
+            state = tokenize(line, state);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Tokenizes the whole text in order, the lines that were already tokenized from the same
+     * state are not tokenized again.
+     *
+     * @param cancelled checked before every line
+     * @return false if the tokenization was cancelled before the end of the text
+     */
+    public boolean fill(BooleanSupplier cancelled) {
+        S state = mFilledLines == 0
+                ? mInitialState
+                : mTokenizer.getState(getResult(mFilledLines - 1));
+        while (mFilledLines < mLineCount) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            R result = getResult(mFilledLines);
+            if (result != null && mTokenizer.stateEquals(getStartState(mFilledLines), state)) {
+                state = mTokenizer.getState(result);
+            } else {
+                state = tokenize(mFilledLines, state);
+            }
+            mFilledLines++;
+        }
+        return true;
+    }
+
+    /**
+     * @return the result of the line, or null if it has not been tokenized
+     */
+    @SuppressWarnings("unchecked")
+    public R getResult(int line) {
+        return (R) mResults[line];
+    }
+
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    public TokenizeCheckpoints<S> getCheckpoints() {
+        return mCheckpoints;
+    }
+
+    @SuppressWarnings("unchecked")
+    private S getStartState(int line) {
+        return (S) mStartStates[line];
+    }
+
+    private S tokenize(int line, S state) {
+        mCheckpoints.record(line, state);
+        R result = mTokenizer.tokenizeLine(mLines.apply(line), state);
+        mResults[line] = result;
+        mStartStates[line] = state;
+        return mTokenizer.getState(result);
+    }
+}
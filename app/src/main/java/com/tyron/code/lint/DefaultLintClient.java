@@ -38,6 +38,14 @@ public class DefaultLintClient extends LintClient {
         mLint.scanFile(file);
     }
 
+    /**
+     * Scans the given files in parallel, the issues are reported in the order of the files.
+     */
+    public void scan(List<File> files) {
+        mIssues.clear();
+        mLint.scanFiles(files);
+    }
+
     @Override
     public void report(@NonNull Context context, @NonNull Issue issue, @NonNull Severity severity, @Nullable Location location, @NonNull String message, @NonNull TextFormat format) {
         if (location != null) {
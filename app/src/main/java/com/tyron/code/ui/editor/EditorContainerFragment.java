@@ -275,7 +275,12 @@ public class EditorContainerFragment extends Fragment implements
         ApplicationLoader.getInstance().getEventManager().subscribeEvent(
                 getViewLifecycleOwner(),
                 SaveEvent.class,
-                (event, unsubscribe) -> updateTabs()
+                (event, unsubscribe) -> ProgressManager.getInstance().runLater(() -> {
+                    if (getView() == null) {
+                        return;
+                    }
+                    updateTabs();
+                })
         );
 
         mMainViewModel.getBottomSheetState().observe(getViewLifecycleOwner(), state -> {
@@ -0,0 +1,41 @@
+package com.tyron.code.ui.editor.event;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.code.event.Event;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Used to notify that the diagnostics of the file opened in an editor have been updated
+ */
+public class DiagnosticsEvent extends Event {
+
+    private final File mFile;
+    private final List<DiagnosticWrapper> mDiagnostics;
+
+    public DiagnosticsEvent(@NonNull File file, @NonNull List<DiagnosticWrapper> diagnostics) {
+        mFile = file;
+        mDiagnostics = diagnostics;
+    }
+
+    @NonNull
+    public File getFile() {
+        return mFile;
+    }
+
+    @NonNull
+    public List<DiagnosticWrapper> getDiagnostics() {
+        return mDiagnostics;
+    }
+
+    /**
+     * Only the latest diagnostics are shown, older pending ones can be dropped
+     */
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
+}
@@ -32,7 +32,6 @@ import com.tyron.actions.ActionPlaces;
 import com.tyron.actions.CommonDataKeys;
 import com.tyron.actions.DataContext;
 import com.tyron.actions.util.DataContextUtils;
-import com.tyron.builder.log.LogViewModel;
 import com.tyron.builder.model.DiagnosticWrapper;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
@@ -45,6 +44,7 @@ import com.tyron.code.ui.editor.CodeAssistCompletionAdapter;
 import com.tyron.code.ui.editor.CodeAssistCompletionLayout;
 import com.tyron.code.ui.editor.EditorViewModel;
 import com.tyron.code.ui.editor.Savable;
+import com.tyron.code.ui.editor.event.DiagnosticsEvent;
 import com.tyron.code.ui.editor.impl.FileEditorManagerImpl;
 import com.tyron.code.language.LanguageManager;
 import com.tyron.code.language.java.JavaLanguage;
@@ -391,14 +391,13 @@ public class CodeEditorFragment extends Fragment implements Savable,
             updateFile(event.getEditor().getText());
         });
 
-        LogViewModel logViewModel =
-                new ViewModelProvider(requireActivity()).get(LogViewModel.class);
         mEditor.setDiagnosticsListener(diagnostics -> {
             for (DiagnosticWrapper diagnostic : diagnostics) {
                 DiagnosticUtil.setLineAndColumn(diagnostic, mEditor);
             }
-            ProgressManager.getInstance()
-                    .runLater(() -> logViewModel.updateLogs(LogViewModel.DEBUG, diagnostics));
+            ApplicationLoader.getInstance()
+                    .getEventManager()
+                    .postEvent(new DiagnosticsEvent(mCurrentFile, diagnostics));
         });
     }
 
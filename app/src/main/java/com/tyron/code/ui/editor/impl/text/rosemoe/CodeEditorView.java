@@ -18,6 +18,7 @@ import com.tyron.code.ui.editor.CodeAssistCompletionWindow;
 import com.tyron.code.ui.editor.EditorViewModel;
 import com.tyron.code.ui.editor.NoOpTextActionWindow;
 import com.tyron.code.language.EditorFormatter;
+import com.tyron.code.language.FormatEdit;
 import com.tyron.code.analyzer.DiagnosticTextmateAnalyzer;
 import com.tyron.code.language.xml.LanguageXML;
 import com.tyron.code.ui.editor.impl.text.rosemoe.window.ActionsWindow;
@@ -393,17 +394,44 @@ public class CodeEditorView extends CodeEditor implements Editor {
             return false;
         }
         if (getEditorLanguage() instanceof EditorFormatter) {
+            EditorFormatter formatter = (EditorFormatter) getEditorLanguage();
+            String originalText = getText().toString();
             ProgressManager.getInstance().runNonCancelableAsync(() -> {
-                CharSequence originalText = getText();
-                final CharSequence formatted =
-                        ((EditorFormatter) getEditorLanguage()).format(originalText, start, end);
-                super.onFormatSucceed(originalText, formatted);
+                List<FormatEdit> edits = formatter.formatEdits(originalText, start, end);
+                post(() -> applyFormatEdits(originalText, edits));
             });
             return true;
         }
         return false;
     }
 
+    /**
+     * Applies only the changed regions instead of replacing the whole text, so the
+     * rest of the document is not laid out again and the format can be undone in one step.
+     */
+    private void applyFormatEdits(String originalText, List<FormatEdit> edits) {
+        if (edits.isEmpty()) {
+            return;
+        }
+        io.github.rosemoe.sora.text.Content text = getText();
+        if (!originalText.contentEquals(text)) {
+            // the text was edited while formatting, the edits are no longer valid
+            return;
+        }
+        text.beginBatchEdit();
+        // apply from the end so the offsets of the remaining edits stay valid
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            FormatEdit edit = edits.get(i);
+            io.github.rosemoe.sora.text.CharPosition startPos =
+                    text.getIndexer().getCharPosition(edit.getOffset());
+            io.github.rosemoe.sora.text.CharPosition endPos =
+                    text.getIndexer().getCharPosition(edit.getOffset() + edit.getLength());
+            text.replace(startPos.line, startPos.column, endPos.line, endPos.column,
+                    edit.getText());
+        }
+        text.endBatchEdit();
+    }
+
     @Override
     public Caret getCaret() {
         return new CursorWrapper(getCursor());
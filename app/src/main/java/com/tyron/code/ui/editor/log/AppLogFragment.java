@@ -7,27 +7,38 @@ import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.snackbar.Snackbar;
+import com.tyron.builder.log.LogStore;
 import com.tyron.builder.log.LogViewModel;
 import com.tyron.builder.model.DiagnosticWrapper;
 import com.tyron.builder.project.Project;
+import com.tyron.code.R;
 import com.tyron.code.ui.editor.impl.FileEditorManagerImpl;
 import com.tyron.code.ui.editor.log.adapter.LogAdapter;
 import com.tyron.code.ui.main.MainViewModel;
 import com.tyron.code.ui.project.ProjectManager;
+import com.tyron.completion.progress.ProgressManager;
 import com.tyron.fileeditor.api.FileEditorManager;
 import com.tyron.terminal.TerminalSession;
 import com.tyron.terminal.TerminalSessionClientAdapter;
 import com.tyron.terminal.view.TerminalView;
 import com.tyron.terminal.view.TerminalViewClientAdapter;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Handler;
 
 public class AppLogFragment extends Fragment
@@ -36,6 +47,9 @@ public class AppLogFragment extends Fragment
     /** Only used in IDE Logs **/
     private Handler mHandler;
 
+    /** The number of entries read from the {@link LogStore} at a time when writing the full log. */
+    private static final int PAGE_SIZE = 1000;
+
     public static AppLogFragment newInstance(int id) {
         AppLogFragment fragment = new AppLogFragment();
         Bundle bundle = new Bundle();
@@ -50,6 +64,14 @@ public class AppLogFragment extends Fragment
     private LogAdapter mAdapter;
     private RecyclerView mRecyclerView;
     private TerminalView mTerminalView;
+    @Nullable
+    private Snackbar mEarlierEntriesSnackbar;
+
+    private final AtomicBoolean mInvalidatePending = new AtomicBoolean();
+    private final Runnable mInvalidateTerminal = () -> {
+        mInvalidatePending.set(false);
+        mTerminalView.invalidate();
+    };
 
     public static OutputStream outputStream;
     public static OutputStream errorOutputStream;
@@ -88,8 +110,14 @@ public class AppLogFragment extends Fragment
 
                 @Override
                 public void write(byte[] b, int off, int len) throws IOException {
-                    mTerminalView.mEmulator.append(b, off + len);
-                    mTerminalView.postInvalidate();
+                    if (off != 0) {
+                        b = Arrays.copyOfRange(b, off, off + len);
+                    }
+                    mTerminalView.mEmulator.append(b, len);
+                    // a build writes many lines per frame, redraw once for all of them
+                    if (mInvalidatePending.compareAndSet(false, true)) {
+                        mTerminalView.postOnAnimation(mInvalidateTerminal);
+                    }
                 }
             };
 
@@ -117,6 +145,14 @@ public class AppLogFragment extends Fragment
         mRecyclerView = new RecyclerView(requireContext());
         mRecyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
         mRecyclerView.setAdapter(mAdapter);
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy < 0 && !recyclerView.canScrollVertically(-1)) {
+                    showEarlierEntries();
+                }
+            }
+        });
         mRoot.addView(mRecyclerView,
                 new FrameLayout.LayoutParams(-1, -1));
 
@@ -159,6 +195,74 @@ public class AppLogFragment extends Fragment
         }
     }
 
+    /**
+     * The list only holds the most recent entries of the log, when the user scrolls to its top
+     * the entries before it can be opened from the {@link LogStore} in the editor.
+     */
+    private void showEarlierEntries() {
+        LogStore store = mModel.getLogStore(id);
+        int earlier = store.size() - mAdapter.getItemCount();
+        if (earlier <= 0 || (mEarlierEntriesSnackbar != null && mEarlierEntriesSnackbar.isShown())) {
+            return;
+        }
+        mEarlierEntriesSnackbar = Snackbar.make(mRecyclerView,
+                getString(R.string.log_earlier_entries, earlier), Snackbar.LENGTH_LONG)
+                .setAction(R.string.log_open_full, v -> openFullLog(store));
+        mEarlierEntriesSnackbar.show();
+    }
+
+    private void openFullLog(LogStore store) {
+        File file = new File(requireContext().getCacheDir(), "logs/log-" + id + ".txt");
+        ProgressManager progress = ProgressManager.getInstance();
+        progress.runNonCancelableAsync(() -> {
+            try {
+                writeLog(store, file);
+            } catch (IOException e) {
+                return;
+            }
+            progress.runLater(() -> {
+                if (getContext() != null) {
+                    FileEditorManagerImpl.getInstance().openFile(requireContext(), file, it -> {});
+                }
+            });
+        });
+    }
+
+    private static void writeLog(LogStore store, File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        // the entries added while the file is written are left out
+        int size = store.size();
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writeEntries(store, size, writer);
+        }
+    }
+
+    private static void writeEntries(LogStore store, int size, Writer writer) throws IOException {
+        try {
+            for (int start = 0; start < size; start += PAGE_SIZE) {
+                for (DiagnosticWrapper entry : store.get(start, Math.min(size, start + PAGE_SIZE))) {
+                    if (entry.getKind() != null) {
+                        writer.write(entry.getKind().name());
+                        writer.write(": ");
+                    }
+                    if (entry.getMessageCharSequence() != null) {
+                        writer.write(entry.getMessageCharSequence().toString());
+                    }
+                    if (entry.getSource() != null) {
+                        writer.write(" (" + entry.getSource().getPath() + ":"
+                                     + entry.getLineNumber() + ")");
+                    }
+                    writer.write('\n');
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // the log was cleared while it was written, keep what was written so far
+        }
+    }
+
     @Override
     public void onProjectOpen(Project project) {
 
@@ -44,6 +44,9 @@ public class LogAdapter extends RecyclerView.Adapter<LogAdapter.ViewHolder>{
     }
 
     public void submitList(List<DiagnosticWrapper> newData) {
+        if (submitAppended(newData)) {
+            return;
+        }
         DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
             @Override
             public int getOldListSize() {
@@ -74,6 +77,52 @@ public class LogAdapter extends RecyclerView.Adapter<LogAdapter.ViewHolder>{
         }
     }
 
+    /**
+     * The logs usually only grow, with the oldest entries dropped once the visible limit is
+     * reached. In that case the change is dispatched without diffing the whole list.
+     *
+     * @return false if the new list is not the current list with entries removed from the
+     * start and entries added to the end
+     */
+    private boolean submitAppended(List<DiagnosticWrapper> newData) {
+        if (mData.isEmpty() || newData.isEmpty()) {
+            return false;
+        }
+        // find the first entry of the new list in the current list, compared by identity
+        // since the entries are the same instances
+        DiagnosticWrapper first = newData.get(0);
+        int removed = -1;
+        for (int i = 0; i < mData.size(); i++) {
+            if (mData.get(i) == first) {
+                removed = i;
+                break;
+            }
+        }
+        if (removed == -1) {
+            return false;
+        }
+        int kept = mData.size() - removed;
+        if (kept > newData.size()) {
+            return false;
+        }
+        for (int i = 0; i < kept; i++) {
+            if (mData.get(removed + i) != newData.get(i)) {
+                return false;
+            }
+        }
+
+        int inserted = newData.size() - kept;
+        mData.subList(0, removed).clear();
+        mData.addAll(newData.subList(kept, newData.size()));
+        if (removed > 0) {
+            notifyItemRangeRemoved(0, removed);
+        }
+        if (inserted > 0) {
+            notifyItemRangeInserted(kept, inserted);
+        }
+        return true;
+    }
+
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
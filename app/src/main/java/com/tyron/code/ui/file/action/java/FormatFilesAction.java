@@ -0,0 +1,106 @@
+package com.tyron.code.ui.file.action.java;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import com.tyron.actions.AnActionEvent;
+import com.tyron.actions.CommonDataKeys;
+import com.tyron.builder.project.api.FileManager;
+import com.tyron.builder.project.api.Module;
+import com.tyron.code.R;
+import com.tyron.code.ui.file.action.FileAction;
+import com.tyron.code.ui.file.tree.TreeFileManagerFragment;
+import com.tyron.code.ui.project.ProjectManager;
+import com.tyron.completion.progress.ProgressManager;
+import com.tyron.eclipse.formatter.Formatter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import kotlin.io.FileWalkDirection;
+import kotlin.io.FilesKt;
+
+/**
+ * Formats every java file in the selected directory, or the selected java file.
+ */
+public class FormatFilesAction extends FileAction {
+
+    public static final String ID = "fileManagerFormatFilesAction";
+
+    @Override
+    public String getTitle(Context context) {
+        return context.getString(R.string.menu_format);
+    }
+
+    @Override
+    public boolean isApplicable(File file) {
+        return file.isDirectory() || file.getName().endsWith(".java");
+    }
+
+    @Override
+    public void actionPerformed(@NonNull AnActionEvent e) {
+        TreeFileManagerFragment fragment =
+                (TreeFileManagerFragment) e.getRequiredData(CommonDataKeys.FRAGMENT);
+        File root = e.getRequiredData(CommonDataKeys.FILE);
+
+        ProgressManager progress = ProgressManager.getInstance();
+        progress.runNonCancelableAsync(() -> {
+            List<File> files = getFilesToFormat(root);
+            int changed = 0;
+            int failed = 0;
+            try {
+                int threads = Runtime.getRuntime().availableProcessors();
+                for (Formatter.FileResult result : Formatter.formatFiles(files, threads)) {
+                    if (result.getError() != null) {
+                        failed++;
+                    } else if (result.isChanged()) {
+                        changed++;
+                    }
+                }
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            String message = fragment.getString(R.string.format_files_result, changed,
+                    files.size(), failed);
+            progress.runLater(() -> {
+                if (fragment.isDetached()) {
+                    return;
+                }
+                new MaterialAlertDialogBuilder(fragment.requireContext())
+                        .setTitle(R.string.menu_format)
+                        .setMessage(message)
+                        .setPositiveButton(android.R.string.ok, null)
+                        .show();
+            });
+        });
+    }
+
+    /**
+     * Files that are open in an editor are skipped, their contents are owned by the editor
+     * and would overwrite the formatted file on the next save.
+     */
+    private static List<File> getFilesToFormat(File root) {
+        List<File> files = new ArrayList<>();
+        FilesKt.walk(root, FileWalkDirection.TOP_DOWN).iterator().forEachRemaining(file -> {
+            if (!file.isFile() || !file.getName().endsWith(".java")) {
+                return;
+            }
+            Module module = ProjectManager.getInstance()
+                    .getCurrentProject()
+                    .getModule(file);
+            if (module != null) {
+                FileManager fileManager = module.getFileManager();
+                if (fileManager.isOpened(file)) {
+                    return;
+                }
+            }
+            files.add(file);
+        });
+        return files;
+    }
+}
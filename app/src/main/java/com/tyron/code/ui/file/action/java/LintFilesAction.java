@@ -0,0 +1,94 @@
+package com.tyron.code.ui.file.action.java;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import com.tyron.actions.AnActionEvent;
+import com.tyron.actions.CommonDataKeys;
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.api.Module;
+import com.tyron.code.R;
+import com.tyron.code.lint.DefaultLintClient;
+import com.tyron.code.lint.LintIssue;
+import com.tyron.code.ui.file.action.FileAction;
+import com.tyron.code.ui.file.tree.TreeFileManagerFragment;
+import com.tyron.code.ui.project.ProjectManager;
+import com.tyron.completion.progress.ProgressManager;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import kotlin.io.FileWalkDirection;
+import kotlin.io.FilesKt;
+
+/**
+ * Lints every java file in the selected directory, or the selected java file.
+ */
+public class LintFilesAction extends FileAction {
+
+    public static final String ID = "fileManagerLintFilesAction";
+
+    @Override
+    public String getTitle(Context context) {
+        return context.getString(R.string.menu_lint);
+    }
+
+    @Override
+    public boolean isApplicable(File file) {
+        return file.isDirectory() || file.getName().endsWith(".java");
+    }
+
+    @Override
+    public void actionPerformed(@NonNull AnActionEvent e) {
+        TreeFileManagerFragment fragment =
+                (TreeFileManagerFragment) e.getRequiredData(CommonDataKeys.FRAGMENT);
+        File root = e.getRequiredData(CommonDataKeys.FILE);
+        Module module = ProjectManager.getInstance()
+                .getCurrentProject()
+                .getModule(root);
+        if (!(module instanceof JavaModule)) {
+            return;
+        }
+
+        ProgressManager progress = ProgressManager.getInstance();
+        progress.runNonCancelableAsync(() -> {
+            List<File> files = getFilesToLint(root);
+            DefaultLintClient client = new DefaultLintClient((JavaModule) module);
+            client.scan(files);
+
+            StringBuilder message = new StringBuilder(fragment.getString(
+                    R.string.lint_files_result, client.getReportedIssues().size(), files.size()));
+            for (LintIssue issue : client.getReportedIssues()) {
+                message.append('\n')
+                        .append(issue.getLocation().getFile().getName())
+                        .append(':')
+                        .append(issue.getLocation().getStart().line + 1)
+                        .append(' ')
+                        .append(issue.getIssue().getId());
+            }
+            progress.runLater(() -> {
+                if (fragment.isDetached()) {
+                    return;
+                }
+                new MaterialAlertDialogBuilder(fragment.requireContext())
+                        .setTitle(R.string.menu_lint)
+                        .setMessage(message)
+                        .setPositiveButton(android.R.string.ok, null)
+                        .show();
+            });
+        });
+    }
+
+    private static List<File> getFilesToLint(File root) {
+        List<File> files = new ArrayList<>();
+        FilesKt.walk(root, FileWalkDirection.TOP_DOWN).iterator().forEachRemaining(file -> {
+            if (file.isFile() && file.getName().endsWith(".java")) {
+                files.add(file);
+            }
+        });
+        return files;
+    }
+}
@@ -21,4 +21,12 @@ public class RefreshRootEvent extends Event {
     public File getRoot() {
         return mRoot;
     }
+
+    /**
+     * Only the latest root is shown, refreshes that are still pending can be dropped
+     */
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
 }
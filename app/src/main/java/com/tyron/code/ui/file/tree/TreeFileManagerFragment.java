@@ -105,21 +105,13 @@ public class TreeFileManagerFragment extends Fragment {
         EventManager eventManager = ApplicationLoader.getInstance()
                 .getEventManager();
         eventManager.subscribeEvent(getViewLifecycleOwner(), RefreshRootEvent.class, (event, unsubscribe) -> {
-            File refreshRoot = event.getRoot();
-            TreeNode<TreeFile> currentRoot = treeView.getRoot();
-            if (currentRoot != null && refreshRoot.equals(currentRoot.getValue().getFile())) {
-                partialRefresh(() -> treeView.refreshTreeView());
-            } else {
-                ProgressManager.getInstance().runNonCancelableAsync(() -> {
-                    TreeNode<TreeFile> node = TreeNode.root(TreeUtil.getNodes(refreshRoot));
-                    ProgressManager.getInstance().runLater(() -> {
-                        if (getActivity() == null) {
-                            return;
-                        }
-                        treeView.refreshTreeView(node);
-                    });
-                });
-            }
+            // posted events are delivered on a background thread
+            ProgressManager.getInstance().runLater(() -> {
+                if (getActivity() == null) {
+                    return;
+                }
+                refreshRoot(event.getRoot());
+            });
         });
 
         treeView.setAdapter(new TreeFileNodeViewFactory(new TreeFileNodeListener() {
@@ -146,6 +138,23 @@ public class TreeFileManagerFragment extends Fragment {
     }
 
 
+    private void refreshRoot(File refreshRoot) {
+        TreeNode<TreeFile> currentRoot = treeView.getRoot();
+        if (currentRoot != null && refreshRoot.equals(currentRoot.getValue().getFile())) {
+            partialRefresh(() -> treeView.refreshTreeView());
+        } else {
+            ProgressManager.getInstance().runNonCancelableAsync(() -> {
+                TreeNode<TreeFile> node = TreeNode.root(TreeUtil.getNodes(refreshRoot));
+                ProgressManager.getInstance().runLater(() -> {
+                    if (getActivity() == null) {
+                        return;
+                    }
+                    treeView.refreshTreeView(node);
+                });
+            });
+        }
+    }
+
     private void partialRefresh(Runnable callback) {
         ProgressManager.getInstance().runNonCancelableAsync(() -> {
             if (!treeView.getAllNodes().isEmpty()) {
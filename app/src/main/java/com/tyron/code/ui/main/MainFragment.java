@@ -39,6 +39,7 @@ import com.tyron.builder.model.DiagnosticWrapper;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.Module;
 import com.tyron.code.ApplicationLoader;
+import com.tyron.code.ui.editor.event.DiagnosticsEvent;
 import com.tyron.code.ui.file.event.RefreshRootEvent;
 import com.tyron.code.util.UiUtilsKt;
 import com.tyron.common.logging.IdeLog;
@@ -227,6 +228,12 @@ public class MainFragment extends Fragment implements ProjectManager.OnProjectOp
             mMainViewModel.setFiles(new ArrayList<>());
             mLogViewModel.clear(LogViewModel.BUILD_LOG);
         }
+        ApplicationLoader.getInstance().getEventManager().subscribeEvent(
+                getViewLifecycleOwner(),
+                DiagnosticsEvent.class,
+                (event, unsubscribe) -> ProgressManager.getInstance().runLater(() ->
+                        mLogViewModel.updateLogs(LogViewModel.DEBUG, event.getDiagnostics()))
+        );
         mMainViewModel.isIndexing()
                 .observe(getViewLifecycleOwner(), indexing -> {
                     mProgressBar.setVisibility(indexing ? View.VISIBLE : View.GONE);
@@ -376,7 +383,7 @@ public class MainFragment extends Fragment implements ProjectManager.OnProjectOp
         CompletionEngine.setIndexing(true);
 
         RefreshRootEvent event = new RefreshRootEvent(project.getRootFile());
-        ApplicationLoader.getInstance().getEventManager().dispatchEvent(event);
+        ApplicationLoader.getInstance().getEventManager().postEvent(event);
 
         Intent intent = new Intent(requireContext(), IndexService.class);
         requireActivity().startService(intent);
@@ -69,6 +69,6 @@ public class SaveAction extends AnAction {
     public static void doSave() {
         FileDocumentManager.getInstance().saveAllContents();
         EventManager eventManager = ApplicationLoader.getInstance().getEventManager();
-        eventManager.dispatchEvent(new SaveEvent());
+        eventManager.postEvent(new SaveEvent());
     }
 }
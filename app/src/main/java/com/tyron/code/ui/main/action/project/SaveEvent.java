@@ -2,6 +2,16 @@ package com.tyron.code.ui.main.action.project;
 
 import com.tyron.code.event.Event;
 
+/**
+ * Used to notify that the opened files have been saved
+ */
 public class SaveEvent extends Event {
 
+    /**
+     * Receivers read the saved state of the files, saves that are still pending can be dropped
+     */
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
 }
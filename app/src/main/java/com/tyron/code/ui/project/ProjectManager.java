@@ -98,6 +98,9 @@ public class ProjectManager {
                                boolean downloadLibs,
                                TaskListener mListener,
                                ILogger logger) {
+        if (mCurrentProject != null && !mCurrentProject.equals(project)) {
+            mCurrentProject.close();
+        }
         mCurrentProject = project;
 
         boolean shouldReturn = false;
@@ -204,6 +207,7 @@ public class ProjectManager {
         if (project.equals(mCurrentProject)) {
             mCurrentProject = null;
         }
+        project.close();
     }
 
     public synchronized Project getCurrentProject() {
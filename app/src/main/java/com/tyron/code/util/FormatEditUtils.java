@@ -0,0 +1,74 @@
+package com.tyron.code.util;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.code.language.FormatEdit;
+import com.tyron.editor.util.diff.Diff;
+import com.tyron.editor.util.diff.FilesTooBigForDiffException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class FormatEditUtils {
+
+    /**
+     * @return the line based edits that turn {@code before} into {@code after}
+     */
+    @NonNull
+    public static List<FormatEdit> computeEdits(@NonNull CharSequence before, @NonNull CharSequence after) {
+        String[] beforeLines = splitLines(before);
+        String[] afterLines = splitLines(after);
+        Diff.Change change;
+        try {
+            change = Diff.buildChanges(beforeLines, afterLines);
+        } catch (FilesTooBigForDiffException e) {
+            return Collections.singletonList(
+                    new FormatEdit(0, before.length(), after.toString()));
+        }
+        if (change == null) {
+            return Collections.emptyList();
+        }
+
+        int[] beforeOffsets = getLineOffsets(beforeLines);
+        List<FormatEdit> edits = new ArrayList<>();
+        for (Diff.Change current : change.toList()) {
+            int start = beforeOffsets[current.line0];
+            int end = beforeOffsets[current.line0 + current.deleted];
+            StringBuilder text = new StringBuilder();
+            for (int i = current.line1; i < current.line1 + current.inserted; i++) {
+                text.append(afterLines[i]);
+            }
+            edits.add(new FormatEdit(start, end - start, text.toString()));
+        }
+        edits.sort(Comparator.comparingInt(FormatEdit::getOffset));
+        return edits;
+    }
+
+    /**
+     * Splits the text into lines, each line keeps its line terminator
+     */
+    private static String[] splitLines(CharSequence text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.subSequence(start, i + 1).toString());
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.subSequence(start, text.length()).toString());
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    private static int[] getLineOffsets(String[] lines) {
+        int[] offsets = new int[lines.length + 1];
+        for (int i = 0; i < lines.length; i++) {
+            offsets[i + 1] = offsets[i] + lines[i].length();
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,395 @@
+package com.tyron.code.event;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+public class EventManagerTest {
+
+    private static final int PUBLISHERS = 4;
+    private static final int EVENTS_PER_PUBLISHER = 200_000;
+
+    private static class ChangeEvent extends Event {
+        final int publisher;
+        final int sequence;
+
+        ChangeEvent(int publisher, int sequence) {
+            this.publisher = publisher;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class DiagnosticsEvent extends Event {
+        final int version;
+
+        DiagnosticsEvent(int version) {
+            this.version = version;
+        }
+
+        @Override
+        public boolean canCoalesce() {
+            return true;
+        }
+    }
+
+    private static class KeyEvent extends Event {
+        @Override
+        public boolean canIntercept() {
+            return true;
+        }
+    }
+
+    @Test
+    public void testReceiversInSubscriptionOrder() {
+        EventManager manager = new EventManager();
+        EventManager child = new EventManager(manager);
+        List<String> received = new ArrayList<>();
+        manager.subscribeEvent(ChangeEvent.class, (event, unsubscribe) -> received.add("first"));
+        child.subscribeEvent(ChangeEvent.class, (event, unsubscribe) -> received.add("child"));
+        manager.subscribeEvent(ChangeEvent.class, (event, unsubscribe) -> received.add("second"));
+
+        manager.dispatchEvent(new ChangeEvent(0, 0));
+        assertThat(received).containsExactly("first", "second", "child").inOrder();
+    }
+
+    @Test
+    public void testInterceptedEvent() {
+        EventManager manager = new EventManager();
+        EventManager child = new EventManager(manager);
+        List<String> received = new ArrayList<>();
+        manager.subscribeEvent(KeyEvent.class, (event, unsubscribe) -> {
+            received.add("first");
+            event.intercept();
+        });
+        manager.subscribeEvent(KeyEvent.class, (event, unsubscribe) -> received.add("second"));
+        child.subscribeEvent(KeyEvent.class, (event, unsubscribe) -> received.add("child"));
+
+        assertThat(manager.dispatchEvent(new KeyEvent())).isTrue();
+        assertThat(received).containsExactly("first");
+    }
+
+    @Test
+    public void testUnsubscribeDuringDispatch() {
+        EventManager manager = new EventManager();
+        List<String> received = new ArrayList<>();
+        List<SubscriptionReceipt<ChangeEvent>> receipts = new ArrayList<>();
+        EventReceiver<ChangeEvent> added = (event, unsubscribe) -> received.add("added");
+        manager.subscribeEvent(ChangeEvent.class, (event, unsubscribe) -> {
+            received.add("once");
+            unsubscribe.unsubscribe();
+        });
+        manager.subscribeEvent(ChangeEvent.class, (event, unsubscribe) -> {
+            received.add("remover");
+            if (event.sequence == 0) {
+                receipts.get(0).unsubscribe();
+                manager.subscribeEvent(ChangeEvent.class, added);
+            }
+        });
+        receipts.add(manager.subscribeEvent(ChangeEvent.class,
+                (event, unsubscribe) -> received.add("removed")));
+
+        // the receivers registered when the dispatch starts get the event
+        manager.dispatchEvent(new ChangeEvent(0, 0));
+        assertThat(received).containsExactly("once", "remover", "removed").inOrder();
+
+        received.clear();
+        manager.dispatchEvent(new ChangeEvent(0, 1));
+        assertThat(received).containsExactly("remover", "added").inOrder();
+        assertThat(manager.getReceivers(ChangeEvent.class).receivers).hasSize(2);
+    }
+
+    @Test
+    public void testPostedEventsInOrder() throws InterruptedException {
+        ThreadPoolExecutor executor = EventManager.newDispatchExecutor(2);
+        try {
+            EventManager manager = new EventManager(null, executor);
+            int[] last = new int[PUBLISHERS];
+            List<String> errors = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger count = new AtomicInteger();
+            int total = PUBLISHERS * 10_000;
+            CountDownLatch done = new CountDownLatch(1);
+            Arrays.fill(last, -1);
+            manager.subscribeEvent(ChangeEvent.class, (event, unsubscribe) -> {
+                // events of a type are never dispatched at the same time
+                if (event.sequence != last[event.publisher] + 1) {
+                    errors.add(event.publisher + ": " + event.sequence + " after "
+                            + last[event.publisher]);
+                }
+                last[event.publisher] = event.sequence;
+                if (count.incrementAndGet() == total) {
+                    done.countDown();
+                }
+            });
+
+            runPublishers(PUBLISHERS, 10_000, (publisher, sequence) ->
+                    manager.postEvent(new ChangeEvent(publisher, sequence)));
+            assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+            assertThat(errors).isEmpty();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCoalescedEvents() throws InterruptedException {
+        ThreadPoolExecutor executor = EventManager.newDispatchExecutor(2);
+        try {
+            EventManager manager = new EventManager(null, executor);
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<Integer> diagnostics = Collections.synchronizedList(new ArrayList<>());
+            List<Integer> changes = Collections.synchronizedList(new ArrayList<>());
+            manager.subscribeEvent(DiagnosticsEvent.class, (event, unsubscribe) -> {
+                diagnostics.add(event.version);
+                if (event.version == 0) {
+                    blocked.countDown();
+                    await(release);
+                }
+            });
+            manager.subscribeEvent(ChangeEvent.class,
+                    (event, unsubscribe) -> changes.add(event.sequence));
+
+            manager.postEvent(new DiagnosticsEvent(0));
+            assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+            // pending while the first one is being dispatched
+            for (int i = 1; i <= 5; i++) {
+                manager.postEvent(new DiagnosticsEvent(i));
+            }
+            // other types are not blocked by it
+            manager.postEvent(new ChangeEvent(0, 0));
+            manager.postEvent(new ChangeEvent(0, 1));
+            waitFor(() -> changes.size() == 2);
+            release.countDown();
+
+            waitFor(() -> diagnostics.contains(5));
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(diagnostics).containsExactly(0, 5).inOrder();
+            assertThat(changes).containsExactly(0, 1).inOrder();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPostWithoutExecutor() {
+        EventManager manager = new EventManager();
+        List<Integer> received = new ArrayList<>();
+        manager.subscribeEvent(DiagnosticsEvent.class, (event, unsubscribe) -> {
+            received.add(event.version);
+            if (event.version == 0) {
+                // posted while dispatching, delivered after this event by the same thread
+                manager.postEvent(new DiagnosticsEvent(1));
+                manager.postEvent(new DiagnosticsEvent(2));
+                assertThat(received).containsExactly(0);
+            }
+        });
+
+        manager.postEvent(new DiagnosticsEvent(0));
+        assertThat(received).containsExactly(0, 2).inOrder();
+    }
+
+    @Test
+    public void testFailingReceiver() throws InterruptedException {
+        EventManager manager = new EventManager();
+        List<Integer> received = new ArrayList<>();
+        manager.subscribeEvent(ChangeEvent.class, (event, unsubscribe) -> {
+            received.add(event.sequence);
+            if (event.sequence == 0) {
+                throw new IllegalStateException("failed");
+            }
+        });
+
+        List<Throwable> failures = new ArrayList<>();
+        List<Throwable> logged = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record.getThrown());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(EventManager.class.getName());
+        logger.addHandler(handler);
+        try {
+            Thread thread = new Thread(() -> {
+                manager.postEvent(new ChangeEvent(0, 0));
+                manager.postEvent(new ChangeEvent(0, 1));
+            });
+            thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+            thread.start();
+            thread.join();
+        } finally {
+            logger.removeHandler(handler);
+        }
+        assertThat(received).containsExactly(0, 1).inOrder();
+        // the failure is logged, it does not reach the handler that would kill the process
+        assertThat(failures).isEmpty();
+        assertThat(logged).hasSize(1);
+        assertThat(logged.get(0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testErrorInReceiver() {
+        EventManager manager = new EventManager();
+        List<Integer> received = new ArrayList<>();
+        manager.subscribeEvent(ChangeEvent.class, (event, unsubscribe) -> {
+            received.add(event.sequence);
+            if (event.sequence == 0) {
+                throw new AssertionError("failed");
+            }
+        });
+
+        try {
+            manager.postEvent(new ChangeEvent(0, 0));
+            throw new IllegalStateException("the error was not thrown");
+        } catch (AssertionError expected) {
+            // the dispatching stopped
+        }
+        manager.postEvent(new ChangeEvent(0, 1));
+        assertThat(received).containsExactly(0, 1).inOrder();
+    }
+
+    @Test
+    public void testRejectedExecution() {
+        AtomicBoolean reject = new AtomicBoolean(true);
+        EventManager manager = new EventManager(null, command -> {
+            if (reject.get()) {
+                throw new RejectedExecutionException();
+            }
+            command.run();
+        });
+        List<Integer> received = new ArrayList<>();
+        manager.subscribeEvent(ChangeEvent.class,
+                (event, unsubscribe) -> received.add(event.sequence));
+
+        try {
+            manager.postEvent(new ChangeEvent(0, 0));
+            throw new IllegalStateException("the execution was not rejected");
+        } catch (RejectedExecutionException expected) {
+            // the event stays queued
+        }
+        reject.set(false);
+        manager.postEvent(new ChangeEvent(0, 1));
+        assertThat(received).containsExactly(0, 1).inOrder();
+    }
+
+    @Test
+    public void testBenchmark() throws InterruptedException {
+        EventManager manager = new EventManager();
+        AtomicInteger received = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            manager.subscribeEvent(ChangeEvent.class,
+                    (event, unsubscribe) -> received.incrementAndGet());
+            manager.subscribeEvent(DiagnosticsEvent.class,
+                    (event, unsubscribe) -> received.incrementAndGet());
+        }
+        int total = PUBLISHERS * EVENTS_PER_PUBLISHER;
+
+        // warm up
+        runPublishers(PUBLISHERS, EVENTS_PER_PUBLISHER / 10, (publisher, sequence) ->
+                manager.dispatchEvent(new ChangeEvent(publisher, sequence)));
+
+        long dispatch = runPublishers(PUBLISHERS, EVENTS_PER_PUBLISHER, (publisher, sequence) ->
+                manager.dispatchEvent(new ChangeEvent(publisher, sequence)));
+
+        // subscribing while the events are dispatched
+        long subscribing = runPublishers(PUBLISHERS, EVENTS_PER_PUBLISHER,
+                (publisher, sequence) -> {
+                    if (publisher == 0 && sequence % 1000 == 0) {
+                        manager.subscribeEvent(KeyEvent.class, (event, unsubscribe) -> {
+                        }).unsubscribe();
+                    }
+                    manager.dispatchEvent(new ChangeEvent(publisher, sequence));
+                });
+
+        ThreadPoolExecutor executor = EventManager.newDispatchExecutor(2);
+        EventManager async = new EventManager(null, executor);
+        AtomicInteger coalesced = new AtomicInteger();
+        async.subscribeEvent(DiagnosticsEvent.class,
+                (event, unsubscribe) -> coalesced.incrementAndGet());
+        long post = runPublishers(PUBLISHERS, EVENTS_PER_PUBLISHER, (publisher, sequence) ->
+                async.postEvent(new DiagnosticsEvent(sequence)));
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        System.out.println(PUBLISHERS + " publishers, " + total + " events: dispatch "
+                + throughput(total, dispatch) + " events/ms, dispatch while subscribing "
+                + throughput(total, subscribing) + " events/ms, post coalescable "
+                + throughput(total, post) + " events/ms (" + coalesced.get() + " delivered)");
+        assertThat(coalesced.get()).isAtLeast(1);
+    }
+
+    private interface Publisher {
+        void publish(int publisher, int sequence);
+    }
+
+    /**
+     * @return the time taken by the publishers in nanoseconds
+     */
+    private static long runPublishers(int publishers, int events, Publisher action)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < publishers; i++) {
+            int publisher = i;
+            Thread thread = new Thread(() -> {
+                await(start);
+                for (int sequence = 0; sequence < events; sequence++) {
+                    action.publish(publisher, sequence);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private static long throughput(int events, long nanos) {
+        return events * 1_000_000L / Math.max(nanos, 1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+}
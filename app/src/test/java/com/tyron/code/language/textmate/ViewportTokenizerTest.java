@@ -0,0 +1,357 @@
+package com.tyron.code.language.textmate;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.github.rosemoe.sora.textmate.core.grammar.IGrammar;
+import io.github.rosemoe.sora.textmate.core.grammar.ITokenizeLineResult2;
+import io.github.rosemoe.sora.textmate.core.grammar.StackElement;
+import io.github.rosemoe.sora.textmate.core.internal.theme.reader.ThemeReader;
+import io.github.rosemoe.sora.textmate.core.registry.Registry;
+import io.github.rosemoe.sora.textmate.core.theme.IRawTheme;
+
+/**
+ * Tokenizes large sources with the grammars of the editor, viewport first and from saved
+ * checkpoints, and compares the tokens with the ones of the analyzer before the grammars were
+ * shared, which loaded the grammar in its own registry and tokenized every line in order.
+ */
+public class ViewportTokenizerTest {
+
+    private static final File TEXTMATE = new File("src/main/assets/textmate");
+
+    private static final int LINE_COUNT = 10_000;
+
+    private static IRawTheme sRawTheme;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    /** Tokenized in order once for all the tests */
+    private static List<Language> sLanguages;
+
+    private static class Tokenizer
+            implements ViewportTokenizer.LineTokenizer<StackElement, ITokenizeLineResult2> {
+
+        final IGrammar grammar;
+        int tokenizedLines;
+
+        Tokenizer(IGrammar grammar) {
+            this.grammar = grammar;
+        }
+
+        @Override
+        public ITokenizeLineResult2 tokenizeLine(CharSequence line, StackElement state) {
+            tokenizedLines++;
+            return TextmateGrammars.tokenizeLine(grammar, line.toString(), state);
+        }
+
+        @Override
+        public StackElement getState(ITokenizeLineResult2 result) {
+            return result.getRuleStack();
+        }
+
+        @Override
+        public boolean stateEquals(StackElement state, StackElement another) {
+            return Objects.equals(state, another);
+        }
+    }
+
+    private static class Language {
+        final String grammarName;
+        final IGrammar grammar;
+        final List<String> lines;
+        /** The tokens of every line, tokenized in order by a grammar of its own registry */
+        final List<int[]> expected = new ArrayList<>();
+
+        Language(String grammarName, IGrammar grammar, List<String> lines) {
+            this.grammarName = grammarName;
+            this.grammar = grammar;
+            this.lines = lines;
+        }
+
+        String getKey() {
+            return grammarName + "@" + TextmateGrammars.getFingerprint(grammar) + "@"
+                    + TextmateGrammars.getThemeFingerprint() + ":" + lines.size() + ":"
+                    + TokenizeCheckpoints.hash(lines.size(), lines::get);
+        }
+    }
+
+    @BeforeClass
+    public static void loadGrammars() throws Exception {
+        try (InputStream in = new FileInputStream(new File(TEXTMATE, "darcula.json"))) {
+            sRawTheme = ThemeReader.readThemeSync("darcula.json", in);
+        }
+        TextmateGrammars.setTheme(sRawTheme);
+
+        File root = new File("..");
+        sLanguages = new ArrayList<>();
+        sLanguages.add(createLanguage("java/syntaxes/java.tmLanguage.json",
+                createFixture(new File("src/main/java"), ".java")));
+        sLanguages.add(createLanguage("kotlin/syntaxes/kotlin.tmLanguage",
+                createFixture(root, ".kt")));
+        sLanguages.add(createLanguage("xml/syntaxes/xml.tmLanguage.json",
+                createFixture(new File("src/main/res"), ".xml")));
+        sLanguages.add(createLanguage("json/syntaxes/json.tmLanguage.json",
+                createFixture(new File("src/main/assets"), ".json")));
+    }
+
+    @Before
+    public void setup() throws Exception {
+        TokenizeCheckpoints.clearCache();
+        TokenizeCheckpoints.setDirectory(mTemporaryFolder.newFolder("checkpoints"));
+    }
+
+    @After
+    public void tearDown() {
+        TokenizeCheckpoints.setDirectory(null);
+        TokenizeCheckpoints.clearCache();
+    }
+
+    private static Language createLanguage(String path, List<String> lines) throws Exception {
+        File file = new File(TEXTMATE, path);
+        Language language = new Language(file.getName(),
+                TextmateGrammars.getGrammar(file.getName(), new FileInputStream(file)), lines);
+
+        Registry registry = new Registry();
+        registry.setTheme(sRawTheme);
+        IGrammar grammar;
+        try (InputStream in = new FileInputStream(file)) {
+            grammar = registry.loadGrammarFromPathSync(file.getName(), in);
+        }
+        StackElement state = null;
+        for (String line : lines) {
+            ITokenizeLineResult2 result = grammar.tokenizeLine2(line, state);
+            language.expected.add(result.getTokens());
+            state = result.getRuleStack();
+        }
+        return language;
+    }
+
+    /**
+     * The sources with the given extension, repeated until there are {@link #LINE_COUNT} lines
+     */
+    private static List<String> createFixture(File directory, String extension)
+            throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(directory.toPath())) {
+            files = stream.filter(path -> path.toString().endsWith(extension))
+                    .filter(path -> !path.toString().contains(File.separator + "build" + File.separator))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        assertThat(files).isNotEmpty();
+
+        List<String> lines = new ArrayList<>(LINE_COUNT);
+        while (lines.size() < LINE_COUNT) {
+            for (Path file : files) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (lines.size() == LINE_COUNT) {
+                        return lines;
+                    }
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static ViewportTokenizer<StackElement, ITokenizeLineResult2> createTokenizer(
+            Language language, Tokenizer tokenizer, TokenizeCheckpoints<StackElement> checkpoints) {
+        return new ViewportTokenizer<>(tokenizer, null, checkpoints, language.lines.size(),
+                language.lines::get);
+    }
+
+    private static void assertMatchesAnalyzer(Language language,
+                                              ViewportTokenizer<StackElement, ITokenizeLineResult2> tokenizer,
+                                              int from, int to) {
+        for (int i = from; i < to; i++) {
+            assertWithMessage(language.grammarName + " line " + i)
+                    .that(tokenizer.getResult(i).getTokens())
+                    .isEqualTo(language.expected.get(i));
+        }
+    }
+
+    @Test
+    public void testViewportWithoutCheckpoints() {
+        for (Language language : sLanguages) {
+            Tokenizer lineTokenizer = new Tokenizer(language.grammar);
+            ViewportTokenizer<StackElement, ITokenizeLineResult2> tokenizer =
+                    createTokenizer(language, lineTokenizer, new TokenizeCheckpoints<>(LINE_COUNT));
+
+            // without checkpoints the lines above the viewport must be tokenized first
+            assertThat(tokenizer.tokenizeRange(5_000, 5_050))
+                    .isEqualTo(5_050);
+            assertMatchesAnalyzer(language, tokenizer, 5_000, 5_050);
+
+            assertThat(tokenizer.fill(() -> false))
+                    .isTrue();
+            assertMatchesAnalyzer(language, tokenizer, 0, LINE_COUNT);
+            // the lines tokenized for the viewport are reused
+            assertThat(lineTokenizer.tokenizedLines)
+                    .isEqualTo(LINE_COUNT);
+        }
+    }
+
+    @Test
+    public void testViewportFromCheckpointFiles() {
+        for (Language language : sLanguages) {
+            String key = language.getKey();
+            ViewportTokenizer<StackElement, ITokenizeLineResult2> first = createTokenizer(language,
+                    new Tokenizer(language.grammar),
+                    TokenizeCheckpoints.obtain(key, LINE_COUNT, StackElementCodec.INSTANCE));
+            first.fill(() -> false);
+            TokenizeCheckpoints.save(key, first.getCheckpoints(), StackElementCodec.INSTANCE);
+
+            // the states are read from the file, as they are when the file is opened again in
+            // another process
+            TokenizeCheckpoints.clearCache();
+            TokenizeCheckpoints<StackElement> checkpoints =
+                    TokenizeCheckpoints.obtain(key, LINE_COUNT, StackElementCodec.INSTANCE);
+            assertThat(checkpoints.getCount())
+                    .isEqualTo(first.getCheckpoints().getCount());
+
+            Tokenizer lineTokenizer = new Tokenizer(language.grammar);
+            ViewportTokenizer<StackElement, ITokenizeLineResult2> tokenizer =
+                    createTokenizer(language, lineTokenizer, checkpoints);
+            assertThat(tokenizer.tokenizeRange(7_510, 7_560))
+                    .isAtMost(TokenizeCheckpoints.INTERVAL + 50);
+            assertMatchesAnalyzer(language, tokenizer, 7_510, 7_560);
+
+            tokenizer.fill(() -> false);
+            assertMatchesAnalyzer(language, tokenizer, 0, LINE_COUNT);
+            // the states that were read are equal to the ones of the tokenizer, so the lines of
+            // the viewport are reused
+            assertThat(lineTokenizer.tokenizedLines)
+                    .isEqualTo(LINE_COUNT);
+        }
+    }
+
+    @Test
+    public void testCheckpointsOfAnotherText() {
+        Language java = sLanguages.get(0);
+        Language kotlin = sLanguages.get(1);
+        ViewportTokenizer<StackElement, ITokenizeLineResult2> first = createTokenizer(java,
+                new Tokenizer(java.grammar), new TokenizeCheckpoints<>(LINE_COUNT));
+        first.fill(() -> false);
+        TokenizeCheckpoints.save(java.getKey(), first.getCheckpoints(), StackElementCodec.INSTANCE);
+
+        // a changed text has another key
+        List<String> changed = new ArrayList<>(java.lines);
+        changed.set(LINE_COUNT / 2, "/*" + changed.get(LINE_COUNT / 2));
+        Language changedJava = new Language(java.grammarName, java.grammar, changed);
+        TokenizeCheckpoints.clearCache();
+        assertThat(TokenizeCheckpoints.obtain(changedJava.getKey(), LINE_COUNT,
+                StackElementCodec.INSTANCE).getCount())
+                .isEqualTo(0);
+
+        // checkpoints of another text are corrected by the fill
+        ViewportTokenizer<StackElement, ITokenizeLineResult2> stale = createTokenizer(kotlin,
+                new Tokenizer(java.grammar), new TokenizeCheckpoints<>(LINE_COUNT));
+        stale.fill(() -> false);
+        ViewportTokenizer<StackElement, ITokenizeLineResult2> tokenizer = createTokenizer(java,
+                new Tokenizer(java.grammar), stale.getCheckpoints().copy());
+        tokenizer.tokenizeRange(6_000, 6_050);
+        tokenizer.fill(() -> false);
+        assertMatchesAnalyzer(java, tokenizer, 0, LINE_COUNT);
+    }
+
+    @Test
+    public void testCancel() {
+        Language language = sLanguages.get(0);
+        ViewportTokenizer<StackElement, ITokenizeLineResult2> tokenizer = createTokenizer(language,
+                new Tokenizer(language.grammar), new TokenizeCheckpoints<>(LINE_COUNT));
+        int[] checks = new int[1];
+        assertThat(tokenizer.fill(() -> ++checks[0] > 100))
+                .isFalse();
+        assertThat(tokenizer.getResult(100))
+                .isNull();
+
+        assertThat(tokenizer.fill(() -> false))
+                .isTrue();
+        assertMatchesAnalyzer(language, tokenizer, 0, LINE_COUNT);
+    }
+
+    /**
+     * Every grammar has its own lock, the same grammar used by many editors and different
+     * grammars used at the same time produce the same tokens.
+     */
+    @Test
+    public void testGrammarsTokenizeInParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(sLanguages.size() * 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                for (Language language : sLanguages) {
+                    futures.add(executor.submit(() -> {
+                        ViewportTokenizer<StackElement, ITokenizeLineResult2> tokenizer =
+                                createTokenizer(language, new Tokenizer(language.grammar),
+                                        new TokenizeCheckpoints<>(LINE_COUNT));
+                        tokenizer.fill(() -> false);
+                        assertMatchesAnalyzer(language, tokenizer, 0, LINE_COUNT);
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The lines of a viewport near the end of a file are tokenized faster when the file is
+     * opened again, from the checkpoints read from the disk.
+     */
+    @Test
+    public void testTimeToFirstVisibleTokens() {
+        Language language = sLanguages.get(0);
+        String key = language.getKey();
+        long firstOpen = Long.MAX_VALUE;
+        long reopen = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            TokenizeCheckpoints.clearCache();
+
+            long start = System.nanoTime();
+            ViewportTokenizer<StackElement, ITokenizeLineResult2> tokenizer = createTokenizer(
+                    language, new Tokenizer(language.grammar), new TokenizeCheckpoints<>(LINE_COUNT));
+            tokenizer.tokenizeRange(LINE_COUNT - 100, LINE_COUNT - 50);
+            firstOpen = Math.min(firstOpen, System.nanoTime() - start);
+            tokenizer.fill(() -> false);
+            TokenizeCheckpoints.save(key, tokenizer.getCheckpoints(), StackElementCodec.INSTANCE);
+            TokenizeCheckpoints.clearCache();
+
+            start = System.nanoTime();
+            tokenizer = createTokenizer(language, new Tokenizer(language.grammar),
+                    TokenizeCheckpoints.obtain(key, LINE_COUNT, StackElementCodec.INSTANCE));
+            tokenizer.tokenizeRange(LINE_COUNT - 100, LINE_COUNT - 50);
+            reopen = Math.min(reopen, System.nanoTime() - start);
+            assertMatchesAnalyzer(language, tokenizer, LINE_COUNT - 100, LINE_COUNT - 50);
+        }
+        assertThat(reopen)
+                .isLessThan(firstOpen);
+    }
+}
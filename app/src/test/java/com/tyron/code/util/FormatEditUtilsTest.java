@@ -0,0 +1,73 @@
+package com.tyron.code.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.code.language.FormatEdit;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class FormatEditUtilsTest {
+
+    @Test
+    public void testEditsProduceFormattedText() {
+        String before = "class Test {\n" +
+                        "void a() {\n" +
+                        "    int a = 1;\n" +
+                        "}\n" +
+                        "  void b(){}\n" +
+                        "}";
+        String after = "class Test {\n" +
+                       "    void a() {\n" +
+                       "        int a = 1;\n" +
+                       "    }\n" +
+                       "\n" +
+                       "    void b() {\n" +
+                       "    }\n" +
+                       "}\n";
+        List<FormatEdit> edits = FormatEditUtils.computeEdits(before, after);
+        assertThat(apply(before, edits)).isEqualTo(after);
+
+        // the first line is unchanged and is not part of any edit
+        for (FormatEdit edit : edits) {
+            assertThat(edit.getOffset()).isAtLeast("class Test {\n".length());
+        }
+    }
+
+    @Test
+    public void testEditsAreSortedAndDoNotOverlap() {
+        String before = "a\nb\nc\nd\ne\nf\n";
+        String after = "a\nB\nc\nd\nE\nE2\nf\n";
+        List<FormatEdit> edits = FormatEditUtils.computeEdits(before, after);
+        assertThat(edits).hasSize(2);
+        assertThat(edits.get(0).getOffset() + edits.get(0).getLength())
+                .isAtMost(edits.get(1).getOffset());
+        assertThat(apply(before, edits)).isEqualTo(after);
+    }
+
+    @Test
+    public void testSameTextHasNoEdits() {
+        String text = "class Test {\n}\n";
+        assertThat(FormatEditUtils.computeEdits(text, text)).isEmpty();
+    }
+
+    @Test
+    public void testEmptyText() {
+        assertThat(apply("", FormatEditUtils.computeEdits("", "class Test {}\n")))
+                .isEqualTo("class Test {}\n");
+        assertThat(apply("class Test {}", FormatEditUtils.computeEdits("class Test {}", "")))
+                .isEmpty();
+    }
+
+    private static String apply(String text, List<FormatEdit> edits) {
+        StringBuilder builder = new StringBuilder(text);
+        // from the end so the offsets of the remaining edits stay valid
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            FormatEdit edit = edits.get(i);
+            builder.replace(edit.getOffset(), edit.getOffset() + edit.getLength(),
+                    edit.getText());
+        }
+        return builder.toString();
+    }
+}
@@ -6,6 +6,8 @@ import com.android.sdklib.build.ApkBuilder;
 import com.android.sdklib.build.ApkCreationException;
 import com.android.sdklib.build.DuplicateFileException;
 import com.android.sdklib.build.SealedApkException;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.exception.CompilationFailedException;
@@ -13,10 +15,18 @@ import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 
+import org.apache.commons.io.FileUtils;
+
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class PackageTask extends Task<AndroidModule> {
 
@@ -40,6 +50,10 @@ public class PackageTask extends Task<AndroidModule> {
      * The output apk file
      */
     private File mApk;
+    /**
+     * The inputs used to create the current output apk
+     */
+    private File mInputsFile;
     private BuildType mBuildType;
 
     public PackageTask(Project project, AndroidModule module, ILogger logger) {
@@ -60,6 +74,7 @@ public class PackageTask extends Task<AndroidModule> {
         mApk = new File(mBinDir, "generated.apk");
         mDexFile = new File(mBinDir, "classes.dex");
         mGeneratedRes = new File(mBinDir, "generated.apk.res");
+        mInputsFile = new File(mBinDir, "generated.apk.inputs");
         File[] binFiles = mBinDir.listFiles();
         if (binFiles != null) {
             for (File child : binFiles) {
@@ -79,7 +94,47 @@ public class PackageTask extends Task<AndroidModule> {
 
     @Override
     public void run() throws IOException, CompilationFailedException {
+        PackageInputs inputs = collectInputs();
+        PackageInputs previousInputs = readPreviousInputs();
+
+        if (mApk.exists() && previousInputs != null
+                && previousInputs.canBeUpdatedTo(inputs)) {
+            Map<String, File> changedDexFiles = previousInputs.getChangedDexFiles(inputs);
+            if (changedDexFiles.isEmpty()) {
+                getLogger().debug("APK is up-to-date.");
+                return;
+            }
+            try {
+                updateApk(mApk, changedDexFiles);
+                writeInputs(inputs);
+                getLogger().debug("Updated " + changedDexFiles.keySet() + " in the existing APK.");
+                return;
+            } catch (IOException e) {
+                getLogger().debug("Unable to update the existing APK, rebuilding it. " + e.getMessage());
+            }
+        }
+
+        // the inputs are only valid again once the apk has been fully built
+        FileUtils.deleteQuietly(mInputsFile);
+        buildApk();
+        writeInputs(inputs);
+    }
+
+    /**
+     * Replaces the given dex entries of the apk. The apk is left untouched if it cannot be
+     * updated, and the temporary copy is always deleted.
+     */
+    static void updateApk(File apk, Map<String, File> changedDexFiles) throws IOException {
+        File tempApk = new File(apk.getParentFile(), apk.getName() + ".tmp");
+        try {
+            ZipEntryRewriter.rewrite(apk, tempApk, changedDexFiles);
+            Files.move(tempApk.toPath(), apk.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempApk.toPath());
+        }
+    }
 
+    private void buildApk() throws CompilationFailedException {
         int dexCount = 1;
         try {
             ApkBuilder builder = new ApkBuilder(
@@ -143,4 +198,125 @@ public class PackageTask extends Task<AndroidModule> {
             throw new CompilationFailedException(message);
         }
     }
+
+    /**
+     * Collects the files that end up in the apk, this must follow the same order as
+     * {@link #buildApk()} so the dex entry names match.
+     */
+    private PackageInputs collectInputs() {
+        PackageInputs inputs = new PackageInputs();
+        inputs.debugMode = mBuildType == BuildType.DEBUG;
+
+        int dexCount = 1;
+        inputs.addDex("classes.dex", mDexFile);
+        for (File extraDex : mDexFiles) {
+            dexCount++;
+            inputs.addDex(extraDex.getName(), extraDex);
+        }
+
+        inputs.addResource(mGeneratedRes);
+        for (File library : mLibraries) {
+            inputs.addResource(library);
+
+            File parent = library.getParentFile();
+            if (parent != null) {
+                inputs.addResource(new File(parent, "jni"));
+            }
+        }
+        inputs.addResource(getModule().getNativeLibrariesDirectory());
+        inputs.addResource(getModule().getResourcesDir());
+
+        if (mBuildType == BuildType.DEBUG) {
+            for (File it : getModule().getLibraries()) {
+                File parent = it.getParentFile();
+                if (parent != null) {
+                    File[] dexFiles = parent.listFiles(c -> c.getName().endsWith(".dex"));
+                    if (dexFiles != null) {
+                        for (File dexFile : dexFiles) {
+                            dexCount++;
+                            inputs.addDex("classes" + dexCount + ".dex", dexFile);
+                        }
+                    }
+                }
+            }
+        }
+        return inputs;
+    }
+
+    private PackageInputs readPreviousInputs() {
+        if (!mInputsFile.exists()) {
+            return null;
+        }
+        try {
+            String contents = new String(Files.readAllBytes(mInputsFile.toPath()),
+                    StandardCharsets.UTF_8);
+            return new Gson().fromJson(contents, PackageInputs.class);
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    private void writeInputs(PackageInputs inputs) throws IOException {
+        FileUtils.writeStringToFile(mInputsFile, new Gson().toJson(inputs),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The files that were packaged into an apk, identified by their path, length and
+     * modification time.
+     */
+    private static class PackageInputs {
+        private boolean debugMode;
+        /**
+         * Dex entry name to the state of the file that was packaged as that entry
+         */
+        private Map<String, String> dexFiles = new LinkedHashMap<>();
+        private Map<String, String> dexPaths = new LinkedHashMap<>();
+        /**
+         * Every other file that was packaged, directories are expanded
+         */
+        private Map<String, String> resources = new TreeMap<>();
+
+        void addDex(String entryName, File file) {
+            dexFiles.put(entryName, getState(file));
+            dexPaths.put(entryName, file.getAbsolutePath());
+        }
+
+        void addResource(File file) {
+            if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                if (children != null) {
+                    for (File child : children) {
+                        addResource(child);
+                    }
+                }
+            } else if (file.exists()) {
+                resources.put(file.getAbsolutePath(), getState(file));
+            }
+        }
+
+        /**
+         * @return whether an apk built from these inputs can be turned into one built from
+         * {@code current} by only replacing dex entries
+         */
+        boolean canBeUpdatedTo(PackageInputs current) {
+            return debugMode == current.debugMode
+                    && resources.equals(current.resources)
+                    && dexPaths.equals(current.dexPaths);
+        }
+
+        Map<String, File> getChangedDexFiles(PackageInputs current) {
+            Map<String, File> changed = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : current.dexFiles.entrySet()) {
+                if (!entry.getValue().equals(dexFiles.get(entry.getKey()))) {
+                    changed.put(entry.getKey(), new File(current.dexPaths.get(entry.getKey())));
+                }
+            }
+            return changed;
+        }
+
+        private static String getState(File file) {
+            return file.length() + ":" + file.lastModified();
+        }
+    }
 }
@@ -8,11 +8,14 @@ import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 
-import org.apache.commons.io.FileUtils;
-
 import java.io.File;
 import java.io.IOException;
 
+/**
+ * Signs the packaged apk. The signer copies compressed entries as they are and pads the
+ * uncompressed ones (4 bytes, 4096 bytes for native libraries) while writing, so the
+ * signed apk is also zip aligned and no separate alignment pass is needed.
+ */
 public class SignTask extends Task<AndroidModule> {
 
     private File mInputApk;
@@ -29,13 +32,9 @@ public class SignTask extends Task<AndroidModule> {
 
     @Override
     public void prepare(BuildType type) throws IOException {
-        mInputApk = new File(getModule().getBuildDirectory(), "bin/aligned.apk");
+        mInputApk = new File(getModule().getBuildDirectory(), "bin/generated.apk");
         mOutputApk = new File(getModule().getBuildDirectory(), "bin/signed.apk");
 
-        if (!mInputApk.exists()) {
-            mInputApk = new File(getModule().getBuildDirectory(), "bin/generated.apk");
-        }
-
         if (!mInputApk.exists()) {
             throw new IOException("Unable to find generated apk file.");
         }
@@ -54,6 +53,6 @@ public class SignTask extends Task<AndroidModule> {
             throw new CompilationFailedException(e);
         }
 
-        FileUtils.forceDelete(mInputApk);
+        // the unsigned apk is kept, PackageTask updates it in place on the next build
     }
 }
@@ -0,0 +1,468 @@
+package com.tyron.builder.compiler.apk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Creates a copy of a zip file where only some of its entries are replaced.
+ *
+ * Entries that are kept are copied as raw bytes, local header and compressed data included,
+ * so they are never decompressed or compressed again. The replaced entries are deflated
+ * while being streamed from their source files. The order of the entries is preserved, and
+ * the data of stored entries stays aligned when the entries before them change size.
+ *
+ * Only plain zip files are supported (no zip64, no multiple disks). A {@link ZipException} is
+ * thrown for anything else so the caller can fall back to building the archive from scratch.
+ */
+public class ZipEntryRewriter {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    /**
+     * The extra field record apksig uses to pad the local header of aligned entries.
+     */
+    private static final int ALIGNMENT_EXTRA_ID = 0xd935;
+    private static final int ALIGNMENT_EXTRA_MIN_SIZE = 6;
+    private static final int DEFAULT_ALIGNMENT = 4;
+    private static final int PAGE_ALIGNMENT = 4096;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int VERSION_NEEDED_DEFLATE = 20;
+
+    private ZipEntryRewriter() {
+
+    }
+
+    /**
+     * Writes a copy of {@code input} to {@code output}, with the contents of the entries in
+     * {@code replacements} taken from the given files instead.
+     *
+     * @param input the existing zip file
+     * @param output the zip file to create, must not be the input
+     * @param replacements entry name to the file holding its new contents, every name must
+     *                     already exist in the input
+     */
+    public static void rewrite(File input, File output, Map<String, File> replacements)
+            throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(input, "r");
+             FileChannel inChannel = in.getChannel();
+             RandomAccessFile out = new RandomAccessFile(output, "rw");
+             FileChannel outChannel = out.getChannel()) {
+            outChannel.truncate(0);
+
+            List<CentralEntry> entries = readCentralDirectory(inChannel);
+            int replaced = 0;
+            for (CentralEntry entry : entries) {
+                if (replacements.containsKey(entry.name)) {
+                    replaced++;
+                }
+            }
+            if (replaced != replacements.size()) {
+                throw new ZipException("Not all replaced entries exist in " + input);
+            }
+
+            for (CentralEntry entry : entries) {
+                long offset = outChannel.position();
+                File replacement = replacements.get(entry.name);
+                if (replacement == null) {
+                    copyLocalEntry(inChannel, outChannel, entry);
+                } else {
+                    writeDeflatedEntry(outChannel, entry, replacement);
+                }
+                entry.localHeaderOffset = offset;
+            }
+
+            long centralDirectoryOffset = outChannel.position();
+            for (CentralEntry entry : entries) {
+                writeFully(outChannel, entry.toCentralHeader());
+            }
+            long centralDirectorySize = outChannel.position() - centralDirectoryOffset;
+            if (outChannel.position() > 0xffffffffL) {
+                throw new ZipException("Zip64 is not supported");
+            }
+
+            ByteBuffer end = newBuffer(END_OF_CENTRAL_DIRECTORY_SIZE);
+            end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            end.putShort((short) 0);
+            end.putShort((short) 0);
+            end.putShort((short) entries.size());
+            end.putShort((short) entries.size());
+            end.putInt((int) centralDirectorySize);
+            end.putInt((int) centralDirectoryOffset);
+            end.putShort((short) 0);
+            end.flip();
+            writeFully(outChannel, end);
+        }
+    }
+
+    private static List<CentralEntry> readCentralDirectory(FileChannel channel)
+            throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            throw new ZipException("Not a zip file");
+        }
+
+        // the end of central directory record is followed by a comment of unknown size
+        int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = readFully(channel, fileSize - tailSize, tailSize);
+        int eocd = -1;
+        for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd == -1) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        int diskNumber = tail.getShort(eocd + 4) & 0xffff;
+        int entryCount = tail.getShort(eocd + 10) & 0xffff;
+        long centralDirectorySize = tail.getInt(eocd + 12) & 0xffffffffL;
+        long centralDirectoryOffset = tail.getInt(eocd + 16) & 0xffffffffL;
+        if (diskNumber != 0 || entryCount == 0xffff
+                || centralDirectoryOffset == 0xffffffffL
+                || centralDirectoryOffset + centralDirectorySize > fileSize) {
+            throw new ZipException("Unsupported zip layout");
+        }
+
+        ByteBuffer directory = readFully(channel, centralDirectoryOffset,
+                (int) centralDirectorySize);
+        List<CentralEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            entries.add(CentralEntry.read(directory));
+        }
+        return entries;
+    }
+
+    private static void copyLocalEntry(FileChannel in, FileChannel out, CentralEntry entry)
+            throws IOException {
+        ByteBuffer header = readFully(in, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + entry.name);
+        }
+        int nameLength = header.getShort(26) & 0xffff;
+        int extraLength = header.getShort(28) & 0xffff;
+        long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        long dataLength = entry.compressedSize;
+
+        if ((entry.flags & FLAG_DATA_DESCRIPTOR) != 0) {
+            // the signature of the data descriptor is optional
+            ByteBuffer descriptor = readFully(in, dataOffset + dataLength, 4);
+            dataLength += descriptor.getInt(0) == DATA_DESCRIPTOR_SIGNATURE ? 16 : 12;
+        }
+
+        long outputDataOffset = out.position() + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        int alignment = getAlignment(entry);
+        if (outputDataOffset % alignment != 0) {
+            // the data moved, pad the extra field so it stays aligned
+            ByteBuffer nameAndExtra = readFully(in, entry.localHeaderOffset + LOCAL_HEADER_SIZE,
+                    nameLength + extraLength);
+            byte[] name = new byte[nameLength];
+            nameAndExtra.get(name);
+            byte[] extra = new byte[extraLength];
+            nameAndExtra.get(extra);
+            extra = alignExtra(extra, out.position() + LOCAL_HEADER_SIZE + nameLength,
+                    alignment);
+
+            header.putShort(28, (short) extra.length);
+            header.rewind();
+            writeFully(out, header);
+            writeFully(out, ByteBuffer.wrap(name));
+            writeFully(out, ByteBuffer.wrap(extra));
+            transferFully(in, dataOffset, dataLength, out, entry);
+            return;
+        }
+
+        transferFully(in, entry.localHeaderOffset, dataOffset - entry.localHeaderOffset + dataLength,
+                out, entry);
+    }
+
+    /**
+     * The data of stored entries is aligned the way zipalign and apksig align it, so it can be
+     * memory mapped: 4096 bytes for native libraries and 4 bytes for everything else.
+     */
+    private static int getAlignment(CentralEntry entry) {
+        if (entry.method != METHOD_STORED) {
+            return 1;
+        }
+        return entry.name.endsWith(".so") ? PAGE_ALIGNMENT : DEFAULT_ALIGNMENT;
+    }
+
+    /**
+     * Returns the extra field without its alignment padding, followed by the padding that
+     * aligns the data when the extra field starts at the given offset.
+     */
+    private static byte[] alignExtra(byte[] extra, long extraOffset, int alignment)
+            throws ZipException {
+        ByteBuffer records = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer kept = newBuffer(extra.length);
+        while (records.remaining() >= 4) {
+            int start = records.position();
+            int id = records.getShort() & 0xffff;
+            int size = records.getShort() & 0xffff;
+            if (size > records.remaining()) {
+                // zero padding of zipalign, not a record
+                break;
+            }
+            records.position(records.position() + size);
+            if (id != ALIGNMENT_EXTRA_ID) {
+                kept.put(extra, start, 4 + size);
+            }
+        }
+
+        int padding = (int) ((alignment - (extraOffset + kept.position()) % alignment)
+                % alignment);
+        while (padding > 0 && padding < ALIGNMENT_EXTRA_MIN_SIZE) {
+            padding += alignment;
+        }
+        if (kept.position() + padding > 0xffff) {
+            throw new ZipException("Extra field too large");
+        }
+        ByteBuffer result = newBuffer(kept.position() + padding);
+        result.put(kept.array(), 0, kept.position());
+        if (padding > 0) {
+            result.putShort((short) ALIGNMENT_EXTRA_ID);
+            result.putShort((short) (padding - 4));
+            result.putShort((short) alignment);
+        }
+        return result.array();
+    }
+
+    private static void transferFully(FileChannel in, long position, long length,
+                                      FileChannel out, CentralEntry entry) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long transferred = in.transferTo(position, remaining, out);
+            if (transferred <= 0) {
+                throw new ZipException("Unexpected end of file while copying " + entry.name);
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    private static void writeDeflatedEntry(FileChannel out, CentralEntry entry, File source)
+            throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        entry.rawName = name;
+        entry.flags = FLAG_DATA_DESCRIPTOR | FLAG_UTF8;
+        entry.method = METHOD_DEFLATED;
+        entry.versionNeeded = VERSION_NEEDED_DEFLATE;
+        entry.extra = new byte[0];
+
+        // sizes and crc are written in the data descriptor
+        ByteBuffer header = newBuffer(LOCAL_HEADER_SIZE + name.length);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) entry.versionNeeded);
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putShort((short) entry.time);
+        header.putShort((short) entry.date);
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(0);
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        header.put(name);
+        header.flip();
+        writeFully(out, header);
+
+        long dataStart = out.position();
+        CRC32 crc = new CRC32();
+        long size = 0;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            // the channel must stay open, so the deflater stream is finished rather than closed
+            OutputStream channelStream = new NonClosingOutputStream(Channels.newOutputStream(out));
+            DeflaterOutputStream deflated = new DeflaterOutputStream(channelStream, deflater, 8192);
+            try (InputStream is = new FileInputStream(source)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                    deflated.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+            deflated.finish();
+            deflated.flush();
+        } finally {
+            deflater.end();
+        }
+        long compressedSize = out.position() - dataStart;
+        if (size > 0xffffffffL || compressedSize > 0xffffffffL) {
+            throw new ZipException("Zip64 is not supported");
+        }
+
+        entry.crc = crc.getValue();
+        entry.compressedSize = compressedSize;
+        entry.size = size;
+
+        ByteBuffer descriptor = newBuffer(16);
+        descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE);
+        descriptor.putInt((int) entry.crc);
+        descriptor.putInt((int) entry.compressedSize);
+        descriptor.putInt((int) entry.size);
+        descriptor.flip();
+        writeFully(out, descriptor);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length)
+            throws IOException {
+        ByteBuffer buffer = newBuffer(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new ZipException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer newBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static class CentralEntry {
+        int versionMadeBy;
+        int versionNeeded;
+        int flags;
+        int method;
+        int time;
+        int date;
+        long crc;
+        long compressedSize;
+        long size;
+        int internalAttributes;
+        long externalAttributes;
+        long localHeaderOffset;
+        String name;
+        byte[] rawName;
+        byte[] extra;
+        byte[] comment;
+
+        static CentralEntry read(ByteBuffer buffer) throws ZipException {
+            if (buffer.remaining() < CENTRAL_HEADER_SIZE
+                    || buffer.getInt() != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header");
+            }
+            CentralEntry entry = new CentralEntry();
+            entry.versionMadeBy = buffer.getShort() & 0xffff;
+            entry.versionNeeded = buffer.getShort() & 0xffff;
+            entry.flags = buffer.getShort() & 0xffff;
+            entry.method = buffer.getShort() & 0xffff;
+            entry.time = buffer.getShort() & 0xffff;
+            entry.date = buffer.getShort() & 0xffff;
+            entry.crc = buffer.getInt() & 0xffffffffL;
+            entry.compressedSize = buffer.getInt() & 0xffffffffL;
+            entry.size = buffer.getInt() & 0xffffffffL;
+            int nameLength = buffer.getShort() & 0xffff;
+            int extraLength = buffer.getShort() & 0xffff;
+            int commentLength = buffer.getShort() & 0xffff;
+            int diskNumber = buffer.getShort() & 0xffff;
+            entry.internalAttributes = buffer.getShort() & 0xffff;
+            entry.externalAttributes = buffer.getInt() & 0xffffffffL;
+            entry.localHeaderOffset = buffer.getInt() & 0xffffffffL;
+            if (diskNumber != 0 || entry.compressedSize == 0xffffffffL
+                    || entry.size == 0xffffffffL || entry.localHeaderOffset == 0xffffffffL) {
+                throw new ZipException("Zip64 is not supported");
+            }
+            if (buffer.remaining() < nameLength + extraLength + commentLength) {
+                throw new ZipException("Invalid central directory header");
+            }
+            entry.rawName = new byte[nameLength];
+            buffer.get(entry.rawName);
+            entry.extra = new byte[extraLength];
+            buffer.get(entry.extra);
+            entry.comment = new byte[commentLength];
+            buffer.get(entry.comment);
+            entry.name = new String(entry.rawName, StandardCharsets.UTF_8);
+            return entry;
+        }
+
+        ByteBuffer toCentralHeader() {
+            ByteBuffer buffer = newBuffer(CENTRAL_HEADER_SIZE + rawName.length + extra.length
+                    + comment.length);
+            buffer.putInt(CENTRAL_HEADER_SIGNATURE);
+            buffer.putShort((short) versionMadeBy);
+            buffer.putShort((short) versionNeeded);
+            buffer.putShort((short) flags);
+            buffer.putShort((short) method);
+            buffer.putShort((short) time);
+            buffer.putShort((short) date);
+            buffer.putInt((int) crc);
+            buffer.putInt((int) compressedSize);
+            buffer.putInt((int) size);
+            buffer.putShort((short) rawName.length);
+            buffer.putShort((short) extra.length);
+            buffer.putShort((short) comment.length);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) internalAttributes);
+            buffer.putInt((int) externalAttributes);
+            buffer.putInt((int) localHeaderOffset);
+            buffer.put(rawName);
+            buffer.put(extra);
+            buffer.put(comment);
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static class NonClosingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+
+        NonClosingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
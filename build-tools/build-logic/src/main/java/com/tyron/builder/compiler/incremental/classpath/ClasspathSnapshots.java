@@ -0,0 +1,254 @@
+package com.tyron.builder.compiler.incremental.classpath;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.builder.project.api.Module;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Snapshots of the jars of the classpath of a module, shared by the tasks that depend on the
+ * classpath so a jar is only read once after it changes.
+ * <p>
+ * Every task records the snapshots of the classpath it last ran with, and asks which jars
+ * changed since then. The compilers only need to run again when the ABI of a jar changed,
+ * dexing a library only when its classes changed. A jar whose length or modification time
+ * changed but whose content is the same is not read again, and the API of its classes is only
+ * extracted when they changed.
+ */
+public class ClasspathSnapshots {
+
+    private static final String TAG = ClasspathSnapshots.class.getSimpleName();
+
+    private static final int VERSION = 1;
+
+    private static final Map<File, ClasspathSnapshots> sInstances = new HashMap<>();
+
+    /**
+     * @return the snapshots of the classpath of the module, persisted in its build directory
+     */
+    public static ClasspathSnapshots get(@NonNull Module module) {
+        File file = new File(module.getBuildDirectory(), "intermediate/classpath/snapshots.bin");
+        synchronized (sInstances) {
+            ClasspathSnapshots snapshots = sInstances.get(file);
+            if (snapshots == null) {
+                snapshots = new ClasspathSnapshots(file);
+                sInstances.put(file, snapshots);
+            }
+            return snapshots;
+        }
+    }
+
+    /**
+     * The jars of a classpath that changed since a task last ran.
+     */
+    public static class Changes {
+
+        private final Set<File> mAdded = new LinkedHashSet<>();
+        private final Set<File> mRemoved = new LinkedHashSet<>();
+        private final Set<File> mAbiChanged = new LinkedHashSet<>();
+        private final Set<File> mClassesChanged = new LinkedHashSet<>();
+
+        /**
+         * @return whether classes compiled against the previous classpath may not compile
+         * the same against the current one
+         */
+        public boolean hasAbiChanges() {
+            return !mAdded.isEmpty() || !mRemoved.isEmpty() || !mAbiChanged.isEmpty();
+        }
+
+        /**
+         * @return the jars the task did not run with
+         */
+        public Set<File> getAdded() {
+            return mAdded;
+        }
+
+        public Set<File> getRemoved() {
+            return mRemoved;
+        }
+
+        /**
+         * @return the jars whose ABI changed
+         */
+        public Set<File> getAbiChanged() {
+            return mAbiChanged;
+        }
+
+        /**
+         * @return the jars whose classes changed, including the ones whose ABI changed
+         */
+        public Set<File> getClassesChanged() {
+            return mClassesChanged;
+        }
+
+        @Override
+        public String toString() {
+            return "added: " + mAdded + ", removed: " + mRemoved + ", ABI changed: " + mAbiChanged
+                   + ", classes changed: " + mClassesChanged;
+        }
+    }
+
+    private final File mFile;
+    private final Map<String, JarSnapshot> mSnapshots = new HashMap<>();
+    private final Map<String, Map<String, JarSnapshot>> mTaskSnapshots = new HashMap<>();
+
+    private boolean mLoaded;
+
+    ClasspathSnapshots(File file) {
+        mFile = file;
+    }
+
+    /**
+     * @return the current snapshot of the jar, or null if it does not exist
+     */
+    public synchronized JarSnapshot getSnapshot(@NonNull File jar) throws IOException {
+        load();
+        String path = jar.getAbsolutePath();
+        JarSnapshot snapshot = mSnapshots.get(path);
+        if (snapshot != null && snapshot.isUpToDate(jar)) {
+            return snapshot;
+        }
+
+        JarSnapshot current = JarSnapshot.create(jar, snapshot);
+        if (current == null) {
+            mSnapshots.remove(path);
+            return null;
+        }
+        mSnapshots.put(path, current);
+        return current;
+    }
+
+    /**
+     * @param task the name of the task
+     * @return the jars that changed since the classpath was last recorded for the task
+     */
+    public synchronized Changes getChanges(@NonNull String task,
+                                           @NonNull Collection<File> classpath) throws IOException {
+        load();
+        Map<String, JarSnapshot> previous =
+                mTaskSnapshots.getOrDefault(task, Collections.emptyMap());
+        Changes changes = new Changes();
+        Set<String> paths = new LinkedHashSet<>();
+        for (File jar : classpath) {
+            paths.add(jar.getAbsolutePath());
+            JarSnapshot current = getSnapshot(jar);
+            JarSnapshot recorded = previous.get(jar.getAbsolutePath());
+            if (current == null) {
+                if (recorded != null) {
+                    changes.mRemoved.add(jar);
+                }
+            } else if (recorded == null) {
+                changes.mAdded.add(jar);
+            } else {
+                if (!recorded.getAbiHash().equals(current.getAbiHash())) {
+                    changes.mAbiChanged.add(jar);
+                }
+                if (!recorded.getClassesHash().equals(current.getClassesHash())) {
+                    changes.mClassesChanged.add(jar);
+                }
+            }
+        }
+        for (String path : previous.keySet()) {
+            if (!paths.contains(path)) {
+                changes.mRemoved.add(new File(path));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Records the classpath the task ran with successfully and saves the snapshots.
+     */
+    public synchronized void update(@NonNull String task,
+                                    @NonNull Collection<File> classpath) throws IOException {
+        load();
+        Map<String, JarSnapshot> recorded = new HashMap<>();
+        for (File jar : classpath) {
+            JarSnapshot snapshot = getSnapshot(jar);
+            if (snapshot != null) {
+                recorded.put(jar.getAbsolutePath(), snapshot);
+            }
+        }
+        mTaskSnapshots.put(task, recorded);
+        save();
+    }
+
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            readSnapshots(in, mSnapshots);
+            int tasks = in.readInt();
+            for (int i = 0; i < tasks; i++) {
+                String task = in.readUTF();
+                Map<String, JarSnapshot> snapshots = new HashMap<>();
+                readSnapshots(in, snapshots);
+                mTaskSnapshots.put(task, snapshots);
+            }
+        } catch (IOException e) {
+            // the jars are read again and every task runs as if the classpath changed
+            Log.w(TAG, "Unable to load the classpath snapshots", e);
+            mSnapshots.clear();
+            mTaskSnapshots.clear();
+        }
+    }
+
+    private void save() throws IOException {
+        File parent = mFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(mFile)))) {
+            out.writeInt(VERSION);
+            writeSnapshots(out, mSnapshots);
+            out.writeInt(mTaskSnapshots.size());
+            for (Map.Entry<String, Map<String, JarSnapshot>> entry : mTaskSnapshots.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeSnapshots(out, entry.getValue());
+            }
+        }
+    }
+
+    private static void readSnapshots(DataInputStream in, Map<String, JarSnapshot> snapshots)
+            throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            snapshots.put(in.readUTF(), JarSnapshot.read(in));
+        }
+    }
+
+    private static void writeSnapshots(DataOutputStream out, Map<String, JarSnapshot> snapshots)
+            throws IOException {
+        out.writeInt(snapshots.size());
+        for (Map.Entry<String, JarSnapshot> entry : snapshots.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.tyron.builder.compiler.incremental.classpath;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.tyron.builder.internal.normalization.java.ApiClassExtractor;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The hashes of a jar of the classpath. The content hash changes with any byte of the jar,
+ * the classes hash only with the bytes of its classes and the ABI hash only with the API of
+ * its classes: the signatures of the classes and members that other classes can use. The
+ * ABI hash of a jar with Kotlin classes changes whenever its classes hash changes.
+ */
+public class JarSnapshot {
+
+    private static final ApiClassExtractor API_CLASS_EXTRACTOR =
+            new ApiClassExtractor(Collections.emptySet());
+    private static final String KOTLIN_METADATA = "Lkotlin/Metadata;";
+
+    private final long mLength;
+    private final long mLastModified;
+    private final String mContentHash;
+    private final String mClassesHash;
+    private final String mAbiHash;
+
+    JarSnapshot(long length, long lastModified, String contentHash, String classesHash,
+                String abiHash) {
+        mLength = length;
+        mLastModified = lastModified;
+        mContentHash = contentHash;
+        mClassesHash = classesHash;
+        mAbiHash = abiHash;
+    }
+
+    /**
+     * Snapshots the jar, reusing the hashes of the previous snapshot that the change did not
+     * affect: the classes are only read when the content hash changed, and the API of the
+     * classes is only extracted when the classes hash changed.
+     *
+     * @param previous the previous snapshot of the jar, if any
+     * @return the hashes of the jar, or null if the file does not exist
+     */
+    @Nullable
+    static JarSnapshot create(@NonNull File jar, @Nullable JarSnapshot previous)
+            throws IOException {
+        if (!jar.isFile()) {
+            return null;
+        }
+        long length = jar.length();
+        long lastModified = jar.lastModified();
+        String contentHash = Files.asByteSource(jar).hash(Hashing.murmur3_128()).toString();
+        if (previous != null && previous.mContentHash.equals(contentHash)) {
+            return new JarSnapshot(length, lastModified, contentHash, previous.mClassesHash,
+                    previous.mAbiHash);
+        }
+
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            List<String> names = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+                    names.add(entry.getName());
+                }
+            }
+            // the order of the entries does not change the classes of the jar
+            Collections.sort(names);
+
+            Hasher classesHasher = Hashing.murmur3_128().newHasher();
+            for (String name : names) {
+                classesHasher.putString(name, StandardCharsets.UTF_8);
+                classesHasher.putBytes(readEntry(zipFile, name));
+            }
+            String classesHash = classesHasher.hash().toString();
+            String abiHash;
+            if (previous != null && previous.mClassesHash.equals(classesHash)) {
+                abiHash = previous.mAbiHash;
+            } else {
+                abiHash = hashApi(zipFile, names, classesHash);
+            }
+            return new JarSnapshot(length, lastModified, contentHash, classesHash, abiHash);
+        }
+    }
+
+    /**
+     * @return the hash of the API of the classes, or the classes hash if the jar contains
+     * Kotlin classes
+     */
+    private static String hashApi(ZipFile zipFile, List<String> names, String classesHash)
+            throws IOException {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String name : names) {
+            byte[] bytes = readEntry(zipFile, name);
+            byte[] api;
+            try {
+                ClassReader reader = new ClassReader(bytes);
+                // the API of a Kotlin class also lives in its metadata and the bodies of its
+                // inline functions, which ApiClassExtractor does not keep
+                if (isKotlinClass(reader)) {
+                    return classesHash;
+                }
+                api = API_CLASS_EXTRACTOR.extractApiClassFrom(reader).orElse(null);
+            } catch (RuntimeException e) {
+                // a class that cannot be read is part of the ABI as a whole
+                api = bytes;
+            }
+            if (api != null) {
+                hasher.putString(name, StandardCharsets.UTF_8);
+                hasher.putBytes(api);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static boolean isKotlinClass(ClassReader reader) {
+        boolean[] kotlin = new boolean[1];
+        reader.accept(new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                if (KOTLIN_METADATA.equals(descriptor)) {
+                    kotlin[0] = true;
+                }
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return kotlin[0];
+    }
+
+    private static byte[] readEntry(ZipFile zipFile, String name) throws IOException {
+        try (InputStream inputStream = zipFile.getInputStream(zipFile.getEntry(name))) {
+            return ByteStreams.toByteArray(inputStream);
+        }
+    }
+
+    /**
+     * @return whether the file has the length and modification time it had when it was
+     * snapshotted
+     */
+    boolean isUpToDate(@NonNull File jar) {
+        return jar.length() == mLength && jar.lastModified() == mLastModified;
+    }
+
+    public String getClassesHash() {
+        return mClassesHash;
+    }
+
+    public String getAbiHash() {
+        return mAbiHash;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeLong(mLength);
+        out.writeLong(mLastModified);
+        out.writeUTF(mContentHash);
+        out.writeUTF(mClassesHash);
+        out.writeUTF(mAbiHash);
+    }
+
+    static JarSnapshot read(DataInputStream in) throws IOException {
+        return new JarSnapshot(in.readLong(), in.readLong(), in.readUTF(), in.readUTF(),
+                in.readUTF());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof JarSnapshot)) {
+            return false;
+        }
+        JarSnapshot that = (JarSnapshot) o;
+        return mContentHash.equals(that.mContentHash)
+                && mClassesHash.equals(that.mClassesHash)
+                && mAbiHash.equals(that.mAbiHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mContentHash, mClassesHash, mAbiHash);
+    }
+}
@@ -9,6 +9,7 @@ import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.dex.D8Task;
 import com.tyron.builder.compiler.dex.DexDiagnosticHandler;
+import com.tyron.builder.compiler.incremental.classpath.ClasspathSnapshots;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.model.Library;
@@ -27,6 +28,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class IncrementalD8Task extends Task<AndroidModule> {
@@ -116,7 +118,7 @@ public class IncrementalD8Task extends Task<AndroidModule> {
             }
 
             mergeRelease();
-        } catch (com.android.tools.r8.CompilationFailedException e) {
+        } catch (com.android.tools.r8.CompilationFailedException | IOException e) {
             throw new CompilationFailedException(e);
         }
     }
@@ -149,7 +151,7 @@ public class IncrementalD8Task extends Task<AndroidModule> {
             builder.setOutput(output.toPath(), OutputMode.DexIndexed);
             D8.run(builder.build());
 
-        } catch (com.android.tools.r8.CompilationFailedException e) {
+        } catch (com.android.tools.r8.CompilationFailedException | IOException e) {
             throw new CompilationFailedException(e);
         }
     }
@@ -194,12 +196,17 @@ public class IncrementalD8Task extends Task<AndroidModule> {
     }
 
     /**
-     * Ensures that all libraries of the project has been dex-ed
+     * Ensures that all libraries of the project has been dex-ed, a library is dex-ed again
+     * when its classes changed
      *
      * @throws com.android.tools.r8.CompilationFailedException if the compilation has failed
+     * @throws IOException if the libraries could not be read
      */
-    protected void ensureDexedLibraries() throws com.android.tools.r8.CompilationFailedException {
+    protected void ensureDexedLibraries() throws com.android.tools.r8.CompilationFailedException,
+            IOException {
         List<File> libraries = getModule().getLibraries();
+        ClasspathSnapshots snapshots = ClasspathSnapshots.get(getModule());
+        Set<File> changed = snapshots.getChanges(TAG, libraries).getClassesChanged();
 
         for (File lib : libraries) {
             File parentFile = lib.getParentFile();
@@ -213,7 +220,7 @@ public class IncrementalD8Task extends Task<AndroidModule> {
                 }
             } else {
                 File dex = new File(lib.getParentFile(), "classes.dex");
-                if (dex.exists()) {
+                if (dex.exists() && !changed.contains(lib)) {
                     continue;
                 }
                 if (lib.exists()) {
@@ -241,6 +248,7 @@ public class IncrementalD8Task extends Task<AndroidModule> {
                 }
             }
         }
+        snapshots.update(TAG, libraries);
     }
 
     private List<Path> getLibraryFiles() {
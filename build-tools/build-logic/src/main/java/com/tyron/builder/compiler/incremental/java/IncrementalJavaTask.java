@@ -7,6 +7,7 @@ import com.sun.tools.javac.api.JavacTool;
 import com.sun.tools.javac.file.JavacFileManager;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.incremental.classpath.ClasspathSnapshots;
 import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
@@ -31,6 +32,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 
 import javax.tools.DiagnosticListener;
@@ -46,8 +48,11 @@ public class IncrementalJavaTask extends Task<JavaModule> {
 
     private File mOutputDir;
     private List<File> mJavaFiles;
+    // the java files by the fully qualified name of their top level class
+    private Map<String, File> mSourceFiles;
     private List<File> mFilesToCompile;
     private Cache<String, List<File>> mClassCache;
+    private ClasspathSnapshots mClasspathSnapshots;
 
     public IncrementalJavaTask(Project project, JavaModule module, ILogger logger) {
         super(project, module, logger);
@@ -68,10 +73,11 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         mFilesToCompile = new ArrayList<>();
         mClassCache = getModule().getCache(CACHE_KEY, new Cache<>());
 
-        mJavaFiles = new ArrayList<>(getModule().getJavaFiles().values());
+        mSourceFiles = new HashMap<>(getModule().getJavaFiles());
         if (getModule() instanceof AndroidModule) {
-            mJavaFiles.addAll(((AndroidModule) getModule()).getResourceClasses().values());
+            mSourceFiles.putAll(((AndroidModule) getModule()).getResourceClasses());
         }
+        mJavaFiles = new ArrayList<>(mSourceFiles.values());
         for (Cache.Key<String> key : new HashSet<>(mClassCache.getKeys())) {
             if (!mJavaFiles.contains(key.file.toFile())) {
                 File file = mClassCache.get(key.file, "class").iterator().next();
@@ -87,6 +93,15 @@ public class IncrementalJavaTask extends Task<JavaModule> {
             }
         }
 
+        // changes in the method bodies or the resources of a library do not affect the classes
+        // compiled against it
+        mClasspathSnapshots = ClasspathSnapshots.get(getModule());
+        ClasspathSnapshots.Changes changes =
+                mClasspathSnapshots.getChanges(TAG, getModule().getLibraries());
+        if (changes.hasAbiChanges()) {
+            getLogger().debug("Libraries changed, compiling every java file. " + changes);
+            mFilesToCompile = new ArrayList<>(mJavaFiles);
+        }
     }
 
     private boolean mHasErrors = false;
@@ -94,6 +109,7 @@ public class IncrementalJavaTask extends Task<JavaModule> {
     @Override
     public void run() throws IOException, CompilationFailedException {
         if (mFilesToCompile.isEmpty()) {
+            mClasspathSnapshots.update(TAG, getModule().getLibraries());
             return;
         }
 
@@ -163,14 +179,11 @@ public class IncrementalJavaTask extends Task<JavaModule> {
                 String path = fileObject.getName();
                 File classFile = new File(path);
                 if (classFile. exists()) {
-                    String classPath = classFile.getAbsolutePath().replace("build/bin/classes/",
-                            "src/main/java/").replace(".class", ".java");
-                    if (classFile.getName().indexOf('$') != -1) {
-                        classPath = classPath.substring(0, classPath.indexOf('$')) + ".java";
-                    }
-                    File file = new File(classPath);
-                    if (!file.exists()) {
-                        file = new File(classPath.replace("src/main/java", "build/gen"));
+                    // the cache is keyed by the source file so the next build can tell
+                    // whether it changed
+                    File file = getSourceFile(classFile);
+                    if (file == null) {
+                        continue;
                     }
 
                     if (!compiledFiles.containsKey(file.getAbsolutePath())) {
@@ -215,6 +228,23 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         if (mHasErrors) {
             throw new CompilationFailedException("Compilation failed, check logs for more details");
         }
+        mClasspathSnapshots.update(TAG, getModule().getLibraries());
+    }
+
+    /**
+     * @return the java file the class file was compiled from, or null if it is not a java file
+     * of the module
+     */
+    private File getSourceFile(File classFile) {
+        String path = mOutputDir.getAbsoluteFile().toPath()
+                .relativize(classFile.getAbsoluteFile().toPath()).toString();
+        String className = path.substring(0, path.length() - ".class".length())
+                .replace(File.separatorChar, '.');
+        int inner = className.indexOf('$');
+        if (inner != -1) {
+            className = className.substring(0, inner);
+        }
+        return mSourceFiles.get(className);
     }
 
     @VisibleForTesting
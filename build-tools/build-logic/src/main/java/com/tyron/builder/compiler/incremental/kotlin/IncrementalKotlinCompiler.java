@@ -7,6 +7,7 @@ import androidx.annotation.NonNull;
 import com.google.common.base.Throwables;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.incremental.classpath.ClasspathSnapshots;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.model.DiagnosticWrapper;
@@ -91,6 +92,29 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
 
         List<File> javaSourceRoots = new ArrayList<>(getModule().getJavaFiles().values());
 
+        List<File> plugins = getPlugins();
+        String[] pluginOptions = getPluginOptions();
+
+        // the compiler environment and the plugins are kept loaded between builds
+        KotlinCompileSession session = KotlinCompileSession.getInstance();
+        List<File> changedJars = session.prepare(classpath, plugins, pluginOptions);
+        if (!changedJars.isEmpty()) {
+            getLogger().debug("Classpath jars changed since the last build: " + changedJars);
+        }
+        getLogger().debug(session.isWarm()
+                ? "Reusing the kotlin compiler environment"
+                : "Creating the kotlin compiler environment");
+
+        // the incremental compiler only tracks the sources, its caches are dropped to compile
+        // everything again when the ABI of a library changed
+        File cacheDir = new File(getModule().getBuildDirectory(), "intermediate/kotlin");
+        ClasspathSnapshots snapshots = ClasspathSnapshots.get(getModule());
+        ClasspathSnapshots.Changes changes = snapshots.getChanges(TAG, getModule().getLibraries());
+        if (changes.hasAbiChanges() && cacheDir.exists()) {
+            getLogger().debug("Libraries changed, compiling every kotlin file. " + changes);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+
         try {
             K2JVMCompiler compiler = new K2JVMCompiler();
             K2JVMCompilerArguments args = new K2JVMCompilerArguments();
@@ -110,36 +134,36 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
            // args.setKotlinHome(mKotlinHome.getAbsolutePath());
             args.setDestination(mClassOutput.getAbsolutePath());
 
-            List<File> plugins = getPlugins();
             getLogger().debug("Loading kotlin compiler plugins: " + plugins);
 
             args.setPluginClasspaths(plugins.stream()
                     .map(File::getAbsolutePath)
                     .toArray(String[]::new));
-            args.setPluginOptions(getPluginOptions());
-
-            File cacheDir = new File(getModule().getBuildDirectory(), "intermediate/kotlin");
-
-            IncrementalJvmCompilerRunnerKt.makeIncrementally(cacheDir,
-                    Arrays.asList(getModule().getJavaDirectory(),
-                            new File(getModule().getBuildDirectory(), "gen")),
-                    args, mCollector, new ICReporterBase() {
-                        @Override
-                        public void report(@NonNull Function0<String> function0) {
-                            getLogger().info(function0.invoke());
-                        }
-
-                        @Override
-                        public void reportVerbose(@NonNull Function0<String> function0) {
-                            getLogger().verbose(function0.invoke());
-                        }
-
-                        @Override
-                        public void reportCompileIteration(boolean incremental,
-                                                           @NonNull Collection<? extends File> sources,
-                                                           @NonNull ExitCode exitCode) {
-                        }
-                    });
+            args.setPluginOptions(pluginOptions);
+
+            session.compile(() -> {
+                IncrementalJvmCompilerRunnerKt.makeIncrementally(cacheDir,
+                        Arrays.asList(getModule().getJavaDirectory(),
+                                new File(getModule().getBuildDirectory(), "gen")),
+                        args, mCollector, new ICReporterBase() {
+                            @Override
+                            public void report(@NonNull Function0<String> function0) {
+                                getLogger().info(function0.invoke());
+                            }
+
+                            @Override
+                            public void reportVerbose(@NonNull Function0<String> function0) {
+                                getLogger().verbose(function0.invoke());
+                            }
+
+                            @Override
+                            public void reportCompileIteration(boolean incremental,
+                                                               @NonNull Collection<? extends File> sources,
+                                                               @NonNull ExitCode exitCode) {
+                            }
+                        });
+                return null;
+            });
         } catch (Exception e) {
             throw new CompilationFailedException(Throwables.getStackTraceAsString(e));
         }
@@ -147,6 +171,7 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
         if (mCollector.hasErrors()) {
             throw new CompilationFailedException("Compilation failed, see logs for more details");
         }
+        snapshots.update(TAG, getModule().getLibraries());
     }
 
     private List<File> getSourceFiles(File dir) {
@@ -0,0 +1,156 @@
+package com.tyron.builder.compiler.incremental.kotlin;
+
+import androidx.annotation.NonNull;
+
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreApplicationEnvironment;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.cli.jvm.plugins.ServiceLoaderLite;
+import org.jetbrains.kotlin.com.intellij.openapi.vfs.VirtualFileSystem;
+import org.jetbrains.kotlin.com.intellij.openapi.vfs.impl.ZipHandler;
+import org.jetbrains.kotlin.com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Keeps the Kotlin compiler warm between builds, like the Kotlin daemon does for Gradle.
+ * <p>
+ * The compiler runs in the process of the IDE, so instead of creating and disposing the
+ * application environment of the compiler on every compilation it is kept alive, and the
+ * class loaders of the compiler plugins are reused until a plugin jar changes. The jars of
+ * the classpath stay open in the application environment, the session remembers the state
+ * of every jar it has seen and drops the opened jars when one of them changes.
+ * <p>
+ * The application environment is shared by every Kotlin environment of the process. It is
+ * only kept alive for the environments created by {@link #compile(Callable)}, see
+ * {@link #KEEPALIVE_PROPERTY}.
+ */
+public class KotlinCompileSession {
+
+    /**
+     * Read by {@link KotlinCoreEnvironment} when it creates an environment, the application
+     * environment is not disposed with the last project when the property was set for that
+     * project. It is a system property, so it is only set while a build compiles: a Kotlin
+     * environment created on another thread during that time keeps the application environment
+     * alive as well.
+     */
+    public static final String KEEPALIVE_PROPERTY = "kotlin.environment.keepalive";
+
+    private static KotlinCompileSession sInstance;
+
+    public static synchronized KotlinCompileSession getInstance() {
+        if (sInstance == null) {
+            sInstance = new KotlinCompileSession();
+        }
+        return sInstance;
+    }
+
+    private final Map<String, String> mJarStates = new HashMap<>();
+    private String mPluginsState;
+
+    private KotlinCompileSession() {
+    }
+
+    /**
+     * Called before every compilation with its classpath and plugins. The application environment
+     * is disposed if the plugins changed, since plugins may register application extensions.
+     *
+     * @return the jars of the classpath that changed since a previous compilation used them
+     */
+    public synchronized List<File> prepare(@NonNull List<File> classpath,
+                                           @NonNull List<File> plugins,
+                                           @NonNull String[] pluginOptions) {
+        String pluginsState = getState(plugins) + Arrays.toString(pluginOptions);
+        if (mPluginsState != null && !mPluginsState.equals(pluginsState)) {
+            disposeEnvironment();
+        }
+        mPluginsState = pluginsState;
+
+        List<File> changed = new ArrayList<>();
+        for (File jar : classpath) {
+            String state = getState(jar);
+            String previous = mJarStates.put(jar.getAbsolutePath(), state);
+            if (previous != null && !previous.equals(state)) {
+                changed.add(jar);
+            }
+        }
+        if (!changed.isEmpty()) {
+            clearJarCaches();
+        }
+
+        return changed;
+    }
+
+    /**
+     * Runs a compilation which keeps the application environment alive once it is done. The
+     * previous value of {@link #KEEPALIVE_PROPERTY} is restored afterwards.
+     */
+    public synchronized <T> T compile(@NonNull Callable<T> compilation) throws Exception {
+        String previous = System.getProperty(KEEPALIVE_PROPERTY);
+        System.setProperty(KEEPALIVE_PROPERTY, "true");
+        try {
+            return compilation.call();
+        } finally {
+            if (previous == null) {
+                System.clearProperty(KEEPALIVE_PROPERTY);
+            } else {
+                System.setProperty(KEEPALIVE_PROPERTY, previous);
+            }
+        }
+    }
+
+    /**
+     * @return whether the next compilation reuses the application environment of a previous one
+     */
+    public synchronized boolean isWarm() {
+        return KotlinCoreEnvironment.Companion.getApplicationEnvironment() != null;
+    }
+
+    /**
+     * Disposes the application environment and forgets the plugins, the next compilation
+     * starts cold.
+     */
+    public synchronized void close() {
+        disposeEnvironment();
+        mJarStates.clear();
+        mPluginsState = null;
+    }
+
+    private void disposeEnvironment() {
+        KotlinCoreEnvironment.Companion.disposeApplicationEnvironment();
+        ServiceLoaderLite.INSTANCE.clearClassLoaders();
+    }
+
+    /**
+     * The application environment reads the entries of a jar once, its handlers cannot be
+     * dropped one by one so every jar is opened again by the next compilation.
+     */
+    private static void clearJarCaches() {
+        ZipHandler.clearFileAccessorCache();
+        KotlinCoreApplicationEnvironment environment =
+                KotlinCoreEnvironment.Companion.getApplicationEnvironment();
+        if (environment != null) {
+            VirtualFileSystem jarFileSystem = environment.getJarFileSystem();
+            if (jarFileSystem instanceof CoreJarFileSystem) {
+                ((CoreJarFileSystem) jarFileSystem).clearHandlersCache();
+            }
+        }
+    }
+
+    private static String getState(List<File> files) {
+        StringBuilder builder = new StringBuilder();
+        for (File file : files) {
+            builder.append(file.getAbsolutePath()).append('=').append(getState(file)).append(';');
+        }
+        return builder.toString();
+    }
+
+    private static String getState(File file) {
+        return file.length() + ":" + file.lastModified();
+    }
+}
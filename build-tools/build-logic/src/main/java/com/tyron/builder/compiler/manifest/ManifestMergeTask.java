@@ -1,5 +1,8 @@
 package com.tyron.builder.compiler.manifest;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.manifest.ManifestMerger2.SystemProperty;
@@ -11,18 +14,47 @@ import com.tyron.builder.log.ILogger;
 import com.tyron.builder.model.ModuleSettings;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.builder.project.cache.CacheHolder;
+import com.tyron.builder.util.PositionXmlParser;
+import com.tyron.common.util.Cache;
 
 import org.apache.commons.io.FileUtils;
+import org.openjdk.javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ManifestMergeTask extends Task<AndroidModule> {
 
+    /**
+     * Content hashes of the input manifests, a file is only read again once it has been modified.
+     */
+    public static final CacheHolder.CacheKey<Void, HashCode> MANIFEST_HASH_CACHE_KEY =
+            new CacheHolder.CacheKey<>("manifestHashCache");
+
+    /**
+     * Parsed input manifests by content hash. The merger modifies the documents it is given,
+     * so it always gets a copy.
+     */
+    public static final CacheHolder.CacheKey<HashCode, Document> PARSED_MANIFEST_CACHE_KEY =
+            new CacheHolder.CacheKey<>("parsedManifestCache");
+
+    /**
+     * The fingerprint of the inputs that produced the merged manifest. The entry expires
+     * when the merged manifest itself is modified.
+     */
+    public static final CacheHolder.CacheKey<Void, HashCode> MERGED_MANIFEST_CACHE_KEY =
+            new CacheHolder.CacheKey<>("mergedManifestCache");
+
     private File mOutputFile;
     private File mMainManifest;
     private File[] mLibraryManifestFiles;
@@ -85,22 +117,34 @@ public class ManifestMergeTask extends Task<AndroidModule> {
     @Override
     public void run() throws IOException, CompilationFailedException {
         ModuleSettings settings = getModule().getSettings();
+        String minSdkVersion = String.valueOf(settings.getInt(ModuleSettings.MIN_SDK_VERSION, 21));
+        String targetSdkVersion = String.valueOf(settings.getInt(ModuleSettings.TARGET_SDK_VERSION, 30));
+        String versionCode = String.valueOf(settings.getInt(ModuleSettings.VERSION_CODE, 1));
+        String versionName = settings.getString(ModuleSettings.VERSION_NAME, "1.0");
+
+        HashCode fingerprint = computeInputFingerprint(minSdkVersion, targetSdkVersion,
+                versionCode, versionName);
+        Cache<Void, HashCode> mergedCache =
+                getModule().getCache(MERGED_MANIFEST_CACHE_KEY, new Cache<>());
+        if (mOutputFile.length() != 0
+                && mergedCache.has(mOutputFile.toPath(), null)
+                && fingerprint.equals(mergedCache.get(mOutputFile.toPath(), null))) {
+            getLogger().debug("Manifest inputs are unchanged, skipping merge.");
+            return;
+        }
 
         ManifestMerger2.Invoker<?> invoker = ManifestMerger2.newMerger(mMainManifest,
                 getLogger(), ManifestMerger2.MergeType.APPLICATION);
         invoker.setOverride(SystemProperty.PACKAGE, mPackageName);
-        invoker.setOverride(SystemProperty.MIN_SDK_VERSION,
-                String.valueOf(settings.getInt(ModuleSettings.MIN_SDK_VERSION, 21)));
-        invoker.setOverride(SystemProperty.TARGET_SDK_VERSION,
-                String.valueOf(settings.getInt(ModuleSettings.TARGET_SDK_VERSION, 30)));
-        invoker.setOverride(SystemProperty.VERSION_CODE,
-                String.valueOf(settings.getInt(ModuleSettings.VERSION_CODE, 1)));
-        invoker.setOverride(SystemProperty.VERSION_NAME,
-                settings.getString(ModuleSettings.VERSION_NAME, "1.0"));
+        invoker.setOverride(SystemProperty.MIN_SDK_VERSION, minSdkVersion);
+        invoker.setOverride(SystemProperty.TARGET_SDK_VERSION, targetSdkVersion);
+        invoker.setOverride(SystemProperty.VERSION_CODE, versionCode);
+        invoker.setOverride(SystemProperty.VERSION_NAME, versionName);
         if (mLibraryManifestFiles != null) {
             invoker.addLibraryManifests(mLibraryManifestFiles);
         }
         invoker.setVerbose(false);
+        invoker.withDocumentProvider(this::loadDocument);
         try {
             MergingReport report = invoker.merge();
             if (report.getResult().isError()) {
@@ -120,15 +164,109 @@ public class ManifestMergeTask extends Task<AndroidModule> {
                         XmlFormatStyle.get(document),
                         null,
                         false);
-                FileUtils.writeStringToFile(mOutputFile,
-                        contents,
-                        Charset.defaultCharset());
+                writeIfChanged(contents.getBytes(Charset.defaultCharset()));
+                mergedCache.load(mOutputFile.toPath(), null, fingerprint);
             }
         } catch (ManifestMerger2.MergeFailureException e) {
             throw new CompilationFailedException(e);
         }
     }
 
+    /**
+     * Writes the merged manifest only if its contents differ from the existing output, so
+     * its modification time stays stable and the tasks that consume it can stay up-to-date.
+     */
+    private void writeIfChanged(byte[] contents) throws IOException {
+        if (mOutputFile.length() == contents.length
+                && Arrays.equals(contents, Files.readAllBytes(mOutputFile.toPath()))) {
+            return;
+        }
+        FileUtils.writeByteArrayToFile(mOutputFile, contents);
+    }
+
+    private HashCode computeInputFingerprint(String minSdkVersion, String targetSdkVersion,
+                                             String versionCode, String versionName)
+            throws IOException {
+        Cache<Void, HashCode> hashCache =
+                getModule().getCache(MANIFEST_HASH_CACHE_KEY, new Cache<>());
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        putField(hasher, mPackageName);
+        putField(hasher, minSdkVersion);
+        putField(hasher, targetSdkVersion);
+        putField(hasher, versionCode);
+        putField(hasher, versionName);
+        hasher.putBytes(getContentHash(hashCache, mMainManifest).asBytes());
+        if (mLibraryManifestFiles != null) {
+            hasher.putInt(mLibraryManifestFiles.length);
+            for (File library : mLibraryManifestFiles) {
+                putField(hasher, library.getAbsolutePath());
+                hasher.putBytes(getContentHash(hashCache, library).asBytes());
+            }
+        } else {
+            hasher.putInt(-1);
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Adds the value with its length, so that different values never hash the same when
+     * they are concatenated (such as "ab" + "c" and "a" + "bc").
+     */
+    private static void putField(Hasher hasher, String value) {
+        if (value == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putInt(value.length());
+        hasher.putString(value, StandardCharsets.UTF_8);
+    }
+
+    private static HashCode getContentHash(Cache<Void, HashCode> cache, File file)
+            throws IOException {
+        if (cache.has(file.toPath(), null)) {
+            return cache.get(file.toPath(), null);
+        }
+        HashCode hash = Hashing.sha256().hashBytes(Files.readAllBytes(file.toPath()));
+        cache.load(file.toPath(), null, hash);
+        return hash;
+    }
+
+    /**
+     * Parses a manifest only when no document has been parsed from the same contents, and
+     * returns a copy of the parsed document.
+     */
+    private Document loadDocument(File file)
+            throws IOException, SAXException, ParserConfigurationException {
+        Cache<Void, HashCode> hashCache =
+                getModule().getCache(MANIFEST_HASH_CACHE_KEY, new Cache<>());
+        Cache<HashCode, Document> documents =
+                getModule().getCache(PARSED_MANIFEST_CACHE_KEY, new Cache<>());
+        Path path = file.toPath();
+        HashCode hash = getContentHash(hashCache, file);
+
+        Document document;
+        if (hasDocument(documents, path, hash)) {
+            // the document is only read, its modification time does not matter
+            document = documents.get(path, hash);
+        } else {
+            document = PositionXmlParser.parse(Files.readAllBytes(path));
+            documents.getKeys().removeIf(key -> key.file.equals(path));
+            documents.load(path, hash, document);
+        }
+        return PositionXmlParser.copy(document);
+    }
+
+    private static boolean hasDocument(Cache<HashCode, Document> documents, Path path,
+                                       HashCode hash) {
+        for (Cache.Key<HashCode> key : documents.getKeys()) {
+            if (key.file.equals(path) && hash.equals(key.key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private String getApplicationId() throws IOException {
         String packageName = getModule().getPackageName();
         if (packageName == null) {
@@ -0,0 +1,143 @@
+package com.tyron.builder.compiler.symbol;
+
+import androidx.annotation.Nullable;
+
+import com.google.common.collect.Multimap;
+import com.tyron.builder.log.ILogger;
+import com.tyron.common.util.Cache;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generates the R classes of libraries from their R.txt files and the R.txt file of the
+ * application, which contains the final values of the symbols.
+ *
+ * The fingerprint of the merged symbols of every package is stored, a package is only
+ * written again when its fingerprint has changed, so changing the resources of the app
+ * only regenerates the R classes whose values have changed.
+ */
+public class RClassGenerator {
+
+    private static final String FINGERPRINTS_FILE = "fingerprints.txt";
+
+    private final File mOutputDirectory;
+    private final File mStateDirectory;
+    private final SymbolTableCache mSymbolTableCache;
+
+    private final List<File> mOutputFiles = new ArrayList<>();
+    private final List<File> mWrittenFiles = new ArrayList<>();
+
+    /**
+     * @param outputDirectory the source directory where the R classes are generated
+     * @param stateDirectory  the directory where the fingerprints and the parsed symbol
+     *                        tables are kept between builds
+     */
+    public RClassGenerator(File outputDirectory,
+                           File stateDirectory,
+                           @Nullable Cache<Void, SymbolLoader> memoryCache,
+                           ILogger logger) {
+        mOutputDirectory = outputDirectory;
+        mStateDirectory = stateDirectory;
+        mSymbolTableCache = new SymbolTableCache(new File(stateDirectory, "tables"), memoryCache,
+                logger);
+    }
+
+    /**
+     * @param fullSymbolFile the R.txt file of the application
+     * @param libraries      the R.txt files of the libraries grouped by their package name
+     */
+    public void generate(File fullSymbolFile, Multimap<String, File> libraries) throws IOException {
+        Map<String, String> previousFingerprints = readFingerprints();
+        Map<String, String> fingerprints = new TreeMap<>();
+
+        if (!libraries.isEmpty()) {
+            SymbolLoader fullSymbolValues = mSymbolTableCache.load(fullSymbolFile);
+
+            for (String packageName : libraries.keySet()) {
+                SymbolWriter writer = new SymbolWriter(mOutputDirectory.getAbsolutePath(),
+                        packageName, fullSymbolValues, null);
+                for (File library : libraries.get(packageName)) {
+                    writer.addSymbolsToWrite(mSymbolTableCache.load(library));
+                }
+
+                File outputFile = writer.getOutputFile();
+                String fingerprint = writer.getFingerprint();
+                fingerprints.put(packageName, fingerprint);
+                mOutputFiles.add(outputFile);
+
+                if (fingerprint.equals(previousFingerprints.get(packageName)) && outputFile.exists()) {
+                    continue;
+                }
+                if (writer.writeIfChanged()) {
+                    mWrittenFiles.add(outputFile);
+                }
+            }
+        }
+
+        // delete the R classes of libraries that have been removed
+        for (String packageName : previousFingerprints.keySet()) {
+            if (!fingerprints.containsKey(packageName)) {
+                SymbolWriter writer = new SymbolWriter(mOutputDirectory.getAbsolutePath(),
+                        packageName, null, null);
+                FileUtils.deleteQuietly(writer.getOutputFile());
+            }
+        }
+
+        if (!fingerprints.equals(previousFingerprints)) {
+            writeFingerprints(fingerprints);
+        }
+        mSymbolTableCache.deleteUnusedEntries();
+    }
+
+    /**
+     * @return the R classes of all the libraries, including the ones that are up to date
+     */
+    public List<File> getOutputFiles() {
+        return mOutputFiles;
+    }
+
+    /**
+     * @return the R classes that were written by the last call to {@link #generate}
+     */
+    public List<File> getWrittenFiles() {
+        return mWrittenFiles;
+    }
+
+    private Map<String, String> readFingerprints() {
+        File file = new File(mStateDirectory, FINGERPRINTS_FILE);
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        if (!file.exists()) {
+            return fingerprints;
+        }
+        try {
+            for (String line : FileUtils.readLines(file, StandardCharsets.UTF_8)) {
+                int index = line.indexOf(' ');
+                if (index != -1) {
+                    fingerprints.put(line.substring(0, index), line.substring(index + 1));
+                }
+            }
+        } catch (IOException e) {
+            // everything will be regenerated
+            fingerprints.clear();
+        }
+        return fingerprints;
+    }
+
+    private void writeFingerprints(Map<String, String> fingerprints) throws IOException {
+        List<String> lines = new ArrayList<>(fingerprints.size());
+        for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+            lines.add(entry.getKey() + " " + entry.getValue());
+        }
+        FileUtils.writeLines(new File(mStateDirectory, FINGERPRINTS_FILE),
+                StandardCharsets.UTF_8.name(), lines);
+    }
+}
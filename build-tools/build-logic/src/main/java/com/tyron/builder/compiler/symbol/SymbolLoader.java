@@ -16,6 +16,7 @@ public class SymbolLoader {
     private final File mSymbolFile;
     private Table<String, String, SymbolEntry> mSymbols;
     private final ILogger mLogger;
+    private String mHash;
 
     public static class SymbolEntry {
         private final String mName;
@@ -96,4 +97,16 @@ public class SymbolLoader {
     Table<String, String, SymbolEntry> getSymbols() {
         return mSymbols;
     }
+
+    /**
+     * @return the hash of the symbol file these symbols were loaded from, or null if the
+     * symbols were not loaded through a {@link SymbolTableCache}
+     */
+    String getHash() {
+        return mHash;
+    }
+
+    void setHash(String hash) {
+        mHash = hash;
+    }
 }
@@ -0,0 +1,177 @@
+package com.tyron.builder.compiler.symbol;
+
+import androidx.annotation.Nullable;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.tyron.builder.log.ILogger;
+import com.tyron.common.util.Cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches the parsed contents of R.txt files in a binary form, keyed by the hash of the
+ * R.txt file. A library whose symbols did not change is never parsed again, even after
+ * the IDE is restarted.
+ */
+public class SymbolTableCache {
+
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".bin";
+
+    private final File mCacheDirectory;
+    private final Cache<Void, SymbolLoader> mMemoryCache;
+    private final ILogger mLogger;
+    private final Set<String> mUsedEntries = new HashSet<>();
+
+    /**
+     * @param memoryCache optional cache of symbol tables that were already loaded in this
+     *                    session, its entries expire when the R.txt file is modified.
+     */
+    public SymbolTableCache(File cacheDirectory,
+                            @Nullable Cache<Void, SymbolLoader> memoryCache,
+                            ILogger logger) {
+        mCacheDirectory = cacheDirectory;
+        mMemoryCache = memoryCache;
+        mLogger = logger;
+    }
+
+    /**
+     * @return the loaded symbols of the given R.txt file
+     */
+    public SymbolLoader load(File symbolFile) throws IOException {
+        if (mMemoryCache != null && mMemoryCache.has(symbolFile.toPath(), null)) {
+            SymbolLoader loader = mMemoryCache.get(symbolFile.toPath(), null);
+            if (loader.getHash() != null) {
+                mUsedEntries.add(loader.getHash() + EXTENSION);
+                return loader;
+            }
+        }
+
+        String hash = Files.asByteSource(symbolFile).hash(Hashing.sha256()).toString();
+        File entry = new File(mCacheDirectory, hash + EXTENSION);
+        mUsedEntries.add(entry.getName());
+
+        Table<String, String, SymbolLoader.SymbolEntry> symbols = null;
+        if (entry.isFile()) {
+            try {
+                symbols = read(entry);
+            } catch (IOException e) {
+                mLogger.debug("Unable to read cached symbols of " + symbolFile + ": " + e.getMessage());
+            }
+        }
+
+        SymbolLoader loader;
+        if (symbols != null) {
+            loader = new SymbolLoader(symbols);
+        } else {
+            loader = new SymbolLoader(symbolFile, mLogger);
+            loader.load();
+            write(entry, loader.getSymbols());
+        }
+        loader.setHash(hash);
+
+        if (mMemoryCache != null) {
+            mMemoryCache.load(symbolFile.toPath(), null, loader);
+        }
+        return loader;
+    }
+
+    /**
+     * Deletes the cached tables that were not used since this cache was created.
+     */
+    public void deleteUnusedEntries() {
+        File[] files = mCacheDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!mUsedEntries.contains(file.getName())) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private static Table<String, String, SymbolLoader.SymbolEntry> read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != VERSION) {
+                throw new IOException("Unsupported version");
+            }
+            Table<String, String, SymbolLoader.SymbolEntry> symbols = HashBasedTable.create();
+            int rowCount = input.readInt();
+            for (int i = 0; i < rowCount; i++) {
+                String className = readString(input);
+                int count = input.readInt();
+                for (int j = 0; j < count; j++) {
+                    String name = readString(input);
+                    String type = readString(input);
+                    String value = readString(input);
+                    symbols.put(className, name, new SymbolLoader.SymbolEntry(name, type, value));
+                }
+            }
+            return symbols;
+        }
+    }
+
+    private static void write(File file, Table<String, String, SymbolLoader.SymbolEntry> symbols)
+            throws IOException {
+        if (!mkdirs(file.getParentFile())) {
+            throw new IOException("Unable to create directory " + file.getParentFile());
+        }
+        File temporary = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(VERSION);
+            Map<String, Map<String, SymbolLoader.SymbolEntry>> rows = symbols.rowMap();
+            output.writeInt(rows.size());
+            for (Map.Entry<String, Map<String, SymbolLoader.SymbolEntry>> row : rows.entrySet()) {
+                writeString(output, row.getKey());
+                output.writeInt(row.getValue().size());
+                for (SymbolLoader.SymbolEntry entry : row.getValue().values()) {
+                    writeString(output, entry.getName());
+                    writeString(output, entry.getType());
+                    writeString(output, entry.getValue());
+                }
+            }
+        }
+        if (!temporary.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temporary.delete();
+            throw new IOException("Unable to write " + file);
+        }
+    }
+
+    private static boolean mkdirs(File directory) {
+        return directory.isDirectory() || directory.mkdirs();
+    }
+
+    /**
+     * Styleable values can exceed the length supported by {@link DataOutputStream#writeUTF}.
+     */
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
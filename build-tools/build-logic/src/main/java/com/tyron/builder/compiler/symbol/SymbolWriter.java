@@ -5,6 +5,8 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Table;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.project.api.AndroidModule;
 
 import org.apache.commons.io.FileUtils;
@@ -13,6 +15,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -103,40 +106,80 @@ public class SymbolWriter {
         }
     }
 
-    public void write() throws IOException {
-        Splitter splitter = Splitter.on('.');
-        Iterable<String> folders = splitter.split(mPackageName);
+    /**
+     * @return the R.java file of the package of this writer
+     */
+    public File getOutputFile() {
         File file = new File(mOutFolder);
-        for (String folder : folders) {
+        for (String folder : Splitter.on('.').split(mPackageName)) {
             file = new File(file, folder);
         }
-        boolean newFile = false;
-        if (!file.exists()) {
-            newFile = true;
-            if (!file.mkdirs()) {
-                throw new IOException("Unable to create resource directories for " + file);
+        return new File(file, "R.java");
+    }
+
+    /**
+     * @return a hash of the symbols that would be written along with their values, two
+     * writers with the same fingerprint generate the same R class
+     */
+    public String getFingerprint() {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(mPackageName, StandardCharsets.UTF_8);
+
+        Table<String, String, SymbolLoader.SymbolEntry> symbols = getAllSymbols();
+        Table<String, String, SymbolLoader.SymbolEntry> values = mValues.getSymbols();
+        List<String> rowList = Lists.newArrayList(symbols.rowKeySet());
+        Collections.sort(rowList);
+        for (String row : rowList) {
+            hasher.putChar('\n').putString(row, StandardCharsets.UTF_8);
+
+            List<String> symbolList = Lists.newArrayList(symbols.row(row).keySet());
+            Collections.sort(symbolList);
+            for (String symbolName : symbolList) {
+                SymbolLoader.SymbolEntry value = values.get(row, symbolName);
+                if (value != null) {
+                    hasher.putChar('\n')
+                            .putString(value.getType(), StandardCharsets.UTF_8)
+                            .putChar(' ')
+                            .putString(value.getName(), StandardCharsets.UTF_8)
+                            .putChar(' ')
+                            .putString(value.getValue(), StandardCharsets.UTF_8);
+                }
             }
         }
-        file = new File(file, "R.java");
+        return hasher.hash().toString();
+    }
 
-        String contents = getString();
+    public void write() throws IOException {
+        writeIfChanged();
+        mProject.addResourceClass(getOutputFile());
+    }
 
-        if (newFile || !file.exists()) {
-            if (!file.createNewFile()) {
-                throw new IOException("Unable to create R.txt file");
-            }
-            FileUtils.writeStringToFile(file, contents, Charset.defaultCharset());
-        } else {
+    /**
+     * Writes the R class, the file is left untouched if it already has the same contents
+     * so its modification time stays stable for the compiler.
+     *
+     * @return whether the file was written
+     */
+    public boolean writeIfChanged() throws IOException {
+        File file = getOutputFile();
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create resource directories for " + directory);
+        }
+
+        String contents = getString();
+        if (file.exists()) {
             String oldContents;
             try {
                 oldContents = FileUtils.readFileToString(file, Charset.defaultCharset());
             } catch (IOException e) {
                 oldContents = "";
             }
-            if (!oldContents.equals(contents)) {
-                FileUtils.writeStringToFile(file, contents, Charset.defaultCharset());
+            if (oldContents.equals(contents)) {
+                return false;
             }
         }
-        mProject.addResourceClass(file);
+        FileUtils.writeStringToFile(file, contents, Charset.defaultCharset());
+        return true;
     }
 }
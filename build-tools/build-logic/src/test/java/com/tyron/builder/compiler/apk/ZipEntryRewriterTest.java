@@ -0,0 +1,318 @@
+package com.tyron.builder.compiler.apk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.android.sdklib.build.ApkBuilder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class ZipEntryRewriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File resourcesApk;
+    private File dexFile;
+    private File secondDexFile;
+
+    @Before
+    public void setup() throws IOException {
+        // the resources are stored and deflated like aapt2 writes them, the odd name lengths
+        // leave the stored data unaligned
+        Map<String, byte[]> resources = new LinkedHashMap<>();
+        resources.put("AndroidManifest.xml", text("<manifest package=\"com.test\"/>", 20));
+        resources.put("resources.arsc", random(1, 3001));
+        resources.put("res/drawable/icon.png", random(2, 1503));
+        resources.put("res/layout/main.xml", text("<LinearLayout/>", 50));
+        resources.put("res/raw/data.bin", random(3, 77));
+        resourcesApk = temporaryFolder.newFile("generated.apk.res");
+        writeZip(resourcesApk, resources, "resources.arsc", "res/drawable/icon.png",
+                "res/raw/data.bin");
+
+        dexFile = temporaryFolder.newFile("classes.dex");
+        Files.write(dexFile.toPath(), dex(1, 10_000));
+        secondDexFile = temporaryFolder.newFile("classes2.dex");
+        Files.write(secondDexFile.toPath(), dex(2, 5_000));
+    }
+
+    @Test
+    public void testMatchesFreshlyPackagedApk() throws Exception {
+        File apk = new File(temporaryFolder.getRoot(), "generated.apk");
+        packageApk(apk);
+
+        // the usual edit: the dex files change size
+        Files.write(dexFile.toPath(), dex(3, 12_345));
+        Files.write(secondDexFile.toPath(), dex(4, 3_001));
+        Map<String, File> changed = new LinkedHashMap<>();
+        changed.put("classes.dex", dexFile);
+        changed.put("classes2.dex", secondDexFile);
+        PackageTask.updateApk(apk, changed);
+
+        File fresh = new File(temporaryFolder.getRoot(), "fresh.apk");
+        packageApk(fresh);
+        assertSameEntries(fresh, apk);
+        assertStoredEntriesAligned(apk);
+        assertFalse(new File(apk.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testStoredEntriesStayAligned() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("classes.dex", dex(1, 1000));
+        entries.put("resources.arsc", random(1, 301));
+        entries.put("lib/arm64-v8a/libnative.so", random(2, 5000));
+        entries.put("assets/a.txt", text("a", 3));
+        entries.put("res/raw/b.bin", random(3, 13));
+        File apk = temporaryFolder.newFile("aligned.apk");
+        writeZip(apk, entries, "resources.arsc", "lib/arm64-v8a/libnative.so", "res/raw/b.bin");
+
+        File dex = temporaryFolder.newFile("new.dex");
+        for (int size : new int[]{1001, 1002, 1003, 999, 20_000, 7}) {
+            Files.write(dex.toPath(), dex(size, size));
+            entries.put("classes.dex", Files.readAllBytes(dex.toPath()));
+            PackageTask.updateApk(apk, Collections.singletonMap("classes.dex", dex));
+
+            assertStoredEntriesAligned(apk);
+            assertSameContents(entries, readEntries(apk));
+        }
+
+        // the alignment padding is replaced, not added to
+        byte[] before = Files.readAllBytes(apk.toPath());
+        PackageTask.updateApk(apk, Collections.singletonMap("classes.dex", dex));
+        assertArrayEquals(before, Files.readAllBytes(apk.toPath()));
+    }
+
+    @Test
+    public void testInvalidApkIsNotUpdated() throws Exception {
+        File apk = temporaryFolder.newFile("invalid.apk");
+        byte[] contents = random(5, 1000);
+        Files.write(apk.toPath(), contents);
+
+        try {
+            PackageTask.updateApk(apk, Collections.singletonMap("classes.dex", dexFile));
+            fail("An invalid apk can not be updated");
+        } catch (ZipException expected) {
+            // the package task falls back to a full build
+        }
+        assertArrayEquals(contents, Files.readAllBytes(apk.toPath()));
+        assertFalse(new File(apk.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testMissingEntryIsNotUpdated() throws Exception {
+        File apk = new File(temporaryFolder.getRoot(), "generated.apk");
+        packageApk(apk);
+        byte[] contents = Files.readAllBytes(apk.toPath());
+
+        File thirdDexFile = temporaryFolder.newFile("classes3.dex");
+        Files.write(thirdDexFile.toPath(), dex(6, 100));
+        try {
+            PackageTask.updateApk(apk, Collections.singletonMap("classes3.dex", thirdDexFile));
+            fail("A new dex file can not be added to the apk");
+        } catch (ZipException expected) {
+            // the package task falls back to a full build
+        }
+        assertArrayEquals(contents, Files.readAllBytes(apk.toPath()));
+        assertFalse(new File(apk.getPath() + ".tmp").exists());
+    }
+
+    /**
+     * Packages the apk the way {@link PackageTask} builds it from scratch.
+     */
+    private void packageApk(File apk) throws Exception {
+        ApkBuilder builder = new ApkBuilder(apk.getAbsolutePath(), resourcesApk.getAbsolutePath(),
+                dexFile.getAbsolutePath(), null, null);
+        builder.addFile(secondDexFile, "classes2.dex");
+        builder.setDebugMode(true);
+        builder.sealApk();
+    }
+
+    private static void assertSameEntries(File expected, File actual) throws IOException {
+        try (ZipFile expectedZip = new ZipFile(expected); ZipFile actualZip = new ZipFile(actual)) {
+            List<ZipEntry> expectedEntries = Collections.list(castEntries(expectedZip.entries()));
+            List<ZipEntry> actualEntries = Collections.list(castEntries(actualZip.entries()));
+            assertEquals(names(expectedEntries), names(actualEntries));
+            for (int i = 0; i < expectedEntries.size(); i++) {
+                ZipEntry expectedEntry = expectedEntries.get(i);
+                ZipEntry actualEntry = actualEntries.get(i);
+                String name = expectedEntry.getName();
+                assertEquals(name, expectedEntry.getMethod(), actualEntry.getMethod());
+                assertEquals(name, expectedEntry.getCrc(), actualEntry.getCrc());
+                assertEquals(name, expectedEntry.getSize(), actualEntry.getSize());
+                if (expectedEntry.getMethod() == ZipEntry.STORED) {
+                    assertEquals(name, expectedEntry.getCompressedSize(),
+                            actualEntry.getCompressedSize());
+                }
+                assertArrayEquals(name, read(expectedZip, expectedEntry),
+                        read(actualZip, actualEntry));
+            }
+        }
+    }
+
+    /**
+     * Checks the offsets in the local headers, which {@link ZipFile} does not expose.
+     */
+    private static void assertStoredEntriesAligned(File apk) throws IOException {
+        int stored = 0;
+        try (RandomAccessFile file = new RandomAccessFile(apk, "r")) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) file.length())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            file.getChannel().read(buffer, 0);
+
+            int eocd = buffer.capacity() - 22;
+            while (buffer.getInt(eocd) != 0x06054b50) {
+                eocd--;
+            }
+            int count = buffer.getShort(eocd + 10) & 0xffff;
+            int position = buffer.getInt(eocd + 16);
+            for (int i = 0; i < count; i++) {
+                assertEquals(0x02014b50, buffer.getInt(position));
+                int method = buffer.getShort(position + 10) & 0xffff;
+                int nameLength = buffer.getShort(position + 28) & 0xffff;
+                int extraLength = buffer.getShort(position + 30) & 0xffff;
+                int commentLength = buffer.getShort(position + 32) & 0xffff;
+                int localOffset = buffer.getInt(position + 42);
+                byte[] name = new byte[nameLength];
+                buffer.position(position + 46);
+                buffer.get(name);
+                String entryName = new String(name, StandardCharsets.UTF_8);
+
+                assertEquals(0x04034b50, buffer.getInt(localOffset));
+                int dataOffset = localOffset + 30 + (buffer.getShort(localOffset + 26) & 0xffff)
+                        + (buffer.getShort(localOffset + 28) & 0xffff);
+                if (method == ZipEntry.STORED) {
+                    int alignment = entryName.endsWith(".so") ? 4096 : 4;
+                    assertEquals(entryName + " at " + dataOffset, 0, dataOffset % alignment);
+                    stored++;
+                }
+                position += 46 + nameLength + extraLength + commentLength;
+            }
+        }
+        assertTrue(stored > 0);
+    }
+
+    private static Map<String, byte[]> readEntries(File zip) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            for (ZipEntry entry : Collections.list(castEntries(zipFile.entries()))) {
+                entries.put(entry.getName(), read(zipFile, entry));
+            }
+        }
+        return entries;
+    }
+
+    private static void assertSameContents(Map<String, byte[]> expected,
+                                           Map<String, byte[]> actual) {
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+
+    private static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream is = zip.getInputStream(entry)) {
+            return toByteArray(is);
+        }
+    }
+
+    private static byte[] toByteArray(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Enumeration<ZipEntry> castEntries(Enumeration<? extends ZipEntry> entries) {
+        return (Enumeration<ZipEntry>) entries;
+    }
+
+    private static List<String> names(List<ZipEntry> entries) {
+        List<String> names = new ArrayList<>();
+        for (ZipEntry entry : entries) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    private static void writeZip(File file, Map<String, byte[]> entries, String... stored)
+            throws IOException {
+        List<String> storedNames = Arrays.asList(stored);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                if (storedNames.contains(entry.getKey())) {
+                    CRC32 crc = new CRC32();
+                    crc.update(entry.getValue());
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(entry.getValue().length);
+                    zipEntry.setCompressedSize(entry.getValue().length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(zipEntry);
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Contents that compress like dex files do.
+     */
+    private static byte[] dex(int seed, int size) {
+        byte[] bytes = new byte[size];
+        Random random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt() : i % 16);
+        }
+        return bytes;
+    }
+
+    private static byte[] random(int seed, int size) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] text(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
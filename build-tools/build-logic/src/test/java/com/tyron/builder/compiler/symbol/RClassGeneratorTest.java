@@ -0,0 +1,220 @@
+package com.tyron.builder.compiler.symbol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import com.tyron.builder.log.ILogger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RClassGeneratorTest {
+
+    private static final int LIBRARY_COUNT = 30;
+    private static final int SYMBOL_COUNT = 15;
+
+    /**
+     * An old timestamp set on the outputs, so a rewritten file can be detected even if the
+     * test runs faster than the resolution of the file system timestamps.
+     */
+    private static final long OLD_TIMESTAMP = 1_000_000_000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File librariesDir;
+    private File outputDir;
+    private File stateDir;
+    private File fullSymbolFile;
+
+    private final Map<String, List<String>> librarySymbols = new HashMap<>();
+    private final Map<String, String> values = new HashMap<>();
+
+    @Before
+    public void setup() throws IOException {
+        librariesDir = temporaryFolder.newFolder("libraries");
+        outputDir = temporaryFolder.newFolder("gen");
+        stateDir = temporaryFolder.newFolder("symbols");
+        fullSymbolFile = new File(temporaryFolder.getRoot(), "R.txt");
+
+        int id = 0;
+        for (int i = 0; i < LIBRARY_COUNT; i++) {
+            List<String> symbols = new ArrayList<>();
+            for (int j = 0; j < SYMBOL_COUNT; j++) {
+                String name = "lib" + i + "_symbol" + j;
+                symbols.add(name);
+                values.put(name, toValue(id++));
+            }
+            // every library also references a symbol shared by all of them
+            symbols.add("shared");
+            librarySymbols.put("lib" + i, symbols);
+        }
+        values.put("shared", toValue(id++));
+        values.put("app_only", toValue(id));
+
+        for (String library : librarySymbols.keySet()) {
+            writeLibrary(library);
+        }
+        writeFullSymbols();
+    }
+
+    @Test
+    public void testNoChangeWritesNothing() throws IOException {
+        RClassGenerator first = generate();
+        assertEquals(LIBRARY_COUNT, first.getOutputFiles().size());
+        assertEquals(LIBRARY_COUNT, first.getWrittenFiles().size());
+        for (File file : first.getOutputFiles()) {
+            assertTrue(file.exists());
+        }
+
+        setOldTimestamps();
+        RClassGenerator second = generate();
+        assertEquals(LIBRARY_COUNT, second.getOutputFiles().size());
+        assertEquals(Collections.emptyList(), second.getWrittenFiles());
+        assertOldTimestamps();
+    }
+
+    @Test
+    public void testChangedLibraryOnlyRegeneratesItsRClass() throws IOException {
+        generate();
+        setOldTimestamps();
+
+        librarySymbols.get("lib3").add("lib3_added");
+        values.put("lib3_added", toValue(100_000));
+        writeLibrary("lib3");
+        writeFullSymbols();
+
+        RClassGenerator generator = generate();
+        assertEquals(Collections.singletonList(getOutputFile("lib3")), generator.getWrittenFiles());
+        assertTrue(read(getOutputFile("lib3")).contains("lib3_added = 0x7f0186a0;"));
+    }
+
+    @Test
+    public void testChangedValueOnlyRegeneratesAffectedRClasses() throws IOException {
+        generate();
+        setOldTimestamps();
+
+        // the application resources changed, but only one library uses the changed symbol
+        values.put("lib5_symbol0", toValue(200_000));
+        values.put("app_only", toValue(200_001));
+        writeFullSymbols();
+
+        RClassGenerator generator = generate();
+        assertEquals(Collections.singletonList(getOutputFile("lib5")), generator.getWrittenFiles());
+        assertTrue(read(getOutputFile("lib5")).contains("lib5_symbol0 = 0x7f030d40;"));
+
+        // a value shared by every library regenerates all of them
+        setOldTimestamps();
+        values.put("shared", toValue(300_000));
+        writeFullSymbols();
+        assertEquals(LIBRARY_COUNT, generate().getWrittenFiles().size());
+    }
+
+    @Test
+    public void testRemovedLibraryDeletesItsRClass() throws IOException {
+        generate();
+        assertTrue(getOutputFile("lib7").exists());
+
+        librarySymbols.remove("lib7");
+        RClassGenerator generator = generate();
+        assertEquals(LIBRARY_COUNT - 1, generator.getOutputFiles().size());
+        assertEquals(Collections.emptyList(), generator.getWrittenFiles());
+        assertFalse(getOutputFile("lib7").exists());
+    }
+
+    @Test
+    public void testCachedTablesMatchParsedTables() throws IOException {
+        RClassGenerator cold = generate();
+        List<String> expected = new ArrayList<>();
+        for (File file : cold.getOutputFiles()) {
+            expected.add(read(file));
+        }
+
+        // the outputs are generated again from the cached symbol tables only
+        FileUtils.cleanDirectory(outputDir);
+        FileUtils.deleteQuietly(new File(stateDir, "fingerprints.txt"));
+        RClassGenerator warm = generate();
+        List<String> actual = new ArrayList<>();
+        for (File file : warm.getOutputFiles()) {
+            actual.add(read(file));
+        }
+        assertEquals(expected, actual);
+    }
+
+    private RClassGenerator generate() throws IOException {
+        Multimap<String, File> libraries = ArrayListMultimap.create();
+        List<String> names = new ArrayList<>(librarySymbols.keySet());
+        Collections.sort(names);
+        for (String library : names) {
+            libraries.put(getPackageName(library), new File(librariesDir, library + "/R.txt"));
+        }
+
+        RClassGenerator generator = new RClassGenerator(outputDir, stateDir, null, ILogger.EMPTY);
+        generator.generate(fullSymbolFile, libraries);
+        return generator;
+    }
+
+    private void writeLibrary(String library) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (String symbol : librarySymbols.get(library)) {
+            // libraries are compiled with placeholder values
+            builder.append("int string ").append(symbol).append(" 0x0\n");
+        }
+        FileUtils.writeStringToFile(new File(librariesDir, library + "/R.txt"),
+                builder.toString(), StandardCharsets.UTF_8);
+    }
+
+    private void writeFullSymbols() throws IOException {
+        List<String> names = new ArrayList<>(values.keySet());
+        Collections.sort(names);
+        StringBuilder builder = new StringBuilder();
+        for (String name : names) {
+            builder.append("int string ").append(name).append(' ').append(values.get(name))
+                    .append('\n');
+        }
+        FileUtils.writeStringToFile(fullSymbolFile, builder.toString(), StandardCharsets.UTF_8);
+    }
+
+    private void setOldTimestamps() {
+        for (File file : FileUtils.listFiles(outputDir, null, true)) {
+            assertTrue(file.setLastModified(OLD_TIMESTAMP));
+        }
+    }
+
+    private void assertOldTimestamps() {
+        for (File file : FileUtils.listFiles(outputDir, null, true)) {
+            assertEquals(file.getPath(), OLD_TIMESTAMP, file.lastModified());
+        }
+    }
+
+    private File getOutputFile(String library) {
+        return new File(outputDir, getPackageName(library).replace('.', '/') + "/R.java");
+    }
+
+    private static String getPackageName(String library) {
+        return "com.example." + library;
+    }
+
+    private static String toValue(int id) {
+        return String.format("0x%08x", 0x7f000000 + id);
+    }
+
+    private static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,230 @@
+package com.tyron.builder.compiler.classpath;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.incremental.classpath.ClasspathSnapshots;
+import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.common.TestUtil;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ClasspathSnapshotsTest {
+
+    private static final String TASK = "task";
+
+    private static final String LIBRARY =
+            "package com.test;\n" +
+            "public class Library {\n" +
+            "    public int value() { return 1; }\n" +
+            "}\n";
+
+    private static final String KOTLIN_LIBRARY =
+            LIBRARY.replace("public class", "@kotlin.Metadata\npublic class");
+
+    private static final String KOTLIN_METADATA =
+            "package kotlin;\n" +
+            "public @interface Metadata {\n" +
+            "}\n";
+
+    private static final String MAIN =
+            "package com.test;\n" +
+            "public class Main {\n" +
+            "    public Object value() { return new Library().value(); }\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockAndroidModule mModule;
+    private File mJar;
+    private List<File> mClasspath;
+
+    @Before
+    public void setup() throws IOException {
+        File root = mFolder.newFolder("project");
+        mModule = new MockAndroidModule(new File(root, "app"), new MockFileManager(root));
+        mJar = new File(root, "libs/library.jar");
+        mClasspath = Collections.singletonList(mJar);
+
+        writeJar(LIBRARY, "resource");
+        ClasspathSnapshots snapshots = ClasspathSnapshots.get(mModule);
+        assertThat(snapshots.getChanges(TASK, mClasspath).getAdded())
+                .containsExactly(mJar);
+        snapshots.update(TASK, mClasspath);
+    }
+
+    @Test
+    public void testUnchanged() throws IOException {
+        writeJar(LIBRARY, "resource");
+
+        ClasspathSnapshots.Changes changes = ClasspathSnapshots.get(mModule)
+                .getChanges(TASK, mClasspath);
+        assertThat(changes.hasAbiChanges()).isFalse();
+        assertThat(changes.getClassesChanged()).isEmpty();
+    }
+
+    @Test
+    public void testMethodBodyChanged() throws IOException {
+        writeJar(LIBRARY.replace("return 1", "return 2"), "resource");
+
+        ClasspathSnapshots.Changes changes = ClasspathSnapshots.get(mModule)
+                .getChanges(TASK, mClasspath);
+        assertThat(changes.hasAbiChanges()).isFalse();
+        assertThat(changes.getClassesChanged()).containsExactly(mJar);
+    }
+
+    @Test
+    public void testSignatureChanged() throws IOException {
+        writeJar(LIBRARY.replace("public int value() { return 1; }",
+                "public long value() { return 1; }"), "resource");
+
+        ClasspathSnapshots.Changes changes = ClasspathSnapshots.get(mModule)
+                .getChanges(TASK, mClasspath);
+        assertThat(changes.hasAbiChanges()).isTrue();
+        assertThat(changes.getAbiChanged()).containsExactly(mJar);
+        assertThat(changes.getClassesChanged()).containsExactly(mJar);
+    }
+
+    @Test
+    public void testResourceChanged() throws IOException {
+        writeJar(LIBRARY, "another resource");
+
+        ClasspathSnapshots.Changes changes = ClasspathSnapshots.get(mModule)
+                .getChanges(TASK, mClasspath);
+        assertThat(changes.hasAbiChanges()).isFalse();
+        assertThat(changes.getClassesChanged()).isEmpty();
+    }
+
+    @Test
+    public void testKotlinMethodBodyChanged() throws IOException {
+        writeJar(KOTLIN_LIBRARY, "resource");
+        ClasspathSnapshots snapshots = ClasspathSnapshots.get(mModule);
+        snapshots.update(TASK, mClasspath);
+        writeJar(KOTLIN_LIBRARY.replace("return 1", "return 2"), "resource");
+
+        // the body of an inline function is part of the ABI of a Kotlin class
+        ClasspathSnapshots.Changes changes = snapshots.getChanges(TASK, mClasspath);
+        assertThat(changes.hasAbiChanges()).isTrue();
+        assertThat(changes.getAbiChanged()).containsExactly(mJar);
+    }
+
+    @Test
+    public void testRemoved() throws IOException {
+        FileUtils.delete(mJar);
+
+        ClasspathSnapshots.Changes changes = ClasspathSnapshots.get(mModule)
+                .getChanges(TASK, Collections.emptyList());
+        assertThat(changes.hasAbiChanges()).isTrue();
+        assertThat(changes.getRemoved()).containsExactly(mJar);
+    }
+
+    @Test
+    public void testJavaTaskSkipsMethodBodyChange() throws Exception {
+        assertThat(getFilesToCompileAfter(LIBRARY.replace("return 1", "return 2"), "resource"))
+                .isEmpty();
+    }
+
+    @Test
+    public void testJavaTaskRecompilesSignatureChange() throws Exception {
+        assertThat(getFilesToCompileAfter(LIBRARY.replace("public int value() { return 1; }",
+                "public long value() { return 1; }"), "resource"))
+                .containsExactly(getMainFile());
+    }
+
+    @Test
+    public void testJavaTaskSkipsResourceChange() throws Exception {
+        assertThat(getFilesToCompileAfter(LIBRARY, "another resource")).isEmpty();
+    }
+
+    /**
+     * Compiles a java file that uses the library, then changes the library and prepares the
+     * java task again.
+     *
+     * @return the java files the task compiles after the library changed
+     */
+    private List<File> getFilesToCompileAfter(String source, String resource) throws Exception {
+        File resourcesDirectory = TestUtil.getResourcesDirectory();
+        mModule.setLambdaStubsJarFile(new File(resourcesDirectory,
+                "bootstraps/core-lambda-stubs.jar"));
+        mModule.setBootstrapFile(new File(resourcesDirectory, "bootstraps/rt.jar"));
+        mModule.addLibrary(mJar);
+        File main = getMainFile();
+        FileUtils.writeStringToFile(main, MAIN, StandardCharsets.UTF_8);
+        mModule.addJavaFile(main);
+
+        IncrementalJavaTask task = new IncrementalJavaTask(null, mModule, ILogger.STD_OUT);
+        task.prepare(BuildType.RELEASE);
+        assertThat(task.getCompiledFiles()).containsExactly(main);
+        task.run();
+
+        // nothing changed
+        task = new IncrementalJavaTask(null, mModule, ILogger.STD_OUT);
+        task.prepare(BuildType.RELEASE);
+        assertThat(task.getCompiledFiles()).isEmpty();
+        task.run();
+
+        writeJar(source, resource);
+        task = new IncrementalJavaTask(null, mModule, ILogger.STD_OUT);
+        task.prepare(BuildType.RELEASE);
+        return task.getCompiledFiles();
+    }
+
+    private File getMainFile() {
+        return new File(mModule.getJavaDirectory(), "com/test/Main.java");
+    }
+
+    /**
+     * Writes a jar with the compiled source and a resource, the jar gets a new modification
+     * time even if its content did not change.
+     */
+    private void writeJar(String source, String resource) throws IOException {
+        File sourceDir = mFolder.newFolder();
+        File classesDir = mFolder.newFolder();
+        File sourceFile = new File(sourceDir, "com/test/Library.java");
+        FileUtils.writeStringToFile(sourceFile, source, StandardCharsets.UTF_8);
+        // only the library class is added to the jar
+        File metadataFile = new File(sourceDir, "kotlin/Metadata.java");
+        FileUtils.writeStringToFile(metadataFile, KOTLIN_METADATA, StandardCharsets.UTF_8);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertThat(compiler.run(null, null, null, "-d", classesDir.getAbsolutePath(),
+                sourceFile.getAbsolutePath(), metadataFile.getAbsolutePath())).isEqualTo(0);
+
+        long lastModified = mJar.exists() ? mJar.lastModified() : 0;
+        FileUtils.forceMkdirParent(mJar);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(mJar))) {
+            out.putNextEntry(new JarEntry("com/test/Library.class"));
+            out.write(FileUtils.readFileToByteArray(new File(classesDir, "com/test/Library.class")));
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("com/test/resource.txt"));
+            out.write(resource.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        assertThat(mJar.setLastModified(lastModified + 2000)).isTrue();
+    }
+}
@@ -0,0 +1,95 @@
+package com.tyron.builder.compiler.kotlin;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.hash.Hashing;
+import com.tyron.builder.compiler.AndroidAppBuilderTestBase;
+import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
+import com.tyron.builder.compiler.incremental.kotlin.KotlinCompileSession;
+import com.tyron.builder.log.ILogger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KotlinCompileSessionTest extends AndroidAppBuilderTestBase {
+
+    @Test
+    public void testWarmBuildMatchesColdBuild() throws Exception {
+        mProject.addKotlinFile(new File(mProject.getJavaDirectory(),
+                "com/tyron/test/KotlinClass.kt"));
+        mProject.addJavaFile(new File(mProject.getJavaDirectory(),
+                "com/tyron/test/Test.java"));
+
+        KotlinCompileSession session = KotlinCompileSession.getInstance();
+        session.close();
+
+        compile();
+        Map<String, String> expected = getOutputs();
+        assertThat(expected).isNotEmpty();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(session.isWarm()).isTrue();
+            compile();
+            assertThat(getOutputs()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testKeepAliveIsOnlySetWhileCompiling() throws Exception {
+        mProject.addKotlinFile(new File(mProject.getJavaDirectory(),
+                "com/tyron/test/KotlinClass.kt"));
+
+        KotlinCompileSession session = KotlinCompileSession.getInstance();
+        session.close();
+        System.clearProperty(KotlinCompileSession.KEEPALIVE_PROPERTY);
+
+        compile();
+        assertThat(System.getProperty(KotlinCompileSession.KEEPALIVE_PROPERTY)).isNull();
+        // the environment created by the compilation is still kept alive
+        assertThat(session.isWarm()).isTrue();
+
+        System.setProperty(KotlinCompileSession.KEEPALIVE_PROPERTY, "false");
+        try {
+            compile();
+            assertThat(System.getProperty(KotlinCompileSession.KEEPALIVE_PROPERTY))
+                    .isEqualTo("false");
+        } finally {
+            System.clearProperty(KotlinCompileSession.KEEPALIVE_PROPERTY);
+        }
+    }
+
+    /**
+     * Compiles every file of the module, the outputs and the incremental caches of the previous
+     * compilation are deleted so only the state kept by the session is reused.
+     */
+    private void compile() throws Exception {
+        FileUtils.deleteDirectory(new File(mProject.getBuildDirectory(), "bin/kotlin"));
+        FileUtils.deleteDirectory(new File(mProject.getBuildDirectory(), "intermediate/kotlin"));
+
+        IncrementalKotlinCompiler compiler =
+                new IncrementalKotlinCompiler(null, mProject, ILogger.STD_OUT);
+        compiler.prepare(BuildType.DEBUG);
+        compiler.run();
+    }
+
+    private Map<String, String> getOutputs() throws IOException {
+        File classes = new File(mProject.getBuildDirectory(), "bin/kotlin/classes");
+        Map<String, String> outputs = new TreeMap<>();
+        for (File file : FileUtils.listFiles(classes, new String[]{"class"}, true)) {
+            outputs.put(classes.toPath().relativize(file.toPath()).toString(),
+                    Hashing.sha256().hashBytes(FileUtils.readFileToByteArray(file)).toString());
+        }
+        return outputs;
+    }
+}
@@ -0,0 +1,192 @@
+package com.tyron.builder.compiler.manifest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.common.util.Cache;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ManifestMergeTaskTest {
+
+    private static final String SKIPPED = "Manifest inputs are unchanged, skipping merge.";
+
+    /**
+     * An old timestamp set on the output, so a rewritten file can be detected even if the test
+     * runs faster than the resolution of the file system timestamps.
+     */
+    private static final long OLD_TIMESTAMP = 1_000_000_000L;
+
+    private static final String MAIN_MANIFEST =
+            "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    package=\"com.test\">\n" +
+            "    <application android:label=\"Test\">\n" +
+            "        <activity android:name=\".MainActivity\"/>\n" +
+            "    </application>\n" +
+            "</manifest>\n";
+
+    private static final String LIBRARY_MANIFEST =
+            "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    package=\"com.library\">\n" +
+            "    <application>\n" +
+            "        <service android:name=\"com.library.LibraryService\"/>\n" +
+            "    </application>\n" +
+            "</manifest>\n";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final List<String> mMessages = new ArrayList<>();
+    private final ILogger mLogger = new ILogger() {
+        @Override
+        public void info(DiagnosticWrapper wrapper) {
+            mMessages.add(String.valueOf(wrapper.getMessageCharSequence()));
+        }
+
+        @Override
+        public void debug(DiagnosticWrapper wrapper) {
+            mMessages.add(String.valueOf(wrapper.getMessageCharSequence()));
+        }
+
+        @Override
+        public void warning(DiagnosticWrapper wrapper) {
+            mMessages.add(String.valueOf(wrapper.getMessageCharSequence()));
+        }
+
+        @Override
+        public void error(DiagnosticWrapper wrapper) {
+            mMessages.add(String.valueOf(wrapper.getMessageCharSequence()));
+        }
+    };
+
+    private MockAndroidModule mModule;
+    private File mLibraryManifest;
+    private File mOutput;
+
+    @Before
+    public void setup() throws IOException {
+        File root = mFolder.newFolder("project");
+        mModule = new MockAndroidModule(new File(root, "app"), new MockFileManager(root));
+        mModule.setPackageName("com.test");
+        write(mModule.getManifestFile(), MAIN_MANIFEST);
+
+        File library = new File(root, "libs/library/classes.jar");
+        mLibraryManifest = new File(library.getParentFile(), "AndroidManifest.xml");
+        write(mLibraryManifest, LIBRARY_MANIFEST);
+        mModule.addLibrary(library);
+
+        mOutput = new File(mModule.getBuildDirectory(), "bin/AndroidManifest.xml");
+    }
+
+    @Test
+    public void testUnchangedInputsSkipTheMerge() throws Exception {
+        merge();
+        assertFalse(mMessages.contains(SKIPPED));
+        String merged = read(mOutput);
+        assertTrue(merged, merged.contains("com.library.LibraryService"));
+        assertTrue(merged, merged.contains("com.test.MainActivity"));
+
+        mOutput.setLastModified(OLD_TIMESTAMP);
+        merge();
+        assertTrue(mMessages.contains(SKIPPED));
+        assertEquals(OLD_TIMESTAMP, mOutput.lastModified());
+        assertEquals(merged, read(mOutput));
+    }
+
+    @Test
+    public void testSameOutputIsNotWrittenAgain() throws Exception {
+        merge();
+        String merged = read(mOutput);
+        mOutput.setLastModified(OLD_TIMESTAMP);
+
+        // a different input which merges to the same output
+        write(mLibraryManifest, LIBRARY_MANIFEST.replace("<service android:name",
+                "<service\n            android:name"));
+        merge();
+
+        assertFalse(mMessages.contains(SKIPPED));
+        assertEquals(OLD_TIMESTAMP, mOutput.lastModified());
+        assertEquals(merged, read(mOutput));
+    }
+
+    @Test
+    public void testChangedOutputIsWritten() throws Exception {
+        merge();
+        mOutput.setLastModified(OLD_TIMESTAMP);
+
+        write(mModule.getManifestFile(), MAIN_MANIFEST.replace("MainActivity", "OtherActivity"));
+        merge();
+
+        assertFalse(mMessages.contains(SKIPPED));
+        assertNotEquals(OLD_TIMESTAMP, mOutput.lastModified());
+        assertTrue(read(mOutput).contains("com.test.OtherActivity"));
+    }
+
+    @Test
+    public void testUnchangedLibraryManifestIsParsedOnce() throws Exception {
+        merge();
+        Document parsed = getParsedDocument(mLibraryManifest);
+
+        write(mModule.getManifestFile(), MAIN_MANIFEST.replace("MainActivity", "OtherActivity"));
+        merge();
+
+        assertSame(parsed, getParsedDocument(mLibraryManifest));
+        // the merger modified a copy, the cached document is still the library manifest
+        assertEquals("com.library", parsed.getDocumentElement().getAttribute("package"));
+        assertTrue(read(mOutput).contains("com.library.LibraryService"));
+    }
+
+    private void merge() throws Exception {
+        mMessages.clear();
+        ManifestMergeTask task = new ManifestMergeTask(null, mModule, mLogger);
+        task.prepare(BuildType.RELEASE);
+        task.run();
+    }
+
+    private Document getParsedDocument(File manifest) throws IOException {
+        Cache<HashCode, Document> documents =
+                mModule.getCache(ManifestMergeTask.PARSED_MANIFEST_CACHE_KEY, new Cache<>());
+        HashCode hash = Hashing.sha256().hashBytes(Files.readAllBytes(manifest.toPath()));
+        return documents.get(manifest.toPath(), hash);
+    }
+
+    /**
+     * Writes the file with a modification time after the creation of any cache entry, so the
+     * caches see the change.
+     */
+    private static void write(File file, String contents) throws IOException {
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        file.setLastModified(System.currentTimeMillis() + 10_000);
+    }
+
+    private static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,369 @@
+package com.tyron.xml.completion.repository;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Table;
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.xml.completion.repository.api.AttrResourceValue;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+import com.tyron.xml.completion.repository.api.StyleItemResourceValue;
+import com.tyron.xml.completion.repository.api.StyleResourceValue;
+import com.tyron.xml.completion.repository.api.StyleableResourceValue;
+import com.tyron.xml.completion.repository.parser.ResourceParser;
+import com.tyron.xml.completion.repository.parser.ValuesXmlParser;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ResourceFileIndexTest {
+
+    private static final int STRING_COUNT = 5000;
+    private static final int STYLE_COUNT = 500;
+    private static final int ATTR_COUNT = 500;
+    private static final int WARM_UP_RUNS = 2;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mResDir;
+    private File mValuesFile;
+    private File mLayoutFile;
+    private String mValues;
+    private SimpleResourceRepository mRepository;
+
+    @Before
+    public void setup() throws IOException {
+        mResDir = mFolder.newFolder("res");
+        mValuesFile = new File(mResDir, "values/values.xml");
+        mLayoutFile = new File(mResDir, "layout/activity_main.xml");
+        mValues = createValues();
+        FileUtils.writeStringToFile(mValuesFile, mValues, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(mResDir, "values-night/colors.xml"),
+                "<resources>\n" +
+                "    <color name=\"color_0\">#000000</color>\n" +
+                "</resources>\n", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(mLayoutFile, createLayout("first"), StandardCharsets.UTF_8);
+
+        mRepository = new SimpleResourceRepository(mResDir, ResourceNamespace.RES_AUTO);
+        mRepository.initialize();
+        assertThat(mRepository.mTable.get(ResourceNamespace.RES_AUTO, ResourceType.STRING)
+                           .size()).isEqualTo(STRING_COUNT);
+    }
+
+    @Test
+    public void testUnchangedFile() throws IOException {
+        Set<ResourceItem> items = getItems();
+        update(mValuesFile, mValues);
+        assertThat(getItems()).containsExactlyElementsIn(items);
+    }
+
+    @Test
+    public void testChangedElement() throws IOException {
+        Set<ResourceItem> before = getItems();
+        update(mValuesFile, mValues.replace(">String 42<", ">Changed<"));
+        assertSameAsParsed();
+
+        // only the item of the changed element is replaced
+        Set<ResourceItem> after = getItems();
+        Set<ResourceItem> kept = newIdentitySet(after);
+        kept.retainAll(before);
+        assertThat(kept).hasSize(before.size() - 1);
+        assertThat(after).hasSize(before.size());
+        assertThat(mRepository.getResources(ResourceNamespace.RES_AUTO, ResourceType.STRING,
+                "string_42").get(0).getResourceValue().getValue()).isEqualTo("Changed");
+    }
+
+    @Test
+    public void testEdits() throws IOException {
+        List<String> edits = createEdits(mValues);
+
+        ResourceTable previousTable = new ResourceTable();
+        List<ResourceItem> previousItems = new ArrayList<>();
+        previousUpdate(previousTable, previousItems, mValues);
+
+        long total = 0;
+        long previousTotal = 0;
+        for (int run = 0; run < WARM_UP_RUNS + 1; run++) {
+            for (String edit : edits) {
+                FileUtils.writeStringToFile(mValuesFile, edit, StandardCharsets.UTF_8);
+                long start = System.nanoTime();
+                mRepository.updateFile(mValuesFile, edit);
+                long time = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                previousUpdate(previousTable, previousItems, edit);
+                long previousTime = System.nanoTime() - start;
+
+                if (run == WARM_UP_RUNS) {
+                    total += time;
+                    previousTotal += previousTime;
+                    assertSameAsParsed();
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        new SimpleResourceRepository(mResDir, ResourceNamespace.RES_AUTO).initialize();
+        long parse = System.nanoTime() - start;
+        System.out.println(edits.size() + " edits: " + total / edits.size() / 1_000_000
+                + " ms per edit, previous parse and rebuild: "
+                + previousTotal / edits.size() / 1_000_000 + " ms per edit, full parse: "
+                + parse / 1_000_000 + " ms");
+    }
+
+    /**
+     * The values of malformed files must be the same as the values of the lemminx document that
+     * they were parsed from before.
+     */
+    @Test
+    public void testMalformedValuesAreParsedLikeTheDocument() throws IOException {
+        List<String> fixtures = new ArrayList<>(createEdits(mValues));
+        fixtures.add("<resources>\n    <string name=\"a\">A</string>\n");
+        fixtures.add("<resources>\n    <string name=\"a\">A\n    <string name=\"b\">B</string>\n"
+                + "</resources>\n");
+        fixtures.add("<resources>\n    <string name=\"a>A</string>\n"
+                + "    <string name=\"b\">B</string>\n</resources>\n");
+        fixtures.add("<resources>\n    <string name=\"a\">A</color>\n"
+                + "    <color name=\"b\">#fff</color>\n</resources>\n");
+        fixtures.add("<resources>\n    <string name=\"a\">A</string>\n    <\n"
+                + "    <bool name=\"b\">true</bool>\n</resources>\n");
+        fixtures.add("<resources>\n    <string name=\"a\"/>\n    <integer name=\"b\">1</integer\n"
+                + "    <integer name=\"c\">2</integer>\n</resources>\n");
+        fixtures.add("<resources>\n    <string name=\"a\"><![CDATA[A]]></string>\n"
+                + "    <string name=\"b\">B<b>bold</b></string>\n"
+                + "    <string name=\"c\"><!-- comment -->C</string>\n</resources>\n");
+        fixtures.add("<resources>\n    <style name=\"A\" parent=\"B\">\n"
+                + "        <item name=\"a\">1</item>\n        <item name=\"b\">\n"
+                + "    </style>\n    <style name=\"C\">\n        <item name=\"c\">3</item>\n"
+                + "</resources>\n");
+        fixtures.add("<resources>\n    <attr name=\"a\">\n        <!-- first -->\n"
+                + "        <flag name=\"one\" value=\"1\"/>\n        <flag name=\"two\" value=\"2\n"
+                + "    </attr>\n    <declare-styleable name=\"S\">\n        <attr name=\"a\"/>\n"
+                + "        <attr name=\"b\" format=\"string\"\n</resources>\n");
+        fixtures.add("text <resources>\n    <id name=\"a\"/>\n</resources>\n<resources>\n"
+                + "    <id name=\"b\"/>\n</resources>\n");
+        fixtures.add("<?xml version=\"1.0\"?>\n<!-- license -->\n<resources xmlns:tools=\"t\">\n"
+                + "    <public type=\"string\" name=\"a\"/>\n    <public type=\"unknown\" name=\"b\"/>\n"
+                + "    <item type=\"id\" name=\"c\"/>\n</resources>");
+        fixtures.add("<resources");
+        fixtures.add("<resources>\n    <string name='a'>A</string>\n    <string name=a>B</string>\n"
+                + "</resources>\n");
+
+        ResourceParser parser = new ValuesXmlParser();
+        ResourceParser previousParser = new PreviousValuesXmlParser();
+        for (String fixture : fixtures) {
+            assertWithMessage(fixture)
+                    .that(describe(parser.parse(mValuesFile, fixture, ResourceNamespace.RES_AUTO,
+                            null)))
+                    .isEqualTo(describe(previousParser.parse(mValuesFile, fixture,
+                            ResourceNamespace.RES_AUTO, null)));
+        }
+    }
+
+    @Test
+    public void testLayoutFile() throws IOException {
+        update(mLayoutFile, createLayout("second"));
+        assertSameAsParsed();
+        assertThat(mRepository.mTable.get(ResourceNamespace.RES_AUTO, ResourceType.ID)
+                           .containsKey("first")).isFalse();
+    }
+
+    @Test
+    public void testRemovedFile() throws IOException {
+        update(mValuesFile, null);
+        assertThat(mRepository.mTable.get(ResourceNamespace.RES_AUTO, ResourceType.STRING))
+                .isNull();
+        assertThat(mRepository.mFileItems.get(mValuesFile)).isEmpty();
+    }
+
+    /**
+     * Updates the items of the values file the way the repository did before, all of the items
+     * of the file are removed and the file is parsed into a lemminx document again.
+     */
+    private void previousUpdate(ResourceTable table, List<ResourceItem> fileItems,
+                                String contents) throws IOException {
+        fileItems.forEach(table::remove);
+        fileItems.clear();
+        for (ResourceValue value : new PreviousValuesXmlParser().parse(mValuesFile, contents,
+                ResourceNamespace.RES_AUTO, null)) {
+            SimpleResourceItem item = new SimpleResourceItem(value, "values");
+            table.getOrPutEmpty(value.getNamespace(), value.getResourceType())
+                    .put(value.getName(), item);
+            fileItems.add(item);
+        }
+    }
+
+    private void update(File file, String contents) throws IOException {
+        if (contents == null) {
+            FileUtils.delete(file);
+        } else {
+            FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        }
+        mRepository.updateFile(file, contents);
+    }
+
+    /**
+     * Asserts that the repository has the same resources as a repository that parsed the files
+     * from the start.
+     */
+    private void assertSameAsParsed() throws IOException {
+        SimpleResourceRepository parsed =
+                new SimpleResourceRepository(mResDir, ResourceNamespace.RES_AUTO);
+        parsed.initialize();
+        assertThat(describe(mRepository)).isEqualTo(describe(parsed));
+
+        Set<ResourceItem> fileItems = newIdentitySet(mRepository.mFileItems.values());
+        assertThat(fileItems).containsExactlyElementsIn(getItems());
+    }
+
+    private Set<ResourceItem> getItems() {
+        Set<ResourceItem> items = newIdentitySet(Collections.emptyList());
+        for (ListMultimap<String, ResourceItem> value : mRepository.mTable.values()) {
+            items.addAll(value.values());
+        }
+        return items;
+    }
+
+    private static Set<ResourceItem> newIdentitySet(Iterable<ResourceItem> items) {
+        Set<ResourceItem> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        items.forEach(set::add);
+        return set;
+    }
+
+    private static Map<String, List<String>> describe(SimpleResourceRepository repository) {
+        Map<String, List<String>> result = new TreeMap<>();
+        for (Table.Cell<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> cell :
+                repository.mTable.cellSet()) {
+            for (Map.Entry<String, ResourceItem> entry : cell.getValue().entries()) {
+                String key = cell.getRowKey() + " " + cell.getColumnKey() + " " + entry.getKey();
+                result.computeIfAbsent(key, it -> new ArrayList<>())
+                        .add(describe(entry.getValue().getResourceValue()));
+            }
+        }
+        // items with the same name from other files are not in a particular order
+        result.values().forEach(Collections::sort);
+        return result;
+    }
+
+    private static List<String> describe(List<ResourceValue> values) {
+        List<String> result = new ArrayList<>(values.size());
+        for (ResourceValue value : values) {
+            result.add(describe(value));
+        }
+        return result;
+    }
+
+    private static String describe(ResourceValue value) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(value.getClass().getSimpleName())
+                .append(' ').append(value.getName())
+                .append('=').append(value.getValue());
+        if (value instanceof StyleResourceValue) {
+            StyleResourceValue style = (StyleResourceValue) value;
+            builder.append(" parent=").append(style.getParentStyleName());
+            for (StyleItemResourceValue item : style.getDefinedItems()) {
+                builder.append(" [").append(item.getAttrName())
+                        .append('=').append(item.getValue()).append(']');
+            }
+        }
+        if (value instanceof AttrResourceValue) {
+            AttrResourceValue attr = (AttrResourceValue) value;
+            builder.append(" formats=").append(new TreeSet<>(attr.getFormats()))
+                    .append(" values=").append(attr.getAttributeValues())
+                    .append(" description=").append(attr.getDescription());
+        }
+        if (value instanceof StyleableResourceValue) {
+            for (AttrResourceValue attr : ((StyleableResourceValue) value).getAllAttributes()) {
+                builder.append(" {").append(describe(attr)).append('}');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static List<String> createEdits(String values) {
+        List<String> edits = new ArrayList<>();
+        edits.add(values.replace(">String 42<", ">Changed<"));
+        edits.add(edits.get(0).replace("</resources>",
+                "    <style name=\"Added\" parent=\"Style_1\">\n" +
+                "        <item name=\"attr_1\">2</item>\n" +
+                "    </style>\n" +
+                "</resources>"));
+        edits.add(edits.get(1).replace("    <string name=\"string_7\">String 7</string>\n", ""));
+        edits.add(edits.get(2).replace("<item name=\"attr_3\">3</item>",
+                "<item name=\"attr_3\">4</item>"));
+        // the same element twice gives two items
+        edits.add(edits.get(3).replace("    <string name=\"string_9\">String 9</string>\n",
+                "    <string name=\"string_9\">String 9</string>\n" +
+                "    <string name=\"string_9\">String 9</string>\n"));
+        // malformed while the file is being edited
+        edits.add(edits.get(4).substring(0, edits.get(4).indexOf("String 100<") + 3));
+        edits.add(edits.get(4).replace("<string name=\"string_11\">",
+                "<string name=\"string_11\"><"));
+        edits.add(edits.get(4).replace("<attr name=\"attr_5\" format=\"enum\">",
+                "<attr name=\"attr_5\" format=\"enum\"><!-- described -->"));
+        edits.add("");
+        edits.add(values);
+        return edits;
+    }
+
+    private static String createValues() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        builder.append("<resources>\n");
+        for (int i = 0; i < STRING_COUNT; i++) {
+            builder.append("    <string name=\"string_").append(i).append("\">String ")
+                    .append(i).append("</string>\n");
+        }
+        for (int i = 0; i < ATTR_COUNT; i++) {
+            builder.append("    <attr name=\"attr_").append(i).append("\" format=\"enum\">\n")
+                    .append("        <enum name=\"first\" value=\"0\"/>\n")
+                    .append("        <enum name=\"second\" value=\"").append(i).append("\"/>\n")
+                    .append("    </attr>\n");
+        }
+        for (int i = 0; i < STYLE_COUNT; i++) {
+            builder.append("    <style name=\"Style_").append(i).append("\">\n")
+                    .append("        <item name=\"attr_").append(i).append("\">")
+                    .append(i).append("</item>\n")
+                    .append("        <item name=\"android:textSize\">12sp</item>\n")
+                    .append("    </style>\n");
+        }
+        builder.append("    <declare-styleable name=\"View\">\n");
+        for (int i = 0; i < 10; i++) {
+            builder.append("        <attr name=\"attr_").append(i).append("\"/>\n");
+        }
+        builder.append("    </declare-styleable>\n");
+        builder.append("    <color name=\"color_0\">#ffffff</color>\n");
+        builder.append("</resources>\n");
+        return builder.toString();
+    }
+
+    private static String createLayout(String id) {
+        return "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+               "    android:id=\"@+id/" + id + "\"\n" +
+               "    android:layout_width=\"match_parent\"\n" +
+               "    android:layout_height=\"match_parent\"/>\n";
+    }
+}
@@ -0,0 +1,102 @@
+package com.tyron.builder.configurationcache;
+
+import com.tyron.builder.api.Task;
+import com.tyron.builder.api.execution.TaskExecutionGraph;
+import com.tyron.builder.api.internal.GradleInternal;
+import com.tyron.builder.api.logging.Logger;
+import com.tyron.builder.api.logging.Logging;
+import com.tyron.builder.configurationcache.fingerprint.ConfigurationCacheFingerprint;
+import com.tyron.builder.configurationcache.fingerprint.ConfigurationCacheFingerprintController;
+import com.tyron.builder.internal.service.scopes.Scopes;
+import com.tyron.builder.internal.service.scopes.ServiceScope;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Decides whether the cached configuration of the root build can be reused, and stores the
+ * configuration of the root build once its task graph has been calculated.
+ *
+ * Every project is configured even when an entry is reused. A project that is not part of the
+ * task graph can still change the tasks of the other projects, depending on inputs such as
+ * files probed by its script that cannot be observed, so skipping it would not be safe. When
+ * the calculated task graph does not match the cached one, the entry is replaced with the
+ * configuration of the current build.
+ */
+@ServiceScope(Scopes.BuildTree.class)
+public class BuildTreeConfigurationCache {
+
+    private static final Logger LOGGER = Logging.getLogger(BuildTreeConfigurationCache.class);
+
+    private final ConfigurationCacheKey key;
+    private final ConfigurationCacheRepository repository;
+    private final ConfigurationCacheFingerprintController fingerprintController;
+
+    private boolean checked;
+    @Nullable
+    private ConfigurationCacheEntry reusableEntry;
+
+    public BuildTreeConfigurationCache(ConfigurationCacheKey key,
+                                       ConfigurationCacheRepository repository,
+                                       ConfigurationCacheFingerprintController fingerprintController) {
+        this.key = key;
+        this.repository = repository;
+        this.fingerprintController = fingerprintController;
+    }
+
+    public ConfigurationCacheFingerprintController getFingerprintController() {
+        return fingerprintController;
+    }
+
+    /**
+     * @return the cached entry if none of its inputs have changed, null otherwise
+     */
+    @Nullable
+    public synchronized ConfigurationCacheEntry getReusableEntry() {
+        if (checked) {
+            return reusableEntry;
+        }
+        checked = true;
+
+        ConfigurationCacheEntry entry = repository.load(key);
+        if (entry == null) {
+            LOGGER.lifecycle("Calculating task graph as no configuration cache is available for the requested tasks.");
+            return null;
+        }
+        String reason = entry.getFingerprint().checkForChanges();
+        if (reason != null) {
+            LOGGER.lifecycle("Calculating task graph as configuration cache cannot be reused because {}.", reason);
+            return null;
+        }
+        LOGGER.lifecycle("Reusing configuration cache.");
+        reusableEntry = entry;
+        return entry;
+    }
+
+    /**
+     * Called once the task graph of the root build is ready.
+     */
+    public void taskGraphReady(GradleInternal gradle, TaskExecutionGraph graph) {
+        List<String> taskPaths = new ArrayList<>();
+        for (Task task : graph.getAllTasks()) {
+            taskPaths.add(task.getPath());
+        }
+
+        ConfigurationCacheEntry reused = getReusableEntry();
+        if (reused != null) {
+            if (new HashSet<>(reused.getTaskPaths()).equals(new HashSet<>(taskPaths))) {
+                return;
+            }
+            // an input that is not tracked has changed, every project has been configured so
+            // the current configuration replaces the entry
+            LOGGER.lifecycle("Discarding configuration cache entry as the task graph differs from the cached one.");
+            repository.invalidate(key);
+        }
+
+        ConfigurationCacheFingerprint fingerprint = fingerprintController.collectFingerprint(gradle);
+        repository.store(key, new ConfigurationCacheEntry(fingerprint, taskPaths));
+        LOGGER.lifecycle("Configuration cache entry stored.");
+    }
+}
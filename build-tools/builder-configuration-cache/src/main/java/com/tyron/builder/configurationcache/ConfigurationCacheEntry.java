@@ -0,0 +1,58 @@
+package com.tyron.builder.configurationcache;
+
+import com.google.common.collect.ImmutableList;
+import com.tyron.builder.configurationcache.fingerprint.ConfigurationCacheFingerprint;
+import com.tyron.builder.internal.serialize.BaseSerializerFactory;
+import com.tyron.builder.internal.serialize.Decoder;
+import com.tyron.builder.internal.serialize.Encoder;
+import com.tyron.builder.internal.serialize.ListSerializer;
+import com.tyron.builder.internal.serialize.Serializer;
+
+import java.util.List;
+
+/**
+ * The calculated work graph of a build, stored as the paths of its tasks, together with the
+ * fingerprint of the configuration inputs.
+ */
+public class ConfigurationCacheEntry {
+
+    public static final Serializer<ConfigurationCacheEntry> SERIALIZER = new EntrySerializer();
+
+    private final ConfigurationCacheFingerprint fingerprint;
+    private final List<String> taskPaths;
+
+    public ConfigurationCacheEntry(ConfigurationCacheFingerprint fingerprint, List<String> taskPaths) {
+        this.fingerprint = fingerprint;
+        this.taskPaths = ImmutableList.copyOf(taskPaths);
+    }
+
+    public ConfigurationCacheFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the paths of the scheduled tasks in execution order
+     */
+    public List<String> getTaskPaths() {
+        return taskPaths;
+    }
+
+    private static class EntrySerializer implements Serializer<ConfigurationCacheEntry> {
+
+        private final Serializer<List<String>> pathsSerializer =
+                new ListSerializer<>(BaseSerializerFactory.STRING_SERIALIZER);
+
+        @Override
+        public ConfigurationCacheEntry read(Decoder decoder) throws Exception {
+            ConfigurationCacheFingerprint fingerprint = ConfigurationCacheFingerprint.SERIALIZER.read(decoder);
+            List<String> taskPaths = pathsSerializer.read(decoder);
+            return new ConfigurationCacheEntry(fingerprint, taskPaths);
+        }
+
+        @Override
+        public void write(Encoder encoder, ConfigurationCacheEntry value) throws Exception {
+            ConfigurationCacheFingerprint.SERIALIZER.write(encoder, value.fingerprint);
+            pathsSerializer.write(encoder, value.taskPaths);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.tyron.builder.configurationcache;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.tyron.builder.api.internal.StartParameterInternal;
+import com.tyron.builder.internal.buildtree.BuildActionModelRequirements;
+import com.tyron.builder.internal.service.scopes.Scopes;
+import com.tyron.builder.internal.service.scopes.ServiceScope;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Identifies the cached configuration that can be used for the requested build, builds which
+ * request different tasks or pass different properties use different entries.
+ */
+@ServiceScope(Scopes.BuildTree.class)
+public class ConfigurationCacheKey {
+
+    private final StartParameterInternal startParameter;
+    private String string;
+
+    public ConfigurationCacheKey(BuildActionModelRequirements requirements) {
+        this.startParameter = requirements.getStartParameter();
+    }
+
+    public synchronized String getString() {
+        if (string == null) {
+            string = computeKey();
+        }
+        return string;
+    }
+
+    @Override
+    public String toString() {
+        return getString();
+    }
+
+    private String computeKey() {
+        Hasher hasher = Hashing.md5().newHasher();
+        putFile(hasher, startParameter.getCurrentDir());
+        putFile(hasher, startParameter.getProjectDir());
+        putFile(hasher, startParameter.getSettingsFile());
+        putFile(hasher, startParameter.getBuildFile());
+        putStrings(hasher, startParameter.getTaskNames());
+        putStrings(hasher, new TreeSet<>(startParameter.getExcludedTaskNames()));
+        putMap(hasher, startParameter.getProjectProperties());
+        putMap(hasher, startParameter.getSystemPropertiesArgs());
+        hasher.putBoolean(startParameter.isOffline());
+        return hasher.hash().toString();
+    }
+
+    private static void putFile(Hasher hasher, File file) {
+        hasher.putString(file == null ? "" : file.getAbsolutePath(), StandardCharsets.UTF_8);
+    }
+
+    private static void putStrings(Hasher hasher, Collection<String> strings) {
+        hasher.putInt(strings.size());
+        for (String string : strings) {
+            hasher.putString(string, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void putMap(Hasher hasher, Map<String, String> map) {
+        hasher.putInt(map.size());
+        for (Map.Entry<String, String> entry : new TreeMap<>(map).entrySet()) {
+            hasher.putString(entry.getKey(), StandardCharsets.UTF_8);
+            hasher.putString(String.valueOf(entry.getValue()), StandardCharsets.UTF_8);
+        }
+    }
+}
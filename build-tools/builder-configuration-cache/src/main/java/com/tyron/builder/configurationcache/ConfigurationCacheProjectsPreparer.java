@@ -0,0 +1,34 @@
+package com.tyron.builder.configurationcache;
+
+import com.tyron.builder.api.internal.GradleInternal;
+import com.tyron.builder.api.internal.provider.ValueSourceProviderFactory;
+import com.tyron.builder.configuration.ProjectsPreparer;
+
+/**
+ * Stores the configuration of the root build once its task graph is ready.
+ */
+class ConfigurationCacheProjectsPreparer implements ProjectsPreparer {
+
+    private final ProjectsPreparer delegate;
+    private final BuildTreeConfigurationCache configurationCache;
+    private final ValueSourceProviderFactory valueSourceProviderFactory;
+
+    ConfigurationCacheProjectsPreparer(ProjectsPreparer delegate,
+                                       BuildTreeConfigurationCache configurationCache,
+                                       ValueSourceProviderFactory valueSourceProviderFactory) {
+        this.delegate = delegate;
+        this.configurationCache = configurationCache;
+        this.valueSourceProviderFactory = valueSourceProviderFactory;
+    }
+
+    @Override
+    public void prepareProjects(GradleInternal gradle) {
+        delegate.prepareProjects(gradle);
+
+        gradle.getTaskGraph().whenReady(graph -> {
+            // values read while executing tasks are not inputs of the configuration
+            configurationCache.getFingerprintController().stopCollectingInputs(valueSourceProviderFactory);
+            configurationCache.taskGraphReady(gradle, graph);
+        });
+    }
+}
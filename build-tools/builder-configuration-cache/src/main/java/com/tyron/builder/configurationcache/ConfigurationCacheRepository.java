@@ -0,0 +1,94 @@
+package com.tyron.builder.configurationcache;
+
+import com.tyron.builder.api.internal.StartParameterInternal;
+import com.tyron.builder.api.logging.Logger;
+import com.tyron.builder.api.logging.Logging;
+import com.tyron.builder.internal.buildtree.BuildActionModelRequirements;
+import com.tyron.builder.internal.serialize.InputStreamBackedDecoder;
+import com.tyron.builder.internal.serialize.OutputStreamBackedEncoder;
+import com.tyron.builder.internal.service.scopes.Scopes;
+import com.tyron.builder.internal.service.scopes.ServiceScope;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Stores the configuration cache entries in the project cache directory, one directory per
+ * {@link ConfigurationCacheKey}.
+ */
+@ServiceScope(Scopes.BuildTree.class)
+public class ConfigurationCacheRepository {
+
+    private static final Logger LOGGER = Logging.getLogger(ConfigurationCacheRepository.class);
+
+    /**
+     * Increment when the format of the entry changes, entries of other versions are ignored.
+     */
+    private static final int FORMAT_VERSION = 3;
+    private static final String ENTRY_FILE_NAME = "entry.bin";
+
+    private final File cacheDir;
+
+    public ConfigurationCacheRepository(BuildActionModelRequirements requirements) {
+        StartParameterInternal startParameter = requirements.getStartParameter();
+        File projectCacheDir = startParameter.getProjectCacheDir();
+        if (projectCacheDir == null) {
+            projectCacheDir = new File(startParameter.getCurrentDir(), ".gradle");
+        }
+        this.cacheDir = new File(projectCacheDir, "configuration-cache");
+    }
+
+    @Nullable
+    public ConfigurationCacheEntry load(ConfigurationCacheKey key) {
+        File entryFile = getEntryFile(key);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+        try (InputStreamBackedDecoder decoder = new InputStreamBackedDecoder(
+                new BufferedInputStream(new FileInputStream(entryFile)))) {
+            if (decoder.readSmallInt() != FORMAT_VERSION) {
+                return null;
+            }
+            return ConfigurationCacheEntry.SERIALIZER.read(decoder);
+        } catch (Exception e) {
+            LOGGER.info("Could not read configuration cache entry {}.", entryFile, e);
+            return null;
+        }
+    }
+
+    public void store(ConfigurationCacheKey key, ConfigurationCacheEntry entry) {
+        File entryFile = getEntryFile(key);
+        File tempFile = new File(entryFile.getParentFile(), ENTRY_FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(entryFile.getParentFile().toPath());
+            try (OutputStreamBackedEncoder encoder = new OutputStreamBackedEncoder(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                encoder.writeSmallInt(FORMAT_VERSION);
+                ConfigurationCacheEntry.SERIALIZER.write(encoder, entry);
+            }
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            // the build does not depend on the entry, the next build configures from scratch
+            LOGGER.warn("Could not store configuration cache entry {}.", entryFile, e);
+            tempFile.delete();
+        }
+    }
+
+    public void invalidate(ConfigurationCacheKey key) {
+        File entryFile = getEntryFile(key);
+        if (entryFile.exists() && !entryFile.delete()) {
+            LOGGER.warn("Could not delete configuration cache entry {}.", entryFile);
+        }
+    }
+
+    private File getEntryFile(ConfigurationCacheKey key) {
+        return new File(new File(cacheDir, key.getString()), ENTRY_FILE_NAME);
+    }
+}
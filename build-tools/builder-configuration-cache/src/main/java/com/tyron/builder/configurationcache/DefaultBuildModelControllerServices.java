@@ -22,7 +22,10 @@ import com.tyron.builder.api.internal.project.ProjectInternal;
 import com.tyron.builder.api.internal.project.ProjectRegistry;
 import com.tyron.builder.internal.service.scopes.BuildScopeServices;
 import com.tyron.builder.internal.service.scopes.ServiceRegistryFactory;
+import com.tyron.builder.api.internal.provider.ValueSourceProviderFactory;
 import com.tyron.builder.configuration.ProjectsPreparer;
+import com.tyron.builder.internal.buildtree.BuildModelParameters;
+import com.tyron.builder.internal.service.ServiceRegistry;
 import com.tyron.builder.configuration.project.BuildScriptProcessor;
 import com.tyron.builder.configuration.project.ConfigureActionsProjectEvaluator;
 import com.tyron.builder.configuration.project.LifecycleProjectEvaluator;
@@ -101,6 +104,10 @@ public class DefaultBuildModelControllerServices implements BuildModelController
                 StateTransitionControllerFactory factory
         ) {
             ProjectsPreparer projectsPreparer = gradle.getServices().get(ProjectsPreparer.class);
+            BuildModelParameters buildModelParameters = gradle.getServices().get(BuildModelParameters.class);
+            if (buildModelParameters.isConfigurationCache() && gradle.isRootBuild()) {
+                projectsPreparer = createConfigurationCacheProjectsPreparer(gradle, projectsPreparer);
+            }
             DefaultTaskSchedulingPreparer taskSchedulingPreparer = new DefaultTaskSchedulingPreparer(new ExcludedTaskFilteringProjectsPreparer(
                     gradle.getServices().get(TaskSelector.class)));
             SettingsPreparer settingsPreparer = gradle.getServices().get(SettingsPreparer.class);
@@ -114,6 +121,17 @@ public class DefaultBuildModelControllerServices implements BuildModelController
                     factory
             );
         }
+
+        private ProjectsPreparer createConfigurationCacheProjectsPreparer(GradleInternal gradle, ProjectsPreparer projectsPreparer) {
+            ServiceRegistry services = gradle.getServices();
+            BuildTreeConfigurationCache configurationCache = services.get(BuildTreeConfigurationCache.class);
+            ValueSourceProviderFactory valueSourceProviderFactory = services.get(ValueSourceProviderFactory.class);
+            configurationCache.getFingerprintController().startCollectingInputs(valueSourceProviderFactory);
+
+            // checked before any script runs, every project is configured either way
+            configurationCache.getReusableEntry();
+            return new ConfigurationCacheProjectsPreparer(projectsPreparer, configurationCache, valueSourceProviderFactory);
+        }
     }
 
     private static class VintageModelProvider {
@@ -3,6 +3,7 @@ package com.tyron.builder.configurationcache;
 import com.tyron.builder.api.BuildException;
 import com.tyron.builder.api.internal.BuildType;
 import com.tyron.builder.api.internal.StartParameterInternal;
+import com.tyron.builder.configurationcache.fingerprint.ConfigurationCacheFingerprintController;
 import com.tyron.builder.configurationcache.initialization.VintageInjectedClasspathInstrumentationStrategy;
 import com.tyron.builder.internal.service.ServiceRegistration;
 import com.tyron.builder.internal.buildtree.BuildActionModelRequirements;
@@ -23,10 +24,11 @@ public class DefaultBuildTreeControllerServices implements BuildTreeModelControl
         }
 
         Boolean isolatedProjects = startParameter.getIsolatedProjects().get();
+        boolean configurationCache = startParameter.getConfigurationCache().get() || isolatedProjects;
         return registration -> {
             registration.add(BuildType.class, BuildType.TASKS);
             BuildModelParameters buildModelParameters =
-                    new BuildModelParameters(false, false, false, true, false, false, false);
+                    new BuildModelParameters(false, configurationCache, false, true, false, false, false);
             registerServices(registration, buildModelParameters, new RunTasksRequirements(startParameter));
         };
     }
@@ -37,7 +39,10 @@ public class DefaultBuildTreeControllerServices implements BuildTreeModelControl
         registration.add(BuildModelParameters.class, modelParameters);
         registration.add(BuildActionModelRequirements.class, requirements);
         if (modelParameters.isConfigurationCache()) {
-
+            registration.add(ConfigurationCacheKey.class);
+            registration.add(ConfigurationCacheRepository.class);
+            registration.add(ConfigurationCacheFingerprintController.class);
+            registration.add(BuildTreeConfigurationCache.class);
         }
         registration.add(VintageInjectedClasspathInstrumentationStrategy.class);
         registration.add(VintageBuildTreeLifecycleControllerFactory.class);
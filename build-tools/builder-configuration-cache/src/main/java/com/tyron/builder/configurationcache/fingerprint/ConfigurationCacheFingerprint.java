@@ -0,0 +1,181 @@
+package com.tyron.builder.configurationcache.fingerprint;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.tyron.builder.internal.serialize.Decoder;
+import com.tyron.builder.internal.serialize.Encoder;
+import com.tyron.builder.internal.serialize.Serializer;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The inputs that were read while configuring the build, along with the values they had.
+ * The cached configuration can be reused only when every input still has the same value.
+ */
+public class ConfigurationCacheFingerprint {
+
+    public static final Serializer<ConfigurationCacheFingerprint> SERIALIZER = new FingerprintSerializer();
+
+    private static final String MISSING = "missing";
+    private static final String DIRECTORY = "directory";
+
+    private final List<Input> inputs;
+
+    public ConfigurationCacheFingerprint(List<Input> inputs) {
+        this.inputs = ImmutableList.copyOf(inputs);
+    }
+
+    public List<Input> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * @return a description of the first input that has changed, or null if none have changed
+     */
+    @Nullable
+    public String checkForChanges() {
+        for (Input input : inputs) {
+            String currentValue = input.currentValue();
+            if (!Objects.equals(input.getValue(), currentValue)) {
+                return input.describeChange();
+            }
+        }
+        return null;
+    }
+
+    public enum Kind {
+        FILE,
+        SYSTEM_PROPERTY,
+        ENVIRONMENT_VARIABLE
+    }
+
+    public static class Input {
+        private final Kind kind;
+        private final String name;
+        @Nullable
+        private final String value;
+
+        private Input(Kind kind, String name, @Nullable String value) {
+            this.kind = kind;
+            this.name = name;
+            this.value = value;
+        }
+
+        /**
+         * A file that was read or probed, a missing file or a directory is recorded as such.
+         */
+        public static Input file(File file) {
+            return new Input(Kind.FILE, file.getAbsolutePath(), fileState(file));
+        }
+
+        public static Input systemProperty(String name, @Nullable String value) {
+            return new Input(Kind.SYSTEM_PROPERTY, name, value);
+        }
+
+        public static Input environmentVariable(String name, @Nullable String value) {
+            return new Input(Kind.ENVIRONMENT_VARIABLE, name, value);
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Nullable
+        public String getValue() {
+            return value;
+        }
+
+        @Nullable
+        private String currentValue() {
+            switch (kind) {
+                case FILE:
+                    return fileState(new File(name));
+                case SYSTEM_PROPERTY:
+                    return System.getProperty(name);
+                case ENVIRONMENT_VARIABLE:
+                    return System.getenv(name);
+                default:
+                    throw new IllegalStateException("Unknown input kind " + kind);
+            }
+        }
+
+        private String describeChange() {
+            switch (kind) {
+                case FILE:
+                    return "file '" + name + "' has changed";
+                case SYSTEM_PROPERTY:
+                    return "system property '" + name + "' has changed";
+                default:
+                    return "environment variable '" + name + "' has changed";
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Input input = (Input) o;
+            return kind == input.kind && name.equals(input.name) && Objects.equals(value, input.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, name, value);
+        }
+    }
+
+    private static String fileState(File file) {
+        if (file.isDirectory()) {
+            return DIRECTORY;
+        }
+        if (!file.isFile()) {
+            return MISSING;
+        }
+        try {
+            return Files.asByteSource(file).hash(Hashing.md5()).toString();
+        } catch (IOException e) {
+            // cannot be read, treat it as changed on the next check
+            return MISSING + ":" + e.getMessage();
+        }
+    }
+
+    private static class FingerprintSerializer implements Serializer<ConfigurationCacheFingerprint> {
+
+        @Override
+        public ConfigurationCacheFingerprint read(Decoder decoder) throws Exception {
+            int size = decoder.readSmallInt();
+            ImmutableList.Builder<Input> inputs = ImmutableList.builderWithExpectedSize(size);
+            Kind[] kinds = Kind.values();
+            for (int i = 0; i < size; i++) {
+                Kind kind = kinds[decoder.readSmallInt()];
+                String name = decoder.readString();
+                String value = decoder.readNullableString();
+                inputs.add(new Input(kind, name, value));
+            }
+            return new ConfigurationCacheFingerprint(inputs.build());
+        }
+
+        @Override
+        public void write(Encoder encoder, ConfigurationCacheFingerprint value) throws Exception {
+            encoder.writeSmallInt(value.inputs.size());
+            for (Input input : value.inputs) {
+                encoder.writeSmallInt(input.kind.ordinal());
+                encoder.writeString(input.name);
+                encoder.writeNullableString(input.value);
+            }
+        }
+    }
+}
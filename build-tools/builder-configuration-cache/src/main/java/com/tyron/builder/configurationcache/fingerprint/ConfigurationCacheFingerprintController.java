@@ -0,0 +1,120 @@
+package com.tyron.builder.configurationcache.fingerprint;
+
+import com.tyron.builder.api.BuildProject;
+import com.tyron.builder.api.file.RegularFile;
+import com.tyron.builder.api.internal.GradleInternal;
+import com.tyron.builder.api.internal.StartParameterInternal;
+import com.tyron.builder.api.internal.provider.ValueSourceProviderFactory;
+import com.tyron.builder.api.internal.provider.sources.EnvironmentVariableValueSource;
+import com.tyron.builder.api.internal.provider.sources.FileContentValueSource;
+import com.tyron.builder.api.internal.provider.sources.SystemPropertyValueSource;
+import com.tyron.builder.api.provider.ValueSourceParameters;
+import com.tyron.builder.configurationcache.fingerprint.ConfigurationCacheFingerprint.Input;
+import com.tyron.builder.internal.service.scopes.Scopes;
+import com.tyron.builder.internal.service.scopes.ServiceScope;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the inputs of the build configuration. System properties, environment variables
+ * and files read through providers are recorded as they are obtained, the scripts and
+ * property files of the build are added when the fingerprint is collected.
+ *
+ * Only the values that were read are recorded, so that the IDE changing an unrelated system
+ * property does not invalidate the cache. Values that scripts read directly, such as with
+ * {@link System#getProperty(String)} or {@link File#exists()}, cannot be observed; every project
+ * is still configured and the cached task graph is compared with the calculated one.
+ */
+@ServiceScope(Scopes.BuildTree.class)
+public class ConfigurationCacheFingerprintController implements ValueSourceProviderFactory.Listener {
+
+    private static final String GRADLE_PROPERTIES = "gradle.properties";
+
+    private final Set<Input> inputs = new LinkedHashSet<>();
+
+    public void startCollectingInputs(ValueSourceProviderFactory valueSourceProviderFactory) {
+        valueSourceProviderFactory.addListener(this);
+    }
+
+    public void stopCollectingInputs(ValueSourceProviderFactory valueSourceProviderFactory) {
+        valueSourceProviderFactory.removeListener(this);
+    }
+
+    @Override
+    public <T, P extends ValueSourceParameters> void valueObtained(ObtainedValue<T, P> obtainedValue) {
+        Class<?> type = obtainedValue.getValueSourceType();
+        P parameters = obtainedValue.getValueSourceParameters();
+        if (parameters == null) {
+            return;
+        }
+
+        if (SystemPropertyValueSource.class.isAssignableFrom(type)) {
+            String name = ((SystemPropertyValueSource.Parameters) parameters).getPropertyName().getOrNull();
+            if (name != null) {
+                systemPropertyRead(name);
+            }
+        } else if (EnvironmentVariableValueSource.class.isAssignableFrom(type)) {
+            String name = ((EnvironmentVariableValueSource.Parameters) parameters).getVariableName().getOrNull();
+            if (name != null) {
+                environmentVariableRead(name);
+            }
+        } else if (FileContentValueSource.class.isAssignableFrom(type)) {
+            RegularFile file = ((FileContentValueSource.Parameters) parameters).getFile().getOrNull();
+            if (file != null) {
+                fileObserved(file.getAsFile());
+            }
+        }
+    }
+
+    public void systemPropertyRead(String name) {
+        addInput(Input.systemProperty(name, System.getProperty(name)));
+    }
+
+    public void environmentVariableRead(String name) {
+        addInput(Input.environmentVariable(name, System.getenv(name)));
+    }
+
+    /**
+     * Records a file that was read or whose existence was checked while configuring the build.
+     */
+    public void fileObserved(File file) {
+        addInput(Input.file(file));
+    }
+
+    /**
+     * @return the recorded inputs along with the scripts and property files of the given build
+     */
+    public ConfigurationCacheFingerprint collectFingerprint(GradleInternal gradle) {
+        StartParameterInternal startParameter = gradle.getStartParameter();
+        List<Input> fingerprint = new ArrayList<>();
+
+        File settingsFile = gradle.getSettings().getSettingsScript().getResource().getLocation().getFile();
+        if (settingsFile != null) {
+            fingerprint.add(Input.file(settingsFile));
+        }
+        for (File initScript : startParameter.getAllInitScripts()) {
+            fingerprint.add(Input.file(initScript));
+        }
+        fingerprint.add(Input.file(new File(startParameter.getGradleUserHomeDir(), GRADLE_PROPERTIES)));
+
+        for (BuildProject project : gradle.getRootProject().getAllprojects()) {
+            fingerprint.add(Input.file(project.getBuildFile()));
+            fingerprint.add(Input.file(new File(project.getProjectDir(), GRADLE_PROPERTIES)));
+        }
+
+        synchronized (inputs) {
+            fingerprint.addAll(inputs);
+        }
+        return new ConfigurationCacheFingerprint(fingerprint);
+    }
+
+    private void addInput(Input input) {
+        synchronized (inputs) {
+            inputs.add(input);
+        }
+    }
+}
@@ -36,12 +36,15 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -57,7 +60,13 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = new LinkedList<>();
+    private final Set<Node> executionQueue = new LinkedHashSet<>();
+    /**
+     * The nodes of the execution queue whose dependencies may be complete, the nodes on the
+     * longest remaining path through the plan come first.
+     */
+    private final NavigableSet<QueuedNode> readyNodes = new TreeSet<>();
+    private final Map<Node, QueuedNode> queuedNodes = new IdentityHashMap<>();
     private final Set<ResourceLock> projectLocks = new HashSet<>();
     private final FailureCollector failureCollector = new FailureCollector();
     private final String displayName;
@@ -343,12 +352,37 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         dependencyResolver.clear();
         nodeMapping.removeIf(Node::requiresMonitoring);
         executionQueue.addAll(nodeMapping);
+        calculateCriticalPathWeights();
+        readyNodes.clear();
         for (Node node : executionQueue) {
-            maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+            updateAllDependenciesComplete(node);
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
 
+    /**
+     * The weight of a node is its estimated execution time plus the weight of the heaviest node
+     * that has to run after it, so it estimates how long the build takes at least after the
+     * node starts. Nodes that should run after others are included, so a node is preferred over
+     * the nodes that should run after it.
+     */
+    private void calculateCriticalPathWeights() {
+        queuedNodes.clear();
+        List<Node> nodes = new ArrayList<>(executionQueue);
+
+        // successors are before the nodes that depend on them in the queue
+        Map<Node, Long> heaviestPredecessor = new IdentityHashMap<>();
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node node = nodes.get(i);
+            long weight = Math.max(1, node.getEstimatedExecutionTime())
+                          + heaviestPredecessor.getOrDefault(node, 0L);
+            queuedNodes.put(node, new QueuedNode(node, weight, i));
+            for (Node successor : node.getAllSuccessors()) {
+                heaviestPredecessor.merge(successor, weight, Math::max);
+            }
+        }
+    }
+
     private void maybeRemoveProcessedShouldRunAfterEdge(Deque<GraphEdge> walkedShouldRunAfterEdges,
                                                         Node node) {
         GraphEdge edge = walkedShouldRunAfterEdges.peek();
@@ -571,43 +605,49 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         if (!maybeNodesReady) {
             return null;
         }
-        Iterator<Node> iterator = executionQueue.iterator();
+        Iterator<QueuedNode> iterator = readyNodes.iterator();
         boolean foundReadyNode = false;
         while (iterator.hasNext()) {
-            Node node = iterator.next();
-            if (node.isReady() && node.allDependenciesComplete()) {
-                foundReadyNode = true;
-
-                if (!tryAcquireWorkerLeaseForNode(node, workerLease)) {
-                    resourceLockState.releaseLocks();
-                    // if we can't get a worker lease, we won't be able to execute any other
-                    // nodes, either
-                    break;
-                }
+            Node node = iterator.next().node;
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // added again when its dependencies complete or when it is enforced
+                iterator.remove();
+                continue;
+            }
+            foundReadyNode = true;
 
-                if (!tryAcquireLocksForNode(node)) {
-                    resourceLockState.releaseLocks();
-                    continue;
-                }
+            if (!tryAcquireWorkerLeaseForNode(node, workerLease)) {
+                resourceLockState.releaseLocks();
+                // if we can't get a worker lease, we won't be able to execute any other
+                // nodes, either
+                break;
+            }
 
-                MutationInfo mutations = getResolvedMutationInfo(node);
+            if (!tryAcquireLocksForNode(node)) {
+                resourceLockState.releaseLocks();
+                continue;
+            }
 
-                if (conflictsWithOtherNodes(node, mutations)) {
-                    resourceLockState.releaseLocks();
-                    continue;
-                }
+            MutationInfo mutations = getResolvedMutationInfo(node);
 
-                if (node.allDependenciesSuccessful()) {
-                    node.startExecution(this::recordNodeExecutionStarted);
-                    if (mutations.hasValidationProblem) {
-                        invalidNodeRunning = true;
-                    }
-                } else {
-                    node.skipExecution(this::recordNodeCompleted);
+            if (conflictsWithOtherNodes(node, mutations)) {
+                resourceLockState.releaseLocks();
+                continue;
+            }
+
+            // removed before the completion of a skipped node adds its dependents
+            iterator.remove();
+            executionQueue.remove(node);
+            queuedNodes.remove(node);
+            if (node.allDependenciesSuccessful()) {
+                node.startExecution(this::recordNodeExecutionStarted);
+                if (mutations.hasValidationProblem) {
+                    invalidNodeRunning = true;
                 }
-                iterator.remove();
-                return node;
+            } else {
+                node.skipExecution(this::recordNodeCompleted);
             }
+            return node;
         }
         LOGGER.debug("No node could be selected, nodes ready: {}", foundReadyNode);
         maybeNodesReady = foundReadyNode;
@@ -648,7 +688,21 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            updateAllDependenciesComplete(predecessor);
+        }
+    }
+
+    private void updateAllDependenciesComplete(Node node) {
+        maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+        addIfDependenciesComplete(node);
+    }
+
+    private void addIfDependenciesComplete(Node node) {
+        if (node.allDependenciesComplete()) {
+            QueuedNode queued = queuedNodes.get(node);
+            if (queued != null) {
+                readyNodes.add(queued);
+            }
         }
     }
 
@@ -826,7 +880,7 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 enforceWithDependencies(finalizerNode);
@@ -834,7 +888,7 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         }
     }
 
-    private static void enforceWithDependencies(Node node) {
+    private void enforceWithDependencies(Node node) {
         Set<Node> enforcedNodes = new HashSet<>();
 
         Deque<Node> candidates = new ArrayDeque<>();
@@ -849,10 +903,12 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
                 if (candidate.isMustNotRun() || candidate.isRequired()) {
                     candidate.enforceRun();
+                    addIfDependenciesComplete(candidate);
                     // Completed changed from true to false - inform all nodes depending on this
                     // one.
                     for (Node predecessor : candidate.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
+                        addIfDependenciesComplete(predecessor);
                     }
                 }
             }
@@ -960,6 +1016,31 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         }
     }
 
+    /**
+     * A node of the execution queue, ordered by the weight of its critical path and then by its
+     * position in the queue.
+     */
+    private static class QueuedNode implements Comparable<QueuedNode> {
+        private final Node node;
+        private final long criticalPathWeight;
+        private final int position;
+
+        private QueuedNode(Node node, long criticalPathWeight, int position) {
+            this.node = node;
+            this.criticalPathWeight = criticalPathWeight;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(QueuedNode other) {
+            int result = Long.compare(other.criticalPathWeight, criticalPathWeight);
+            if (result != 0) {
+                return result;
+            }
+            return Integer.compare(position, other.position);
+        }
+    }
+
     private static class NodeInVisitingSegment {
         private final Node node;
         private final int visitingSegment;
@@ -12,11 +12,13 @@ import com.tyron.builder.api.internal.tasks.properties.TaskProperties;
 import com.tyron.builder.api.tasks.TaskExecutionException;
 import com.tyron.builder.internal.ImmutableActionSet;
 import com.tyron.builder.internal.execution.WorkValidationContext;
+import com.tyron.builder.internal.execution.history.ExecutionHistoryStore;
 import com.tyron.builder.internal.resources.ResourceLock;
 import com.tyron.builder.internal.service.ServiceRegistry;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 
@@ -175,6 +177,28 @@ public class LocalTaskNode extends TaskNode {
         return task.getIdentityPath().toString();
     }
 
+    /**
+     * Returns the execution time recorded in the execution history of the task, if there is one.
+     * Only the execution time is loaded, this is called for every node when the plan is
+     * determined.
+     */
+    @Override
+    public long getEstimatedExecutionTime() {
+        ServiceRegistry serviceRegistry = ((ProjectInternal) task.getProject()).getServices();
+        ExecutionHistoryStore historyStore = (ExecutionHistoryStore) serviceRegistry.find(ExecutionHistoryStore.class);
+        if (historyStore == null) {
+            return super.getEstimatedExecutionTime();
+        }
+        try {
+            return historyStore.loadExecutionTime(task.getPath())
+                    .map(Duration::toMillis)
+                    .orElseGet(super::getEstimatedExecutionTime);
+        } catch (RuntimeException e) {
+            // the history is only used to order the nodes, the task can still run
+            return super.getEstimatedExecutionTime();
+        }
+    }
+
     @Override
     public void resolveMutations() {
         final LocalTaskNode taskNode = this;
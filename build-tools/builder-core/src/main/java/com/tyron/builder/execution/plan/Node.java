@@ -296,6 +296,14 @@ public abstract class Node implements Comparable<Node> {
 
     public abstract Set<Node> getFinalizers();
 
+    /**
+     * Returns an estimate of the time it takes to execute this node in milliseconds. The nodes on the longest paths
+     * through the plan are started first.
+     */
+    public long getEstimatedExecutionTime() {
+        return 1;
+    }
+
     public MutationInfo getMutationInfo() {
         return mutationInfo;
     }
@@ -21,12 +21,14 @@ import com.tyron.builder.api.tasks.util.PatternSet;
 import com.tyron.builder.cache.internal.CleaningInMemoryCacheDecoratorFactory;
 import com.tyron.builder.cache.internal.CrossBuildInMemoryCacheFactory;
 import com.tyron.builder.cache.internal.InMemoryCacheDecoratorFactory;
+import com.tyron.builder.cache.internal.scopes.DefaultCacheScopeMapping;
 import com.tyron.builder.configuration.DefaultImportsReader;
 import com.tyron.builder.configuration.ImportsReader;
 import com.tyron.builder.execution.DefaultWorkValidationWarningRecorder;
 import com.tyron.builder.initialization.ClassLoaderRegistry;
 import com.tyron.builder.initialization.DefaultClassLoaderRegistry;
 import com.tyron.builder.initialization.DefaultJdkToolsInitializer;
+import com.tyron.builder.initialization.GradleUserHomeDirProvider;
 import com.tyron.builder.initialization.JdkToolsInitializer;
 import com.tyron.builder.initialization.LegacyTypesSupport;
 import com.tyron.builder.internal.Factory;
@@ -53,6 +55,7 @@ import com.tyron.builder.internal.instantiation.InjectAnnotationHandler;
 import com.tyron.builder.internal.instantiation.InstanceGenerator;
 import com.tyron.builder.internal.instantiation.InstantiatorFactory;
 import com.tyron.builder.internal.instantiation.generator.DefaultInstantiatorFactory;
+import com.tyron.builder.internal.instantiation.generator.GeneratedClassStore;
 import com.tyron.builder.internal.logging.LoggingManagerInternal;
 import com.tyron.builder.internal.nativeintegration.filesystem.FileSystem;
 import com.tyron.builder.internal.operations.BuildOperationListener;
@@ -288,8 +291,13 @@ public class GlobalServices extends WorkerSharedGlobalScopeServices {
         return new StringInterner();
     }
 
-    InstantiatorFactory createInstantiatorFactory(CrossBuildInMemoryCacheFactory cacheFactory, List<InjectAnnotationHandler> injectHandlers, List<AbstractOutputPropertyAnnotationHandler> outputHandlers) {
-        return new DefaultInstantiatorFactory(cacheFactory, injectHandlers, new OutputPropertyRoleAnnotationHandler(outputHandlers));
+    InstantiatorFactory createInstantiatorFactory(CrossBuildInMemoryCacheFactory cacheFactory, List<InjectAnnotationHandler> injectHandlers, List<AbstractOutputPropertyAnnotationHandler> outputHandlers, GradleUserHomeDirProvider userHomeDirProvider) {
+        GeneratedClassStore classStore = null;
+        File userHomeDir = userHomeDirProvider.getGradleUserHomeDirectory();
+        if (userHomeDir != null && GeneratedClassStore.isSupported()) {
+            classStore = new GeneratedClassStore(new File(new File(userHomeDir, DefaultCacheScopeMapping.GLOBAL_CACHE_DIR_NAME), "generated-classes"));
+        }
+        return new DefaultInstantiatorFactory(cacheFactory, injectHandlers, new OutputPropertyRoleAnnotationHandler(outputHandlers), classStore);
     }
 
     OsMemoryInfo createOsMemoryInfo() {
@@ -46,6 +46,7 @@ import com.tyron.builder.internal.serialize.HashCodeSerializer;
 import com.tyron.builder.internal.snapshot.CaseSensitivity;
 import com.tyron.builder.internal.snapshot.ValueSnapshotter;
 import com.tyron.builder.internal.snapshot.impl.DirectorySnapshotterStatistics;
+import com.tyron.builder.internal.snapshot.impl.FileHashingExecutor;
 import com.tyron.builder.internal.vfs.FileSystemAccess;
 import com.tyron.builder.internal.vfs.VirtualFileSystem;
 import com.tyron.builder.internal.vfs.impl.DefaultFileSystemAccess;
@@ -131,6 +132,10 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
         DirectorySnapshotterStatistics.Collector createDirectorySnapshotterStatisticsCollector() {
             return new DirectorySnapshotterStatistics.Collector();
         }
+
+        FileHashingExecutor createFileHashingExecutor() {
+            return new FileHashingExecutor();
+        }
     }
 
     private static class GradleUserHomeServices {
@@ -220,7 +225,8 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
                 ListenerManager listenerManager,
                 PatternSpecFactory patternSpecFactory,
                 FileSystemAccess.WriteListener writeListener,
-                DirectorySnapshotterStatistics.Collector statisticsCollector
+                DirectorySnapshotterStatistics.Collector statisticsCollector,
+                FileHashingExecutor fileHashingExecutor
         ) {
             DefaultFileSystemAccess fileSystemAccess = new DefaultFileSystemAccess(
                     hasher,
@@ -228,7 +234,8 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
                     stat,
                     virtualFileSystem,
                     writeListener,
-                    statisticsCollector
+                    statisticsCollector,
+                    fileHashingExecutor
 //                    DirectoryScanner.getDefaultExcludes()
             );
 //            listenerManager.addListener(new DefaultExcludesBuildListener(fileSystemAccess) {
@@ -305,7 +312,8 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
                 StringInterner stringInterner,
                 VirtualFileSystem root,
                 FileSystemAccess.WriteListener writeListener,
-                DirectorySnapshotterStatistics.Collector statisticsCollector
+                DirectorySnapshotterStatistics.Collector statisticsCollector,
+                FileHashingExecutor fileHashingExecutor
         ) {
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
                     hasher,
@@ -313,7 +321,8 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
                     stat,
                     root,
                     writeListener,
-                    statisticsCollector
+                    statisticsCollector,
+                    fileHashingExecutor
 //                    DirectoryScanner.getDefaultExcludes()
             );
 
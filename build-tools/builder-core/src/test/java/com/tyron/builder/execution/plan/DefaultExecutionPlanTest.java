@@ -0,0 +1,294 @@
+package com.tyron.builder.execution.plan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.api.Action;
+import com.tyron.builder.api.internal.project.ProjectInternal;
+import com.tyron.builder.internal.resources.ResourceLock;
+import com.tyron.builder.internal.resources.ResourceLockState;
+import com.tyron.builder.internal.snapshot.CaseSensitivity;
+import com.tyron.builder.internal.work.WorkerLeaseRegistry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+public class DefaultExecutionPlanTest {
+
+    private static final int CHAINS = 8;
+    private static final int CHAIN_LENGTH = 250;
+    private static final long CHAIN_NODE_TIME = 10;
+    private static final int LEAVES = 8000;
+
+    /**
+     * A 10k node plan where the leaves come first in plan order and eight long chains come
+     * last. With 16 workers the chains are started first and the build takes as long as a
+     * chain, the leaves run on the remaining workers.
+     */
+    @Test
+    public void testLongestPathsStartFirst() {
+        List<TestNode> nodes = createNodes();
+        DefaultExecutionPlan plan = createPlan(nodes);
+
+        Simulation simulation = simulate(plan, nodes, 16);
+        assertEquals(CHAIN_LENGTH * CHAIN_NODE_TIME, simulation.makespan);
+    }
+
+    @Test
+    public void testEstimatedExecutionTimeIsLoadedOncePerNode() {
+        List<TestNode> nodes = createNodes();
+        createPlan(nodes);
+        for (TestNode node : nodes) {
+            assertEquals(node.toString(), 1, node.estimateCount);
+        }
+    }
+
+    @Test
+    public void testEveryNodeRunsOnceAfterItsDependencies() {
+        for (int workers : new int[]{1, 4, 32}) {
+            List<TestNode> nodes = createNodes();
+            simulate(createPlan(nodes), nodes, workers);
+            for (TestNode node : nodes) {
+                assertEquals(node.toString(), 1, node.executions);
+            }
+        }
+    }
+
+    @Test
+    public void testBenchmark() {
+        // warm up
+        for (int i = 0; i < 3; i++) {
+            List<TestNode> nodes = createNodes();
+            simulate(createPlan(nodes), nodes, 16);
+        }
+
+        List<TestNode> nodes = createNodes();
+        long start = System.nanoTime();
+        DefaultExecutionPlan plan = createPlan(nodes);
+        long planning = System.nanoTime() - start;
+        Simulation simulation = simulate(plan, nodes, 16);
+
+        System.out.println(nodes.size() + " nodes, 16 workers: determineExecutionPlan "
+                           + planning / 1_000_000 + " ms, " + simulation.selections
+                           + " calls to selectNext " + simulation.selectionNanos / 1_000_000
+                           + " ms, makespan " + simulation.makespan);
+    }
+
+    /**
+     * Leaves first, then {@link #CHAINS} chains where every node depends on the one before it.
+     */
+    private static List<TestNode> createNodes() {
+        List<TestNode> nodes = new ArrayList<>();
+        for (int i = 0; i < LEAVES; i++) {
+            nodes.add(new TestNode("leaf" + i, nodes.size(), 1));
+        }
+        for (int chain = 0; chain < CHAINS; chain++) {
+            TestNode previous = null;
+            for (int i = 0; i < CHAIN_LENGTH; i++) {
+                TestNode node = new TestNode("chain" + chain + "-" + i, nodes.size(),
+                        CHAIN_NODE_TIME);
+                if (previous != null) {
+                    node.addDependencySuccessor(previous);
+                }
+                nodes.add(node);
+                previous = node;
+            }
+        }
+        for (TestNode node : nodes) {
+            node.require();
+            node.dependenciesProcessed();
+        }
+        return nodes;
+    }
+
+    private static DefaultExecutionPlan createPlan(List<TestNode> nodes) {
+        DefaultExecutionPlan plan = new DefaultExecutionPlan("test", null,
+                new TaskDependencyResolver(Collections.emptyList()), node -> false,
+                new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, null),
+                new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, null));
+        plan.addNodes(nodes);
+        plan.determineExecutionPlan();
+        return plan;
+    }
+
+    /**
+     * Runs the plan with the given number of workers, every node takes its estimated execution
+     * time.
+     */
+    private static Simulation simulate(DefaultExecutionPlan plan, List<TestNode> nodes,
+                                       int workers) {
+        Simulation simulation = new Simulation();
+        PriorityQueue<TestNode> running = new PriorityQueue<>(
+                (first, second) -> Long.compare(first.finishTime, second.finishTime));
+        long time = 0;
+        while (true) {
+            while (running.size() < workers) {
+                long start = System.nanoTime();
+                Node node = plan.selectNext(WORKER_LEASE, LOCK_STATE);
+                simulation.selectionNanos += System.nanoTime() - start;
+                simulation.selections++;
+                if (node == null) {
+                    break;
+                }
+                assertTrue(node + " was skipped", node.isExecuting());
+                for (Node dependency : node.getDependencySuccessors()) {
+                    assertTrue(node + " started before " + dependency, dependency.isExecuted());
+                }
+                TestNode testNode = (TestNode) node;
+                testNode.executions++;
+                testNode.finishTime = time + testNode.executionTime;
+                running.add(testNode);
+            }
+            TestNode finished = running.poll();
+            if (finished == null) {
+                break;
+            }
+            time = finished.finishTime;
+            plan.finishedExecuting(finished);
+        }
+        assertTrue(plan.allNodesComplete());
+        assertFalse(plan.hasNodesRemaining());
+        for (TestNode node : nodes) {
+            assertTrue(node.toString(), node.isExecuted());
+        }
+        simulation.makespan = time;
+        return simulation;
+    }
+
+    private static class Simulation {
+        long makespan;
+        long selections;
+        long selectionNanos;
+    }
+
+    private static final WorkerLeaseRegistry.WorkerLease WORKER_LEASE =
+            new WorkerLeaseRegistry.WorkerLease() {
+                @Override
+                public boolean isLocked() {
+                    return false;
+                }
+
+                @Override
+                public boolean isLockedByCurrentThread() {
+                    return false;
+                }
+
+                @Override
+                public boolean tryLock() {
+                    return true;
+                }
+
+                @Override
+                public void unlock() {
+                }
+
+                @Override
+                public String getDisplayName() {
+                    return "worker lease";
+                }
+            };
+
+    private static final ResourceLockState LOCK_STATE = new ResourceLockState() {
+        @Override
+        public void registerLocked(ResourceLock resourceLock) {
+        }
+
+        @Override
+        public void registerUnlocked(ResourceLock resourceLock) {
+        }
+
+        @Override
+        public void releaseLocks() {
+        }
+    };
+
+    private static class TestNode extends Node {
+        private final String name;
+        private final int index;
+        private final long executionTime;
+        private int estimateCount;
+        private int executions;
+        private long finishTime;
+
+        TestNode(String name, int index, long executionTime) {
+            this.name = name;
+            this.index = index;
+            this.executionTime = executionTime;
+        }
+
+        @Override
+        public long getEstimatedExecutionTime() {
+            estimateCount++;
+            return executionTime;
+        }
+
+        @Override
+        public Throwable getNodeFailure() {
+            return null;
+        }
+
+        @Override
+        public void rethrowNodeFailure() {
+        }
+
+        @Override
+        public void prepareForExecution() {
+        }
+
+        @Override
+        public void resolveDependencies(TaskDependencyResolver dependencyResolver,
+                                        Action<Node> processHardSuccessor) {
+        }
+
+        @Override
+        public Set<Node> getFinalizers() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void resolveMutations() {
+            getMutationInfo().resolved = true;
+        }
+
+        @Override
+        public boolean isPublicNode() {
+            return true;
+        }
+
+        @Override
+        public boolean requiresMonitoring() {
+            return false;
+        }
+
+        @Override
+        public ResourceLock getProjectToLock() {
+            return null;
+        }
+
+        @Override
+        public ProjectInternal getOwningProject() {
+            return null;
+        }
+
+        @Override
+        public List<? extends ResourceLock> getResourcesToLock() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            return Integer.compare(index, ((TestNode) other).index);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
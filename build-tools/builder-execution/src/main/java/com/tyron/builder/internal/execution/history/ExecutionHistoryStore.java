@@ -1,10 +1,19 @@
 package com.tyron.builder.internal.execution.history;
 
+import java.time.Duration;
 import java.util.Optional;
 
 public interface ExecutionHistoryStore {
     Optional<PreviousExecutionState> load(String key);
 
+    /**
+     * Returns the execution time of the last stored execution, without loading the rest of its
+     * state.
+     */
+    default Optional<Duration> loadExecutionTime(String key) {
+        return load(key).map(state -> state.getOriginMetadata().getExecutionTime());
+    }
+
     void store(
             String key,
             boolean successful,
@@ -15,13 +15,17 @@ import com.tyron.builder.internal.execution.history.ExecutionHistoryStore;
 import com.tyron.builder.internal.execution.history.PreviousExecutionState;
 import com.tyron.builder.internal.fingerprint.CurrentFileCollectionFingerprint;
 import com.tyron.builder.internal.fingerprint.FileCollectionFingerprint;
+import com.tyron.builder.internal.serialize.BaseSerializerFactory;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.function.Supplier;
 
 public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
 
     private final PersistentIndexedCache<String, PreviousExecutionState> store;
+    /** The execution time in milliseconds by key, small enough to look up for every node of a plan */
+    private final PersistentIndexedCache<String, Long> executionTimes;
 
     public DefaultExecutionHistoryStore(Supplier<PersistentCache> cache,
                                         InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
@@ -36,6 +40,10 @@ public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
         this.store = cache.get().createCache(
                 PersistentIndexedCacheParameters.of("executionHistory", String.class, serializer)
                         .withCacheDecorator(inMemoryCacheDecorator));
+        this.executionTimes = cache.get().createCache(
+                PersistentIndexedCacheParameters.of("executionTime", String.class,
+                        BaseSerializerFactory.LONG_SERIALIZER)
+                        .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, true)));
     }
 
     @Override
@@ -43,6 +51,11 @@ public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
         return Optional.ofNullable(store.getIfPresent(key));
     }
 
+    @Override
+    public Optional<Duration> loadExecutionTime(String key) {
+        return Optional.ofNullable(executionTimes.getIfPresent(key)).map(Duration::ofMillis);
+    }
+
     @Override
     public void store(String key, boolean successful, AfterExecutionState executionState) {
         store.put(key, new DefaultPreviousExecutionState(executionState.getOriginMetadata(),
@@ -50,11 +63,13 @@ public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
                 executionState.getInputProperties(),
                 prepareForSerialization(executionState.getInputFileProperties()),
                 executionState.getOutputFilesProducedByWork(), successful));
+        executionTimes.put(key, executionState.getOriginMetadata().getExecutionTime().toMillis());
     }
 
     @Override
     public void remove(String key) {
         store.remove(key);
+        executionTimes.remove(key);
     }
 
     private static ImmutableSortedMap<String, FileCollectionFingerprint> prepareForSerialization(
@@ -0,0 +1,248 @@
+package com.tyron.builder.configurationcache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.tyron.builder.api.internal.StartParameterInternal;
+import com.tyron.builder.api.logging.LogLevel;
+import com.tyron.builder.api.logging.configuration.ShowStacktrace;
+import com.tyron.builder.internal.buildoption.BuildOption;
+import com.tyron.builder.launcher.ProjectLauncher;
+import com.tyron.common.TestUtil;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ConfigurationCacheTest {
+
+    private static final long OLD_TIMESTAMP = 1_000_000_000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File projectDir;
+    private File gradleUserHome;
+
+    @Before
+    public void setup() throws IOException {
+        System.setProperty("org.gradle.native", "true");
+
+        File fixture = new File(TestUtil.getResourcesDirectory(), "ConfigurationCacheProject");
+        projectDir = temporaryFolder.newFolder("ConfigurationCacheProject");
+        gradleUserHome = temporaryFolder.newFolder(".gradle");
+        copyDirectory(fixture.toPath(), projectDir.toPath());
+    }
+
+    @Test
+    public void testSecondBuildReusesConfiguration() throws IOException {
+        runBuild();
+        assertConfigured("app", "lib", "unrelated");
+        assertExecuted("app", "lib");
+        assertNotNull(findEntry());
+
+        markEntry();
+        clearOutputs();
+        runBuild();
+        // a project outside of the task graph could still configure its tasks
+        assertConfigured("app", "lib", "unrelated");
+        assertExecuted("app", "lib");
+        assertEntryReused();
+    }
+
+    @Test
+    public void testEditingBuildScriptInvalidatesCache() throws IOException {
+        runBuild();
+        markEntry();
+
+        // the unrelated project is not part of the task graph, but its script is an input
+        Files.write(new File(projectDir, "unrelated/build.gradle").toPath(),
+                "\n// edited\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        clearOutputs();
+        runBuild();
+        assertExecuted("app", "lib");
+        assertEntryStored();
+
+        markEntry();
+        clearOutputs();
+        runBuild();
+        assertEntryReused();
+    }
+
+    @Test
+    public void testEditingGradlePropertiesInvalidatesCache() throws IOException {
+        runBuild();
+        markEntry();
+
+        Files.write(new File(projectDir, "gradle.properties").toPath(),
+                "org.example.flag=true\n".getBytes(StandardCharsets.UTF_8));
+
+        clearOutputs();
+        runBuild();
+        assertExecuted("app", "lib");
+        assertEntryStored();
+    }
+
+    @Test
+    public void testUnreadSystemPropertyDoesNotInvalidateCache() throws IOException {
+        runBuild();
+        markEntry();
+
+        System.setProperty("org.example.unread", "true");
+        try {
+            clearOutputs();
+            runBuild();
+            assertExecuted("app", "lib");
+            assertEntryReused();
+        } finally {
+            System.clearProperty("org.example.unread");
+        }
+    }
+
+    @Test
+    public void testChangingSystemPropertyReplacesEntry() throws IOException {
+        runBuild();
+        markEntry();
+
+        // read by the script with System.getProperty, not through a provider
+        System.setProperty("org.example.withUnrelated", "true");
+        try {
+            clearOutputs();
+            runBuild();
+            assertExecuted("app", "lib", "unrelated");
+            assertEntryStored();
+        } finally {
+            System.clearProperty("org.example.withUnrelated");
+        }
+    }
+
+    @Test
+    public void testDifferentTaskGraphReplacesEntry() throws IOException {
+        runBuild();
+        markEntry();
+
+        // files read directly by a script are not inputs, the cached entry is reused but the
+        // task graph now also contains a task of the unrelated project
+        Files.write(new File(projectDir, "with-unrelated").toPath(), new byte[0]);
+        clearOutputs();
+        runBuild();
+        assertExecuted("app", "lib", "unrelated");
+        assertEntryStored();
+
+        markEntry();
+        clearOutputs();
+        runBuild();
+        assertExecuted("app", "lib", "unrelated");
+        assertEntryReused();
+    }
+
+    private void runBuild() {
+        StartParameterInternal startParameter = new StartParameterInternal();
+        startParameter.setLogLevel(LogLevel.LIFECYCLE);
+        startParameter.setShowStacktrace(ShowStacktrace.ALWAYS_FULL);
+        startParameter.setProjectDir(projectDir);
+        startParameter.setCurrentDir(projectDir);
+        startParameter.setBuildCacheEnabled(false);
+        startParameter.setGradleUserHomeDir(gradleUserHome);
+        startParameter.setConfigurationCache(BuildOption.Value.value(true));
+        startParameter.setTaskNames(ImmutableList.of(":app:hello"));
+
+        new ProjectLauncher(startParameter).execute();
+    }
+
+    private void assertConfigured(String... projects) throws IOException {
+        assertEquals(ImmutableList.copyOf(projects), listFiles("build/configured"));
+    }
+
+    private void assertExecuted(String... projects) throws IOException {
+        assertEquals(ImmutableList.copyOf(projects), listFiles("build/executed"));
+    }
+
+    private List<String> listFiles(String path) throws IOException {
+        File dir = new File(projectDir, path);
+        assertTrue(dir + " does not exist", dir.isDirectory());
+        try (Stream<Path> files = Files.list(dir.toPath())) {
+            return files.map(file -> file.getFileName().toString())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void clearOutputs() throws IOException {
+        deleteDirectory(new File(projectDir, "build/configured").toPath());
+        deleteDirectory(new File(projectDir, "build/executed").toPath());
+        assertFalse(new File(projectDir, "build/configured").exists());
+    }
+
+    /**
+     * Sets an old timestamp on the entry, so that storing it again can be detected.
+     */
+    private void markEntry() throws IOException {
+        File entry = findEntry();
+        assertNotNull(entry);
+        assertTrue(entry.setLastModified(OLD_TIMESTAMP));
+    }
+
+    private void assertEntryReused() throws IOException {
+        File entry = findEntry();
+        assertNotNull(entry);
+        assertEquals(OLD_TIMESTAMP, entry.lastModified());
+    }
+
+    private void assertEntryStored() throws IOException {
+        File entry = findEntry();
+        assertNotNull(entry);
+        assertNotEquals(OLD_TIMESTAMP, entry.lastModified());
+    }
+
+    private File findEntry() throws IOException {
+        Path cacheDir = new File(projectDir, ".gradle/configuration-cache").toPath();
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            return files.filter(file -> file.getFileName().toString().equals("entry.bin"))
+                    .map(Path::toFile)
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Path destination = target.resolve(source.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(destination);
+                } else {
+                    Files.copy(file, destination);
+                }
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            List<Path> paths = files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList());
+            for (Path path : paths) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.SetMultimap;
+import com.google.common.hash.HashCode;
 import com.google.common.reflect.TypeParameter;
 import com.google.common.reflect.TypeToken;
 import com.tyron.builder.api.Action;
@@ -105,14 +106,18 @@ abstract class AbstractClassGenerator implements ClassGenerator {
     private final ImmutableMultimap<Class<? extends Annotation>, TypeToken<?>> allowedTypesForAnnotation;
     private final Function<Class<?>, GeneratedClassImpl> generator = this::generateUnderLock;
     private final PropertyRoleAnnotationHandler roleHandler;
+    @Nullable
+    private final GeneratedClassStore classStore;
 
     protected AbstractClassGenerator(
             Collection<? extends InjectAnnotationHandler> allKnownAnnotations,
             Collection<Class<? extends Annotation>> enabledAnnotations,
             PropertyRoleAnnotationHandler roleHandler,
-            CrossBuildInMemoryCache<Class<?>, GeneratedClassImpl> generatedClassesCache
+            CrossBuildInMemoryCache<Class<?>, GeneratedClassImpl> generatedClassesCache,
+            @Nullable GeneratedClassStore classStore
     ) {
         this.generatedClasses = generatedClassesCache;
+        this.classStore = classStore;
         this.enabledAnnotations = ImmutableSet.copyOf(enabledAnnotations);
         ImmutableSet.Builder<Class<? extends Annotation>> builder = ImmutableSet.builder();
         ImmutableListMultimap.Builder<Class<? extends Annotation>, TypeToken<?>> allowedTypesBuilder = ImmutableListMultimap.builder();
@@ -161,6 +166,14 @@ abstract class AbstractClassGenerator implements ClassGenerator {
     }
 
     private GeneratedClassImpl generateUnderLock(Class<?> type) {
+        HashCode storeKey = classStore == null ? null : classStore.getKey(type, getStoreKey());
+        if (storeKey != null) {
+            GeneratedClassImpl storedClass = loadStored(type, storeKey);
+            if (storedClass != null) {
+                return storedClass;
+            }
+        }
+
         List<CustomInjectAnnotationPropertyHandler> customAnnotationPropertyHandlers = new ArrayList<>(enabledAnnotations.size());
 
         ServicesPropertyHandler servicesHandler = new ServicesPropertyHandler();
@@ -193,6 +206,7 @@ abstract class AbstractClassGenerator implements ClassGenerator {
         validators.add(new InjectionAnnotationValidator(enabledAnnotations, allowedTypesForAnnotation));
 
         Class<?> generatedClass;
+        byte[] generatedClassBytes;
         try {
             ClassInspectionVisitor inspectionVisitor = start(type);
 
@@ -220,6 +234,7 @@ abstract class AbstractClassGenerator implements ClassGenerator {
             }
 
             generatedClass = generationVisitor.generate();
+            generatedClassBytes = generationVisitor.getGeneratedClassBytes();
         } catch (ClassGenerationException e) {
             throw e;
         } catch (Throwable e) {
@@ -237,18 +252,76 @@ abstract class AbstractClassGenerator implements ClassGenerator {
             }
         }
 
+        List<Class<? extends Annotation>> annotations = annotationsTriggeringServiceInjection.build();
+        if (storeKey != null) {
+            String generatedClassName = generatedClassBytes == null ? null : generatedClass.getName();
+            classStore.store(storeKey, new GeneratedClassStore.Entry(generatedClassName, generatedClassBytes, getNames(injectionHandler.getInjectedServices()), getNames(annotations)));
+        }
+
+        return new GeneratedClassImpl(generatedClass, getOuterType(type), injectionHandler.getInjectedServices(), annotations);
+    }
+
+    /**
+     * Defines the class stored for the type and resolves the types found by the inspection of the type, returns {@code null} if this fails and the class should be generated.
+     */
+    @Nullable
+    private GeneratedClassImpl loadStored(Class<?> type, HashCode storeKey) {
+        GeneratedClassStore.Entry entry = classStore.load(storeKey);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            ClassLoader classLoader = type.getClassLoader();
+            List<Class<?>> injectedServices = new ArrayList<>(entry.getInjectedServices().size());
+            for (String name : entry.getInjectedServices()) {
+                injectedServices.add(Class.forName(name, false, classLoader));
+            }
+            List<Class<? extends Annotation>> annotations = new ArrayList<>(entry.getAnnotationsTriggeringServiceInjection().size());
+            for (String name : entry.getAnnotationsTriggeringServiceInjection()) {
+                annotations.add(Class.forName(name, false, classLoader).asSubclass(Annotation.class));
+            }
+            Class<?> generatedClass = entry.getGeneratedClassName() == null
+                    ? type
+                    : defineStored(type, entry.getGeneratedClassName(), entry.getClassBytes());
+            return new GeneratedClassImpl(generatedClass, getOuterType(type), ImmutableList.copyOf(injectedServices), ImmutableList.copyOf(annotations));
+        } catch (Exception | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static List<String> getNames(List<? extends Class<?>> types) {
+        return types.stream().map(Class::getName).collect(Collectors.toList());
+    }
+
+    @Nullable
+    private static Class<?> getOuterType(Class<?> type) {
         // This is expensive to calculate, so cache the result
         Class<?> enclosingClass = type.getEnclosingClass();
-        Class<?> outerType;
         if (enclosingClass != null && !Modifier.isStatic(type.getModifiers())) {
-            outerType = enclosingClass;
-        } else {
-            outerType = null;
+            return enclosingClass;
         }
+        return null;
+    }
 
-        return new GeneratedClassImpl(generatedClass, outerType, injectionHandler.getInjectedServices(), annotationsTriggeringServiceInjection.build());
+    /**
+     * Returns a key that identifies the classes generated by this generator, classes generated with a different key are not loaded from the {@link GeneratedClassStore}.
+     */
+    protected String getStoreKey() {
+        StringBuilder key = new StringBuilder(getClass().getName());
+        for (Class<? extends Annotation> annotation : enabledAnnotations) {
+            key.append(";+").append(annotation.getName());
+        }
+        for (Class<? extends Annotation> annotation : disabledAnnotations) {
+            key.append(";-").append(annotation.getName());
+        }
+        return key.toString();
     }
 
+    /**
+     * Defines a class that was generated for the type by a previous process.
+     */
+    protected abstract Class<?> defineStored(Class<?> type, String className, byte[] classBytes);
+
     protected abstract ClassInspectionVisitor start(Class<?> type);
 
     protected abstract InstantiationStrategy createUsingConstructor(Constructor<?> constructor);
@@ -1452,5 +1525,11 @@ abstract class AbstractClassGenerator implements ClassGenerator {
         void addNameProperty();
 
         Class<?> generate() throws Exception;
+
+        /**
+         * Returns the bytes of the class returned by {@link #generate()}, or {@code null} when no class was generated for the type.
+         */
+        @Nullable
+        byte[] getGeneratedClassBytes();
     }
 }
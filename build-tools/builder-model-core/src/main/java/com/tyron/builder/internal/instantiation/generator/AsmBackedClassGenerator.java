@@ -97,6 +97,7 @@ import com.tyron.builder.cache.internal.CrossBuildInMemoryCacheFactory;
 import com.tyron.builder.internal.DisplayName;
 import com.tyron.builder.internal.Pair;
 import com.tyron.builder.internal.UncheckedException;
+import com.tyron.builder.internal.classloader.ClassLoaderUtils;
 import com.tyron.builder.internal.extensibility.ConventionAwareHelper;
 import com.tyron.builder.internal.instantiation.ClassGenerationException;
 import com.tyron.builder.internal.instantiation.InjectAnnotationHandler;
@@ -160,9 +161,10 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
             Collection<Class<? extends Annotation>> enabledInjectAnnotations,
             PropertyRoleAnnotationHandler roleHandler,
             CrossBuildInMemoryCache<Class<?>, GeneratedClassImpl> generatedClasses,
+            @Nullable GeneratedClassStore classStore,
             int factoryId
     ) {
-        super(allKnownAnnotations, enabledInjectAnnotations, roleHandler, generatedClasses);
+        super(allKnownAnnotations, enabledInjectAnnotations, roleHandler, generatedClasses, classStore);
         this.decorate = decorate;
         this.suffix = suffix;
         this.factoryId = factoryId;
@@ -176,6 +178,7 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
             PropertyRoleAnnotationHandler roleHandler,
             Collection<Class<? extends Annotation>> enabledInjectAnnotations,
             CrossBuildInMemoryCacheFactory cacheFactory,
+            @Nullable GeneratedClassStore classStore,
             int factoryId
     ) {
         String suffix;
@@ -198,7 +201,7 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
             generatedClasses = cacheFactory.newClassMap();
         }
 
-        return new AsmBackedClassGenerator(true, suffix, allKnownAnnotations, enabledInjectAnnotations, roleHandler, generatedClasses, factoryId);
+        return new AsmBackedClassGenerator(true, suffix, allKnownAnnotations, enabledInjectAnnotations, roleHandler, generatedClasses, classStore, factoryId);
     }
 
     /**
@@ -209,12 +212,13 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
             PropertyRoleAnnotationHandler roleHandler,
             Collection<Class<? extends Annotation>> enabledInjectAnnotations,
             CrossBuildInMemoryCacheFactory cacheFactory,
+            @Nullable GeneratedClassStore classStore,
             int factoryId
     ) {
         // TODO - the suffix should be a deterministic function of the known and enabled annotations
         // For now, just assign using a counter
         String suffix = ClassGeneratorSuffixRegistry.assign("$Inject");
-        return new AsmBackedClassGenerator(false, suffix, allKnownAnnotations, enabledInjectAnnotations, roleHandler, cacheFactory.newClassMap(), factoryId);
+        return new AsmBackedClassGenerator(false, suffix, allKnownAnnotations, enabledInjectAnnotations, roleHandler, cacheFactory.newClassMap(), classStore, factoryId);
     }
 
     @Override
@@ -242,6 +246,20 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
         return new InvokeSerializationConstructorAndInitializeFieldsStrategy(constructor, method, getRoleHandler());
     }
 
+    @Override
+    protected String getStoreKey() {
+        return super.getStoreKey() + ";" + suffix + ";" + decorate;
+    }
+
+    @Override
+    protected Class<?> defineStored(Class<?> type, String className, byte[] classBytes) {
+        Class<?> generatedClass = ClassLoaderUtils.defineDecorator(type, type.getClassLoader(), className, classBytes);
+        if (ClassBuilderImpl.isManaged(generatedClass)) {
+            ClassBuilderImpl.attachFactoryIdToImplType(generatedClass, factoryId);
+        }
+        return generatedClass;
+    }
+
     @Override
     protected ClassInspectionVisitor start(Class<?> type) {
         if (type.isAnnotation() || type.isEnum()) {
@@ -468,6 +486,7 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
         private final AsmClassGenerator classGenerator;
         private final int factoryId;
         private boolean hasMappingField;
+        private byte[] classBytes;
         private final boolean conventionAware;
         private final boolean mixInDsl;
         private final boolean extensible;
@@ -1826,7 +1845,7 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
             }
         }
 
-        private void attachFactoryIdToImplType(Class<?> implClass, int id) {
+        private static void attachFactoryIdToImplType(Class<?> implClass, int id) {
             try {
                 Field factoryField = implClass.getDeclaredField(FACTORY_ID_FIELD);
                 factoryField.setAccessible(true);
@@ -1850,7 +1869,8 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
             writeGenericReturnTypeFields();
             visitor.visitEnd();
 
-            Class<?> generatedClass = classGenerator.define();
+            classBytes = visitor.toByteArray();
+            Class<?> generatedClass = ClassLoaderUtils.defineDecorator(type, type.getClassLoader(), classGenerator.getGeneratedTypeName(), classBytes);
 
             if (managed) {
                 attachFactoryIdToImplType(generatedClass, factoryId);
@@ -1859,6 +1879,23 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
             return generatedClass;
         }
 
+        @Override
+        public byte[] getGeneratedClassBytes() {
+            return classBytes;
+        }
+
+        /**
+         * Returns whether the generated class has the managed state of its type, which is when {@link #addManagedMethods} was applied to it.
+         */
+        static boolean isManaged(Class<?> generatedClass) {
+            try {
+                generatedClass.getDeclaredField(FACTORY_ID_FIELD);
+                return Managed.class.isAssignableFrom(generatedClass);
+            } catch (NoSuchFieldException e) {
+                return false;
+            }
+        }
+
         private void writeGenericReturnTypeFields() {
             if (!genericReturnTypeConstantsIndex.isEmpty()) {
                 MethodVisitor mv = visitor.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
@@ -2057,6 +2094,12 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
         public Class<?> generate() {
             return type;
         }
+
+        @Nullable
+        @Override
+        public byte[] getGeneratedClassBytes() {
+            return null;
+        }
     }
 
     private static class InvokeConstructorStrategy implements InstantiationStrategy {
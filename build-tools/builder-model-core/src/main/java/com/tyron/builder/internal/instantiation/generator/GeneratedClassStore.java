@@ -0,0 +1,350 @@
+package com.tyron.builder.internal.instantiation.generator;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.tyron.builder.cache.internal.LeastRecentlyUsedCacheCleanup;
+import com.tyron.builder.internal.classloader.ClassLoaderSpec;
+import com.tyron.builder.internal.classloader.ClassLoaderVisitor;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persists the classes generated by a {@link ClassGenerator} and the results of inspecting the types they were generated for, so that a new process does not have to inspect and generate them again.
+ *
+ * <p>Entries are keyed by the class files of the type and its supertypes, the classloader hierarchy of the type and the version of the generator. A type that changed gets a new key, so its stale entry is never read.</p>
+ *
+ * <p>The store only works on a JVM, see {@link #isSupported()}. On Android the classes are loaded from dex files, so their classloaders have no {@code .class} resources to key the entries by, and the stored bytecode could not be defined anyway. A store created there never produces a key, so it neither reads nor writes entries.</p>
+ *
+ * <p>Reading an entry marks it as used. The first time a process stores an entry, the entries that were not used for {@link LeastRecentlyUsedCacheCleanup#DEFAULT_MAX_AGE_IN_DAYS_FOR_RECREATABLE_CACHE_ENTRIES} days are deleted, and then the least recently used ones while there are more than {@link #DEFAULT_MAX_ENTRIES}.</p>
+ */
+public class GeneratedClassStore {
+    /**
+     * Increase when the generated classes or the format of the entries change.
+     */
+    private static final int VERSION = 1;
+
+    static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private static final String EXTENSION = ".bin";
+
+    private final File dir;
+    private final long maxAgeMillis;
+    private final int maxEntries;
+    private final AtomicBoolean pruned = new AtomicBoolean();
+    private final Map<ClassLoader, HashCode> classLoaderHashes = new WeakHashMap<>();
+
+    public GeneratedClassStore(File dir) {
+        this(dir, TimeUnit.DAYS.toMillis(LeastRecentlyUsedCacheCleanup.DEFAULT_MAX_AGE_IN_DAYS_FOR_RECREATABLE_CACHE_ENTRIES), DEFAULT_MAX_ENTRIES);
+    }
+
+    GeneratedClassStore(File dir, long maxAgeMillis, int maxEntries) {
+        this.dir = dir;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns whether the classes of the current runtime can be stored, which is not the case on the Android runtime.
+     */
+    public static boolean isSupported() {
+        // ART and Dalvik both report Dalvik as the name of the VM
+        return !"Dalvik".equals(System.getProperty("java.vm.name"));
+    }
+
+    /**
+     * Returns the key of the class generated for the given type, or {@code null} when the class files of the type are not available and the class cannot be stored.
+     *
+     * @param generatorKey identifies the generator and the options that affect the generated class
+     */
+    @Nullable
+    public HashCode getKey(Class<?> type, String generatorKey) {
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null || !isSupported()) {
+            return null;
+        }
+        HashCode classLoaderHash = getClassLoaderHash(classLoader);
+        if (classLoaderHash == null) {
+            return null;
+        }
+
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putInt(VERSION);
+        hasher.putString(generatorKey, StandardCharsets.UTF_8);
+        hasher.putBytes(classLoaderHash.asBytes());
+        if (!putClassFiles(hasher, type, new HashSet<>())) {
+            return null;
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Returns the entry with the given key, or {@code null} when there is none or it cannot be read.
+     */
+    @Nullable
+    public Entry load(HashCode key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != VERSION) {
+                return null;
+            }
+            String generatedClassName = input.readBoolean() ? input.readUTF() : null;
+            List<String> injectedServices = readNames(input);
+            List<String> annotationsTriggeringServiceInjection = readNames(input);
+            byte[] classBytes = null;
+            if (generatedClassName != null) {
+                classBytes = new byte[input.readInt()];
+                input.readFully(classBytes);
+            }
+            // The entry is used, so it is the last to be pruned
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(generatedClassName, classBytes, injectedServices, annotationsTriggeringServiceInjection);
+        } catch (IOException e) {
+            // A corrupt entry is generated again
+            return null;
+        }
+    }
+
+    /**
+     * Stores the entry. Failures are ignored, the class is then generated again by the next process.
+     */
+    public void store(HashCode key, Entry entry) {
+        if (pruned.compareAndSet(false, true)) {
+            prune();
+        }
+        File file = getFile(key);
+        try {
+            Files.createDirectories(dir.toPath());
+            File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            try {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                    output.writeInt(VERSION);
+                    output.writeBoolean(entry.generatedClassName != null);
+                    if (entry.generatedClassName != null) {
+                        output.writeUTF(entry.generatedClassName);
+                    }
+                    writeNames(output, entry.injectedServices);
+                    writeNames(output, entry.annotationsTriggeringServiceInjection);
+                    if (entry.generatedClassName != null) {
+                        output.writeInt(entry.classBytes.length);
+                        output.write(entry.classBytes);
+                    }
+                }
+                try {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+        } catch (IOException e) {
+            // Ignore, the store is only a cache
+        }
+    }
+
+    /**
+     * Deletes the entries that were not used within the maximum age, and then the least recently used entries above the maximum count. Temporary files left by a process that stopped while storing are deleted with the old entries.
+     */
+    private void prune() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long minimumTimestamp = System.currentTimeMillis() - maxAgeMillis;
+        // The timestamps are read once, other processes may mark entries as used while sorting
+        Map<File, Long> entries = new HashMap<>();
+        for (File file : files) {
+            long lastModified = file.lastModified();
+            if (lastModified < minimumTimestamp) {
+                file.delete();
+            } else if (file.getName().endsWith(EXTENSION)) {
+                entries.put(file, lastModified);
+            }
+        }
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        File[] byLastUse = entries.keySet().toArray(new File[0]);
+        Arrays.sort(byLastUse, Comparator.comparingLong(entries::get));
+        for (int i = 0; i < byLastUse.length - maxEntries; i++) {
+            byLastUse[i].delete();
+        }
+    }
+
+    private File getFile(HashCode key) {
+        return new File(dir, key + EXTENSION);
+    }
+
+    @Nullable
+    private HashCode getClassLoaderHash(ClassLoader classLoader) {
+        synchronized (classLoaderHashes) {
+            if (classLoaderHashes.containsKey(classLoader)) {
+                return classLoaderHashes.get(classLoader);
+            }
+        }
+        HashCode hash = ClassLoaderHasher.hash(classLoader);
+        synchronized (classLoaderHashes) {
+            classLoaderHashes.put(classLoader, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Adds the class files of the type, its superclasses and the interfaces it implements. The classes of the platform are identified by the classloader hash.
+     */
+    private static boolean putClassFiles(Hasher hasher, Class<?> type, Set<Class<?>> visited) {
+        if (!visited.add(type)) {
+            return true;
+        }
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader != null) {
+            String resourceName = type.getName().replace('.', '/') + ".class";
+            try (InputStream input = classLoader.getResourceAsStream(resourceName)) {
+                if (input == null) {
+                    return false;
+                }
+                byte[] bytes = ByteStreams.toByteArray(input);
+                hasher.putString(type.getName(), StandardCharsets.UTF_8);
+                hasher.putInt(bytes.length);
+                hasher.putBytes(bytes);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        if (type.getSuperclass() != null && !putClassFiles(hasher, type.getSuperclass(), visited)) {
+            return false;
+        }
+        for (Class<?> anInterface : type.getInterfaces()) {
+            if (!putClassFiles(hasher, anInterface, visited)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> readNames(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(input.readUTF());
+        }
+        return names;
+    }
+
+    private static void writeNames(DataOutputStream output, List<String> names) throws IOException {
+        output.writeInt(names.size());
+        for (String name : names) {
+            output.writeUTF(name);
+        }
+    }
+
+    /**
+     * Hashes the specs and the class path of a classloader hierarchy, using the size and modification time of the files on the class path.
+     */
+    private static class ClassLoaderHasher extends ClassLoaderVisitor {
+        private final Hasher hasher = Hashing.murmur3_128().newHasher();
+        private boolean unknown;
+
+        @Nullable
+        static HashCode hash(ClassLoader classLoader) {
+            ClassLoaderHasher visitor = new ClassLoaderHasher();
+            try {
+                visitor.visit(classLoader);
+            } catch (RuntimeException e) {
+                return null;
+            }
+            return visitor.unknown ? null : visitor.hasher.hash();
+        }
+
+        @Override
+        public void visitSpec(ClassLoaderSpec spec) {
+            hasher.putString(spec.getClass().getName(), StandardCharsets.UTF_8);
+            hasher.putString(String.valueOf(System.getProperty("java.version")), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void visitClassPath(URL[] classPath) {
+            for (URL url : classPath) {
+                hasher.putString(url.toString(), StandardCharsets.UTF_8);
+                if (!"file".equals(url.getProtocol())) {
+                    unknown = true;
+                    continue;
+                }
+                File file = new File(url.getPath());
+                if (file.isFile()) {
+                    hasher.putLong(file.length());
+                    hasher.putLong(file.lastModified());
+                }
+            }
+        }
+    }
+
+    /**
+     * The class generated for a type and the results of inspecting the type.
+     */
+    public static class Entry {
+        private final String generatedClassName;
+        private final byte[] classBytes;
+        private final List<String> injectedServices;
+        private final List<String> annotationsTriggeringServiceInjection;
+
+        /**
+         * @param generatedClassName the name of the generated class, or {@code null} when the type is used without generating a class
+         */
+        public Entry(@Nullable String generatedClassName, @Nullable byte[] classBytes, List<String> injectedServices, List<String> annotationsTriggeringServiceInjection) {
+            this.generatedClassName = generatedClassName;
+            this.classBytes = classBytes;
+            this.injectedServices = Collections.unmodifiableList(injectedServices);
+            this.annotationsTriggeringServiceInjection = Collections.unmodifiableList(annotationsTriggeringServiceInjection);
+        }
+
+        @Nullable
+        public String getGeneratedClassName() {
+            return generatedClassName;
+        }
+
+        @Nullable
+        public byte[] getClassBytes() {
+            return classBytes;
+        }
+
+        public List<String> getInjectedServices() {
+            return injectedServices;
+        }
+
+        public List<String> getAnnotationsTriggeringServiceInjection() {
+            return annotationsTriggeringServiceInjection;
+        }
+    }
+}
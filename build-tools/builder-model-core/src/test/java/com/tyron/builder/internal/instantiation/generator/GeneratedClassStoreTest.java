@@ -0,0 +1,446 @@
+package com.tyron.builder.internal.instantiation.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.hash.HashCode;
+import com.tyron.builder.cache.internal.CrossBuildInMemoryCache;
+import com.tyron.builder.cache.internal.CrossBuildInMemoryCacheFactory;
+import com.tyron.builder.internal.instantiation.PropertyRoleAnnotationHandler;
+import com.tyron.builder.internal.service.ServiceLookup;
+import com.tyron.builder.internal.service.UnknownServiceException;
+import com.tyron.builder.internal.state.Managed;
+import com.tyron.builder.internal.state.ModelObject;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nullable;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class GeneratedClassStoreTest {
+    private static final int FACTORY_ID = 12;
+
+    private static final String GREETER = "package fixture;\n" +
+            "public interface Greeter {\n" +
+            "    String greet(String message);\n" +
+            "}\n";
+    private static final String DEFAULT_GREETER = "package fixture;\n" +
+            "public class DefaultGreeter implements Greeter {\n" +
+            "    public String greet(String message) { return \"greeted \" + message; }\n" +
+            "}\n";
+    private static final String OPTIONS = "package fixture;\n" +
+            "public abstract class Options {\n" +
+            "    public abstract String getLevel();\n" +
+            "    public abstract void setLevel(String level);\n" +
+            "}\n";
+    private static final String EXTENSION = "package fixture;\n" +
+            "public abstract class Extension {\n" +
+            "    private String message = \"hello\";\n" +
+            "    public String getMessage() { return message; }\n" +
+            "    public void setMessage(String message) { this.message = message; }\n" +
+            "    @javax.inject.Inject\n" +
+            "    public abstract Greeter getGreeter();\n" +
+            "    public String greet() { return getGreeter().greet(getMessage()); }\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void loadsStoredClassesInANewProcess() throws Exception {
+        File classes = compile(fixtures(EXTENSION));
+        File storeDir = tmpDir.newFolder("store");
+
+        Run generated = run(classes, new CountingStore(storeDir), "fixture.Extension", "fixture.Options");
+        assertEquals(0, generated.store.hits);
+        assertEquals(2, entries(storeDir));
+
+        Run loaded = run(classes, new CountingStore(storeDir), "fixture.Extension", "fixture.Options");
+        assertEquals(2, loaded.store.hits);
+        assertEquals(2, entries(storeDir));
+        assertEquals(generated.descriptions, loaded.descriptions);
+        assertEquals(run(classes, null, "fixture.Extension", "fixture.Options").descriptions, loaded.descriptions);
+    }
+
+    @Test
+    public void storedClassesBehaveLikeGeneratedClasses() throws Exception {
+        File classes = compile(fixtures(EXTENSION));
+        File storeDir = tmpDir.newFolder("store");
+        run(classes, new CountingStore(storeDir), "fixture.Extension", "fixture.Options");
+
+        Run loaded = run(classes, new CountingStore(storeDir), "fixture.Extension", "fixture.Options");
+        Object extension = loaded.newInstance("fixture.Extension");
+        assertEquals("greeted hello", extension.getClass().getMethod("greet").invoke(extension));
+        extension.getClass().getMethod("setMessage", String.class).invoke(extension, "world");
+        assertEquals("greeted world", extension.getClass().getMethod("greet").invoke(extension));
+
+        Object options = loaded.newInstance("fixture.Options");
+        options.getClass().getMethod("setLevel", String.class).invoke(options, "high");
+        assertEquals("high", options.getClass().getMethod("getLevel").invoke(options));
+        assertTrue(options instanceof Managed);
+        assertEquals(FACTORY_ID, ((Managed) options).getFactoryId());
+    }
+
+    @Test
+    public void ignoresEntriesOfTypesThatChanged() throws Exception {
+        File classes = compile(fixtures(EXTENSION));
+        File storeDir = tmpDir.newFolder("store");
+        run(classes, new CountingStore(storeDir), "fixture.Extension", "fixture.Options");
+
+        // the class path stays the same, only the class file of the extension changes
+        String changed = EXTENSION.replace("public String greet()",
+                "public String shout() { return greet().toUpperCase(); }\n    public String greet()");
+        compile(fixtures(changed), classes);
+        Run loaded = run(classes, new CountingStore(storeDir), "fixture.Extension", "fixture.Options");
+        assertEquals(1, loaded.store.hits);
+        assertEquals(3, entries(storeDir));
+        assertEquals(run(classes, null, "fixture.Extension", "fixture.Options").descriptions, loaded.descriptions);
+
+        Object extension = loaded.newInstance("fixture.Extension");
+        assertEquals("GREETED HELLO", extension.getClass().getMethod("shout").invoke(extension));
+    }
+
+    @Test
+    public void ignoresCorruptEntries() throws Exception {
+        File classes = compile(fixtures(EXTENSION));
+        File storeDir = tmpDir.newFolder("store");
+        Run generated = run(classes, new CountingStore(storeDir), "fixture.Extension", "fixture.Options");
+
+        for (File file : storeDir.listFiles()) {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+        }
+        Run loaded = run(classes, new CountingStore(storeDir), "fixture.Extension", "fixture.Options");
+        assertEquals(0, loaded.store.hits);
+        assertEquals(generated.descriptions, loaded.descriptions);
+
+        // the entries are written again
+        assertEquals(2, run(classes, new CountingStore(storeDir), "fixture.Extension", "fixture.Options").store.hits);
+    }
+
+    @Test
+    public void doesNotStoreClassesWithoutClassFiles() throws Exception {
+        File classes = compile(fixtures(EXTENSION));
+        // like a dex classloader, the classes are loaded but their class files are not resources
+        ClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader()) {
+            @Override
+            public URL getResource(String name) {
+                return name.endsWith(".class") ? null : super.getResource(name);
+            }
+        };
+        Class<?> type = classLoader.loadClass("fixture.Extension");
+
+        assertTrue(GeneratedClassStore.isSupported());
+        assertNull(new GeneratedClassStore(tmpDir.newFolder("store")).getKey(type, "generator"));
+    }
+
+    @Test
+    public void prunesEntriesThatWereNotUsedRecently() throws Exception {
+        File storeDir = tmpDir.newFolder("store");
+        long maxAge = TimeUnit.DAYS.toMillis(7);
+        GeneratedClassStore previous = new GeneratedClassStore(storeDir, maxAge, 10);
+        for (int i = 0; i < 3; i++) {
+            previous.store(HashCode.fromInt(i), emptyEntry());
+        }
+        long old = System.currentTimeMillis() - maxAge - TimeUnit.DAYS.toMillis(1);
+        for (File file : storeDir.listFiles()) {
+            assertTrue(file.setLastModified(old));
+        }
+        // an old entry that is read again is kept
+        GeneratedClassStore store = new GeneratedClassStore(storeDir, maxAge, 10);
+        assertNotNull(store.load(HashCode.fromInt(0)));
+
+        store.store(HashCode.fromInt(3), emptyEntry());
+        assertEquals(2, entries(storeDir));
+        assertNotNull(store.load(HashCode.fromInt(0)));
+        assertNull(store.load(HashCode.fromInt(1)));
+        assertNull(store.load(HashCode.fromInt(2)));
+        assertNotNull(store.load(HashCode.fromInt(3)));
+    }
+
+    @Test
+    public void keepsTheMostRecentlyUsedEntries() throws Exception {
+        File storeDir = tmpDir.newFolder("store");
+        long maxAge = TimeUnit.DAYS.toMillis(7);
+        GeneratedClassStore previous = new GeneratedClassStore(storeDir, maxAge, 3);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            previous.store(HashCode.fromInt(i), emptyEntry());
+            // entry 0 is the least recently used one
+            assertTrue(new File(storeDir, HashCode.fromInt(i) + ".bin").setLastModified(now - TimeUnit.HOURS.toMillis(5 - i)));
+        }
+        assertEquals(5, entries(storeDir));
+
+        new GeneratedClassStore(storeDir, maxAge, 3).store(HashCode.fromInt(5), emptyEntry());
+        assertEquals(4, entries(storeDir));
+        GeneratedClassStore store = new GeneratedClassStore(storeDir, maxAge, 3);
+        assertNull(store.load(HashCode.fromInt(0)));
+        assertNull(store.load(HashCode.fromInt(1)));
+        assertNotNull(store.load(HashCode.fromInt(5)));
+    }
+
+    @Test
+    public void coldStartWithAndWithoutStore() throws Exception {
+        Map<String, String> sources = fixtures(EXTENSION);
+        List<String> types = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            StringBuilder source = new StringBuilder("package fixture;\npublic abstract class Extension" + i + " {\n");
+            for (int j = 0; j < 10; j++) {
+                source.append("    public abstract String getProperty").append(j).append("();\n");
+                source.append("    public abstract void setProperty").append(j).append("(String value);\n");
+                source.append("    public void action").append(j).append("(com.tyron.builder.api.Action<? super Options> action) {}\n");
+            }
+            source.append("    @javax.inject.Inject\n    public abstract Greeter getGreeter();\n}\n");
+            sources.put("fixture/Extension" + i + ".java", source.toString());
+            types.add("fixture.Extension" + i);
+        }
+        File classes = compile(sources);
+        File storeDir = tmpDir.newFolder("store");
+        String[] names = types.toArray(new String[0]);
+
+        long start = System.nanoTime();
+        Run generated = run(classes, new CountingStore(storeDir), names);
+        long empty = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Run loaded = run(classes, new CountingStore(storeDir), names);
+        long populated = System.nanoTime() - start;
+
+        assertEquals(types.size(), loaded.store.hits);
+        assertEquals(generated.descriptions, loaded.descriptions);
+        System.out.println(types.size() + " types: " + empty / 1_000_000 + " ms with an empty store, "
+                + populated / 1_000_000 + " ms with a populated store");
+    }
+
+    /**
+     * Generates the classes for the types in a new classloader, like a new process would.
+     */
+    private Run run(File classes, @Nullable CountingStore store, String... typeNames) throws Exception {
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+        ClassGenerator generator = AsmBackedClassGenerator.decorateAndInject(
+                Collections.emptyList(), new NoOpRoleHandler(), Collections.emptyList(), new TestCacheFactory(), store, FACTORY_ID);
+        Run run = new Run(classLoader, store);
+        for (String typeName : typeNames) {
+            Class<?> type = classLoader.loadClass(typeName);
+            ClassGenerator.GeneratedClass<?> generatedClass = generator.generate(type);
+            assertNotSame(type, generatedClass.getGeneratedClass());
+            assertEquals(type, generatedClass.getGeneratedClass().getSuperclass());
+            run.generated.put(typeName, generatedClass);
+            run.descriptions.put(typeName, describe(generatedClass));
+        }
+        return run;
+    }
+
+    private static String describe(ClassGenerator.GeneratedClass<?> generatedClass) throws ClassNotFoundException {
+        Class<?> type = generatedClass.getGeneratedClass();
+        List<String> members = new ArrayList<>();
+        for (Method method : type.getDeclaredMethods()) {
+            members.add(method.toGenericString());
+        }
+        for (Field field : type.getDeclaredFields()) {
+            members.add(field.toGenericString());
+        }
+        Collections.sort(members);
+        StringBuilder builder = new StringBuilder(type.getName());
+        for (Class<?> anInterface : type.getInterfaces()) {
+            builder.append(" implements ").append(anInterface.getName());
+        }
+        builder.append(" outer=").append(generatedClass.getOuterType());
+        for (ClassGenerator.GeneratedConstructor<?> constructor : generatedClass.getConstructors()) {
+            builder.append(" constructor=").append(Arrays.toString(constructor.getParameterTypes()))
+                    .append(" requiresGreeter=").append(constructor.requiresService(type.getClassLoader().loadClass("fixture.Greeter")));
+        }
+        for (String member : members) {
+            builder.append('\n').append(member);
+        }
+        return builder.toString();
+    }
+
+    private static int entries(File storeDir) {
+        String[] names = storeDir.list((dir, name) -> name.endsWith(".bin"));
+        return names == null ? 0 : names.length;
+    }
+
+    private Map<String, String> fixtures(String extension) {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("fixture/Greeter.java", GREETER);
+        sources.put("fixture/DefaultGreeter.java", DEFAULT_GREETER);
+        sources.put("fixture/Options.java", OPTIONS);
+        sources.put("fixture/Extension.java", extension);
+        return sources;
+    }
+
+    private File compile(Map<String, String> sources) throws IOException {
+        return compile(sources, tmpDir.newFolder());
+    }
+
+    private File compile(Map<String, String> sources, File classesDir) throws IOException {
+        File sourceDir = tmpDir.newFolder();
+        List<String> args = new ArrayList<>();
+        args.add("-d");
+        args.add(classesDir.getPath());
+        args.add("-cp");
+        args.add(System.getProperty("java.class.path"));
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            File file = new File(sourceDir, entry.getKey());
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), entry.getValue().getBytes(StandardCharsets.UTF_8));
+            args.add(file.getPath());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler);
+        assertEquals(0, compiler.run(null, null, null, args.toArray(new String[0])));
+        return classesDir;
+    }
+
+    private static class Run {
+        private final ClassLoader classLoader;
+        private final CountingStore store;
+        private final Map<String, ClassGenerator.GeneratedClass<?>> generated = new HashMap<>();
+        private final Map<String, String> descriptions = new LinkedHashMap<>();
+
+        Run(ClassLoader classLoader, CountingStore store) {
+            this.classLoader = classLoader;
+            this.store = store;
+        }
+
+        Object newInstance(String typeName) throws Exception {
+            Object greeter = classLoader.loadClass("fixture.DefaultGreeter").getConstructor().newInstance();
+            Class<?> greeterType = classLoader.loadClass("fixture.Greeter");
+            ServiceLookup services = new ServiceLookup() {
+                @Nullable
+                @Override
+                public Object find(Type serviceType) {
+                    return serviceType.equals(greeterType) ? greeter : null;
+                }
+
+                @Override
+                public Object get(Type serviceType) {
+                    Object service = find(serviceType);
+                    if (service == null) {
+                        throw new UnknownServiceException(serviceType, "No service of type " + serviceType);
+                    }
+                    return service;
+                }
+
+                @Override
+                public Object get(Type serviceType, Class<? extends Annotation> annotatedWith) {
+                    return get(serviceType);
+                }
+            };
+            return generated.get(typeName).getConstructors().get(0).newInstance(services, null, null, new Object[0]);
+        }
+    }
+
+    private static GeneratedClassStore.Entry emptyEntry() {
+        return new GeneratedClassStore.Entry(null, null, Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static class CountingStore extends GeneratedClassStore {
+        private int hits;
+
+        CountingStore(File dir) {
+            super(dir);
+        }
+
+        @Nullable
+        @Override
+        public Entry load(HashCode key) {
+            Entry entry = super.load(key);
+            if (entry != null) {
+                hits++;
+            }
+            return entry;
+        }
+    }
+
+    private static class NoOpRoleHandler implements PropertyRoleAnnotationHandler {
+        @Override
+        public Set<Class<? extends Annotation>> getAnnotationTypes() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void applyRoleTo(ModelObject owner, Object target) {
+        }
+    }
+
+    private static class TestCacheFactory implements CrossBuildInMemoryCacheFactory {
+        @Override
+        public <K, V> CrossBuildInMemoryCache<K, V> newCache() {
+            return new MapCache<>();
+        }
+
+        @Override
+        public <K, V> CrossBuildInMemoryCache<K, V> newCacheRetainingDataFromPreviousBuild(Predicate<V> retentionFilter) {
+            return new MapCache<>();
+        }
+
+        @Override
+        public <V> CrossBuildInMemoryCache<Class<?>, V> newClassCache() {
+            return new MapCache<>();
+        }
+
+        @Override
+        public <V> CrossBuildInMemoryCache<Class<?>, V> newClassMap() {
+            return new MapCache<>();
+        }
+    }
+
+    private static class MapCache<K, V> implements CrossBuildInMemoryCache<K, V> {
+        private final Map<K, V> values = new HashMap<>();
+
+        @Override
+        public synchronized V get(K key, Function<? super K, ? extends V> factory) {
+            V value = values.get(key);
+            if (value == null) {
+                value = factory.apply(key);
+                values.put(key, value);
+            }
+            return value;
+        }
+
+        @Nullable
+        @Override
+        public synchronized V getIfPresent(K key) {
+            return values.get(key);
+        }
+
+        @Override
+        public synchronized void put(K key, V value) {
+            values.put(key, value);
+        }
+
+        @Override
+        public synchronized void clear() {
+            values.clear();
+        }
+    }
+}
@@ -21,18 +21,21 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 // todo - stream serialised value to file
 // todo - handle hash collisions (properly, this time)
 // todo - don't store null links to child blocks in leaf index blocks
-// todo - align block boundaries
-// todo - thread safety control
 // todo - merge small values into a single data block
 // todo - discard when file corrupt
 // todo - include data directly in index entry when serializer can guarantee small fixed sized data
-// todo - free list leaks disk space
-// todo - merge adjacent free blocks
-// todo - use more efficient lookup for free block with nearest size
+
+/**
+ * A persistent map stored in a B-tree of key hashes.
+ *
+ * <p>Entries can be read by several threads at the same time, modifications are exclusive.
+ */
 @SuppressWarnings("unchecked")
 public class BTreePersistentIndexedCache<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class.getSimpleName());
@@ -42,6 +45,7 @@ public class BTreePersistentIndexedCache<K, V> {
     private final short maxChildIndexEntries;
     private final int minIndexChildNodes;
     private final StateCheckBlockStore store;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private HeaderBlock header;
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
@@ -58,10 +62,13 @@ public class BTreePersistentIndexedCache<K, V> {
         BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), ImmutableSet
                 .of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
         this.store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
+        lock.writeLock().lock();
         try {
             open();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -112,13 +119,24 @@ public class BTreePersistentIndexedCache<K, V> {
     public V get(K key) {
         try {
             try {
-                DataBlock block = header.getRoot().get(key);
-                if (block != null) {
-                    return block.getValue();
+                // readers only share the index blocks, which are not modified while the read lock is held
+                lock.readLock().lock();
+                try {
+                    DataBlock block = header.getRoot().get(key);
+                    if (block != null) {
+                        return block.getValue();
+                    }
+                    return null;
+                } finally {
+                    lock.readLock().unlock();
                 }
-                return null;
             } catch (CorruptedCacheException e) {
-                rebuild();
+                lock.writeLock().lock();
+                try {
+                    rebuild();
+                } finally {
+                    lock.writeLock().unlock();
+                }
                 return null;
             }
         } catch (Exception e) {
@@ -127,6 +145,7 @@ public class BTreePersistentIndexedCache<K, V> {
     }
 
     public void put(K key, V value) {
+        lock.writeLock().lock();
         try {
             long hashCode = keyHasher.getHashCode(key);
             Lookup lookup = header.getRoot().find(hashCode);
@@ -148,10 +167,13 @@ public class BTreePersistentIndexedCache<K, V> {
             store.flush();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public void remove(K key) {
+        lock.writeLock().lock();
         try {
             Lookup lookup = header.getRoot().find(key);
             if (lookup.entry == null) {
@@ -163,6 +185,8 @@ public class BTreePersistentIndexedCache<K, V> {
             store.flush();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -175,25 +199,36 @@ public class BTreePersistentIndexedCache<K, V> {
     }
 
     public void reset() {
-        close();
+        lock.writeLock().lock();
         try {
+            close();
             open();
         } catch (Exception e) {
             throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public void close() {
         LOGGER.debug("Closing " + this);
+        lock.writeLock().lock();
         try {
             store.close();
         } catch (Exception e) {
             throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public boolean isOpen() {
-        return store.isOpen();
+        lock.readLock().lock();
+        try {
+            return store.isOpen();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     private void rebuild() {
@@ -207,11 +242,14 @@ public class BTreePersistentIndexedCache<K, V> {
     }
 
     public void verify() {
+        lock.writeLock().lock();
         try {
             doVerify();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Some problems were found when checking the integrity of %s.",
                     this), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -279,12 +317,15 @@ public class BTreePersistentIndexedCache<K, V> {
     }
 
     public void clear() {
-        store.clear();
-        close();
+        lock.writeLock().lock();
         try {
+            store.clear();
+            close();
             doOpen();
         } catch (Exception e) {
             throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -2,8 +2,6 @@ package com.tyron.builder.cache.internal.btree;
 
 import com.google.common.io.CountingInputStream;
 
-import org.apache.commons.io.input.RandomAccessFileInputStream;
-
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -12,22 +10,26 @@ import java.io.RandomAccessFile;
 
 /**
  * Allows a stream of bytes to be read from a particular location of some backing byte stream.
+ *
+ * <p>Reads move the position of the file, so every thread that reads concurrently needs an instance with a file of
+ * its own. The file is not read through its channel: an interrupt of a thread blocked in a channel read closes the
+ * channel, which would fail the reads of every other thread.
  */
 class ByteInput {
-    private final RandomAccessFile file;
+    private final RandomAccessFileInputStream fileInputStream;
     private final ResettableBufferedInputStream bufferedInputStream;
     private CountingInputStream countingInputStream;
 
     public ByteInput(RandomAccessFile file) {
-        this.file = file;
-        bufferedInputStream = new ResettableBufferedInputStream(new RandomAccessFileInputStream(file));
+        fileInputStream = new RandomAccessFileInputStream(file);
+        bufferedInputStream = new ResettableBufferedInputStream(fileInputStream);
     }
 
     /**
      * Starts reading from the given offset.
      */
     public DataInputStream start(long offset) throws IOException {
-        file.seek(offset);
+        fileInputStream.file.seek(offset);
         bufferedInputStream.clear();
         countingInputStream = new CountingInputStream(bufferedInputStream);
         return new DataInputStream(countingInputStream);
@@ -47,6 +49,27 @@ class ByteInput {
         countingInputStream = null;
     }
 
+    /**
+     * Reads from a {@link RandomAccessFile}. Each operation reads from and advances the current position of the file.
+     */
+    private static class RandomAccessFileInputStream extends InputStream {
+        private final RandomAccessFile file;
+
+        RandomAccessFileInputStream(RandomAccessFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return file.read();
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return file.read(bytes, offset, length);
+        }
+    }
+
     private static class ResettableBufferedInputStream extends BufferedInputStream {
         ResettableBufferedInputStream(InputStream input) {
             super(input);
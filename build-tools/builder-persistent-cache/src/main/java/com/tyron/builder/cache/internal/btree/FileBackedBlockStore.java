@@ -8,12 +8,25 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores blocks in a file. The size of every block is a multiple of {@link #BLOCK_ALIGNMENT}, so that blocks start
+ * at aligned positions and the space of a removed block can be reused by a block of the same size class.
+ *
+ * <p>Blocks can be read by several threads at the same time, as long as no block is written concurrently. Every
+ * reading thread opens the file once for reading, the files are closed with the store.
+ */
 public class FileBackedBlockStore implements BlockStore {
+    static final int BLOCK_ALIGNMENT = 32;
+
     private final File cacheFile;
     private RandomAccessFile file;
     private ByteOutput output;
-    private ByteInput input;
+    private ThreadLocal<ByteInput> input;
+    // the files opened by the reading threads, guarded by itself
+    private final List<RandomAccessFile> readers = new ArrayList<RandomAccessFile>();
     private long nextBlock;
     private Factory factory;
     private long currentFileSize;
@@ -34,9 +47,22 @@ public class FileBackedBlockStore implements BlockStore {
             cacheFile.getParentFile().mkdirs();
             file = openRandomAccessFile();
             output = new ByteOutput(file);
-            input = new ByteInput(file);
+            input = new ThreadLocal<ByteInput>() {
+                @Override
+                protected ByteInput initialValue() {
+                    try {
+                        RandomAccessFile reader = randomAccessFile("r");
+                        synchronized (readers) {
+                            readers.add(reader);
+                        }
+                        return new ByteInput(reader);
+                    } catch (FileNotFoundException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
             currentFileSize = file.length();
-            nextBlock = currentFileSize;
+            nextBlock = align(currentFileSize);
             if (currentFileSize == 0) {
                 runnable.run();
             }
@@ -60,6 +86,12 @@ public class FileBackedBlockStore implements BlockStore {
     @Override
     public void close() {
         try {
+            synchronized (readers) {
+                for (RandomAccessFile reader : readers) {
+                    reader.close();
+                }
+                readers.clear();
+            }
             file.close();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -128,10 +160,14 @@ public class FileBackedBlockStore implements BlockStore {
 
     private long alloc(long length) {
         long pos = nextBlock;
-        nextBlock += length;
+        nextBlock += align(length);
         return pos;
     }
 
+    private static long align(long size) {
+        return (size + BLOCK_ALIGNMENT - 1) / BLOCK_ALIGNMENT * BLOCK_ALIGNMENT;
+    }
+
     private final class BlockImpl extends Block {
         private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
         private static final int TAIL_SIZE = INT_SIZE;
@@ -172,7 +208,8 @@ public class FileBackedBlockStore implements BlockStore {
         @Override
         public int getSize() {
             if (payloadSize < 0) {
-                payloadSize = getPayload().getSize();
+                // the padding up to the next aligned position is part of the payload, so the block owns it
+                payloadSize = (int) align(getPayload().getSize() + HEADER_SIZE + TAIL_SIZE) - HEADER_SIZE - TAIL_SIZE;
             }
             return payloadSize + HEADER_SIZE + TAIL_SIZE;
         }
@@ -221,6 +258,7 @@ public class FileBackedBlockStore implements BlockStore {
                 throw blockCorruptedException();
             }
 
+            ByteInput input = FileBackedBlockStore.this.input.get();
             DataInputStream inputStream = input.start(pos);
 
             BlockPayload payload = getPayload();
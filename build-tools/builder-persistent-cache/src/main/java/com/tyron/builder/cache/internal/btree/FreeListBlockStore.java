@@ -3,29 +3,46 @@ package com.tyron.builder.cache.internal.btree;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Reuses the space of removed blocks.
+ *
+ * <p>The free space is kept in memory, indexed by position so that adjacent free blocks are merged and by size so
+ * that the smallest free block that fits a new block is found without scanning. A free block larger than the new
+ * block is split and the rest stays free. The free space is persisted in a chain of blocks at the start of the
+ * store, sorted by position, when the store is flushed.
+ */
 public class FreeListBlockStore implements BlockStore {
     private final BlockStore store;
-    private final BlockStore freeListStore;
     private final int maxBlockEntries;
+    private final FreeSpace freeSpace = new FreeSpace();
+    private final List<FreeListBlock> freeListBlocks = new ArrayList<FreeListBlock>();
     private FreeListBlock freeListBlock;
+    private boolean freeSpaceChanged;
 
     public FreeListBlockStore(BlockStore store, int maxBlockEntries) {
         this.store = store;
-        freeListStore = this;
         this.maxBlockEntries = maxBlockEntries;
     }
 
     @Override
     public void open(final Runnable initAction, final Factory factory) {
+        freeSpace.clear();
+        freeListBlocks.clear();
+        freeSpaceChanged = false;
         Runnable freeListInitAction = new Runnable() {
             @Override
             public void run() {
                 freeListBlock = new FreeListBlock();
                 store.write(freeListBlock);
                 store.flush();
+                freeListBlocks.add(freeListBlock);
                 initAction.run();
             }
         };
@@ -41,24 +58,56 @@ public class FreeListBlockStore implements BlockStore {
 
         store.open(freeListInitAction, freeListFactory);
         freeListBlock = store.readFirst(FreeListBlock.class);
+        readFreeSpace();
+    }
+
+    private void readFreeSpace() {
+        freeSpace.clear();
+        freeListBlocks.clear();
+        Set<BlockPointer> visited = new HashSet<BlockPointer>();
+        FreeListBlock block = freeListBlock;
+        while (true) {
+            if (!visited.add(block.getPos())) {
+                throw block.blockCorruptedException();
+            }
+            freeListBlocks.add(block);
+            for (FreeListEntry entry : block.entries) {
+                if (freeSpace.overlaps(entry.pos.getPos(), entry.size)) {
+                    throw block.blockCorruptedException();
+                }
+                freeSpace.free(entry.pos.getPos(), entry.size);
+            }
+            if (block.nextBlock.isNull()) {
+                break;
+            }
+            block = store.read(block.nextBlock, FreeListBlock.class);
+        }
+        freeSpaceChanged = false;
     }
 
     @Override
     public void close() {
         freeListBlock = null;
+        freeListBlocks.clear();
+        freeSpace.clear();
         store.close();
     }
 
     @Override
     public void clear() {
+        freeListBlocks.clear();
+        freeSpace.clear();
         store.clear();
     }
 
     @Override
     public void remove(BlockPayload block) {
         Block container = block.getBlock();
+        BlockPointer pos = container.getPos();
+        int size = container.getSize();
         store.remove(block);
-        freeListBlock.add(container.getPos(), container.getSize());
+        freeSpace.free(pos.getPos(), size);
+        freeSpaceChanged = true;
     }
 
     @Override
@@ -80,68 +129,87 @@ public class FreeListBlockStore implements BlockStore {
     @Override
     public void attach(BlockPayload block) {
         store.attach(block);
-        freeListBlock.alloc(block.getBlock());
+        Block container = block.getBlock();
+        if (container.hasPos()) {
+            return;
+        }
+        int size = container.getSize();
+        long pos = freeSpace.allocate(size);
+        if (pos >= 0) {
+            container.setPos(BlockPointer.pos(pos));
+            container.setSize(size);
+            freeSpaceChanged = true;
+        }
     }
 
     @Override
     public void flush() {
+        if (freeSpaceChanged) {
+            writeFreeSpace();
+            freeSpaceChanged = false;
+        }
         store.flush();
     }
 
-    private void verify() {
-        FreeListBlock block = store.readFirst(FreeListBlock.class);
-        verify(block, Integer.MAX_VALUE);
-    }
-
-    private void verify(FreeListBlock block, int maxValue) {
-        if (block.largestInNextBlock > maxValue) {
-            throw new RuntimeException("corrupt free list");
+    /**
+     * Writes the free space to the chain of free list blocks, adding blocks at the end of the store when the chain
+     * is too short. The blocks of the chain are never removed, a shorter free list leaves the last blocks empty.
+     */
+    private void writeFreeSpace() {
+        List<FreeListEntry> entries = freeSpace.getEntries();
+        int requiredBlocks = Math.max(1, (entries.size() + maxBlockEntries - 1) / maxBlockEntries);
+        while (freeListBlocks.size() < requiredBlocks) {
+            FreeListBlock last = freeListBlocks.get(freeListBlocks.size() - 1);
+            FreeListBlock block = new FreeListBlock();
+            // not allocated from the free space, which is being written
+            store.write(block);
+            last.nextBlock = block.getPos();
+            last.changed = true;
+            freeListBlocks.add(block);
         }
-        int current = 0;
-        for (FreeListEntry entry : block.entries) {
-            if (entry.size > maxValue) {
-                throw new RuntimeException("corrupt free list");
-            }
-            if (entry.size < block.largestInNextBlock) {
-                throw new RuntimeException("corrupt free list");
-            }
-            if (entry.size < current) {
-                throw new RuntimeException("corrupt free list");
+
+        for (int i = 0; i < freeListBlocks.size(); i++) {
+            FreeListBlock block = freeListBlocks.get(i);
+            int from = Math.min(entries.size(), i * maxBlockEntries);
+            int to = Math.min(entries.size(), from + maxBlockEntries);
+            List<FreeListEntry> blockEntries = entries.subList(from, to);
+            if (block.changed || !block.entries.equals(blockEntries)) {
+                block.entries = new ArrayList<FreeListEntry>(blockEntries);
+                block.changed = false;
+                store.write(block);
             }
-            current = entry.size;
-        }
-        if (!block.nextBlock.isNull()) {
-            verify(store.read(block.nextBlock, FreeListBlock.class), block.largestInNextBlock);
         }
     }
 
     public class FreeListBlock extends BlockPayload {
         private List<FreeListEntry> entries = new ArrayList<FreeListEntry>();
-        private int largestInNextBlock;
         private BlockPointer nextBlock = BlockPointer.start();
         // Transient fields
-        private FreeListBlock prev;
-        private FreeListBlock next;
+        private boolean changed;
 
         @Override
         protected int getSize() {
-            return Block.LONG_SIZE + Block.INT_SIZE + Block.INT_SIZE + maxBlockEntries * (Block.LONG_SIZE
-                                                                                          + Block.INT_SIZE);
+            return Block.LONG_SIZE + Block.INT_SIZE + maxBlockEntries * (Block.LONG_SIZE + Block.INT_SIZE);
         }
 
         @Override
         protected byte getType() {
-            return 0x44;
+            return 0x45;
         }
 
         @Override
         protected void read(DataInputStream inputStream) throws Exception {
             nextBlock = BlockPointer.pos(inputStream.readLong());
-            largestInNextBlock = inputStream.readInt();
             int count = inputStream.readInt();
+            if (count < 0 || count > maxBlockEntries) {
+                throw blockCorruptedException();
+            }
             for (int i = 0; i < count; i++) {
                 BlockPointer pos = BlockPointer.pos(inputStream.readLong());
                 int size = inputStream.readInt();
+                if (pos.isNull() || size <= 0) {
+                    throw blockCorruptedException();
+                }
                 entries.add(new FreeListEntry(pos, size));
             }
         }
@@ -149,120 +217,122 @@ public class FreeListBlockStore implements BlockStore {
         @Override
         protected void write(DataOutputStream outputStream) throws Exception {
             outputStream.writeLong(nextBlock.getPos());
-            outputStream.writeInt(largestInNextBlock);
             outputStream.writeInt(entries.size());
             for (FreeListEntry entry : entries) {
                 outputStream.writeLong(entry.pos.getPos());
                 outputStream.writeInt(entry.size);
             }
         }
+    }
 
-        public void add(BlockPointer pos, int size) {
-            assert !pos.isNull() && size >= 0;
-            if (size == 0) {
-                return;
-            }
+    private static class FreeListEntry {
+        final BlockPointer pos;
+        final int size;
 
-            if (size < largestInNextBlock) {
-                FreeListBlock next = getNextBlock();
-                next.add(pos, size);
-                return;
-            }
+        private FreeListEntry(BlockPointer pos, int size) {
+            this.pos = pos;
+            this.size = size;
+        }
 
-            FreeListEntry entry = new FreeListEntry(pos, size);
-            int index = Collections.binarySearch(entries, entry);
-            if (index < 0) {
-                index = -index - 1;
-            }
-            entries.add(index, entry);
-
-            if (entries.size() > maxBlockEntries) {
-                FreeListBlock newBlock = new FreeListBlock();
-                newBlock.largestInNextBlock = largestInNextBlock;
-                newBlock.nextBlock = nextBlock;
-                newBlock.prev = this;
-                newBlock.next = next;
-                next = newBlock;
-
-                List<FreeListEntry> newBlockEntries = entries.subList(0, entries.size() / 2);
-                newBlock.entries.addAll(newBlockEntries);
-                newBlockEntries.clear();
-                largestInNextBlock = newBlock.entries.get(newBlock.entries.size() - 1).size;
-                freeListStore.write(newBlock);
-                nextBlock = newBlock.getPos();
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FreeListEntry)) {
+                return false;
             }
-
-            freeListStore.write(this);
+            FreeListEntry other = (FreeListEntry) obj;
+            return pos.equals(other.pos) && size == other.size;
         }
 
-        private FreeListBlock getNextBlock() {
-            if (next == null) {
-                next = freeListStore.read(nextBlock, FreeListBlock.class);
-                next.prev = this;
-            }
-            return next;
+        @Override
+        public int hashCode() {
+            return 31 * pos.hashCode() + size;
         }
+    }
 
-        public void alloc(Block block) {
-            if (block.hasPos()) {
-                return;
-            }
+    /**
+     * The free blocks, by position and by size.
+     */
+    private static class FreeSpace {
+        private final TreeMap<Long, Integer> sizesByPos = new TreeMap<Long, Integer>();
+        private final TreeMap<Integer, TreeSet<Long>> posBySize = new TreeMap<Integer, TreeSet<Long>>();
 
-            int requiredSize = block.getSize();
+        void clear() {
+            sizesByPos.clear();
+            posBySize.clear();
+        }
 
-            if (entries.isEmpty() || requiredSize <= largestInNextBlock) {
-                if (nextBlock.isNull()) {
-                    return;
-                }
-                getNextBlock().alloc(block);
-                return;
+        boolean overlaps(long pos, int size) {
+            Map.Entry<Long, Integer> floor = sizesByPos.floorEntry(pos);
+            if (floor != null && floor.getKey() + floor.getValue() > pos) {
+                return true;
             }
+            Long ceiling = sizesByPos.ceilingKey(pos);
+            return ceiling != null && ceiling < pos + size;
+        }
 
-            int index = Collections.binarySearch(entries, new FreeListEntry(null, requiredSize));
-            if (index < 0) {
-                index = -index - 1;
+        /**
+         * Adds a free block, merging it with the free blocks right before and after it.
+         */
+        void free(long pos, int size) {
+            Map.Entry<Long, Integer> before = sizesByPos.lowerEntry(pos);
+            if (before != null && before.getKey() + before.getValue() == pos
+                    && (long) before.getValue() + size <= Integer.MAX_VALUE) {
+                remove(before.getKey(), before.getValue());
+                pos = before.getKey();
+                size += before.getValue();
             }
-            if (index == entries.size()) {
-                // Largest free block is too small
-                return;
+            Integer after = sizesByPos.get(pos + size);
+            if (after != null && (long) size + after <= Integer.MAX_VALUE) {
+                remove(pos + size, after);
+                size += after;
             }
+            add(pos, size);
+        }
 
-            FreeListEntry entry = entries.remove(index);
-            block.setPos(entry.pos);
-            block.setSize(entry.size);
-            freeListStore.write(this);
-
-            if (entries.size() == 0 && prev != null) {
-                prev.nextBlock = nextBlock;
-                prev.largestInNextBlock = largestInNextBlock;
-                prev.next = next;
-                if (next != null) {
-                    next.prev = prev;
-                }
-                freeListStore.write(prev);
-                freeListStore.remove(this);
+        /**
+         * Takes the space of a block from the smallest free block that is large enough.
+         *
+         * @return the position of the block, or -1 if no free block is large enough
+         */
+        long allocate(int size) {
+            Map.Entry<Integer, TreeSet<Long>> candidates = posBySize.ceilingEntry(size);
+            if (candidates == null) {
+                return -1;
             }
+            int freeSize = candidates.getKey();
+            long pos = candidates.getValue().first();
+            remove(pos, freeSize);
+            if (freeSize > size) {
+                add(pos + size, freeSize - size);
+            }
+            return pos;
         }
-    }
 
-    private static class FreeListEntry implements Comparable<FreeListEntry> {
-        final BlockPointer pos;
-        final int size;
-
-        private FreeListEntry(BlockPointer pos, int size) {
-            this.pos = pos;
-            this.size = size;
+        List<FreeListEntry> getEntries() {
+            List<FreeListEntry> entries = new ArrayList<FreeListEntry>(sizesByPos.size());
+            for (Map.Entry<Long, Integer> entry : sizesByPos.entrySet()) {
+                entries.add(new FreeListEntry(BlockPointer.pos(entry.getKey()), entry.getValue()));
+            }
+            return entries;
         }
 
-        @Override
-        public int compareTo(FreeListEntry o) {
-            if (size > o.size) {
-                return 1;
+        private void add(long pos, int size) {
+            sizesByPos.put(pos, size);
+            TreeSet<Long> positions = posBySize.get(size);
+            if (positions == null) {
+                positions = new TreeSet<Long>();
+                posBySize.put(size, positions);
             }
-            if (size < o.size) {
-                return -1;
+            positions.add(pos);
+        }
+
+        private void remove(long pos, int size) {
+            sizesByPos.remove(pos);
+            TreeSet<Long> positions = posBySize.get(size);
+            positions.remove(pos);
+            if (positions.isEmpty()) {
+                posBySize.remove(size);
             }
-            return 0;
         }
     }
-}
\ No newline at end of file
+}
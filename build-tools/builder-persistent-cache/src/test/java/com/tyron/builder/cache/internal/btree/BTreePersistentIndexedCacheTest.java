@@ -0,0 +1,409 @@
+package com.tyron.builder.cache.internal.btree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.tyron.builder.internal.serialize.BaseSerializerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BTreePersistentIndexedCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File cacheFile;
+    private BTreePersistentIndexedCache<String, String> cache;
+
+    @Before
+    public void setup() throws IOException {
+        cacheFile = new File(temporaryFolder.getRoot(), "cache.bin");
+    }
+
+    @After
+    public void tearDown() {
+        if (cache != null && cache.isOpen()) {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testRandomOperationsMatchMap() {
+        // small index and free list blocks so that splits, merges and free list chains happen often
+        cache = createCache((short) 4, 4);
+        Map<String, String> model = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            String key = "key" + random.nextInt(500);
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                String value = randomValue(random, key);
+                cache.put(key, value);
+                model.put(key, value);
+            } else if (operation < 8) {
+                cache.remove(key);
+                model.remove(key);
+            } else {
+                assertEquals(key, model.get(key), cache.get(key));
+            }
+
+            if (i % 2_000 == 1_999) {
+                cache.verify();
+                cache.close();
+                cache = createCache((short) 4, 4);
+                assertContents(model);
+            }
+        }
+        cache.verify();
+        assertContents(model);
+    }
+
+    @Test
+    public void testRemovedSpaceIsReused() {
+        cache = createCache((short) 4, 4);
+        Random random = new Random(7);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String key = "key" + i;
+            keys.add(key);
+            cache.put(key, randomValue(random, key));
+        }
+        long size = cacheFile.length();
+
+        // replacing every entry with values of similar sizes should reuse the freed blocks
+        for (int round = 0; round < 10; round++) {
+            Collections.shuffle(keys, random);
+            for (String key : keys.subList(0, 100)) {
+                cache.remove(key);
+            }
+            for (String key : keys.subList(0, 100)) {
+                cache.put(key, randomValue(random, key));
+            }
+        }
+        cache.verify();
+        assertTrue("grew from " + size + " to " + cacheFile.length(),
+                cacheFile.length() < size * 2);
+    }
+
+    @Test
+    public void testTruncatedFileIsDiscarded() throws IOException {
+        cache = createCache((short) 4, 4);
+        Map<String, String> model = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 300; i++) {
+            String key = "key" + i;
+            String value = randomValue(random, key);
+            cache.put(key, value);
+            model.put(key, value);
+        }
+        cache.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        cache = createCache((short) 4, 4);
+        int missing = 0;
+        for (Map.Entry<String, String> entry : model.entrySet()) {
+            // an entry is either intact or gone, never a wrong value or an exception
+            String value = cache.get(entry.getKey());
+            if (value == null) {
+                missing++;
+            } else {
+                assertEquals(entry.getValue(), value);
+            }
+        }
+        assertTrue(missing > 0);
+
+        assertUsable();
+    }
+
+    @Test
+    public void testCorruptHeaderIsDiscarded() throws IOException {
+        cache = createCache((short) 4, 4);
+        cache.put("key", "value");
+        cache.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.setLength(10);
+        }
+        cache = createCache((short) 4, 4);
+        assertNull(cache.get("key"));
+        assertUsable();
+
+        cache.close();
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.seek(1);
+            // an impossible payload size
+            file.writeInt(Integer.MAX_VALUE);
+        }
+        cache = createCache((short) 4, 4);
+        assertNull(cache.get("key"));
+        assertUsable();
+    }
+
+    @Test
+    public void testPreviousFormatIsDiscarded() throws IOException {
+        writePreviousFormat(cacheFile);
+
+        cache = createCache((short) 512, 512);
+        assertNull(cache.get("key"));
+        assertUsable();
+        cache.close();
+
+        cache = createCache((short) 512, 512);
+        assertEquals("value0", cache.get("key0"));
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriter() throws Exception {
+        cache = createCache((short) 8, 8);
+        int keyCount = 200;
+        for (int i = 0; i < keyCount; i++) {
+            cache.put("key" + i, "key" + i + ":0");
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            Thread reader = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    while (!done.get()) {
+                        String key = "key" + random.nextInt(keyCount);
+                        String value = cache.get(key);
+                        // a value is either missing or one that was written for this key
+                        if (value != null && !value.startsWith(key + ":")) {
+                            failures.add(new AssertionError(key + " has value " + value));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        Map<String, String> model = new HashMap<>();
+        Random random = new Random(100);
+        start.countDown();
+        try {
+            for (int i = 1; i <= 5_000; i++) {
+                String key = "key" + random.nextInt(keyCount);
+                if (random.nextInt(4) == 0) {
+                    cache.remove(key);
+                    model.put(key, null);
+                } else {
+                    StringBuilder value = new StringBuilder(key).append(':').append(i);
+                    // varying sizes so that blocks are moved and reused
+                    for (int j = random.nextInt(20); j > 0; j--) {
+                        value.append("-padding");
+                    }
+                    cache.put(key, value.toString());
+                    model.put(key, value.toString());
+                }
+            }
+        } finally {
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join(TimeUnit.SECONDS.toMillis(30));
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError(failures.size() + " reads failed");
+            error.initCause(failures.get(0));
+            throw error;
+        }
+        cache.verify();
+        for (Map.Entry<String, String> entry : model.entrySet()) {
+            assertEquals(entry.getValue(), cache.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testInterruptedReaderDoesNotFailOtherReaders() throws Exception {
+        cache = createCache((short) 8, 8);
+        for (int i = 0; i < 200; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        // nothing is cached, every read goes to the file
+        cache.close();
+        cache = createCache((short) 8, 8);
+
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread reader = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            try {
+                for (int i = 0; i < 200; i++) {
+                    assertEquals("value" + i, cache.get("key" + i));
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        reader.start();
+        reader.join();
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        for (int i = 0; i < 200; i++) {
+            assertEquals("value" + i, cache.get("key" + i));
+        }
+        cache.verify();
+    }
+
+    @Test
+    public void testBenchmark() throws Exception {
+        int count = 20_000;
+        cache = createCache((short) 512, 512);
+        Random random = new Random(3);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(randomValue(random, "key" + i));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            cache.put("key" + i, values.get(i));
+        }
+        long put = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < count; i += 2) {
+            cache.remove("key" + i);
+        }
+        for (int i = 0; i < count; i += 2) {
+            cache.put("key" + i, values.get(i));
+        }
+        long replace = System.nanoTime() - start;
+
+        long singleReader = readConcurrently(1, count);
+        long fourReaders = readConcurrently(4, count);
+        cache.verify();
+
+        System.out.println(count + " entries: put " + perOperation(put, count) + " us/op, " +
+                           "remove and put " + perOperation(replace, count) + " us/op, " +
+                           "get with 1 thread " + perOperation(singleReader, count) + " us/op, " +
+                           "get with 4 threads " + perOperation(fourReaders, 4 * count) + " us/op, " +
+                           "file size " + cacheFile.length() / 1024 + " KiB");
+    }
+
+    /**
+     * @return the time taken for every thread to read every entry, in nanoseconds
+     */
+    private long readConcurrently(int threadCount, int count) throws InterruptedException {
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < count; i++) {
+                        if (cache.get("key" + i) == null) {
+                            failures.add(new AssertionError("key" + i + " is missing"));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long time = System.nanoTime() - startTime;
+        if (!failures.isEmpty()) {
+            fail(failures.get(0).toString());
+        }
+        return time;
+    }
+
+    private static String perOperation(long nanos, int operations) {
+        return String.format("%.2f", nanos / 1000.0 / operations);
+    }
+
+    private void assertUsable() {
+        for (int i = 0; i < 50; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals("value" + i, cache.get("key" + i));
+        }
+        cache.verify();
+    }
+
+    private void assertContents(Map<String, String> model) {
+        for (int i = 0; i < 500; i++) {
+            String key = "key" + i;
+            assertEquals(key, model.get(key), cache.get(key));
+        }
+    }
+
+    private BTreePersistentIndexedCache<String, String> createCache(short maxChildIndexEntries,
+                                                                    int maxFreeListEntries) {
+        return new BTreePersistentIndexedCache<>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER,
+                BaseSerializerFactory.STRING_SERIALIZER, maxChildIndexEntries, maxFreeListEntries);
+    }
+
+    private static String randomValue(Random random, String key) {
+        StringBuilder value = new StringBuilder(key).append(':');
+        int length = random.nextInt(300);
+        for (int i = 0; i < length; i++) {
+            value.append((char) ('a' + random.nextInt(26)));
+        }
+        return value.toString();
+    }
+
+    /**
+     * Writes the first block of a cache file created before the free list was kept in memory. Its free list block
+     * had a different type and also stored the size of the largest block in the next free list block.
+     */
+    private static void writePreviousFormat(File file) throws IOException {
+        int maxBlockEntries = 512;
+        int payloadSize = 8 + 4 + 4 + maxBlockEntries * (8 + 4);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeByte(0x44);
+            out.writeInt(payloadSize);
+            // next block, largest in next block, entry count
+            out.writeLong(-1);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(8 + 4 + 4);
+            out.write(new byte[payloadSize - 16]);
+            // followed by the header and index blocks of the old cache
+            out.write(new byte[256]);
+        }
+    }
+}
@@ -16,6 +16,15 @@
 
 package com.tyron.builder.api.internal.tasks.testing;
 
+import com.tyron.builder.api.internal.tasks.testing.junit.result.TestClassHistory;
+
 public interface TestExecutionSpec {
 
+    /**
+     * @return the history of the test classes, read once before the previous results are deleted and merged with
+     * the results of this run when it completes
+     */
+    default TestClassHistory getTestClassHistory() {
+        return TestClassHistory.empty();
+    }
 }
@@ -0,0 +1,157 @@
+package com.tyron.builder.api.internal.tasks.testing.junit.result;
+
+import com.tyron.builder.api.UncheckedIOException;
+import com.tyron.builder.api.logging.Logger;
+import com.tyron.builder.api.logging.Logging;
+import com.tyron.builder.internal.serialize.Decoder;
+import com.tyron.builder.internal.serialize.FlushableEncoder;
+import com.tyron.builder.internal.serialize.kryo.KryoBackedDecoder;
+import com.tyron.builder.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The duration and the outcome of the last run of each test class, used to schedule the test classes of the next run.
+ *
+ * The history is stored next to the binary results, and keeps the test classes that did not run in the last run
+ * so that filtering the tests of a run does not lose the history of the other test classes.
+ */
+public class TestClassHistory {
+    private static final Logger LOGGER = Logging.getLogger(TestClassHistory.class);
+    private static final int HISTORY_VERSION = 1;
+    private static final TestClassHistory EMPTY = new TestClassHistory(Collections.<String, Entry>emptyMap());
+
+    private static class Entry {
+        private final long duration;
+        private final boolean failed;
+
+        Entry(long duration, boolean failed) {
+            this.duration = duration;
+            this.failed = failed;
+        }
+    }
+
+    // sorted by class name, so that the history file is stable
+    private final Map<String, Entry> entries;
+
+    private TestClassHistory(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static TestClassHistory empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return the duration in milliseconds of the last run of the test class, or -1 if it never ran
+     */
+    public long getDuration(String className) {
+        Entry entry = entries.get(className);
+        return entry == null ? -1 : entry.duration;
+    }
+
+    /**
+     * @return the average duration in milliseconds of the test classes in the history, or 0 if it is empty
+     */
+    public long getAverageDuration() {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        long totalDuration = 0;
+        for (Entry entry : entries.values()) {
+            totalDuration += entry.duration;
+        }
+        return totalDuration / entries.size();
+    }
+
+    /**
+     * @return whether a test of the test class failed the last time it ran
+     */
+    public boolean hasFailed(String className) {
+        Entry entry = entries.get(className);
+        return entry != null && entry.failed;
+    }
+
+    /**
+     * @return a history with the duration and outcome of the given results replacing the ones of their test classes
+     */
+    public TestClassHistory withResults(Collection<TestClassResult> results) {
+        Map<String, Entry> updated = new TreeMap<String, Entry>(entries);
+        for (TestClassResult result : results) {
+            updated.put(result.getClassName(), new Entry(result.getDuration(), result.getFailuresCount() > 0));
+        }
+        return new TestClassHistory(updated);
+    }
+
+    /**
+     * Reads the history from the given results directory. The history is only used to order the test classes,
+     * so a missing or unreadable history is empty.
+     */
+    public static TestClassHistory read(File resultsDir) {
+        File historyFile = getHistoryFile(resultsDir);
+        if (!historyFile.isFile()) {
+            return EMPTY;
+        }
+        try {
+            InputStream inputStream = new FileInputStream(historyFile);
+            try {
+                Decoder decoder = new KryoBackedDecoder(inputStream);
+                if (decoder.readSmallInt() != HISTORY_VERSION) {
+                    return EMPTY;
+                }
+                int count = decoder.readSmallInt();
+                Map<String, Entry> entries = new TreeMap<String, Entry>();
+                for (int i = 0; i < count; i++) {
+                    String className = decoder.readString();
+                    long duration = decoder.readSmallLong();
+                    boolean failed = decoder.readBoolean();
+                    entries.put(className, new Entry(duration, failed));
+                }
+                return new TestClassHistory(entries);
+            } finally {
+                inputStream.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not read the test class history from {}.", historyFile, e);
+            return EMPTY;
+        }
+    }
+
+    public void write(File resultsDir) {
+        try {
+            OutputStream outputStream = new FileOutputStream(getHistoryFile(resultsDir));
+            try {
+                FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+                encoder.writeSmallInt(HISTORY_VERSION);
+                encoder.writeSmallInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    encoder.writeString(entry.getKey());
+                    encoder.writeSmallLong(Math.max(0, entry.getValue().duration));
+                    encoder.writeBoolean(entry.getValue().failed);
+                }
+                encoder.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static File getHistoryFile(File resultsDir) {
+        return new File(resultsDir, "history.bin");
+    }
+}
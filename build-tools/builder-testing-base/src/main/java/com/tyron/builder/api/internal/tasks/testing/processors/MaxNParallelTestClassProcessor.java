@@ -19,6 +19,7 @@ package com.tyron.builder.api.internal.tasks.testing.processors;
 import com.tyron.builder.api.internal.tasks.testing.TestClassProcessor;
 import com.tyron.builder.api.internal.tasks.testing.TestClassRunInfo;
 import com.tyron.builder.api.internal.tasks.testing.TestResultProcessor;
+import com.tyron.builder.api.internal.tasks.testing.junit.result.TestClassHistory;
 import com.tyron.builder.internal.Factory;
 import com.tyron.builder.internal.UncheckedException;
 import com.tyron.builder.internal.actor.Actor;
@@ -28,15 +29,30 @@ import com.tyron.builder.internal.dispatch.DispatchException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * processors, unless a history of the previous runs is available.
+ *
+ * With a history, each test class is assigned to the processor with the least work assigned. Up to
+ * {@link #MAX_PENDING_TEST_CLASSES} test classes are held back while the test classes are detected, and the longest
+ * of them is assigned whenever another one arrives, so the assignment starts before detection is done and the longest
+ * test classes tend to be assigned first. The remaining ones are assigned longest first when processing stops.
+ * Test classes that failed in their last run are assigned as soon as they arrive, they are passed on first by
+ * {@link RunPreviousFailedFirstTestClassProcessor} so that each processor runs them first.
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
+    static final int MAX_PENDING_TEST_CLASSES = 256;
+
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final TestClassHistory history;
+    private final long defaultDuration;
+    private final PriorityQueue<PendingTestClass> pendingTestClasses = new PriorityQueue<PendingTestClass>();
+    private final long[] assignedDurations;
+    private int pendingCount;
     private TestResultProcessor resultProcessor;
     private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
@@ -46,9 +62,17 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private volatile boolean stoppedNow;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, TestClassHistory.empty());
+    }
+
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, TestClassHistory history) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.history = history;
+        // test classes that never ran are assumed to take as long as the average test class
+        this.defaultDuration = Math.max(1, history.getAverageDuration());
+        this.assignedDurations = new long[maxProcessors];
     }
 
     @Override
@@ -63,16 +87,22 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
         if (stoppedNow) {
             return;
         }
+        if (!history.isEmpty()) {
+            PendingTestClass pending = new PendingTestClass(testClass, getDuration(testClass), pendingCount++);
+            if (history.hasFailed(testClass.getTestClassName())) {
+                assign(pending);
+                return;
+            }
+            pendingTestClasses.add(pending);
+            if (pendingTestClasses.size() > MAX_PENDING_TEST_CLASSES) {
+                assign(pendingTestClasses.poll());
+            }
+            return;
+        }
 
         TestClassProcessor processor;
         if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            rawProcessors.add(processor);
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
+            processor = createProcessor();
         } else {
             processor = processors.get(pos);
             pos = (pos + 1) % processors.size();
@@ -80,8 +110,71 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
         processor.processTestClass(testClass);
     }
 
+    private TestClassProcessor createProcessor() {
+        TestClassProcessor processor = factory.create();
+        rawProcessors.add(processor);
+        Actor actor = actorFactory.createActor(processor);
+        processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        return processor;
+    }
+
+    private void processPendingTestClasses() {
+        while (!pendingTestClasses.isEmpty() && !stoppedNow) {
+            assign(pendingTestClasses.poll());
+        }
+        pendingTestClasses.clear();
+    }
+
+    /**
+     * Assigns the test class to the processor with the least work assigned.
+     */
+    private void assign(PendingTestClass testClass) {
+        int index = 0;
+        for (int i = 1; i < assignedDurations.length; i++) {
+            if (assignedDurations[i] < assignedDurations[index]) {
+                index = i;
+            }
+        }
+        assignedDurations[index] += testClass.duration;
+        // processors are created in order, as the ones without work come first
+        TestClassProcessor processor = index < processors.size() ? processors.get(index) : createProcessor();
+        processor.processTestClass(testClass.testClass);
+    }
+
+    private long getDuration(TestClassRunInfo testClass) {
+        long duration = history.getDuration(testClass.getTestClassName());
+        return duration < 0 ? defaultDuration : Math.max(1, duration);
+    }
+
+    /**
+     * A test class that is not assigned yet, ordered longest first and then in the order the test classes arrived.
+     */
+    private static class PendingTestClass implements Comparable<PendingTestClass> {
+        private final TestClassRunInfo testClass;
+        private final long duration;
+        private final int index;
+
+        PendingTestClass(TestClassRunInfo testClass, long duration, int index) {
+            this.testClass = testClass;
+            this.duration = duration;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(PendingTestClass other) {
+            if (duration != other.duration) {
+                return Long.compare(other.duration, duration);
+            }
+            return Integer.compare(index, other.index);
+        }
+    }
+
     @Override
     public void stop() {
+        processPendingTestClasses();
         try {
             CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
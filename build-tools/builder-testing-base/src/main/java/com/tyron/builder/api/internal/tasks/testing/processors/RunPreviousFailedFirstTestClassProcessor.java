@@ -45,7 +45,10 @@ public class RunPreviousFailedFirstTestClassProcessor implements TestClassProces
 
     @Override
     public void processTestClass(TestClassRunInfo testClass) {
-        if (previousFailedTestClasses.contains(testClass.getTestClassName())) {
+        if (previousFailedTestClasses.isEmpty()) {
+            // nothing to run first, so the delegate can start before all the test classes are known
+            delegate.processTestClass(testClass);
+        } else if (previousFailedTestClasses.contains(testClass.getTestClassName())) {
             prioritizedTestClasses.add(testClass);
         } else {
             otherTestClasses.add(testClass);
@@ -502,6 +502,7 @@ public abstract class AbstractTestTask extends ConventionTask implements Verific
         }
 
         new TestResultSerializer(binaryResultsDir).write(results.values());
+        executionSpec.getTestClassHistory().withResults(results.values()).write(binaryResultsDir);
 
         createReporting(results, testOutputStore);
 
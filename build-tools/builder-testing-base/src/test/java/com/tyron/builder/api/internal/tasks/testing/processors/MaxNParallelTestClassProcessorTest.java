@@ -0,0 +1,258 @@
+package com.tyron.builder.api.internal.tasks.testing.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.api.internal.tasks.testing.DefaultTestClassRunInfo;
+import com.tyron.builder.api.internal.tasks.testing.TestClassProcessor;
+import com.tyron.builder.api.internal.tasks.testing.TestClassRunInfo;
+import com.tyron.builder.api.internal.tasks.testing.TestResultProcessor;
+import com.tyron.builder.api.internal.tasks.testing.junit.result.TestClassHistory;
+import com.tyron.builder.api.internal.tasks.testing.junit.result.TestClassResult;
+import com.tyron.builder.api.internal.tasks.testing.junit.result.TestMethodResult;
+import com.tyron.builder.api.tasks.testing.TestResult;
+import com.tyron.builder.internal.Factory;
+import com.tyron.builder.internal.actor.Actor;
+import com.tyron.builder.internal.actor.ActorFactory;
+import com.tyron.builder.internal.dispatch.MethodInvocation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class MaxNParallelTestClassProcessorTest {
+
+    private static final int FORKS = 4;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<RecordingProcessor> processors = new ArrayList<RecordingProcessor>();
+
+    @Test
+    public void testRoundRobinWithoutHistory() {
+        MaxNParallelTestClassProcessor processor = createProcessor(TestClassHistory.empty());
+        for (int i = 0; i < 10; i++) {
+            processor.processTestClass(testClass("Test" + i));
+        }
+        processor.stop();
+
+        assertEquals(FORKS, processors.size());
+        assertEquals(Arrays.asList("Test0", "Test4", "Test8"), processors.get(0).testClasses);
+        assertEquals(Arrays.asList("Test1", "Test5", "Test9"), processors.get(1).testClasses);
+        assertEquals(Arrays.asList("Test3", "Test7"), processors.get(3).testClasses);
+    }
+
+    /**
+     * A skewed suite, the previous run is read back from the history file that the test task
+     * writes next to the binary results.
+     */
+    @Test
+    public void testLongestFirstToTheLeastLoadedFork() {
+        Random random = new Random(12);
+        List<TestClassResult> previousRun = new ArrayList<TestClassResult>();
+        List<Long> durations = new ArrayList<Long>();
+        for (int i = 0; i < 60; i++) {
+            // log-normal, a few test classes take most of the time
+            long duration = Math.max(1, (long) Math.exp(4 + 1.5 * random.nextGaussian()));
+            durations.add(duration);
+            previousRun.add(result("Test" + i, duration, false));
+        }
+        TestClassHistory history = writeAndRead(TestClassHistory.empty().withResults(previousRun));
+
+        MaxNParallelTestClassProcessor processor = createProcessor(history);
+        for (int i = 0; i < 60; i++) {
+            processor.processTestClass(testClass("Test" + i));
+        }
+        assertTrue(processors.isEmpty());
+        processor.stop();
+
+        assertEquals(FORKS, processors.size());
+        long longestFork = 0;
+        int assigned = 0;
+        for (RecordingProcessor fork : processors) {
+            long forkDuration = 0;
+            long previous = Long.MAX_VALUE;
+            for (String testClass : fork.testClasses) {
+                long duration = history.getDuration(testClass);
+                assertTrue(fork.testClasses + " is not longest first", duration <= previous);
+                previous = duration;
+                forkDuration += duration;
+            }
+            longestFork = Math.max(longestFork, forkDuration);
+            assigned += fork.testClasses.size();
+        }
+        assertEquals(60, assigned);
+
+        long roundRobinLongestFork = 0;
+        for (int fork = 0; fork < FORKS; fork++) {
+            long forkDuration = 0;
+            for (int i = fork; i < durations.size(); i += FORKS) {
+                forkDuration += durations.get(i);
+            }
+            roundRobinLongestFork = Math.max(roundRobinLongestFork, forkDuration);
+        }
+        long total = 0;
+        long longest = 0;
+        for (long duration : durations) {
+            total += duration;
+            longest = Math.max(longest, duration);
+        }
+        // longest processing time first is within 4/3 of the best possible assignment
+        long lowerBound = Math.max(longest, (total + FORKS - 1) / FORKS);
+        assertTrue(longestFork + " > 4/3 * " + lowerBound, 3 * longestFork <= 4 * lowerBound);
+        assertTrue(longestFork + " >= " + roundRobinLongestFork, longestFork < roundRobinLongestFork);
+    }
+
+    @Test
+    public void testFailedTestClassesAreAssignedFirst() {
+        TestClassHistory history = TestClassHistory.empty().withResults(Arrays.asList(
+                result("Long", 1000, false),
+                result("Failed", 10, true),
+                result("Short", 5, false)));
+
+        MaxNParallelTestClassProcessor processor = createProcessor(history);
+        processor.processTestClass(testClass("Failed"));
+        // assigned without waiting for the other test classes
+        assertEquals(1, processors.size());
+        processor.processTestClass(testClass("Short"));
+        processor.processTestClass(testClass("Long"));
+        processor.processTestClass(testClass("New"));
+        processor.stop();
+
+        assertEquals(Collections.singletonList("Failed"), processors.get(0).testClasses);
+        assertEquals(Collections.singletonList("Long"), processors.get(1).testClasses);
+        // never ran, so it counts as the average of the history
+        assertEquals(Collections.singletonList("New"), processors.get(2).testClasses);
+        assertEquals(Collections.singletonList("Short"), processors.get(3).testClasses);
+    }
+
+    @Test
+    public void testAssignsWhileTestClassesAreDetected() {
+        List<TestClassResult> previousRun = new ArrayList<TestClassResult>();
+        int count = MaxNParallelTestClassProcessor.MAX_PENDING_TEST_CLASSES + 100;
+        for (int i = 0; i < count; i++) {
+            previousRun.add(result("Test" + i, i + 1, false));
+        }
+        TestClassHistory history = TestClassHistory.empty().withResults(previousRun);
+
+        MaxNParallelTestClassProcessor processor = createProcessor(history);
+        for (int i = 0; i < count; i++) {
+            processor.processTestClass(testClass("Test" + i));
+        }
+        assertEquals(100, assignedCount());
+        processor.stop();
+        assertEquals(count, assignedCount());
+    }
+
+    @Test
+    public void testPassesTestClassesOnWhenNothingFailed() {
+        RecordingProcessor delegate = new RecordingProcessor();
+        RunPreviousFailedFirstTestClassProcessor processor =
+                new RunPreviousFailedFirstTestClassProcessor(Collections.<String>emptySet(), delegate);
+        processor.processTestClass(testClass("Test0"));
+        assertEquals(Collections.singletonList("Test0"), delegate.testClasses);
+        assertFalse(delegate.stopped);
+        processor.stop();
+        assertTrue(delegate.stopped);
+    }
+
+    private int assignedCount() {
+        int count = 0;
+        for (RecordingProcessor fork : processors) {
+            count += fork.testClasses.size();
+        }
+        return count;
+    }
+
+    private TestClassHistory writeAndRead(TestClassHistory history) {
+        File resultsDir = temporaryFolder.getRoot();
+        history.write(resultsDir);
+        return TestClassHistory.read(resultsDir);
+    }
+
+    private MaxNParallelTestClassProcessor createProcessor(TestClassHistory history) {
+        MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(FORKS,
+                new Factory<TestClassProcessor>() {
+                    @Override
+                    public TestClassProcessor create() {
+                        RecordingProcessor processor = new RecordingProcessor();
+                        processors.add(processor);
+                        return processor;
+                    }
+                }, new DirectActorFactory(), history);
+        processor.startProcessing(null);
+        return processor;
+    }
+
+    private static TestClassRunInfo testClass(String name) {
+        return new DefaultTestClassRunInfo(name);
+    }
+
+    private static TestClassResult result(String className, long duration, boolean failed) {
+        TestClassResult result = new TestClassResult(1, className, 0);
+        result.add(new TestMethodResult(1, "test",
+                failed ? TestResult.ResultType.FAILURE : TestResult.ResultType.SUCCESS, duration,
+                duration));
+        return result;
+    }
+
+    private static class RecordingProcessor implements TestClassProcessor {
+        private final List<String> testClasses = new ArrayList<String>();
+        private boolean stopped;
+
+        @Override
+        public void startProcessing(TestResultProcessor resultProcessor) {
+        }
+
+        @Override
+        public void processTestClass(TestClassRunInfo testClass) {
+            testClasses.add(testClass.getTestClassName());
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public void stopNow() {
+        }
+    }
+
+    /**
+     * Calls the target on the calling thread.
+     */
+    private static class DirectActorFactory implements ActorFactory {
+        @Override
+        public Actor createActor(final Object target) {
+            return new Actor() {
+                @Override
+                public <T> T getProxy(Class<T> type) {
+                    return type.cast(target);
+                }
+
+                @Override
+                public void dispatch(MethodInvocation message) {
+                }
+
+                @Override
+                public void stop() {
+                }
+            };
+        }
+
+        @Override
+        public Actor createBlockingActor(Object target) {
+            return createActor(target);
+        }
+    }
+}
@@ -35,6 +35,7 @@ import com.tyron.builder.api.internal.tasks.testing.TestFramework;
 import com.tyron.builder.api.internal.tasks.testing.detection.DefaultTestExecuter;
 import com.tyron.builder.api.internal.tasks.testing.filter.DefaultTestFilter;
 import com.tyron.builder.api.internal.tasks.testing.junit.JUnitTestFramework;
+import com.tyron.builder.api.internal.tasks.testing.junit.result.TestClassHistory;
 import com.tyron.builder.api.internal.tasks.testing.junit.result.TestClassResult;
 import com.tyron.builder.api.internal.tasks.testing.junit.result.TestResultSerializer;
 import com.tyron.builder.api.internal.tasks.testing.junitplatform.JUnitPlatformTestFramework;
@@ -642,7 +643,7 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
         boolean testIsModule = javaModuleDetector.isModule(modularity.getInferModulePath().get(), getTestClassesDirs());
         FileCollection classpath = javaModuleDetector.inferClasspath(testIsModule, stableClasspath);
         FileCollection modulePath = javaModuleDetector.inferModulePath(testIsModule, stableClasspath);
-        return new JvmTestExecutionSpec(getTestFramework(), classpath, modulePath, getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), javaForkOptions, getMaxParallelForks(), getPreviousFailedTestClasses());
+        return new JvmTestExecutionSpec(getTestFramework(), classpath, modulePath, getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), javaForkOptions, getMaxParallelForks(), getPreviousFailedTestClasses(), TestClassHistory.read(getBinaryResultsDirectory().getAsFile().get()));
     }
 
     private void validateToolchainConfiguration() {
@@ -2,9 +2,14 @@ package com.tyron.builder.workers.internal;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import com.tyron.builder.internal.classloader.ClassLoaderSpec;
+import com.tyron.builder.internal.classloader.VisitableURLClassLoader;
 import com.tyron.builder.process.JavaForkOptions;
 import com.tyron.builder.process.internal.JavaForkOptionsInternal;
 
+import java.net.URL;
+import java.util.List;
+
 public class DaemonForkOptions {
     private final JavaForkOptionsInternal forkOptions;
     private final KeepAliveMode keepAliveMode;
@@ -30,10 +35,36 @@ public class DaemonForkOptions {
         return classLoaderStructure;
     }
 
+    /**
+     * A daemon started with these options can run work that requires the other options when
+     * its jvm arguments, system properties and heap sizes include those of the other options and
+     * its classloaders are the same, except that the classpath of a classloader may have extra
+     * entries after the entries required by the other options.
+     */
     public boolean isCompatibleWith(DaemonForkOptions other) {
         return forkOptions.isCompatibleWith(other.forkOptions)
                 && keepAliveMode == other.getKeepAliveMode()
-                && Objects.equal(classLoaderStructure, other.getClassLoaderStructure());
+                && isCompatibleWith(classLoaderStructure, other.getClassLoaderStructure());
+    }
+
+    private static boolean isCompatibleWith(ClassLoaderStructure structure, ClassLoaderStructure required) {
+        if (structure == null || required == null) {
+            return structure == required;
+        }
+        return structure.getClass() == required.getClass()
+                && isCompatibleWith(structure.getSpec(), required.getSpec())
+                && isCompatibleWith(structure.getParent(), required.getParent());
+    }
+
+    private static boolean isCompatibleWith(ClassLoaderSpec spec, ClassLoaderSpec required) {
+        if (spec instanceof VisitableURLClassLoader.Spec && required instanceof VisitableURLClassLoader.Spec) {
+            // the required entries must come first so that the classes they contain are loaded from them
+            List<URL> classpath = ((VisitableURLClassLoader.Spec) spec).getClasspath();
+            List<URL> requiredClasspath = ((VisitableURLClassLoader.Spec) required).getClasspath();
+            return classpath.size() >= requiredClasspath.size()
+                    && classpath.subList(0, requiredClasspath.size()).equals(requiredClasspath);
+        }
+        return Objects.equal(spec, required);
     }
 
     public String toString() {
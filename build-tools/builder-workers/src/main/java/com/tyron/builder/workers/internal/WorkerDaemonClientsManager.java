@@ -1,5 +1,6 @@
 package com.tyron.builder.workers.internal;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 import com.tyron.builder.api.Action;
 import com.tyron.builder.api.Transformer;
@@ -8,6 +9,8 @@ import com.tyron.builder.api.logging.Logger;
 import com.tyron.builder.api.logging.Logging;
 import com.tyron.builder.internal.session.BuildSessionLifecycleListener;
 import com.tyron.builder.internal.UncheckedException;
+import com.tyron.builder.internal.concurrent.ExecutorFactory;
+import com.tyron.builder.internal.concurrent.ManagedExecutor;
 import com.tyron.builder.internal.concurrent.Stoppable;
 import com.tyron.builder.internal.event.ListenerManager;
 import com.tyron.builder.internal.exceptions.DefaultMultiCauseException;
@@ -17,12 +20,15 @@ import com.tyron.builder.internal.logging.events.OutputEvent;
 import com.tyron.builder.internal.logging.events.OutputEventListener;
 import com.tyron.builder.process.internal.health.memory.MemoryManager;
 import com.tyron.builder.process.internal.health.memory.OsMemoryInfo;
+import com.tyron.builder.process.internal.health.memory.OsMemoryStatus;
 import com.tyron.builder.process.internal.worker.WorkerProcess;
 import com.tyron.builder.util.internal.CollectionUtils;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.Comparator.*;
 
@@ -30,9 +36,25 @@ public class WorkerDaemonClientsManager implements Stoppable {
 
     private static final Logger LOGGER = Logging.getLogger(WorkerDaemonClientsManager.class);
 
+    /**
+     * The number of fork options that are remembered to warm up daemons for at the start of the next session.
+     */
+    private static final int MAX_RECENT_FORK_OPTIONS = 4;
+    private static final int MAX_WARM_UP_DAEMONS = 2;
+    /**
+     * A daemon is only warmed up when the free memory left once it is started is above this percentage of the
+     * total memory, as it may not be used.
+     */
+    private static final double WARM_UP_MIN_FREE_MEMORY_PERCENTAGE = 0.25D;
+
     private final Object lock = new Object();
     private final List<WorkerDaemonClient> allClients = new ArrayList<WorkerDaemonClient>();
     private final List<WorkerDaemonClient> idleClients = new ArrayList<WorkerDaemonClient>();
+    // the fork options used in the current session, most recently used first
+    private final LinkedList<DaemonForkOptions> sessionForkOptions = new LinkedList<DaemonForkOptions>();
+    // the fork options used in the previous session, daemons are only warmed up for these
+    private final List<DaemonForkOptions> previousSessionForkOptions = new ArrayList<DaemonForkOptions>();
+    private final List<WarmUp> pendingWarmUps = new ArrayList<WarmUp>();
     private final Action<WorkerProcess> workerProcessCleanupAction = new WorkerProcessCleanupAction();
 
     private final WorkerDaemonStarter workerDaemonStarter;
@@ -43,9 +65,14 @@ public class WorkerDaemonClientsManager implements Stoppable {
     private final OutputEventListener logLevelChangeEventListener;
     private final WorkerDaemonExpiration workerDaemonExpiration;
     private final MemoryManager memoryManager;
+    private final ManagedExecutor warmUpExecutor;
     private volatile LogLevel currentLogLevel;
+    private int startedCount;
+    private int reusedCount;
+    // incremented when a session completes, guarded by lock
+    private int sessionCount;
 
-    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo) {
+    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo, ExecutorFactory executorFactory) {
         this.workerDaemonStarter = workerDaemonStarter;
         this.listenerManager = listenerManager;
         this.loggingManager = loggingManager;
@@ -58,6 +85,7 @@ public class WorkerDaemonClientsManager implements Stoppable {
         this.memoryManager = memoryManager;
         this.workerDaemonExpiration = new WorkerDaemonExpiration(this, getTotalPhysicalMemory());
         memoryManager.addMemoryHolder(workerDaemonExpiration);
+        this.warmUpExecutor = executorFactory.create("Worker daemon warm up", MAX_WARM_UP_DAEMONS);
     }
 
     // TODO - should supply and check for the same parameters as passed to reserveNewClient()
@@ -67,29 +95,51 @@ public class WorkerDaemonClientsManager implements Stoppable {
 
     WorkerDaemonClient reserveIdleClient(DaemonForkOptions forkOptions, List<WorkerDaemonClient> clients) {
         synchronized (lock) {
+            WorkerDaemonClient compatible = null;
             Iterator<WorkerDaemonClient> it = clients.iterator();
             while (it.hasNext()) {
                 WorkerDaemonClient candidate = it.next();
                 if (candidate.isCompatibleWith(forkOptions)) {
-                    it.remove();
                     if (candidate.getLogLevel() != currentLogLevel) {
+                        it.remove();
                         // TODO: Send a message to workers to change their log level rather than stopping
                         LOGGER.info("Log level has changed, stopping idle worker daemon with out-of-date log level.");
                         candidate.stop();
-                    } else {
-                        return candidate;
+                    } else if (compatible == null || isSameClassLoaderStructure(candidate, forkOptions)) {
+                        // prefer a daemon without extra classpath entries, it is likely smaller
+                        compatible = candidate;
                     }
                 }
             }
-            return null;
+            if (compatible != null) {
+                clients.remove(compatible);
+                reusedCount++;
+                addRecentForkOptions(forkOptions);
+            }
+            return compatible;
         }
     }
 
+    private static boolean isSameClassLoaderStructure(WorkerDaemonClient client, DaemonForkOptions forkOptions) {
+        return Objects.equal(client.getForkOptions().getClassLoaderStructure(), forkOptions.getClassLoaderStructure());
+    }
+
     public WorkerDaemonClient reserveNewClient(DaemonForkOptions forkOptions) {
+        // a daemon that is being warmed up is further along than a new one would be
+        WarmUp warmUp = claimWarmUp(forkOptions);
+        if (warmUp != null) {
+            WorkerDaemonClient client = warmUp.client.join();
+            if (client != null) {
+                return client;
+            }
+        }
+
         //allow the daemon to be started concurrently
         WorkerDaemonClient client = workerDaemonStarter.startDaemon(forkOptions, workerProcessCleanupAction);
         synchronized (lock) {
             allClients.add(client);
+            startedCount++;
+            addRecentForkOptions(forkOptions);
         }
         return client;
     }
@@ -102,12 +152,125 @@ public class WorkerDaemonClientsManager implements Stoppable {
         }
     }
 
+    /**
+     * Starts daemons in the background for the fork options used in the previous session that no idle daemon is
+     * compatible with. Nothing is started when the previous session did not use worker daemons, and daemon scoped
+     * daemons of the previous session are usually still idle.
+     */
+    public void warmUp() {
+        synchronized (lock) {
+            int warmingUp = pendingWarmUps.size();
+            for (DaemonForkOptions forkOptions : previousSessionForkOptions) {
+                if (warmingUp >= MAX_WARM_UP_DAEMONS) {
+                    break;
+                }
+                if (hasIdleOrPendingClient(forkOptions)) {
+                    continue;
+                }
+                WarmUp warmUp = new WarmUp(forkOptions, sessionCount);
+                pendingWarmUps.add(warmUp);
+                warmUpExecutor.execute(warmUp);
+                warmingUp++;
+            }
+        }
+    }
+
+    private boolean hasIdleOrPendingClient(DaemonForkOptions forkOptions) {
+        for (WorkerDaemonClient idleClient : idleClients) {
+            if (idleClient.isCompatibleWith(forkOptions)) {
+                return true;
+            }
+        }
+        for (WarmUp warmUp : pendingWarmUps) {
+            if (warmUp.forkOptions.isCompatibleWith(forkOptions)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private WarmUp claimWarmUp(DaemonForkOptions forkOptions) {
+        synchronized (lock) {
+            Iterator<WarmUp> it = pendingWarmUps.iterator();
+            while (it.hasNext()) {
+                WarmUp warmUp = it.next();
+                if (warmUp.forkOptions.isCompatibleWith(forkOptions)) {
+                    it.remove();
+                    warmUp.claimed = true;
+                    reusedCount++;
+                    addRecentForkOptions(forkOptions);
+                    return warmUp;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Remembers the fork options as the most recently used in this session, replacing the remembered options that it is
+     * compatible with.
+     */
+    private void addRecentForkOptions(DaemonForkOptions forkOptions) {
+        DaemonForkOptions recent = forkOptions;
+        Iterator<DaemonForkOptions> it = sessionForkOptions.iterator();
+        while (it.hasNext()) {
+            DaemonForkOptions candidate = it.next();
+            if (candidate.isCompatibleWith(forkOptions)) {
+                // keep the options that cover both
+                recent = candidate;
+                it.remove();
+                break;
+            }
+            if (forkOptions.isCompatibleWith(candidate)) {
+                it.remove();
+            }
+        }
+        sessionForkOptions.addFirst(recent);
+        while (sessionForkOptions.size() > MAX_RECENT_FORK_OPTIONS) {
+            sessionForkOptions.removeLast();
+        }
+    }
+
+    private boolean hasMemoryToWarmUp(DaemonForkOptions forkOptions) {
+        OsMemoryStatus memoryStatus;
+        try {
+            memoryStatus = memoryInfo.getOsSnapshot();
+        } catch (UnsupportedOperationException e) {
+            // we cannot tell whether the daemon would have to be expired right away
+            return false;
+        }
+        long required = workerDaemonExpiration.estimateMemoryUsage(forkOptions);
+        return memoryStatus.getFreePhysicalMemory() - required >= memoryStatus.getTotalPhysicalMemory() * WARM_UP_MIN_FREE_MEMORY_PERCENTAGE;
+    }
+
+    /**
+     * @return the number of daemons that were started, including the ones that were warmed up
+     */
+    public int getStartedCount() {
+        synchronized (lock) {
+            return startedCount;
+        }
+    }
+
+    /**
+     * @return the number of times a daemon was reserved without waiting for a new daemon to be started
+     */
+    public int getReusedCount() {
+        synchronized (lock) {
+            return reusedCount;
+        }
+    }
+
     @Override
     public void stop() {
+        // Do not hold lock while stopping the executor, as the warm ups need to acquire the lock to complete
+        warmUpExecutor.stop();
         synchronized (lock) {
             stopWorkers(allClients);
             allClients.clear();
             idleClients.clear();
+            sessionForkOptions.clear();
+            previousSessionForkOptions.clear();
             listenerManager.removeListener(stopSessionScopeWorkers);
             memoryManager.removeMemoryHolder(workerDaemonExpiration);
         }
@@ -165,15 +328,98 @@ public class WorkerDaemonClientsManager implements Stoppable {
     }
 
     private class StopSessionScopedWorkers implements BuildSessionLifecycleListener {
+        @Override
+        public void afterStart() {
+            warmUp();
+        }
+
         @Override
         public void beforeComplete() {
             synchronized (lock) {
+                LOGGER.debug("Worker daemons started: {}, reused: {}.", startedCount, reusedCount);
+                previousSessionForkOptions.clear();
+                previousSessionForkOptions.addAll(sessionForkOptions);
+                sessionForkOptions.clear();
+                sessionCount++;
+                // the session scoped daemons being warmed up would only be stopped once started
+                pendingWarmUps.removeIf(warmUp -> !warmUp.claimed && warmUp.forkOptions.getKeepAliveMode() == KeepAliveMode.SESSION);
                 List<WorkerDaemonClient> sessionScopedClients = CollectionUtils.filter(allClients, client -> client.getKeepAliveMode() == KeepAliveMode.SESSION);
                 stopWorkers(sessionScopedClients);
             }
         }
     }
 
+    /**
+     * Starts a daemon ahead of the work that will need it. The daemon is idle once started, unless
+     * it was claimed by {@link #reserveNewClient(DaemonForkOptions)} while it was starting. A session
+     * scoped daemon that was not claimed is not started, or stopped once started, when the session
+     * it was warmed up for has completed.
+     */
+    private class WarmUp implements Runnable {
+        private final DaemonForkOptions forkOptions;
+        private final int session;
+        private final CompletableFuture<WorkerDaemonClient> client = new CompletableFuture<>();
+        // guarded by lock
+        private boolean claimed;
+
+        WarmUp(DaemonForkOptions forkOptions, int session) {
+            this.forkOptions = forkOptions;
+            this.session = session;
+        }
+
+        // must hold lock
+        private boolean isObsolete() {
+            return !claimed && session != sessionCount && forkOptions.getKeepAliveMode() == KeepAliveMode.SESSION;
+        }
+
+        @Override
+        public void run() {
+            WorkerDaemonClient started = null;
+            boolean obsolete = false;
+            try {
+                synchronized (lock) {
+                    obsolete = isObsolete();
+                }
+                if (obsolete) {
+                    LOGGER.debug("Not warming up a worker daemon with fork options {}, its session has completed.", forkOptions);
+                } else if (hasMemoryToWarmUp(forkOptions)) {
+                    started = workerDaemonStarter.startDaemon(forkOptions, workerProcessCleanupAction);
+                } else {
+                    LOGGER.debug("Not enough free memory to warm up a worker daemon with fork options {}.", forkOptions);
+                }
+            } catch (Exception e) {
+                // the daemon will be started when it is needed
+                LOGGER.debug("Could not warm up a worker daemon with fork options {}.", forkOptions, e);
+            } finally {
+                synchronized (lock) {
+                    pendingWarmUps.remove(this);
+                    obsolete = isObsolete();
+                    if (started != null && !obsolete) {
+                        allClients.add(started);
+                        startedCount++;
+                        if (!claimed) {
+                            idleClients.add(started);
+                        }
+                    }
+                }
+                if (started != null && obsolete) {
+                    stopObsolete(started);
+                    started = null;
+                }
+                client.complete(started);
+            }
+        }
+
+        private void stopObsolete(WorkerDaemonClient started) {
+            LOGGER.debug("Stopping a worker daemon warmed up for a session that has completed.");
+            try {
+                started.stop();
+            } catch (Exception e) {
+                LOGGER.debug("Could not stop a worker daemon with fork options {}.", forkOptions, e);
+            }
+        }
+    }
+
     private class LogLevelChangeEventListener implements OutputEventListener {
         @Override
         public void onOutput(OutputEvent event) {
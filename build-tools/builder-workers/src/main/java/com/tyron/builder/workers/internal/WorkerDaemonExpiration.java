@@ -8,7 +8,9 @@ import com.tyron.builder.process.internal.health.memory.MemoryAmount;
 import com.tyron.builder.process.internal.health.memory.MemoryHolder;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class WorkerDaemonExpiration implements MemoryHolder {
 
@@ -28,23 +30,45 @@ public class WorkerDaemonExpiration implements MemoryHolder {
             throw new IllegalArgumentException("Negative memory amount");
         }
         LOGGER.debug("Will attempt to release {} of memory", memoryAmountBytes / 1024 / 1024);
-        SimpleMemoryExpirationSelector selector = new SimpleMemoryExpirationSelector(memoryAmountBytes);
+        MemoryCostExpirationSelector selector = new MemoryCostExpirationSelector(memoryAmountBytes);
         clientsManager.selectIdleClientsToStop(selector);
         return selector.getReleasedBytes();
     }
 
     /**
-     * Simple implementation of memory based expiration.
+     * Estimates the memory a daemon started with the given options will use, from its maximum heap size.
+     */
+    long estimateMemoryUsage(DaemonForkOptions forkOptions) {
+        String forkOptionsMaxHeapSize = forkOptions.getJavaForkOptions().getMaxHeapSize();
+        long parsed = MemoryAmount.parseNotation(forkOptionsMaxHeapSize);
+        if (parsed != -1) {
+            // From fork options
+            return parsed;
+        }
+
+        // If we don't know what the max heap is, approximate it based on OS total memory
+        // according to JVM documentation
+        if (osTotalMemory != -1) {
+            return new MaximumHeapHelper().getDefaultMaximumHeapSize(osTotalMemory);
+        }
+
+        // If we get here, we have no idea how much memory the worker is using
+        return 0;
+    }
+
+    /**
+     * Cost based implementation of memory based expiration.
      *
-     * Use the maximum heap size of each daemon, not their actual memory usage.
-     * Expire as much daemons as needed to free the requested memory under the threshold.
+     * Use the memory reported by each daemon, or their maximum heap size when they have not reported it yet.
+     * Expire first the daemons that were used the least for the memory they hold, until the requested memory
+     * is freed under the threshold.
      */
-    private class SimpleMemoryExpirationSelector implements Transformer<List<WorkerDaemonClient>, List<WorkerDaemonClient>> {
+    private class MemoryCostExpirationSelector implements Transformer<List<WorkerDaemonClient>, List<WorkerDaemonClient>> {
 
         private final long memoryBytesToRelease;
         private long releasedBytes;
 
-        public SimpleMemoryExpirationSelector(long memoryBytesToRelease) {
+        public MemoryCostExpirationSelector(long memoryBytesToRelease) {
             this.memoryBytesToRelease = memoryBytesToRelease;
         }
 
@@ -54,15 +78,23 @@ public class WorkerDaemonExpiration implements MemoryHolder {
 
         @Override
         public List<WorkerDaemonClient> transform(List<WorkerDaemonClient> idleClients) {
+            Map<WorkerDaemonClient, Long> memoryUsages = new IdentityHashMap<>();
+            for (WorkerDaemonClient idleClient : idleClients) {
+                memoryUsages.put(idleClient, getMemoryUsage(idleClient));
+            }
+            // stable, so daemons with the same cost are still expired in the order of their uses
+            List<WorkerDaemonClient> byCost = new ArrayList<>(idleClients);
+            byCost.sort((a, b) -> Double.compare(getValue(a, memoryUsages.get(a)), getValue(b, memoryUsages.get(b))));
+
             int notExpirable = 0;
             List<WorkerDaemonClient> toExpire = new ArrayList<>();
-            for (WorkerDaemonClient idleClient : idleClients) {
+            for (WorkerDaemonClient idleClient : byCost) {
                 if (idleClient.isNotExpirable()) {
                     notExpirable++;
                     continue;
                 }
                 toExpire.add(idleClient);
-                long freed = getMemoryUsage(idleClient);
+                long freed = memoryUsages.get(idleClient);
                 releasedBytes += freed;
                 if (releasedBytes >= memoryBytesToRelease) {
                     break;
@@ -90,21 +122,14 @@ public class WorkerDaemonExpiration implements MemoryHolder {
 
             // if the worker has not reported memory usage yet for some reason, or does not support it,
             // use the max heap as an approximation
-            String forkOptionsMaxHeapSize = idleClient.getForkOptions().getJavaForkOptions().getMaxHeapSize();
-            long parsed = MemoryAmount.parseNotation(forkOptionsMaxHeapSize);
-            if (parsed != -1) {
-                // From fork options
-                return parsed;
-            }
-
-            // If we don't know what the max heap is, approximate it based on OS total memory
-            // according to JVM documentation
-            if (osTotalMemory != -1) {
-                return new MaximumHeapHelper().getDefaultMaximumHeapSize(osTotalMemory);
-            }
+            return estimateMemoryUsage(idleClient.getForkOptions());
+        }
 
-            // If we get here, we have no idea how much memory the worker is using
-            return 0;
+        /**
+         * The uses of a daemon per byte it holds, a daemon that was never used is worth less than one that was.
+         */
+        private double getValue(WorkerDaemonClient idleClient, long memoryUsage) {
+            return (idleClient.getUses() + 1) / (double) Math.max(1, memoryUsage);
         }
     }
 }
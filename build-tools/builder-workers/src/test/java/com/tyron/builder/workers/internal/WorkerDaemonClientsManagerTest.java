@@ -0,0 +1,348 @@
+package com.tyron.builder.workers.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.tyron.builder.api.Action;
+import com.tyron.builder.api.logging.LogLevel;
+import com.tyron.builder.internal.classloader.VisitableURLClassLoader;
+import com.tyron.builder.internal.concurrent.ExecutorFactory;
+import com.tyron.builder.internal.concurrent.ManagedExecutor;
+import com.tyron.builder.internal.event.ListenerManager;
+import com.tyron.builder.internal.logging.LoggingManagerInternal;
+import com.tyron.builder.internal.session.BuildSessionLifecycleListener;
+import com.tyron.builder.process.internal.JavaForkOptionsInternal;
+import com.tyron.builder.process.internal.health.memory.MemoryManager;
+import com.tyron.builder.process.internal.health.memory.OsMemoryInfo;
+import com.tyron.builder.process.internal.health.memory.OsMemoryStatusSnapshot;
+import com.tyron.builder.process.internal.worker.MultiRequestClient;
+import com.tyron.builder.process.internal.worker.WorkerProcess;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class WorkerDaemonClientsManagerTest {
+
+    private static final long GIGABYTE = 1024L * 1024 * 1024;
+
+    private final JavaForkOptionsInternal javaForkOptions = fake(JavaForkOptionsInternal.class,
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "isCompatibleWith":
+                        return proxy == args[0];
+                    case "getMaxHeapSize":
+                        return "64m";
+                    default:
+                        return defaultAnswer(proxy, method.getName(), method.getReturnType(), args);
+                }
+            });
+    private final RecordingStarter starter = new RecordingStarter();
+    private final List<Runnable> warmUps = new ArrayList<>();
+    private BuildSessionLifecycleListener sessionListener;
+    private boolean runWarmUpsInline = true;
+    private WorkerDaemonClientsManager manager;
+
+    @After
+    public void stop() {
+        if (manager != null) {
+            manager.stop();
+        }
+    }
+
+    @Test
+    public void testDaemonScopedDaemonIsReusedInTheNextSession() {
+        manager = createManager(8 * GIGABYTE);
+        DaemonForkOptions forkOptions = forkOptions(KeepAliveMode.DAEMON, "a.jar");
+
+        runSession(forkOptions);
+        runSession(forkOptions);
+
+        // the idle daemon is reused, nothing is warmed up for it
+        assertEquals(1, starter.forks);
+        assertEquals(1, manager.getStartedCount());
+        assertEquals(1, manager.getReusedCount());
+        assertEquals(0, starter.stopped);
+    }
+
+    @Test
+    public void testSessionScopedDaemonIsWarmedUpForTheNextSession() {
+        manager = createManager(8 * GIGABYTE);
+        DaemonForkOptions forkOptions = forkOptions(KeepAliveMode.SESSION, "a.jar");
+
+        runSession(forkOptions);
+        assertEquals(1, starter.stopped);
+        runSession(forkOptions);
+
+        // the second session takes the warmed up daemon instead of waiting for a new one
+        assertEquals(2, starter.forks);
+        assertEquals(1, manager.getReusedCount());
+    }
+
+    @Test
+    public void testNothingIsWarmedUpAfterASessionWithoutWorkers() {
+        manager = createManager(8 * GIGABYTE);
+        DaemonForkOptions forkOptions = forkOptions(KeepAliveMode.SESSION, "a.jar");
+
+        runSession(forkOptions);
+        runSession();
+        runSession();
+
+        assertEquals(2, starter.forks);
+        assertEquals(2, starter.stopped);
+        assertEquals(0, manager.getReusedCount());
+    }
+
+    @Test
+    public void testNothingIsWarmedUpWithoutEnoughFreeMemory() {
+        // 64m of heap would leave less than a quarter of the memory free
+        manager = createManager(80 * 1024 * 1024);
+        DaemonForkOptions forkOptions = forkOptions(KeepAliveMode.SESSION, "a.jar");
+
+        runSession(forkOptions);
+        runSession(forkOptions);
+
+        assertEquals(2, starter.forks);
+        assertEquals(0, manager.getReusedCount());
+    }
+
+    @Test
+    public void testDaemonWithALongerClasspathIsReused() {
+        manager = createManager(8 * GIGABYTE);
+
+        runSession(forkOptions(KeepAliveMode.DAEMON, "a.jar", "b.jar"),
+                forkOptions(KeepAliveMode.DAEMON, "a.jar"),
+                forkOptions(KeepAliveMode.DAEMON, "a.jar", "b.jar"));
+
+        assertEquals(1, starter.forks);
+        assertEquals(2, manager.getReusedCount());
+    }
+
+    @Test
+    public void testDaemonBeingWarmedUpIsClaimed() throws InterruptedException {
+        runWarmUpsInline = false;
+        manager = createManager(8 * GIGABYTE);
+        DaemonForkOptions forkOptions = forkOptions(KeepAliveMode.SESSION, "a.jar");
+        runSession(forkOptions);
+
+        sessionListener.afterStart();
+        assertEquals(1, warmUps.size());
+        starter.blockStarts();
+        Thread main = Thread.currentThread();
+        Thread warmUp = new Thread(() -> warmUps.remove(0).run());
+        Thread release = new Thread(() -> {
+            // the main thread waits for the daemon that is being warmed up
+            while (main.getState() != Thread.State.WAITING) {
+                Thread.yield();
+            }
+            starter.unblockStarts();
+        });
+        warmUp.start();
+        starter.awaitBlockedStart();
+        release.start();
+
+        WorkerDaemonClient client = manager.reserveNewClient(forkOptions);
+        warmUp.join();
+        release.join();
+
+        assertSame(starter.lastStarted, client);
+        assertEquals(2, starter.forks);
+        assertEquals(1, manager.getReusedCount());
+        // a claimed daemon is not idle for other work
+        assertNull(manager.reserveIdleClient(forkOptions));
+        manager.release(client);
+        sessionListener.beforeComplete();
+    }
+
+    @Test
+    public void testWarmUpCompletingAfterTheSessionIsStopped() throws InterruptedException {
+        runWarmUpsInline = false;
+        manager = createManager(8 * GIGABYTE);
+        DaemonForkOptions forkOptions = forkOptions(KeepAliveMode.SESSION, "a.jar");
+        runSession(forkOptions);
+
+        sessionListener.afterStart();
+        assertEquals(1, warmUps.size());
+        starter.blockStarts();
+        Thread warmUp = new Thread(() -> warmUps.remove(0).run());
+        warmUp.start();
+        starter.awaitBlockedStart();
+        // the session completes without using the daemon being warmed up
+        sessionListener.beforeComplete();
+        starter.unblockStarts();
+        warmUp.join();
+
+        assertEquals(2, starter.forks);
+        assertEquals(2, starter.stopped);
+        assertNull(manager.reserveIdleClient(forkOptions));
+    }
+
+    @Test
+    public void testWarmUpQueuedAfterTheSessionIsNotStarted() {
+        runWarmUpsInline = false;
+        manager = createManager(8 * GIGABYTE);
+        DaemonForkOptions forkOptions = forkOptions(KeepAliveMode.SESSION, "a.jar");
+        runSession(forkOptions);
+
+        sessionListener.afterStart();
+        sessionListener.beforeComplete();
+        assertEquals(1, warmUps.size());
+        warmUps.remove(0).run();
+
+        assertEquals(1, starter.forks);
+        assertNull(manager.reserveIdleClient(forkOptions));
+    }
+
+    /**
+     * Runs a session that runs an item of work for each of the given fork options, one after
+     * another.
+     */
+    private void runSession(DaemonForkOptions... workItems) {
+        sessionListener.afterStart();
+        for (DaemonForkOptions forkOptions : workItems) {
+            WorkerDaemonClient client = manager.reserveIdleClient(forkOptions);
+            if (client == null) {
+                client = manager.reserveNewClient(forkOptions);
+            }
+            manager.release(client);
+        }
+        sessionListener.beforeComplete();
+    }
+
+    private DaemonForkOptions forkOptions(KeepAliveMode keepAliveMode, String... classpath) {
+        List<URL> urls = new ArrayList<>();
+        for (String entry : classpath) {
+            try {
+                urls.add(new URL("file:/" + entry));
+            } catch (MalformedURLException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return new DaemonForkOptions(javaForkOptions, keepAliveMode,
+                new FlatClassLoaderStructure(new VisitableURLClassLoader.Spec("worker", urls)));
+    }
+
+    private WorkerDaemonClientsManager createManager(long freeMemory) {
+        ListenerManager listenerManager = fake(ListenerManager.class, (proxy, method, args) -> {
+            if (method.getName().equals("addListener")) {
+                sessionListener = (BuildSessionLifecycleListener) args[0];
+            }
+            return defaultAnswer(proxy, method.getName(), method.getReturnType(), args);
+        });
+        LoggingManagerInternal loggingManager = fake(LoggingManagerInternal.class,
+                (proxy, method, args) -> method.getName().equals("getLevel")
+                        ? LogLevel.LIFECYCLE
+                        : defaultAnswer(proxy, method.getName(), method.getReturnType(), args));
+        OsMemoryInfo memoryInfo = () -> new OsMemoryStatusSnapshot(Math.max(freeMemory, GIGABYTE), freeMemory);
+        ManagedExecutor executor = fake(ManagedExecutor.class, (proxy, method, args) -> {
+            if (method.getName().equals("execute")) {
+                Runnable runnable = (Runnable) args[0];
+                if (runWarmUpsInline) {
+                    runnable.run();
+                } else {
+                    warmUps.add(runnable);
+                }
+                return null;
+            }
+            return defaultAnswer(proxy, method.getName(), method.getReturnType(), args);
+        });
+        ExecutorFactory executorFactory = fake(ExecutorFactory.class,
+                (proxy, method, args) -> method.getName().equals("create")
+                        ? executor
+                        : defaultAnswer(proxy, method.getName(), method.getReturnType(), args));
+        return new WorkerDaemonClientsManager(starter, listenerManager, loggingManager,
+                fake(MemoryManager.class, WorkerDaemonClientsManagerTest::defaultAnswer),
+                memoryInfo, executorFactory);
+    }
+
+    private static Object defaultAnswer(Object proxy, java.lang.reflect.Method method, Object[] args) {
+        return defaultAnswer(proxy, method.getName(), method.getReturnType(), args);
+    }
+
+    private static Object defaultAnswer(Object proxy, String name, Class<?> returnType, Object[] args) {
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "fake";
+            default:
+                break;
+        }
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == int.class) {
+            return 0;
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private static <T> T fake(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Starts fake daemons and counts the forks.
+     */
+    private static class RecordingStarter extends WorkerDaemonStarter {
+        private final CountDownLatch blockedStart = new CountDownLatch(1);
+        private volatile CountDownLatch unblock;
+        private volatile int forks;
+        private volatile int stopped;
+        private volatile WorkerDaemonClient lastStarted;
+
+        RecordingStarter() {
+            super(null, null, null, null);
+        }
+
+        void blockStarts() {
+            unblock = new CountDownLatch(1);
+        }
+
+        void unblockStarts() {
+            unblock.countDown();
+        }
+
+        void awaitBlockedStart() throws InterruptedException {
+            blockedStart.await();
+        }
+
+        @Override
+        public WorkerDaemonClient startDaemon(DaemonForkOptions forkOptions, Action<WorkerProcess> cleanupAction) {
+            CountDownLatch latch = unblock;
+            if (latch != null) {
+                blockedStart.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            @SuppressWarnings("unchecked")
+            MultiRequestClient<TransportableActionExecutionSpec, DefaultWorkResult> client = fake(MultiRequestClient.class,
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("stop")) {
+                            stopped++;
+                        }
+                        return defaultAnswer(proxy, method, args);
+                    });
+            WorkerProcess process = fake(WorkerProcess.class, WorkerDaemonClientsManagerTest::defaultAnswer);
+            forks++;
+            lastStarted = new WorkerDaemonClient(forkOptions, client, process, LogLevel.LIFECYCLE, null);
+            return lastStarted;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.tyron.builder.plugin.tasks;
+
+import com.android.tools.r8.CompilationFailedException;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.OutputMode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.tyron.builder.api.BuildException;
+import com.tyron.builder.api.internal.file.archive.ZipCopyAction;
+import com.tyron.builder.util.internal.GFileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Dexes annotation processor jars so they can be loaded on Android. The transformed jar
+ * contains the dex files followed by the original entries of the jar.
+ *
+ * Transformed jars are cached by the hash of their input, so a processor that was already
+ * dexed is only copied. Entry timestamps are fixed so the same input always produces the
+ * same output. Entries of jars that are no longer inputs are removed by {@link #retainOnly}.
+ */
+public class AnnotationProcessorJarTransformer {
+
+    private static final int MIN_API_LEVEL = 26;
+    private static final String CACHED_OUTPUT_EXTENSION = ".jar";
+
+    private final File cacheDirectory;
+
+    public AnnotationProcessorJarTransformer(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Transforms the given jars, at most {@code parallelism} of them at the same time.
+     *
+     * @param jars the jars to transform mapped to their output files
+     */
+    public void transform(Map<File, File> jars, int parallelism) {
+        if (jars.isEmpty()) {
+            return;
+        }
+        if (parallelism <= 1 || jars.size() == 1) {
+            jars.forEach(this::transform);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, jars.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(jars.size());
+            jars.forEach((jar, output) -> futures.add(executor.submit(() -> transform(jar, output))));
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new BuildException("Failed to transform annotation processors", cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BuildException("Interrupted while transforming annotation processors", e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void transform(File jar, File output) {
+        try {
+            File cached = getCachedOutput(jar);
+            if (!cached.isFile()) {
+                createCachedOutput(jar, cached);
+            }
+            GFileUtils.mkdirs(output.getParentFile());
+            Files.copy(cached.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to transform " + jar, e);
+        } catch (CompilationFailedException e) {
+            throw new BuildException("Failed to dex " + jar, e);
+        }
+    }
+
+    /**
+     * Deletes the cached outputs of every jar except the given ones, so the outputs of
+     * replaced or removed processors do not accumulate.
+     *
+     * @param jars all the current input jars, each of them already transformed
+     */
+    public void retainOnly(Collection<File> jars) {
+        File[] cached = cacheDirectory.listFiles((dir, name) -> name.endsWith(CACHED_OUTPUT_EXTENSION));
+        if (cached == null || cached.length <= jars.size()) {
+            // every input has one entry, so there are no stale entries unless there are more
+            // entries than inputs, which saves hashing the inputs again
+            return;
+        }
+
+        Set<File> retained = new HashSet<>();
+        for (File jar : jars) {
+            try {
+                retained.add(getCachedOutput(jar));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to hash " + jar, e);
+            }
+        }
+        for (File file : cached) {
+            if (!retained.contains(file)) {
+                GFileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    private File getCachedOutput(File jar) throws IOException {
+        String hash = com.google.common.io.Files.asByteSource(jar).hash(Hashing.sha256()).toString();
+        return new File(cacheDirectory, hash + CACHED_OUTPUT_EXTENSION);
+    }
+
+    private void createCachedOutput(File jar, File cached) throws IOException, CompilationFailedException {
+        Files.createDirectories(cacheDirectory.toPath());
+        Path dexDirectory = Files.createTempDirectory(cacheDirectory.toPath(), "dex");
+        Path temporaryJar = Files.createTempFile(cacheDirectory.toPath(), "transform", ".tmp");
+        try {
+            D8Command command = D8Command.builder()
+                    .addProgramFiles(jar.toPath())
+                    .setDisableDesugaring(true)
+                    .setMinApiLevel(MIN_API_LEVEL)
+                    .setOutput(dexDirectory, OutputMode.DexIndexed)
+                    .build();
+            D8.run(command);
+
+            List<Path> dexFiles;
+            try (Stream<Path> files = Files.list(dexDirectory)) {
+                dexFiles = files.filter(file -> file.getFileName().toString().endsWith(".dex"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            if (dexFiles.isEmpty()) {
+                throw new BuildException("No dex files found for " + jar);
+            }
+
+            try (OutputStream outputStream = Files.newOutputStream(temporaryJar);
+                 JarOutputStream jarOutputStream = new JarOutputStream(new BufferedOutputStream(outputStream))) {
+                Set<String> names = new HashSet<>();
+                for (Path dexFile : dexFiles) {
+                    String name = dexFile.getFileName().toString();
+                    names.add(name);
+                    jarOutputStream.putNextEntry(newEntry(name));
+                    Files.copy(dexFile, jarOutputStream);
+                    jarOutputStream.closeEntry();
+                }
+                copyEntries(jar, jarOutputStream, names);
+            }
+
+            try {
+                Files.move(temporaryJar, cached.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryJar, cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryJar);
+            GFileUtils.forceDelete(dexDirectory.toFile());
+        }
+    }
+
+    private static void copyEntries(File jar, JarOutputStream jarOutputStream, Set<String> names) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(jar.toPath()));
+             ZipInputStream zipInputStream = new ZipInputStream(inputStream)) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                if (!names.add(entry.getName())) {
+                    continue;
+                }
+                jarOutputStream.putNextEntry(newEntry(entry.getName()));
+                ByteStreams.copy(zipInputStream, jarOutputStream);
+                jarOutputStream.closeEntry();
+            }
+        }
+    }
+
+    private static JarEntry newEntry(String name) {
+        JarEntry entry = new JarEntry(name);
+        entry.setTime(ZipCopyAction.CONSTANT_TIME_FOR_ZIP_ENTRIES);
+        return entry;
+    }
+}
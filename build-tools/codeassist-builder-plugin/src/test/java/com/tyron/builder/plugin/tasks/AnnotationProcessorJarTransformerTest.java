@@ -0,0 +1,315 @@
+package com.tyron.builder.plugin.tasks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.CompilationFailedException;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.OutputMode;
+import com.google.common.io.ByteStreams;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+public class AnnotationProcessorJarTransformerTest {
+
+    private static final int JAR_COUNT = 8;
+
+    private static final Class<?>[] CLASSES = {
+            Processor.class,
+            Processor.Options.class,
+            Processors.class
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File inputDir;
+
+    @Before
+    public void setup() throws IOException {
+        inputDir = temporaryFolder.newFolder("input");
+        for (int i = 0; i < JAR_COUNT; i++) {
+            writeJar(new File(inputDir, "processor" + i + ".jar"), i);
+        }
+    }
+
+    @Test
+    public void testOutputMatchesPreviousImplementation() throws IOException, CompilationFailedException {
+        File previous = temporaryFolder.newFolder("previous");
+        for (int i = 0; i < JAR_COUNT; i++) {
+            String name = "processor" + i + ".jar";
+            transformWithPreviousImplementation(new File(inputDir, name), new File(previous, name));
+        }
+        File serial = transform("serial", 1);
+        File parallel = transform("parallel", 4);
+
+        for (int i = 0; i < JAR_COUNT; i++) {
+            String name = "processor" + i + ".jar";
+            Map<String, byte[]> expected = readEntries(new File(previous, name));
+            assertEntriesEqual(name, expected, readEntries(new File(serial, name)));
+            assertEntriesEqual(name, expected, readEntries(new File(parallel, name)));
+        }
+    }
+
+    @Test
+    public void testTransformedJarContainsDexAndOriginalEntries() throws IOException {
+        File output = transform("output", 4);
+
+        try (JarFile jarFile = new JarFile(new File(output, "processor0.jar"))) {
+            assertTrue(jarFile.getEntry("classes.dex") != null);
+            assertTrue(jarFile.getEntry("META-INF/services/javax.annotation.processing.Processor") != null);
+            for (Class<?> type : CLASSES) {
+                assertTrue(jarFile.getEntry(getClassFileName(type)) != null);
+            }
+        }
+    }
+
+    @Test
+    public void testCachedOutputIsReused() throws IOException {
+        File cacheDir = temporaryFolder.newFolder("cache");
+        File first = temporaryFolder.newFolder("first");
+        File second = temporaryFolder.newFolder("second");
+
+        new AnnotationProcessorJarTransformer(cacheDir).transform(outputs(first), 4);
+        File[] cached = cacheDir.listFiles();
+        assertEquals(JAR_COUNT, cached.length);
+        long lastModified = cached[0].lastModified();
+
+        new AnnotationProcessorJarTransformer(cacheDir).transform(outputs(second), 4);
+        assertEquals(JAR_COUNT, cacheDir.listFiles().length);
+        assertEquals(lastModified, cached[0].lastModified());
+
+        for (int i = 0; i < JAR_COUNT; i++) {
+            String name = "processor" + i + ".jar";
+            assertArrayEquals(name, read(new File(first, name)), read(new File(second, name)));
+        }
+    }
+
+    @Test
+    public void testEntriesOfRemovedJarsArePruned() throws IOException {
+        File cacheDir = temporaryFolder.newFolder("cache");
+        AnnotationProcessorJarTransformer transformer = new AnnotationProcessorJarTransformer(cacheDir);
+        Map<File, File> first = outputs(temporaryFolder.newFolder("first"));
+        transformer.transform(first, 4);
+        transformer.retainOnly(first.keySet());
+        assertEquals(JAR_COUNT, cacheDir.listFiles().length);
+
+        // a new version of one processor replaces the old one
+        File replaced = new File(inputDir, "processor0.jar");
+        writeJar(replaced, JAR_COUNT);
+        Map<File, File> jars = outputs(temporaryFolder.newFolder("second"));
+        transformer.transform(Collections.singletonMap(replaced, jars.get(replaced)), 4);
+        assertEquals(JAR_COUNT + 1, cacheDir.listFiles().length);
+
+        transformer.retainOnly(jars.keySet());
+        assertEquals(JAR_COUNT, cacheDir.listFiles().length);
+
+        // every remaining entry is still used, nothing is transformed again
+        File third = temporaryFolder.newFolder("third");
+        File[] cached = cacheDir.listFiles();
+        long[] lastModified = new long[cached.length];
+        for (int i = 0; i < cached.length; i++) {
+            lastModified[i] = cached[i].lastModified();
+        }
+        transformer.transform(outputs(third), 4);
+        for (int i = 0; i < cached.length; i++) {
+            assertTrue(cached[i].isFile());
+            assertEquals(lastModified[i], cached[i].lastModified());
+        }
+
+        transformer.retainOnly(Collections.singletonList(replaced));
+        assertEquals(1, cacheDir.listFiles().length);
+    }
+
+    /**
+     * Transforms the jars serially and with as many threads as there are processors, on
+     * empty caches. The outputs must be the same, and with more than one processor the
+     * parallel transformation must be faster.
+     */
+    @Test
+    public void testBenchmark() throws IOException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        long serial = Long.MAX_VALUE;
+        long parallel = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            File serialOutput = transform("serial" + run, 1);
+            serial = Math.min(serial, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            File parallelOutput = transform("parallel" + run, processors);
+            parallel = Math.min(parallel, System.nanoTime() - start);
+
+            for (int i = 0; i < JAR_COUNT; i++) {
+                String name = "processor" + i + ".jar";
+                assertArrayEquals(name, read(new File(serialOutput, name)),
+                        read(new File(parallelOutput, name)));
+            }
+        }
+
+        if (processors > 1) {
+            assertTrue("serial: " + serial + " ns, parallel: " + parallel + " ns", parallel < serial);
+        }
+    }
+
+    /**
+     * The transformation as it was done by {@link TransformAnnotationProcessorsTask} before it
+     * used {@link AnnotationProcessorJarTransformer}: the dex files written by D8 followed by
+     * the entries of the jar.
+     */
+    private void transformWithPreviousImplementation(File jar, File output)
+            throws IOException, CompilationFailedException {
+        File temporaryDir = temporaryFolder.newFolder();
+        D8Command command = D8Command.builder()
+                .addProgramFiles(jar.toPath())
+                .setDisableDesugaring(true)
+                .setMinApiLevel(26)
+                .setOutput(temporaryDir.toPath(), OutputMode.DexIndexed)
+                .build();
+        D8.run(command);
+
+        File[] dexFiles = temporaryDir.listFiles(c -> c.getName().endsWith(".dex"));
+        assertNotNull(dexFiles);
+        Arrays.sort(dexFiles);
+        try (JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(output))) {
+            for (File dexFile : dexFiles) {
+                jarOutputStream.putNextEntry(new JarEntry(dexFile.getName()));
+                jarOutputStream.write(Files.readAllBytes(dexFile.toPath()));
+                jarOutputStream.closeEntry();
+            }
+
+            try (JarFile inputFile = new JarFile(jar)) {
+                Enumeration<JarEntry> entries = inputFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    jarOutputStream.putNextEntry(new JarEntry(entry.getName()));
+                    try (InputStream inputStream = inputFile.getInputStream(entry)) {
+                        ByteStreams.copy(inputStream, jarOutputStream);
+                    }
+                    jarOutputStream.closeEntry();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the contents of the entries of the jar, in the order they are stored
+     */
+    private static Map<String, byte[]> readEntries(File jar) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> jarEntries = jarFile.entries();
+            while (jarEntries.hasMoreElements()) {
+                JarEntry entry = jarEntries.nextElement();
+                try (InputStream inputStream = jarFile.getInputStream(entry)) {
+                    entries.put(entry.getName(), ByteStreams.toByteArray(inputStream));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Entry timestamps are not compared, the previous implementation did not fix them.
+     */
+    private static void assertEntriesEqual(String jar, Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertEquals(jar, new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(jar + "!" + entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+
+    private File transform(String name, int parallelism) throws IOException {
+        File outputDir = temporaryFolder.newFolder(name);
+        File cacheDir = temporaryFolder.newFolder(name + "Cache");
+        new AnnotationProcessorJarTransformer(cacheDir).transform(outputs(outputDir), parallelism);
+        return outputDir;
+    }
+
+    private Map<File, File> outputs(File outputDir) {
+        Map<File, File> jars = new LinkedHashMap<>();
+        for (int i = 0; i < JAR_COUNT; i++) {
+            String name = "processor" + i + ".jar";
+            jars.put(new File(inputDir, name), new File(outputDir, name));
+        }
+        return jars;
+    }
+
+    /**
+     * Writes a jar with the test classes, the service file differs per jar so each jar
+     * has a different hash.
+     */
+    private static void writeJar(File jar, int index) throws IOException {
+        try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jar))) {
+            for (Class<?> type : CLASSES) {
+                String name = getClassFileName(type);
+                outputStream.putNextEntry(new JarEntry(name));
+                try (InputStream inputStream = type.getClassLoader().getResourceAsStream(name)) {
+                    ByteStreams.copy(inputStream, outputStream);
+                }
+                outputStream.closeEntry();
+            }
+            outputStream.putNextEntry(
+                    new JarEntry("META-INF/services/javax.annotation.processing.Processor"));
+            outputStream.write(("com.example.Processor" + index + "\n").getBytes());
+            outputStream.closeEntry();
+        }
+    }
+
+    private static String getClassFileName(Class<?> type) {
+        return type.getName().replace('.', '/') + ".class";
+    }
+
+    private static byte[] read(File file) throws IOException {
+        return Files.readAllBytes(file.toPath());
+    }
+
+    public static class Processor {
+
+        private final Options options;
+
+        public Processor(Options options) {
+            this.options = options;
+        }
+
+        public String process(String input) {
+            return options.prefix + input;
+        }
+
+        public static class Options {
+            private final String prefix;
+
+            public Options(String prefix) {
+                this.prefix = prefix;
+            }
+        }
+    }
+
+    public static class Processors {
+
+        public static Processor create() {
+            return new Processor(new Processor.Options("generated_"));
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.net.URLClassLoader
 import java.nio.file.FileSystemNotFoundException
 import java.nio.file.Paths
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import java.util.zip.ZipFile
 
 object ServiceLoaderLite {
@@ -16,6 +17,15 @@ object ServiceLoaderLite {
 
     class ServiceLoadingException(val file: File, cause: Throwable) : RuntimeException("Error loading services from $file", cause)
 
+    private class CachedClassLoader(val state: List<String>, val classLoader: ClassLoader)
+
+    /**
+     * The class loaders of the plugins by their class path. The compiler creates a new class loader
+     * for the plugins on every compilation, reusing the previous one keeps the plugin classes loaded
+     * (and dexed on Android) until a plugin jar changes.
+     */
+    private val classLoaders = ConcurrentHashMap<List<File>, CachedClassLoader>()
+
     /**
      * Returns implementations for the given `service` declared in META-INF/services of the `classLoader` roots.
      *
@@ -34,14 +44,35 @@ object ServiceLoaderLite {
             }
         }
 
-        if (isDalvik() == true) {
+        return loadImplementations(service, files, getClassLoader(files, classLoader))
+    }
+
+    private fun getClassLoader(files: List<File>, classLoader: URLClassLoader): ClassLoader {
+        val state = files.map { "${it.length()}:${it.lastModified()}" }
+        val cached = classLoaders[files]
+        if (cached != null && cached.state == state) {
+            return cached.classLoader
+        }
+
+        val loader = if (isDalvik() == true) {
             val classpath = classLoader.urLs.joinToString(separator = File.pathSeparator) {
                 it.path
             }
-            val loader = DexClassLoader(classpath, "", "", this::class.java.classLoader)
-            return loadImplementations(service, files, loader)
+            DexClassLoader(classpath, "", "", this::class.java.classLoader)
+        } else {
+            classLoader
+        }
+        if (files.isNotEmpty()) {
+            classLoaders[files] = CachedClassLoader(state, loader)
         }
-        return loadImplementations(service, files, classLoader);
+        return loader
+    }
+
+    /**
+     * Forgets the class loaders of the plugins, the next compilation loads the plugins again.
+     */
+    fun clearClassLoaders() {
+        classLoaders.clear()
     }
 
     fun <Service> loadImplementations(service: Class<out Service>, files: List<File>, classLoader: ClassLoader): MutableList<Service> {
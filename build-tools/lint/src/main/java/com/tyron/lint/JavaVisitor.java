@@ -11,28 +11,39 @@ import com.tyron.lint.api.Detector;
 import com.tyron.lint.api.Detector.JavaScanner;
 import com.tyron.lint.api.JavaContext;
 import com.tyron.lint.api.JavaVoidVisitor;
+import com.tyron.lint.client.LintDriver;
 
 import com.sun.source.tree.AnnotationTree;
-import com.sun.source.tree.IdentifierTree;
-import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+
+/**
+ * Runs the detectors on a file with a single traversal of its tree. Detectors subscribe to
+ * the kinds of nodes and the names of the methods they are interested in, and are called
+ * for them while the tree is scanned.
+ * <p>
+ * A visitor can be shared by several threads, the state of a file is kept in its
+ * {@link FileScanner}. Threads visiting files at the same time must use different compilers.
+ */
 public class JavaVisitor {
 
     private static final int SAME_TYPE_COUNT = 8;
 
     private final CompilerProvider mCompiler;
     private final List<VisitingDetector> mAllDetectors;
-    private final Map<Class<? extends Tree>, List<VisitingDetector>> mTreeTypeDetectors =
-            new HashMap<>(16);
+    private final Map<Tree.Kind, List<VisitingDetector>> mTreeKindDetectors =
+            new EnumMap<>(Tree.Kind.class);
     private final Map<String, List<VisitingDetector>> mMethodDetectors = new HashMap<>(16);
 
     public JavaVisitor(JavaCompilerService compiler, @NonNull List<Detector> detectors) {
@@ -40,15 +51,24 @@ public class JavaVisitor {
         mAllDetectors = new ArrayList<>(detectors.size());
 
         for (Detector detector : detectors) {
-            VisitingDetector v = new VisitingDetector(detector, (JavaScanner) detector);
+            VisitingDetector v = new VisitingDetector(detector, (JavaScanner) detector,
+                    mAllDetectors.size());
             mAllDetectors.add(v);
 
             List<Class<? extends Tree>> treeTypes = detector.getApplicableTypes();
             if (treeTypes != null) {
                 for (Class<? extends Tree> tree : treeTypes) {
-                    List<VisitingDetector> list = mTreeTypeDetectors.computeIfAbsent(tree,
-                            k -> new ArrayList<>(SAME_TYPE_COUNT));
-                    list.add(v);
+                    for (Tree.Kind kind : Tree.Kind.values()) {
+                        Class<? extends Tree> kindInterface = kind.asInterface();
+                        if (kindInterface == null || !tree.isAssignableFrom(kindInterface)) {
+                            continue;
+                        }
+                        List<VisitingDetector> list = mTreeKindDetectors.computeIfAbsent(kind,
+                                k -> new ArrayList<>(SAME_TYPE_COUNT));
+                        if (!list.contains(v)) {
+                            list.add(v);
+                        }
+                    }
                 }
             }
 
@@ -64,39 +84,54 @@ public class JavaVisitor {
     }
 
     public void visitFile(JavaContext context) {
+        visitFile(context, mCompiler);
+    }
+
+    /**
+     * Compiles the file of the given context with the given compiler and runs the detectors
+     * on it. The compiler keeps a single compile task, it must not be used by another thread
+     * until this returns.
+     */
+    public void visitFile(JavaContext context, CompilerProvider compiler) {
         try {
-            CompilerContainer container = mCompiler.compile(context.file.toPath());
+            CompilerContainer container = compiler.compile(context.file.toPath());
             container.run(task -> {
-                Tree compilationUnit = task.root();
                 context.setCompileTask(task);
-
-                for (VisitingDetector v : mAllDetectors) {
-                    v.setContext(context);
-                }
-
-                if (!mMethodDetectors.isEmpty()) {
-                    JavaVoidVisitor visitor = new DelegatingJavaVisitor(context);
-                    compilationUnit.accept(visitor, null);
-                } else if (!mTreeTypeDetectors.isEmpty()) {
-                    JavaVoidVisitor visitor = new DispatchVisitor();
-                    compilationUnit.accept(visitor, null);
-                }
+                visitCompilationUnit(context);
             });
         } catch (Throwable e) {
             Log.e("Lint", "Failed to analyze file", e);
-            ((JavaCompilerService) mCompiler).destroy();
+            if (compiler instanceof JavaCompilerService) {
+                ((JavaCompilerService) compiler).destroy();
+            }
+        }
+    }
+
+    /**
+     * Runs the detectors on the compilation unit of the given context, which must already
+     * be set.
+     */
+    public void visitCompilationUnit(JavaContext context) {
+        if (mTreeKindDetectors.isEmpty() && mMethodDetectors.isEmpty()) {
+            return;
+        }
+        try {
+            new FileScanner(context).scan(context.getCompilationUnit(), null);
+        } finally {
+            context.setCurrentPath(null, Collections.emptySet());
         }
     }
 
     private static class VisitingDetector {
-        private JavaVoidVisitor mVisitor;
-        private JavaContext mContext;
         public final Detector mDetector;
         public final JavaScanner mScanner;
+        /** The index of the visitor of this detector in a {@link FileScanner} */
+        public final int mIndex;
 
-        public VisitingDetector(@NonNull Detector detector, JavaScanner scanner) {
+        public VisitingDetector(@NonNull Detector detector, JavaScanner scanner, int index) {
             mDetector = detector;
             mScanner = scanner;
+            mIndex = index;
         }
 
         @NonNull
@@ -108,125 +143,91 @@ public class JavaVisitor {
         public JavaScanner getJavaScanner() {
             return mScanner;
         }
+    }
 
-        public void setContext(@NonNull JavaContext context) {
-            mContext = context;
-
-            // The visitors are one-per-context, so clear them out here and construct
-            // lazily only if needed
-            mVisitor = null;
-        }
+    /**
+     * Scans a single file. The path of the current node and the issues suppressed at it are
+     * kept as the tree is scanned, so detectors and the driver never need to search for the
+     * parents of the node being visited.
+     */
+    private class FileScanner extends JavaVoidVisitor {
 
-        @NonNull
-        JavaVoidVisitor getVisitor() {
-            if (mVisitor == null) {
-                mVisitor = mDetector.getVisitor(mContext);
-            }
-            return mVisitor;
-        }
-    }
+        private final JavaContext mContext;
+        /** The visitors are one-per-file and are constructed lazily only if needed */
+        private final JavaVoidVisitor[] mVisitors;
 
-    private class DispatchVisitor extends JavaVoidVisitor {
+        private TreePath mPath;
+        private Set<String> mSuppressedIds = Collections.emptySet();
 
-        @Override
-        public Void visitAnnotation(AnnotationTree annotationTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(AnnotationTree.class);
-            if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitAnnotation(annotationTree, unused);
-                }
-            }
-            return null;
+        public FileScanner(JavaContext context) {
+            mContext = context;
+            mVisitors = new JavaVoidVisitor[mAllDetectors.size()];
         }
 
-        @Override
-        public Void visitVariable(VariableTree variableTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(VariableTree.class);
-            if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitVariable(variableTree, unused);
-                }
+        private JavaVoidVisitor getVisitor(VisitingDetector v) {
+            JavaVoidVisitor visitor = mVisitors[v.mIndex];
+            if (visitor == null) {
+                visitor = v.getDetector().getVisitor(mContext);
+                mVisitors[v.mIndex] = visitor;
             }
-            return null;
+            return visitor;
         }
 
         @Override
-        public Void visitMethodInvocation(MethodInvocationTree methodInvocationTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(MethodInvocationTree.class);
-            if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitMethodInvocation(methodInvocationTree, unused);
-                }
+        public Void scan(Tree tree, Void unused) {
+            if (tree == null) {
+                return null;
             }
-            return super.visitMethodInvocation(methodInvocationTree, unused);
-        }
 
-        @Override
-        public Void visitMethod(MethodTree methodTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(MethodTree.class);
-            if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitMethod(methodTree, unused);
-                }
+            TreePath previousPath = mPath;
+            Set<String> previousSuppressedIds = mSuppressedIds;
+            mPath = new TreePath(mPath, tree);
+            if (tree instanceof MethodTree) {
+                mSuppressedIds = LintDriver.getSuppressedIds(((MethodTree) tree).getModifiers(),
+                        mSuppressedIds);
             }
-            return super.visitMethod(methodTree, unused);
-        }
-
-        @Override
-        public Void visitIdentifier(IdentifierTree identifierTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(IdentifierTree.class);
-            if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitIdentifier(identifierTree, unused);
-                }
+            mContext.setCurrentPath(mPath, mSuppressedIds);
+            try {
+                dispatch(tree);
+                return tree.accept(this, unused);
+            } finally {
+                mPath = previousPath;
+                mSuppressedIds = previousSuppressedIds;
+                mContext.setCurrentPath(previousPath, previousSuppressedIds);
             }
-            return super.visitIdentifier(identifierTree, unused);
-        }
-    }
-
-    /**
-     * Performs common AST searches for method calls and R-type-field references.
-     * Note that this is a specialized form of the {@link DispatchVisitor}.
-     */
-    private class DelegatingJavaVisitor extends DispatchVisitor {
-        private final JavaContext mContext;
-        private final boolean mVisitResources;
-        private final boolean mVisitMethods;
-        private final boolean mVisitConstructors;
-
-        public DelegatingJavaVisitor(JavaContext context) {
-            mContext = context;
-
-            mVisitMethods = !mMethodDetectors.isEmpty();
-            mVisitConstructors = false; //!mConstructorDetectors.isEmpty();
-            mVisitResources = false; //!mResourceFieldDetectors.isEmpty();
         }
 
         @Override
-        public Void visitIdentifier(IdentifierTree identifierTree, Void unused) {
-            return super.visitIdentifier(identifierTree, unused);
+        public Void visitVariable(VariableTree variableTree, Void unused) {
+            // the initializer is scanned by the detectors that visit the enclosing method
+            return null;
         }
 
         @Override
-        public Void visitMemberSelect(MemberSelectTree memberSelectTree, Void unused) {
-            if (mVisitResources) {
-                // TODO: Complete
-            }
-            return super.visitMemberSelect(memberSelectTree, unused);
+        public Void visitAnnotation(AnnotationTree annotationTree, Void unused) {
+            return null;
         }
 
-        @Override
-        public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
-            if (mVisitMethods) {
-                String methodName = JavaContext.getMethodName(node);
-                List<VisitingDetector> list = mMethodDetectors.get(methodName);
+        private void dispatch(Tree tree) {
+            if (tree instanceof MethodInvocationTree && !mMethodDetectors.isEmpty()) {
+                MethodInvocationTree node = (MethodInvocationTree) tree;
+                List<VisitingDetector> list = mMethodDetectors.get(JavaContext.getMethodName(node));
                 if (list != null) {
                     for (VisitingDetector v : list) {
-                        v.getJavaScanner().visitMethod(mContext, v.getVisitor(), node);
+                        v.getJavaScanner().visitMethod(mContext, getVisitor(v), node);
+                    }
+                }
+            }
+
+            List<VisitingDetector> list = mTreeKindDetectors.get(tree.getKind());
+            if (list != null) {
+                for (VisitingDetector v : list) {
+                    JavaVoidVisitor visitor = getVisitor(v);
+                    if (visitor != null) {
+                        tree.accept(visitor, null);
                     }
                 }
             }
-            return super.visitMethodInvocation(node, unused);
         }
     }
 }
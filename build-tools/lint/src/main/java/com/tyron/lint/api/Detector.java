@@ -26,6 +26,13 @@ public abstract class Detector {
         return null;
     }
 
+    /**
+     * Returns the types of nodes this detector is interested in. The visitor returned by
+     * {@link #getVisitor(JavaContext)} is called for every node of these types while the
+     * file is scanned once for all the detectors. The children of variables and annotations
+     * are not scanned. The path of the node is available from
+     * {@link JavaContext#getPath(Tree)}.
+     */
     public List<Class<? extends Tree>> getApplicableTypes() {
         return null;
     }
@@ -24,14 +24,26 @@ import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
 import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.Set;
 
 public class JavaContext extends Context {
     static final String SUPPRESS_COMMENT_PREFIX = "//noinspection ";
     private CompileTask mCompileTask;
+    private JavacTask mTask;
+    private Trees mTrees;
+    private CompilationUnitTree mCompilationUnit;
+
+    /** The path of the node that is currently being visited */
+    private TreePath mCurrentPath;
+    /** The issue ids suppressed at {@link #mCurrentPath} */
+    private Set<String> mSuppressedIds = Collections.emptySet();
 
     public JavaContext(LintDriver driver, JavaModule project, File file, Configuration config) {
         super(driver, project, file, config);
@@ -39,14 +51,77 @@ public class JavaContext extends Context {
 
     public void setCompileTask(CompileTask root) {
         mCompileTask = root;
+        setCompilationUnit(root.task, root.root());
     }
 
+    /**
+     * Sets the compilation unit of this file, for callers that do not go through the
+     * {@link CompileTask} of the compiler service.
+     */
+    public void setCompilationUnit(JavacTask task, CompilationUnitTree compilationUnit) {
+        mTask = task;
+        mTrees = Trees.instance(task);
+        mCompilationUnit = compilationUnit;
+    }
+
+    /**
+     * @return the compile task of the compiler service, or null if the compilation unit was
+     * set through {@link #setCompilationUnit(JavacTask, CompilationUnitTree)}
+     */
     public CompileTask getCompileTask() {
         return mCompileTask;
     }
 
+    public JavacTask getJavacTask() {
+        return mTask;
+    }
+
+    public Trees getTrees() {
+        return mTrees;
+    }
+
     public CompilationUnitTree getCompilationUnit() {
-        return mCompileTask.root();
+        return mCompilationUnit;
+    }
+
+    /**
+     * Called by the visitor when it enters or leaves a node.
+     *
+     * @param path         the path of the node being visited
+     * @param suppressedIds the issue ids suppressed at that node
+     */
+    public void setCurrentPath(@Nullable TreePath path, @NonNull Set<String> suppressedIds) {
+        mCurrentPath = path;
+        mSuppressedIds = suppressedIds;
+    }
+
+    @Nullable
+    public TreePath getCurrentPath() {
+        return mCurrentPath;
+    }
+
+    @NonNull
+    public Set<String> getSuppressedIds() {
+        return mSuppressedIds;
+    }
+
+    /**
+     * Returns the path of the given node. The node being visited, its parents and its children
+     * are found from the current path, other nodes require a search from the root of the file.
+     */
+    public TreePath getPath(@NonNull Tree node) {
+        for (TreePath path = mCurrentPath; path != null; path = path.getParentPath()) {
+            if (path.getLeaf() == node) {
+                return path;
+            }
+        }
+        if (mCurrentPath != null) {
+            TreePath path = TreePath.getPath(mCurrentPath, node);
+            if (path != null) {
+                return path;
+            }
+        }
+        return TreePath.getPath(getCompilationUnit(), node);
     }
 
     public void report(
@@ -61,7 +136,7 @@ public class JavaContext extends Context {
     }
 
     public Location getLocation(@NonNull Tree node) {
-        SourcePositions pos = Trees.instance(mCompileTask.task).getSourcePositions();
+        SourcePositions pos = mTrees.getSourcePositions();
         return Location.create(file,
                 getContents(),
                 (int) pos.getStartPosition(getCompilationUnit(), node),
@@ -23,8 +23,17 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class Lint {
+
+    /**
+     * The maximum number of threads used by {@link #scanFiles(List)}. Every thread has its own
+     * compiler, which loads the symbols of the class path again.
+     */
+    private static final int MAX_THREADS = 4;
+
     private final JavaModule mProject;
     private final JavaCompilerService mCompiler;
     private final List<Detector> mDetectors;
@@ -43,7 +52,65 @@ public class Lint {
 
     public void scanFile(File file) {
         Instant start = Instant.now();
-        LintDriver driver = new LintDriver(new IssueRegistry() {
+        LintDriver driver = createDriver();
+        JavaVisitor visitor = new JavaVisitor(mCompiler, mDetectors);
+        visitor.visitFile(createContext(driver, file));
+
+        Log.d("Lint", "Scanning took " + Duration.between(start, Instant.now()).toMillis() + " ms");
+    }
+
+    /**
+     * Scans the given files on several threads. Each thread compiles the files it scans with
+     * its own compiler, the compiler of the editor is not used. The issues are reported in the
+     * order of the files.
+     */
+    public void scanFiles(List<File> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        Instant start = Instant.now();
+        LintDriver driver = createDriver();
+        JavaVisitor visitor = new JavaVisitor(mCompiler, mDetectors);
+        List<JavaContext> contexts = new ArrayList<>(files.size());
+        for (File file : files) {
+            contexts.add(createContext(driver, file));
+        }
+
+        int threads = Math.min(files.size(),
+                Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        BlockingQueue<JavaCompilerService> compilers = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < threads; i++) {
+            compilers.add(createCompiler());
+        }
+        try {
+            driver.analyze(contexts, threads, context -> {
+                // there are as many compilers as threads, one is always available
+                JavaCompilerService compiler = compilers.remove();
+                try {
+                    visitor.visitFile(context, compiler);
+                } finally {
+                    compilers.add(compiler);
+                }
+            });
+        } finally {
+            for (JavaCompilerService compiler : compilers) {
+                compiler.close();
+            }
+        }
+
+        Log.d("Lint", "Scanning " + files.size() + " files on " + threads + " threads took " +
+                Duration.between(start, Instant.now()).toMillis() + " ms");
+    }
+
+    private JavaCompilerService createCompiler() {
+        JavaCompilerService compiler = new JavaCompilerService(mCompiler.getProject(),
+                mCompiler.classPath, mCompiler.docPath, mCompiler.addExports);
+        compiler.setCurrentModule(mProject != null ? mProject : mCompiler.getCurrentModule());
+        return compiler;
+    }
+
+    private LintDriver createDriver() {
+        return new LintDriver(new IssueRegistry() {
             @NonNull
             @Override
             public List<Issue> getIssues() {
@@ -55,7 +122,10 @@ public class Lint {
                 );
             }
         }, mClient);
-        JavaContext context = new JavaContext(driver, mProject, file, new Configuration() {
+    }
+
+    private JavaContext createContext(LintDriver driver, File file) {
+        return new JavaContext(driver, mProject, file, new Configuration() {
             @Override
             public void ignore(@NonNull Context context, @NonNull Issue issue, @Nullable Location location, @NonNull String message) {
 
@@ -66,10 +136,6 @@ public class Lint {
 
             }
         });
-        JavaVisitor visitor = new JavaVisitor(mCompiler, mDetectors);
-        visitor.visitFile(context);
-
-        Log.d("Lint", "Scanning took " + Duration.between(start, Instant.now()).toMillis() + " ms");
     }
 
     public void registerDetector(Detector detector) {
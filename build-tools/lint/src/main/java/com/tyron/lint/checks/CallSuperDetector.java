@@ -95,14 +95,14 @@ public class CallSuperDetector extends Detector implements Detector.JavaScanner
      */
     @Nullable
     private static ExecutableElement getRequiredSuperMethod(@NonNull JavaContext context, @NonNull MethodTree node) {
-        Trees trees = Trees.instance(context.getCompileTask().task);
-        TreePath path = TreePath.getPath(context.getCompilationUnit(), node);
+        Trees trees = context.getTrees();
+        TreePath path = context.getPath(node);
         Element method = trees.getElement(path);
         TypeElement typeElement = trees.getScope(path).getEnclosingClass();
         DeclaredType superClass = (DeclaredType) typeElement.getSuperclass();
         TypeElement superElement = (TypeElement) superClass.asElement();
 
-        List<? extends Element> elements = context.getCompileTask().task.getElements().getAllMembers(superElement);
+        List<? extends Element> elements = context.getJavacTask().getElements().getAllMembers(superElement);
         for (Element element : elements) {
             if (element.getKind() != ElementKind.METHOD) {
                 continue;
@@ -2,6 +2,8 @@ package com.tyron.lint.checks;
 
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
 import com.tyron.lint.api.Category;
@@ -31,7 +33,6 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.UnaryTree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
-import com.sun.source.util.Trees;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -112,19 +113,11 @@ public class JavaPerformanceDetector extends Detector implements Detector.JavaSc
 
         @Override
         public Void visitNewClass(NewClassTree node, Void unused) {
-            Trees trees = Trees.instance(mContext.getCompileTask().task);
-            TreePath parent = trees.getPath(mContext.getCompilationUnit(), node).getParentPath();
-            if (mFlagAllocations && !(parent.getLeaf() instanceof  ThrowTree)) {
-                Tree method = node;
-                while (method != null) {
-                    if (method instanceof MethodTree) {
-                        break;
-                    }
-                    method = trees.getPath(mContext.getCompilationUnit(), method).getParentPath().getLeaf();
-                }
-
-                if (method != null && isBlockedAllocationMethod((MethodTree) method)
-                        && !isLazilyInitialized(node)) {
+            TreePath path = mContext.getPath(node);
+            if (mFlagAllocations && !(path.getParentPath().getLeaf() instanceof ThrowTree)) {
+                MethodTree method = getEnclosingMethod(path);
+                if (method != null && isBlockedAllocationMethod(method)
+                        && !isLazilyInitialized(path)) {
                     reportAllocation(node);
                 }
             }
@@ -145,7 +138,7 @@ public class JavaPerformanceDetector extends Detector implements Detector.JavaSc
                     String operand = ((IdentifierTree) ((MemberSelectTree) node.getMethodSelect()).getExpression()).getName().toString();
                     if (operand.equals("Bitmap")                                   //$NON-NLS-1$
                             || operand.equals("android.graphics.Bitmap")) {        //$NON-NLS-1$
-                        if (!isLazilyInitialized(node)) {
+                        if (!isLazilyInitialized(mContext.getPath(node))) {
                             reportAllocation(node);
                         }
                     }
@@ -153,7 +146,7 @@ public class JavaPerformanceDetector extends Detector implements Detector.JavaSc
                     String operand = ((IdentifierTree) ((MemberSelectTree) node.getMethodSelect()).getExpression()).getName().toString();
                     if (operand.equals("BitmapFactory")
                         || operand.equals("android.graphics.BitmapFactory")) {
-                        if (isLazilyInitialized(node)) {
+                        if (isLazilyInitialized(mContext.getPath(node))) {
                             reportAllocation(node);
                         }
                     }
@@ -168,6 +161,16 @@ public class JavaPerformanceDetector extends Detector implements Detector.JavaSc
             return super.visitMethodInvocation(node, unused);
         }
 
+        @Nullable
+        private static MethodTree getEnclosingMethod(TreePath path) {
+            for (TreePath curr = path; curr != null; curr = curr.getParentPath()) {
+                if (curr.getLeaf() instanceof MethodTree) {
+                    return (MethodTree) curr.getLeaf();
+                }
+            }
+            return null;
+        }
+
         private void reportAllocation(Tree node) {
             mContext.report(PAINT_ALLOC, node, mContext.getLocation(node),
                     "Avoid object allocations during draw/layout operations (preallocate and " +
@@ -178,8 +181,8 @@ public class JavaPerformanceDetector extends Detector implements Detector.JavaSc
             return isOnDrawMethod(node) || isOnMeasureMethod(node) || isOnLayoutMethod(node);
         }
 
-        private boolean isLazilyInitialized(Tree node) {
-            TreePath curr = TreePath.getPath(mContext.getCompilationUnit(), node).getParentPath();
+        private boolean isLazilyInitialized(TreePath path) {
+            TreePath curr = path.getParentPath();
             while (curr != null) {
                 if (curr.getLeaf() instanceof MethodTree) {
                     return false;
@@ -20,7 +20,6 @@ import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.util.TreePath;
-import com.sun.source.util.Trees;
 import com.sun.tools.javac.code.Symbol;
 
 import java.util.Collections;
@@ -60,8 +59,8 @@ public class SharedPrefsDetector extends Detector implements Detector.JavaScanne
     public void visitMethod(@NonNull JavaContext context, @Nullable JavaVoidVisitor visitor, @NonNull MethodInvocationTree node) {
         assert JavaContext.getMethodName(node).equals("edit");
 
-        TreePath path = TreePath.getPath(context.getCompilationUnit(), node);
-        Element element = Trees.instance(context.getCompileTask().task).getElement(path);
+        TreePath path = context.getPath(node);
+        Element element = context.getTrees().getElement(path);
         ExecutableElement resolved = (ExecutableElement) element;
         boolean verifiedType = resolved.getReturnType().toString().equals(ANDROID_CONTENT_SHARED_PREFERENCES_EDITOR);
 
@@ -15,16 +15,26 @@ import com.tyron.lint.api.TextFormat;
 
 import com.sun.source.tree.AnnotationTree;
 import com.sun.source.tree.ExpressionTree;
-import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.LiteralTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.ModifiersTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 public class LintDriver {
 
@@ -62,93 +72,178 @@ public class LintDriver {
         return mClient;
     }
 
+    /**
+     * Runs the given analyzer on every context, on up to {@code parallelism} threads.
+     * <p>
+     * The issues reported for a file are buffered while the files are analyzed and are passed
+     * to the client in the order of the given contexts, so the reported issues do not depend
+     * on how the files were scheduled.
+     */
+    public <C extends Context> void analyze(@NonNull List<C> contexts,
+                                            int parallelism,
+                                            @NonNull Consumer<C> analyzer) {
+        if (parallelism <= 1 || contexts.size() <= 1) {
+            for (C context : contexts) {
+                if (mCanceled) {
+                    return;
+                }
+                analyzer.accept(context);
+            }
+            return;
+        }
+
+        LintClientWrapper client = (LintClientWrapper) mClient;
+        for (C context : contexts) {
+            client.startBuffering(context);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, contexts.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(contexts.size());
+            for (C context : contexts) {
+                futures.add(executor.submit(() -> {
+                    if (!mCanceled) {
+                        analyzer.accept(context);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    mClient.log(e.getCause(), "Failed to analyze file", null);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    mCanceled = true;
+                    return;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            for (C context : contexts) {
+                client.flush(context);
+            }
+        }
+    }
+
+    public void cancel() {
+        mCanceled = true;
+    }
+
     public boolean isSuppressed(@Nullable JavaContext context, @NonNull Issue issue,
                                 @Nullable Tree scope) {
-        boolean checkComments = mClient.checkForSuppressComments() &&
-                context != null && context.containsCommentSuppress();
-        if (context == null) {
+        if (context == null || scope == null) {
             return false;
         }
-        while (scope != null) {
-            if (scope instanceof MethodTree) {
-                if (isSuppressed(issue, ((MethodTree) scope).getModifiers())) {
+
+        // the ids suppressed by the methods enclosing the node being visited are kept by
+        // the visitor, only the methods between that node and the scope need to be checked
+        TreePath current = context.getCurrentPath();
+        for (TreePath path = context.getPath(scope); path != null; path = path.getParentPath()) {
+            Tree leaf = path.getLeaf();
+            if (current != null && leaf == current.getLeaf()) {
+                return isSuppressed(context.getSuppressedIds(), issue);
+            }
+            if (leaf instanceof MethodTree) {
+                if (isSuppressed(issue, ((MethodTree) leaf).getModifiers())) {
                     return true;
                 }
             }
-
-            TreePath parentPath = TreePath.getPath(context.getCompilationUnit(), scope).getParentPath();
-            if (parentPath == null) {
-                break;
-            } else {
-                scope = parentPath.getLeaf();
-            }
         }
-
         return false;
     }
 
     public boolean isSuppressed(@Nullable Issue issue, @Nullable ModifiersTree modifiers) {
+        return isSuppressed(getSuppressedIds(modifiers, Collections.emptySet()), issue);
+    }
+
+    /**
+     * Returns the ids suppressed by the {@code SuppressLint} and {@code SuppressWarnings}
+     * annotations of the given modifiers together with the ids suppressed by the enclosing
+     * scope. The ids are normalized so they can be matched with
+     * {@link #isSuppressed(Set, Issue)}.
+     *
+     * @param parent the ids suppressed by the enclosing scope, returned as is if the
+     *               modifiers do not suppress anything
+     */
+    @NonNull
+    public static Set<String> getSuppressedIds(@Nullable ModifiersTree modifiers,
+                                               @NonNull Set<String> parent) {
         if (modifiers == null) {
-            return false;
+            return parent;
         }
-
         List<? extends AnnotationTree> annotations = modifiers.getAnnotations();
-        if (annotations == null) {
-            return false;
+        if (annotations == null || annotations.isEmpty()) {
+            return parent;
         }
 
+        Set<String> ids = null;
         for (AnnotationTree annotation : annotations) {
-            IdentifierTree type = (IdentifierTree) annotation.getAnnotationType();
-            String typeName = type.getName().toString();
-            if (typeName.endsWith("SuppressLint")
-                || typeName.endsWith("SuppressWarnings")) {
-                List<? extends ExpressionTree> values = annotation.getArguments();
-                if (values != null) {
-                    for (ExpressionTree arg : values) {
-                        if (arg == null) {
-                            continue;
-                        }
-                        if (arg instanceof LiteralTree) {
-                            String value = String.valueOf(((LiteralTree) arg).getValue());
-                            if (matches(issue, value)) {
-                                return true;
-                            }
-                        }
+            String typeName = annotation.getAnnotationType().toString();
+            if (!typeName.endsWith("SuppressLint") && !typeName.endsWith("SuppressWarnings")) {
+                continue;
+            }
+            List<? extends ExpressionTree> values = annotation.getArguments();
+            if (values == null) {
+                continue;
+            }
+            for (ExpressionTree arg : values) {
+                if (arg instanceof LiteralTree) {
+                    if (ids == null) {
+                        ids = new HashSet<>(parent);
                     }
+                    addSuppressedId(ids, String.valueOf(((LiteralTree) arg).getValue()));
                 }
             }
         }
-
-        return false;
+        return ids == null ? parent : Collections.unmodifiableSet(ids);
     }
 
-    private static boolean matches(@Nullable Issue issue, @NonNull String id) {
-        if (id.equalsIgnoreCase("all")) {
-            return true;
+    private static void addSuppressedId(Set<String> ids, String id) {
+        ids.add(id.toLowerCase(Locale.ROOT));
+        if (id.startsWith(STUDIO_ID_PREFIX)) {
+            ids.add(id.substring(STUDIO_ID_PREFIX.length()).toLowerCase(Locale.ROOT));
         }
+    }
 
-        if (issue != null) {
-            String issueId = issue.getId();
-            if (id.equalsIgnoreCase(issueId)) {
-                return true;
-            }
-            if (id.startsWith(STUDIO_ID_PREFIX)
-                    && id.regionMatches(true, STUDIO_ID_PREFIX.length(), issueId, 0, issueId.length())
-                    && id.substring(STUDIO_ID_PREFIX.length()).equalsIgnoreCase(issueId)) {
-                return true;
-            }
+    /**
+     * @param suppressedIds ids returned by {@link #getSuppressedIds(ModifiersTree, Set)}
+     */
+    public static boolean isSuppressed(@NonNull Set<String> suppressedIds, @Nullable Issue issue) {
+        if (suppressedIds.isEmpty()) {
+            return false;
         }
-
-        return false;
+        if (suppressedIds.contains("all")) {
+            return true;
+        }
+        return issue != null && suppressedIds.contains(issue.getId().toLowerCase(Locale.ROOT));
     }
 
     private static class LintClientWrapper extends LintClient {
         private LintClient mDelegate;
 
+        /** The issues of the files that are analyzed in parallel, by file */
+        private final Map<Context, List<Report>> mBuffers = new ConcurrentHashMap<>();
+
         public LintClientWrapper(LintClient client) {
             mDelegate = client;
         }
 
+        void startBuffering(Context context) {
+            mBuffers.put(context, Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        void flush(Context context) {
+            List<Report> reports = mBuffers.remove(context);
+            if (reports == null) {
+                return;
+            }
+            for (Report report : reports) {
+                mDelegate.report(context, report.issue, report.severity, report.location,
+                        report.message, report.format);
+            }
+        }
+
         @NonNull
         @Override
         public Class<? extends Detector> replaceDetector(@NonNull Class<? extends Detector> detectorClass) {
@@ -162,6 +257,11 @@ public class LintDriver {
 
         @Override
         public void report(@NonNull Context context, @NonNull Issue issue, @NonNull Severity severity, @Nullable Location location, @NonNull String message, @NonNull TextFormat format) {
+            List<Report> buffer = mBuffers.get(context);
+            if (buffer != null) {
+                buffer.add(new Report(issue, severity, location, message, format));
+                return;
+            }
             mDelegate.report(context, issue, severity, location, message, format);
         }
 
@@ -170,4 +270,21 @@ public class LintDriver {
             mDelegate.log(t, s, name);
         }
     }
+
+    private static class Report {
+        final Issue issue;
+        final Severity severity;
+        final Location location;
+        final String message;
+        final TextFormat format;
+
+        Report(Issue issue, Severity severity, Location location, String message,
+               TextFormat format) {
+            this.issue = issue;
+            this.severity = severity;
+            this.location = location;
+            this.message = message;
+            this.format = format;
+        }
+    }
 }
@@ -0,0 +1,313 @@
+package com.tyron.lint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.tyron.lint.api.Context;
+import com.tyron.lint.api.Detector;
+import com.tyron.lint.api.Issue;
+import com.tyron.lint.api.JavaContext;
+import com.tyron.lint.api.Location;
+import com.tyron.lint.api.Severity;
+import com.tyron.lint.api.TextFormat;
+import com.tyron.lint.checks.CallSuperDetector;
+import com.tyron.lint.checks.JavaPerformanceDetector;
+import com.tyron.lint.checks.SharedPrefsDetector;
+import com.tyron.lint.checks.ToastDetector;
+import com.tyron.lint.client.Configuration;
+import com.tyron.lint.client.IssueRegistry;
+import com.tyron.lint.client.LintClient;
+import com.tyron.lint.client.LintDriver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+public class JavaVisitorTest {
+
+    private static final String[] CORPUS = {
+            "DrawView.java",
+            "Plain.java",
+            "Prefs.java",
+            "SuppressedView.java",
+            "Toasts.java"
+    };
+
+    private static final String[] STUBS = {
+            "android/annotation/SuppressLint.java",
+            "android/content/Context.java",
+            "android/content/SharedPreferences.java",
+            "android/graphics/Bitmap.java",
+            "android/graphics/BitmapFactory.java",
+            "android/graphics/Canvas.java",
+            "android/graphics/Paint.java",
+            "android/graphics/Rect.java",
+            "android/view/View.java",
+            "android/widget/Toast.java",
+            "androidx/annotation/CallSuper.java"
+    };
+
+    private static final IssueRegistry REGISTRY = new IssueRegistry() {
+        @NonNull
+        @Override
+        public List<Issue> getIssues() {
+            return Arrays.asList(
+                    JavaPerformanceDetector.PAINT_ALLOC,
+                    SharedPrefsDetector.ISSUE,
+                    CallSuperDetector.ISSUE,
+                    ToastDetector.ISSUE
+            );
+        }
+    };
+
+    private static final int WARM_UP_RUNS = 3;
+    private static final int BENCHMARK_RUNS = 7;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCorpus() throws IOException {
+        File stubs = copyResources("stubs", STUBS);
+        File corpus = copyResources("corpus", CORPUS);
+        List<File> files = new ArrayList<>();
+        for (String name : CORPUS) {
+            files.add(new File(corpus, name));
+        }
+
+        List<String> previous = lint(files, stubs, 1, 1, true).reports;
+        assertFalse(previous.isEmpty());
+        assertEquals(String.join("\n", previous),
+                String.join("\n", lint(files, stubs, 1, 1, false).reports));
+    }
+
+    /**
+     * Lints a project of 1000 files sequentially and in parallel. Both must report the same
+     * issues in the same order as the previous driver.
+     */
+    @Test
+    public void testParallelProject() throws IOException {
+        File stubs = copyResources("stubs", STUBS);
+        List<File> files = createProject(1000);
+
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        List<String> previous = lint(files, stubs, threads, 1, true).reports;
+        List<String> sequential = lint(files, stubs, threads, 1, false).reports;
+        List<String> parallel = lint(files, stubs, threads, threads, false).reports;
+        assertEquals(previous, sequential);
+        assertEquals(sequential, parallel);
+    }
+
+    /**
+     * Measures the time taken to visit the files of a 1000 file project with the previous
+     * visitor, and with {@link JavaVisitor} on one and on several threads. The files are
+     * compiled once and every configuration is warmed up. The single traversal must be faster
+     * than the previous visitor, and with more than one processor visiting the files in
+     * parallel must be faster than visiting them on one thread.
+     */
+    @Test
+    public void testBenchmark() throws IOException {
+        File stubs = copyResources("stubs", STUBS);
+        List<File> files = createProject(1000);
+        int processors = Runtime.getRuntime().availableProcessors();
+        int threads = Math.max(2, processors);
+
+        Result previous = lint(files, stubs, threads, 1, true, BENCHMARK_RUNS);
+        Result sequential = lint(files, stubs, threads, 1, false, BENCHMARK_RUNS);
+        Result parallel = lint(files, stubs, threads, threads, false, BENCHMARK_RUNS);
+        assertEquals(previous.reports, sequential.reports);
+        assertEquals(sequential.reports, parallel.reports);
+
+        assertTrue("previous: " + previous.millis + " ms, 1 thread: " + sequential.millis
+                + " ms", sequential.millis < previous.millis);
+        if (processors > 1) {
+            assertTrue("1 thread: " + sequential.millis + " ms, " + threads + " threads: "
+                    + parallel.millis + " ms", parallel.millis < sequential.millis);
+        }
+    }
+
+    /**
+     * Creates a project of at least {@code size} files made of copies of the corpus, each copy
+     * in its own package.
+     */
+    private List<File> createProject(int size) throws IOException {
+        File project = mTemporaryFolder.newFolder("project");
+        List<File> files = new ArrayList<>();
+        for (int copies = 0; files.size() < size; copies++) {
+            for (String name : CORPUS) {
+                String contents = readResource("corpus/" + name).replace(
+                        "package com.example.lint;", "package com.example.lint.p" + copies + ";");
+                File file = new File(project, "p" + copies + "/" + name);
+                Files.createDirectories(file.getParentFile().toPath());
+                Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static class Result {
+        final List<String> reports;
+        final long millis;
+
+        Result(List<String> reports, long millis) {
+            this.reports = reports;
+            this.millis = millis;
+        }
+    }
+
+    private Result lint(List<File> files, File stubs, int batches, int parallelism,
+                        boolean previous) throws IOException {
+        return lint(files, stubs, batches, parallelism, previous, 1);
+    }
+
+    /**
+     * Lints the given files. Javac tasks are not thread safe, the files are compiled in
+     * {@code batches} tasks and files of the same task are linted one at a time.
+     *
+     * @param previous whether to lint with {@link PreviousJavaVisitor} and
+     *                 {@link PreviousLintDriver} instead of {@link JavaVisitor}
+     * @param runs     the number of times the compiled files are linted, after
+     *                 {@link #WARM_UP_RUNS} warm-up runs when there is more than one
+     * @return the reports of the last run and the median time of the runs
+     */
+    private Result lint(List<File> files, File stubs, int batches, int parallelism,
+                        boolean previous, int runs) throws IOException {
+        List<String> reports = Collections.synchronizedList(new ArrayList<>());
+        LintClient client = new LintClient() {
+            @Override
+            public void report(@NonNull Context context, @NonNull Issue issue,
+                               @NonNull Severity severity, @Nullable Location location,
+                               @NonNull String message, @NonNull TextFormat format) {
+                assertNotNull(location);
+                reports.add(issue.getId() + " " + context.file.getName() + ":"
+                        + (location.getStart().line + 1) + ":"
+                        + (location.getStart().column + 1) + " " + message);
+            }
+        };
+        List<Detector> detectors = Arrays.asList(new JavaPerformanceDetector(),
+                new SharedPrefsDetector(), new CallSuperDetector(), new ToastDetector());
+        LintDriver driver;
+        Consumer<JavaContext> visitor;
+        if (previous) {
+            driver = new PreviousLintDriver(REGISTRY, client);
+            visitor = new PreviousJavaVisitor(detectors)::visitCompilationUnit;
+        } else {
+            driver = new LintDriver(REGISTRY, client);
+            visitor = new JavaVisitor(null, detectors)::visitCompilationUnit;
+        }
+
+        Map<JavaContext, JavacTask> tasks = new HashMap<>();
+        List<JavaContext> contexts = new ArrayList<>();
+        int batchSize = (files.size() + batches - 1) / batches;
+        for (int start = 0; start < files.size(); start += batchSize) {
+            List<File> batch = files.subList(start, Math.min(files.size(), start + batchSize));
+            JavacTask task = compile(batch, stubs);
+            List<CompilationUnitTree> roots = new ArrayList<>();
+            task.parse().forEach(roots::add);
+            task.analyze();
+            for (int i = 0; i < batch.size(); i++) {
+                JavaContext context = new JavaContext(driver, null, batch.get(i),
+                        new TestConfiguration());
+                context.setCompilationUnit(task, roots.get(i));
+                tasks.put(context, task);
+                contexts.add(context);
+            }
+        }
+
+        long[] millis = new long[runs];
+        int warmUpRuns = runs > 1 ? WARM_UP_RUNS : 0;
+        for (int run = -warmUpRuns; run < runs; run++) {
+            reports.clear();
+            long start = System.nanoTime();
+            driver.analyze(contexts, parallelism, context -> {
+                synchronized (tasks.get(context)) {
+                    visitor.accept(context);
+                }
+            });
+            if (run >= 0) {
+                millis[run] = (System.nanoTime() - start) / 1_000_000;
+            }
+        }
+        Arrays.sort(millis);
+        return new Result(new ArrayList<>(reports), millis[runs / 2]);
+    }
+
+    private static JavacTask compile(List<File> files, File stubs) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null,
+                StandardCharsets.UTF_8);
+        Iterable<? extends JavaFileObject> sources = fileManager.getJavaFileObjectsFromFiles(files);
+        return (JavacTask) compiler.getTask(null, fileManager, diagnostic -> {},
+                Arrays.asList("-proc:none", "-sourcepath", stubs.getAbsolutePath()), null,
+                sources);
+    }
+
+    private File copyResources(String directory, String[] names) throws IOException {
+        File root = new File(mTemporaryFolder.getRoot(), directory);
+        for (String name : names) {
+            File file = new File(root, name);
+            Files.createDirectories(file.getParentFile().toPath());
+            try (InputStream inputStream = getResource(directory + "/" + name)) {
+                Files.copy(inputStream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return root;
+    }
+
+    private String readResource(String name) throws IOException {
+        try (InputStream inputStream = getResource(name)) {
+            byte[] bytes = new byte[inputStream.available()];
+            int read = 0;
+            while (read < bytes.length) {
+                read += inputStream.read(bytes, read, bytes.length - read);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private InputStream getResource(String name) {
+        InputStream inputStream = JavaVisitorTest.class.getResourceAsStream("/lint/" + name);
+        assertNotNull("Missing resource " + name, inputStream);
+        return inputStream;
+    }
+
+    private static class TestConfiguration extends Configuration {
+        @Override
+        public void ignore(@NonNull Context context, @NonNull Issue issue,
+                           @Nullable Location location, @NonNull String message) {
+
+        }
+
+        @Override
+        public void setSeverity(@NonNull Issue issue, @Nullable Severity severity) {
+
+        }
+    }
+}
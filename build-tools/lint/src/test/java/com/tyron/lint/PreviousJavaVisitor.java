@@ -0,0 +1,169 @@
+package com.tyron.lint;
+
+import androidx.annotation.NonNull;
+
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.tyron.lint.api.Detector;
+import com.tyron.lint.api.Detector.JavaScanner;
+import com.tyron.lint.api.JavaContext;
+import com.tyron.lint.api.JavaVoidVisitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The visitor used before the detectors shared a single traversal of the file, kept to check
+ * that {@link JavaVisitor} reports the same issues. Every detector visitor walks the parts of
+ * the tree it is given on its own.
+ */
+class PreviousJavaVisitor {
+
+    private final List<VisitingDetector> mAllDetectors;
+    private final Map<Class<? extends Tree>, List<VisitingDetector>> mTreeTypeDetectors =
+            new HashMap<>(16);
+    private final Map<String, List<VisitingDetector>> mMethodDetectors = new HashMap<>(16);
+
+    PreviousJavaVisitor(@NonNull List<Detector> detectors) {
+        mAllDetectors = new ArrayList<>(detectors.size());
+
+        for (Detector detector : detectors) {
+            VisitingDetector v = new VisitingDetector(detector, (JavaScanner) detector);
+            mAllDetectors.add(v);
+
+            List<Class<? extends Tree>> treeTypes = detector.getApplicableTypes();
+            if (treeTypes != null) {
+                for (Class<? extends Tree> tree : treeTypes) {
+                    mTreeTypeDetectors.computeIfAbsent(tree, k -> new ArrayList<>()).add(v);
+                }
+            }
+
+            List<String> names = detector.getApplicableMethodNames();
+            if (names != null) {
+                for (String name : names) {
+                    mMethodDetectors.computeIfAbsent(name, k -> new ArrayList<>()).add(v);
+                }
+            }
+        }
+    }
+
+    void visitCompilationUnit(JavaContext context) {
+        for (VisitingDetector v : mAllDetectors) {
+            v.setContext(context);
+        }
+
+        if (!mMethodDetectors.isEmpty()) {
+            context.getCompilationUnit().accept(new DelegatingJavaVisitor(context), null);
+        } else if (!mTreeTypeDetectors.isEmpty()) {
+            context.getCompilationUnit().accept(new DispatchVisitor(), null);
+        }
+    }
+
+    private static class VisitingDetector {
+        private JavaVoidVisitor mVisitor;
+        private JavaContext mContext;
+        private final Detector mDetector;
+        private final JavaScanner mScanner;
+
+        VisitingDetector(@NonNull Detector detector, JavaScanner scanner) {
+            mDetector = detector;
+            mScanner = scanner;
+        }
+
+        void setContext(@NonNull JavaContext context) {
+            mContext = context;
+            mVisitor = null;
+        }
+
+        JavaVoidVisitor getVisitor() {
+            if (mVisitor == null) {
+                mVisitor = mDetector.getVisitor(mContext);
+            }
+            return mVisitor;
+        }
+    }
+
+    private class DispatchVisitor extends JavaVoidVisitor {
+
+        @Override
+        public Void visitAnnotation(AnnotationTree annotationTree, Void unused) {
+            List<VisitingDetector> list = mTreeTypeDetectors.get(AnnotationTree.class);
+            if (list != null) {
+                for (VisitingDetector v : list) {
+                    v.getVisitor().visitAnnotation(annotationTree, unused);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitVariable(VariableTree variableTree, Void unused) {
+            List<VisitingDetector> list = mTreeTypeDetectors.get(VariableTree.class);
+            if (list != null) {
+                for (VisitingDetector v : list) {
+                    v.getVisitor().visitVariable(variableTree, unused);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitMethodInvocation(MethodInvocationTree methodInvocationTree, Void unused) {
+            List<VisitingDetector> list = mTreeTypeDetectors.get(MethodInvocationTree.class);
+            if (list != null) {
+                for (VisitingDetector v : list) {
+                    v.getVisitor().visitMethodInvocation(methodInvocationTree, unused);
+                }
+            }
+            return super.visitMethodInvocation(methodInvocationTree, unused);
+        }
+
+        @Override
+        public Void visitMethod(MethodTree methodTree, Void unused) {
+            List<VisitingDetector> list = mTreeTypeDetectors.get(MethodTree.class);
+            if (list != null) {
+                for (VisitingDetector v : list) {
+                    v.getVisitor().visitMethod(methodTree, unused);
+                }
+            }
+            return super.visitMethod(methodTree, unused);
+        }
+
+        @Override
+        public Void visitIdentifier(IdentifierTree identifierTree, Void unused) {
+            List<VisitingDetector> list = mTreeTypeDetectors.get(IdentifierTree.class);
+            if (list != null) {
+                for (VisitingDetector v : list) {
+                    v.getVisitor().visitIdentifier(identifierTree, unused);
+                }
+            }
+            return super.visitIdentifier(identifierTree, unused);
+        }
+    }
+
+    private class DelegatingJavaVisitor extends DispatchVisitor {
+        private final JavaContext mContext;
+
+        DelegatingJavaVisitor(JavaContext context) {
+            mContext = context;
+        }
+
+        @Override
+        public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+            String methodName = JavaContext.getMethodName(node);
+            List<VisitingDetector> list = mMethodDetectors.get(methodName);
+            if (list != null) {
+                for (VisitingDetector v : list) {
+                    v.mScanner.visitMethod(mContext, v.getVisitor(), node);
+                }
+            }
+            return super.visitMethodInvocation(node, unused);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.tyron.lint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.tyron.lint.api.Issue;
+import com.tyron.lint.api.JavaContext;
+import com.tyron.lint.client.IssueRegistry;
+import com.tyron.lint.client.LintClient;
+import com.tyron.lint.client.LintDriver;
+
+import java.util.List;
+
+/**
+ * A driver that checks for suppressed issues the way it was done before the visitor kept
+ * the suppressed ids of the enclosing methods, used with {@link PreviousJavaVisitor}.
+ */
+class PreviousLintDriver extends LintDriver {
+
+    private static final String STUDIO_ID_PREFIX = "AndroidLint";
+
+    PreviousLintDriver(@NonNull IssueRegistry registry, @NonNull LintClient client) {
+        super(registry, client);
+    }
+
+    @Override
+    public boolean isSuppressed(@Nullable JavaContext context, @NonNull Issue issue,
+                                @Nullable Tree scope) {
+        if (context == null) {
+            return false;
+        }
+        while (scope != null) {
+            if (scope instanceof MethodTree) {
+                if (isSuppressed(issue, ((MethodTree) scope).getModifiers())) {
+                    return true;
+                }
+            }
+
+            TreePath parentPath = TreePath.getPath(context.getCompilationUnit(), scope)
+                    .getParentPath();
+            if (parentPath == null) {
+                break;
+            } else {
+                scope = parentPath.getLeaf();
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isSuppressed(@Nullable Issue issue, @Nullable ModifiersTree modifiers) {
+        if (modifiers == null) {
+            return false;
+        }
+
+        List<? extends AnnotationTree> annotations = modifiers.getAnnotations();
+        if (annotations == null) {
+            return false;
+        }
+
+        for (AnnotationTree annotation : annotations) {
+            IdentifierTree type = (IdentifierTree) annotation.getAnnotationType();
+            String typeName = type.getName().toString();
+            if (typeName.endsWith("SuppressLint")
+                    || typeName.endsWith("SuppressWarnings")) {
+                List<? extends ExpressionTree> values = annotation.getArguments();
+                if (values != null) {
+                    for (ExpressionTree arg : values) {
+                        if (arg instanceof LiteralTree) {
+                            String value = String.valueOf(((LiteralTree) arg).getValue());
+                            if (matches(issue, value)) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean matches(@Nullable Issue issue, @NonNull String id) {
+        if (id.equalsIgnoreCase("all")) {
+            return true;
+        }
+
+        if (issue != null) {
+            String issueId = issue.getId();
+            if (id.equalsIgnoreCase(issueId)) {
+                return true;
+            }
+            if (id.startsWith(STUDIO_ID_PREFIX)
+                    && id.regionMatches(true, STUDIO_ID_PREFIX.length(), issueId, 0, issueId.length())
+                    && id.substring(STUDIO_ID_PREFIX.length()).equalsIgnoreCase(issueId)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.lint;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.View;
+
+public class DrawView extends View {
+
+    private Paint mPaint;
+    private Bitmap mCache;
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        Paint paint = new Paint();
+        canvas.drawRect(new Rect(0, 0, 10, 10), paint);
+        Rect clip = canvas.getClipBounds();
+        canvas.drawBitmap(Bitmap.createBitmap(10, 10), 0, 0, paint);
+        if (mCache == null) {
+            mCache = BitmapFactory.decodeFile("/sdcard/cache.png");
+        }
+        if (clip == null) {
+            throw new IllegalStateException("No clip");
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        Rect bounds = new Rect();
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        mPaint = new Paint();
+    }
+
+    private void update() {
+        mPaint = new Paint();
+        mCache = Bitmap.createBitmap(20, 20);
+    }
+}
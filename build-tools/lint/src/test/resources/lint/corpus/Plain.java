@@ -0,0 +1,30 @@
+package com.example.lint;
+
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class Plain extends View {
+
+    private static final List<String> NAMES = new ArrayList<>();
+
+    static {
+        NAMES.add("plain");
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        Supplier<String> supplier = () -> NAMES.get(visibility);
+        supplier.get();
+    }
+
+    static class Nested<T extends Comparable<T>> {
+
+        T max(T first, T second) {
+            return first.compareTo(second) >= 0 ? first : second;
+        }
+    }
+}
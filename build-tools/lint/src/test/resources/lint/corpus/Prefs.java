@@ -0,0 +1,12 @@
+package com.example.lint;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+public class Prefs {
+
+    void save(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences("prefs", 0);
+        prefs.edit().putString("key", "value").commit();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.lint;
+
+import android.annotation.SuppressLint;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.View;
+
+public class SuppressedView extends View {
+
+    @SuppressLint("DrawAllocation")
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.drawRect(new Rect(), new Paint());
+    }
+
+    @SuppressWarnings("all")
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        Rect bounds = new Rect(0, 0, widthMeasureSpec, heightMeasureSpec);
+    }
+
+    @SuppressLint("AndroidLintMissingSuperCall")
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        Runnable cleanup = new Runnable() {
+            @Override
+            public void run() {
+                mPaint = null;
+            }
+        };
+        cleanup.run();
+    }
+
+    private Paint mPaint;
+}
@@ -0,0 +1,22 @@
+package com.example.lint;
+
+import android.content.Context;
+import android.widget.Toast;
+
+public class Toasts {
+
+    void show(Context context) {
+        Toast.makeText(context, "Hello", 5000).show();
+        Toast.makeText(context, "Hi", Toast.LENGTH_SHORT).show();
+    }
+
+    @SuppressWarnings("ShowToast")
+    void suppressed(Context context) {
+        Toast.makeText(context, "Suppressed", 2000).show();
+    }
+
+    void variable(Context context) {
+        Toast toast = Toast.makeText(context, "Hello", 3000);
+        toast.show();
+    }
+}
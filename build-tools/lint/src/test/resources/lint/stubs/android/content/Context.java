@@ -0,0 +1,8 @@
+package android.content;
+
+public class Context {
+
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        return null;
+    }
+}
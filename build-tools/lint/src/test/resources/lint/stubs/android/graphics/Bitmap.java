@@ -0,0 +1,12 @@
+package android.graphics;
+
+public class Bitmap {
+
+    public static Bitmap createBitmap(int width, int height) {
+        return new Bitmap();
+    }
+
+    public static Bitmap createScaledBitmap(Bitmap src, int width, int height, boolean filter) {
+        return src;
+    }
+}
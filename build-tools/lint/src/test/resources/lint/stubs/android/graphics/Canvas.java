@@ -0,0 +1,18 @@
+package android.graphics;
+
+public class Canvas {
+
+    public Rect getClipBounds() {
+        return new Rect();
+    }
+
+    public boolean getClipBounds(Rect bounds) {
+        return true;
+    }
+
+    public void drawRect(Rect rect, Paint paint) {
+    }
+
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+    }
+}
@@ -0,0 +1,10 @@
+package android.graphics;
+
+public class Rect {
+
+    public Rect() {
+    }
+
+    public Rect(int left, int top, int right, int bottom) {
+    }
+}
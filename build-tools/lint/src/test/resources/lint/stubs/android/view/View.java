@@ -0,0 +1,24 @@
+package android.view;
+
+import android.graphics.Canvas;
+import androidx.annotation.CallSuper;
+
+public class View {
+
+    protected void onDraw(Canvas canvas) {
+    }
+
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    }
+
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+    }
+
+    @CallSuper
+    protected void onDetachedFromWindow() {
+    }
+
+    @CallSuper
+    protected void onVisibilityChanged(View changedView, int visibility) {
+    }
+}
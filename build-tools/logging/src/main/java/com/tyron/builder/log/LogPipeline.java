@@ -0,0 +1,215 @@
+package com.tyron.builder.log;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves log entries from the threads that produce them to a single consumer thread that
+ * delivers them in batches, at most once per frame interval.
+ * <p>
+ * Producers write to a bounded {@link LogRingBuffer}. Publishing never waits, since the main
+ * thread publishes as well: when the ring is full the entry is spilled to an unbounded queue,
+ * and the following entries go to that queue too until the consumer has drained it. Entries
+ * published by the same thread are delivered in the order they were published.
+ *
+ * @param <E> the type of the log entries
+ */
+public class LogPipeline<E> implements Closeable {
+
+    public interface Listener<E> {
+
+        /**
+         * Called on the consumer thread with the entries published since the last batch.
+         * The list is not reused after this method returns.
+         */
+        void onBatch(List<E> batch);
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(LogPipeline.class.getName());
+
+    private static final long BACK_OFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final LogRingBuffer<E> mRing;
+    private final Queue<E> mSpilled = new ConcurrentLinkedQueue<>();
+    /** Incremented after an entry is added to {@link #mSpilled}, so it never exceeds its size. */
+    private final AtomicLong mSpilledCount = new AtomicLong();
+    private final Listener<E> mListener;
+    private final long mFrameIntervalNanos;
+
+    private final AtomicLong mPublished = new AtomicLong();
+    private final AtomicLong mDelivered = new AtomicLong();
+    private final AtomicBoolean mSleeping = new AtomicBoolean();
+    private final AtomicBoolean mStarted = new AtomicBoolean();
+    private volatile boolean mClosed;
+
+    /** Null until the first entry is published. */
+    private volatile Thread mConsumer;
+
+    public LogPipeline(int ringCapacity, Listener<E> listener, long frameIntervalMillis) {
+        mRing = new LogRingBuffer<>(ringCapacity);
+        mListener = listener;
+        mFrameIntervalNanos = TimeUnit.MILLISECONDS.toNanos(frameIntervalMillis);
+    }
+
+    /**
+     * Adds an entry to the log, may be called from any thread. Never blocks.
+     */
+    public void publish(E entry) {
+        if (mClosed) {
+            throw new IllegalStateException("The log pipeline has been closed");
+        }
+        startIfNecessary();
+
+        mPublished.incrementAndGet();
+        // once an entry has been spilled, the ring is bypassed until the consumer has taken the
+        // spilled entries, otherwise a later entry of the same thread could overtake them
+        if (mSpilledCount.get() > 0 || !mRing.offer(entry)) {
+            mSpilled.add(entry);
+            mSpilledCount.incrementAndGet();
+            // the consumer may be waiting for the end of the frame, it drains early when it is
+            // woken up while entries are piling up
+            LockSupport.unpark(mConsumer);
+            return;
+        }
+        if (mSleeping.get()) {
+            wakeConsumer();
+        }
+    }
+
+    /**
+     * Waits until every entry published before this call has been delivered to the listener.
+     * Must not be called from the listener.
+     */
+    public void flush() {
+        long target = mPublished.get();
+        while (mDelivered.get() < target) {
+            if (mClosed) {
+                return;
+            }
+            wakeConsumer();
+            LockSupport.parkNanos(BACK_OFF_NANOS);
+        }
+    }
+
+    /**
+     * @return the number of entries that were published but not delivered yet
+     */
+    public long getPendingCount() {
+        return mPublished.get() - mDelivered.get();
+    }
+
+    /**
+     * Delivers the remaining entries and stops the consumer thread.
+     */
+    @Override
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+        flush();
+        mClosed = true;
+        Thread consumer = mConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void startIfNecessary() {
+        if (mStarted.get() || !mStarted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread consumer = new Thread(this::consume, "LogPipeline");
+        consumer.setDaemon(true);
+        mConsumer = consumer;
+        consumer.start();
+    }
+
+    private void wakeConsumer() {
+        Thread consumer = mConsumer;
+        if (consumer != null && mSleeping.compareAndSet(true, false)) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void consume() {
+        try {
+            consumeUntilClosed();
+        } finally {
+            // if the consumer dies, publishing fails instead of piling up entries and flushing
+            // returns instead of waiting forever
+            mClosed = true;
+        }
+    }
+
+    private void consumeUntilClosed() {
+        long lastDelivery = 0;
+        List<E> batch = new ArrayList<>();
+        while (!mClosed) {
+            drainTo(batch);
+
+            long now = System.nanoTime();
+            long remaining = lastDelivery + mFrameIntervalNanos - now;
+            if (!batch.isEmpty() && remaining <= 0) {
+                deliver(batch);
+                batch = new ArrayList<>();
+                lastDelivery = now;
+                continue;
+            }
+
+            mSleeping.set(true);
+            // an entry may have been published before the flag was set
+            if (!mRing.isEmpty() || mSpilledCount.get() > 0) {
+                mSleeping.set(false);
+                if (batch.isEmpty() || getPendingCount() > batch.size() + mRing.capacity() / 2) {
+                    // keep draining, the ring is filling up or entries are being spilled
+                    continue;
+                }
+            }
+            if (batch.isEmpty()) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, remaining);
+            }
+            mSleeping.set(false);
+        }
+        drainTo(batch);
+        if (!batch.isEmpty()) {
+            deliver(batch);
+        }
+    }
+
+    /**
+     * Moves the entries of the ring, then the entries spilled before the ring was drained, to
+     * the batch. An entry is only spilled after the earlier entries of its thread were added to
+     * the ring, so they are drained first.
+     */
+    private void drainTo(List<E> batch) {
+        long spilled = mSpilledCount.get();
+        mRing.drainTo(batch, Integer.MAX_VALUE);
+        for (long i = 0; i < spilled; i++) {
+            batch.add(mSpilled.poll());
+        }
+        mSpilledCount.addAndGet(-spilled);
+    }
+
+    private void deliver(List<E> batch) {
+        int size = batch.size();
+        try {
+            mListener.onBatch(batch);
+        } catch (RuntimeException e) {
+            // the consumer must keep running, otherwise the entries would pile up
+            LOGGER.log(Level.SEVERE, "Unable to deliver a batch of " + size + " log entries", e);
+        } finally {
+            mDelivered.addAndGet(size);
+        }
+    }
+}
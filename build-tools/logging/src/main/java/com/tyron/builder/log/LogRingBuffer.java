@@ -0,0 +1,125 @@
+package com.tyron.builder.log;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer that can be written to by any number of threads and is read
+ * by a single consumer thread.
+ * <p>
+ * Every slot has a sequence number. A producer claims the slot of the current tail with a CAS
+ * and publishes its element by advancing the sequence of the slot, the consumer reads a slot
+ * only once its sequence shows that it has been published. Producers never wait for each other.
+ */
+public class LogRingBuffer<E> {
+
+    private final int mCapacity;
+    private final int mMask;
+    private final AtomicReferenceArray<E> mElements;
+    private final AtomicLongArray mSequences;
+    private final AtomicLong mTail = new AtomicLong();
+
+    /** Only accessed by the consumer thread. */
+    private long mHead;
+
+    /**
+     * @param capacity the maximum number of elements, rounded up to a power of two
+     */
+    public LogRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        mCapacity = nextPowerOfTwo(capacity);
+        mMask = mCapacity - 1;
+        mElements = new AtomicReferenceArray<>(mCapacity);
+        mSequences = new AtomicLongArray(mCapacity);
+        for (int i = 0; i < mCapacity; i++) {
+            mSequences.set(i, i);
+        }
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        int highestOneBit = Integer.highestOneBit(value);
+        return highestOneBit == value ? value : highestOneBit << 1;
+    }
+
+    public int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Adds an element, may be called from any thread.
+     *
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long position = mTail.get();
+            int index = (int) position & mMask;
+            long difference = mSequences.get(index) - position;
+            if (difference == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    mElements.set(index, element);
+                    // publishes the element to the consumer, a full write so that it cannot be
+                    // reordered with a following read of whether the consumer is sleeping
+                    mSequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // the consumer has not released this slot yet
+                return false;
+            }
+            // another producer claimed this position, retry with the new tail
+        }
+    }
+
+    /**
+     * Removes the oldest element, must only be called from the consumer thread.
+     *
+     * @return the element or null if no element has been published yet
+     */
+    public E poll() {
+        long position = mHead;
+        int index = (int) position & mMask;
+        if (mSequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = mElements.get(index);
+        mElements.lazySet(index, null);
+        // releases the slot for the producer that wraps around to it
+        mSequences.lazySet(index, position + mCapacity);
+        mHead = position + 1;
+        return element;
+    }
+
+    /**
+     * Moves up to {@code maxElements} published elements to the given collection, must only be
+     * called from the consumer thread.
+     *
+     * @return the number of elements moved
+     */
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        int count = 0;
+        while (count < maxElements) {
+            E element = poll();
+            if (element == null) {
+                break;
+            }
+            collection.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Must only be called from the consumer thread.
+     */
+    public boolean isEmpty() {
+        return mSequences.get((int) mHead & mMask) != mHead + 1;
+    }
+}
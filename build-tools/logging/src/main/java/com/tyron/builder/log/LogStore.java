@@ -0,0 +1,263 @@
+package com.tyron.builder.log;
+
+import com.tyron.builder.model.DiagnosticWrapper;
+
+import javax.tools.Diagnostic;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores the entries of a log. Only the most recent entries are kept in memory, older entries
+ * are spilled to a file and read back when they are requested, so the memory used by a log
+ * stays the same no matter how many lines a build prints.
+ * <p>
+ * Only the kind, the message, the source and the line number of a spilled entry are kept.
+ */
+public class LogStore implements Closeable {
+
+    /** Every n-th spilled entry has its file offset recorded. */
+    private static final int INDEX_INTERVAL = 256;
+
+    private final DiagnosticWrapper[] mMemory;
+    private final File mSpillFile;
+
+    /** The index of the oldest entry kept in memory. */
+    private int mMemoryStart;
+    private int mMemorySize;
+
+    private int mSpilledCount;
+    private long[] mSpillIndex = new long[16];
+    private long mSpillLength;
+    private DataOutputStream mSpillOutput;
+    private RandomAccessFile mSpillInput;
+
+    /**
+     * @param memoryCapacity the number of entries kept in memory
+     * @param spillFile      the file the older entries are written to, it is created when the
+     *                       first entry is spilled and deleted when this store is closed
+     */
+    public LogStore(int memoryCapacity, File spillFile) {
+        if (memoryCapacity <= 0) {
+            throw new IllegalArgumentException("memoryCapacity must be positive: " + memoryCapacity);
+        }
+        mMemory = new DiagnosticWrapper[memoryCapacity];
+        mSpillFile = spillFile;
+    }
+
+    public synchronized void append(DiagnosticWrapper entry) {
+        if (mMemorySize == mMemory.length) {
+            spill(mMemory[mMemoryStart]);
+            mMemory[mMemoryStart] = entry;
+            mMemoryStart = (mMemoryStart + 1) % mMemory.length;
+        } else {
+            mMemory[(mMemoryStart + mMemorySize) % mMemory.length] = entry;
+            mMemorySize++;
+        }
+    }
+
+    public synchronized void appendAll(List<DiagnosticWrapper> entries) {
+        for (DiagnosticWrapper entry : entries) {
+            append(entry);
+        }
+    }
+
+    /**
+     * @return the number of entries in this log, including the spilled ones
+     */
+    public synchronized int size() {
+        return mSpilledCount + mMemorySize;
+    }
+
+    /**
+     * @return the number of entries that are only stored in the spill file
+     */
+    public synchronized int getSpilledCount() {
+        return mSpilledCount;
+    }
+
+    public synchronized DiagnosticWrapper get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+        }
+        if (index >= mSpilledCount) {
+            return mMemory[(mMemoryStart + index - mSpilledCount) % mMemory.length];
+        }
+        try {
+            return readSpilled(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the entries from {@code fromIndex}, inclusive, to {@code toIndex}, exclusive. The
+     * spilled entries are read in a single pass over the spill file.
+     */
+    public synchronized List<DiagnosticWrapper> get(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                    "fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size());
+        }
+        List<DiagnosticWrapper> entries = new ArrayList<>(toIndex - fromIndex);
+        int index = fromIndex;
+        int spilledEnd = Math.min(toIndex, mSpilledCount);
+        if (index < spilledEnd) {
+            try {
+                entries.add(readSpilled(index));
+                for (index++; index < spilledEnd; index++) {
+                    entries.add(readEntry(mSpillInput));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        for (; index < toIndex; index++) {
+            entries.add(mMemory[(mMemoryStart + index - mSpilledCount) % mMemory.length]);
+        }
+        return entries;
+    }
+
+    /**
+     * @return the entries that are kept in memory, oldest first
+     */
+    public synchronized List<DiagnosticWrapper> getRecent() {
+        List<DiagnosticWrapper> recent = new ArrayList<>(mMemorySize);
+        for (int i = 0; i < mMemorySize; i++) {
+            recent.add(mMemory[(mMemoryStart + i) % mMemory.length]);
+        }
+        return recent;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(mMemory, null);
+        mMemoryStart = 0;
+        mMemorySize = 0;
+        mSpilledCount = 0;
+        mSpillLength = 0;
+        closeSpillFile();
+    }
+
+    @Override
+    public synchronized void close() {
+        clear();
+    }
+
+    private void spill(DiagnosticWrapper entry) {
+        try {
+            if (mSpillOutput == null) {
+                mSpillOutput = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(mSpillFile)));
+            }
+            if (mSpilledCount % INDEX_INTERVAL == 0) {
+                int block = mSpilledCount / INDEX_INTERVAL;
+                if (block == mSpillIndex.length) {
+                    mSpillIndex = Arrays.copyOf(mSpillIndex, block * 2);
+                }
+                mSpillIndex[block] = mSpillLength;
+            }
+
+            Diagnostic.Kind kind = entry.getKind();
+            CharSequence message = entry.getMessageCharSequence();
+            File source = entry.getSource();
+            int start = mSpillOutput.size();
+            mSpillOutput.writeByte(kind == null ? -1 : kind.ordinal());
+            writeString(mSpillOutput, message == null ? null : message.toString());
+            writeString(mSpillOutput, source == null ? null : source.getPath());
+            mSpillOutput.writeLong(entry.getLineNumber());
+            mSpillLength += mSpillOutput.size() - start;
+            mSpilledCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write to " + mSpillFile, e);
+        }
+    }
+
+    private DiagnosticWrapper readSpilled(int index) throws IOException {
+        mSpillOutput.flush();
+        if (mSpillInput == null) {
+            mSpillInput = new RandomAccessFile(mSpillFile, "r");
+        }
+        mSpillInput.seek(mSpillIndex[index / INDEX_INTERVAL]);
+        for (int i = index - index % INDEX_INTERVAL; i < index; i++) {
+            skipEntry(mSpillInput);
+        }
+        return readEntry(mSpillInput);
+    }
+
+    private static DiagnosticWrapper readEntry(RandomAccessFile input) throws IOException {
+        DiagnosticWrapper entry = new DiagnosticWrapper();
+        int kind = input.readByte();
+        if (kind >= 0) {
+            entry.setKind(Diagnostic.Kind.values()[kind]);
+        }
+        entry.setMessage(readString(input));
+        String source = readString(input);
+        if (source != null) {
+            entry.setSource(new File(source));
+        }
+        entry.setLineNumber(input.readLong());
+        return entry;
+    }
+
+    private static void skipEntry(RandomAccessFile input) throws IOException {
+        input.readByte();
+        skipString(input);
+        skipString(input);
+        input.readLong();
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        if (string == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(RandomAccessFile input) throws IOException {
+        int length = input.readInt();
+        if (length > 0) {
+            input.seek(input.getFilePointer() + length);
+        }
+    }
+
+    private void closeSpillFile() {
+        try {
+            if (mSpillOutput != null) {
+                mSpillOutput.close();
+            }
+            if (mSpillInput != null) {
+                mSpillInput.close();
+            }
+        } catch (IOException e) {
+            // the file is deleted anyway
+        }
+        mSpillOutput = null;
+        mSpillInput = null;
+        //noinspection ResultOfMethodCallIgnored
+        mSpillFile.delete();
+    }
+}
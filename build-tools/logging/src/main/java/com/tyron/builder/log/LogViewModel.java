@@ -11,9 +11,18 @@ import com.tyron.builder.model.DiagnosticWrapper;
 
 import javax.tools.Diagnostic;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Holds the logs shown in the bottom panel.
+ * <p>
+ * Entries can be added from any thread, they go through a {@link LogPipeline} per log and
+ * reach the main thread in batches, at most once per frame, instead of posting every line.
+ * Only the most recent {@link #VISIBLE_LIMIT} entries are kept in the {@link LiveData}, the
+ * full log is kept in a {@link LogStore} which spills older entries to disk.
+ */
 public class LogViewModel extends ViewModel {
 
     private static int totalCount;
@@ -22,36 +31,86 @@ public class LogViewModel extends ViewModel {
     public static final int DEBUG = totalCount++;
     public static final int IDE = totalCount++;
 
+    /** The maximum number of entries held by the {@link LiveData} of a log. */
+    public static final int VISIBLE_LIMIT = 5_000;
+
+    private static final int RING_CAPACITY = 4096;
+    private static final long FRAME_INTERVAL_MILLIS = 16;
+
+    /** Published in place of an entry to clear the log in order with the other entries. */
+    private static final DiagnosticWrapper CLEAR = new DiagnosticWrapper();
+
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
-    private List<MutableLiveData<List<DiagnosticWrapper>>> log;
+    private volatile List<MutableLiveData<List<DiagnosticWrapper>>> log;
+    private List<LogPipeline<DiagnosticWrapper>> pipelines;
+    private List<LogStore> stores;
 
     public LiveData<List<DiagnosticWrapper>> getLogs(int id) {
-        if (log == null) {
-            log = init();
-        }
+        init();
         return log.get(id);
     }
 
+    /**
+     * @return the full log, including the entries that are no longer held by the
+     * {@link LiveData} returned by {@link #getLogs(int)}
+     */
+    public LogStore getLogStore(int id) {
+        init();
+        return stores.get(id);
+    }
+
     public void updateLogs(int id, List<DiagnosticWrapper> diagnostics) {
-        if (log == null) {
-            log = init();
-        }
+        init();
         MutableLiveData<List<DiagnosticWrapper>> logData = this.log.get(id);
         logData.setValue(diagnostics);
     }
 
-    private List<MutableLiveData<List<DiagnosticWrapper>>> init() {
-        List<MutableLiveData<List<DiagnosticWrapper>>> list = new ArrayList<>();
-        for (int i = 0; i < totalCount; i++) {
-            list.add(new MutableLiveData<>(new ArrayList<>()));
+    /**
+     * Creates the logs on first use. {@link #log} is assigned last, so a thread that sees it
+     * also sees the pipelines and stores.
+     */
+    private void init() {
+        if (log != null) {
+            return;
+        }
+        synchronized (this) {
+            if (log != null) {
+                return;
+            }
+            List<MutableLiveData<List<DiagnosticWrapper>>> list = new ArrayList<>();
+            pipelines = new ArrayList<>();
+            stores = new ArrayList<>();
+            File directory = new File(System.getProperty("java.io.tmpdir"));
+            for (int i = 0; i < totalCount; i++) {
+                int id = i;
+                LogStore store = new LogStore(VISIBLE_LIMIT,
+                        new File(directory, "log-" + id + "-" + System.identityHashCode(this) + ".bin"));
+                list.add(new MutableLiveData<>(new ArrayList<>()));
+                stores.add(store);
+                pipelines.add(new LogPipeline<>(RING_CAPACITY, batch -> onBatch(id, store, batch),
+                        FRAME_INTERVAL_MILLIS));
+            }
+            log = list;
         }
-        return list;
     }
 
     public void clear(int id) {
-        MutableLiveData<List<DiagnosticWrapper>> data = (MutableLiveData<List<DiagnosticWrapper>>) getLogs(id);
-        data.setValue(new ArrayList<>());
+        add(id, CLEAR);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (log == null) {
+            return;
+        }
+        for (LogPipeline<DiagnosticWrapper> pipeline : pipelines) {
+            pipeline.close();
+        }
+        for (LogStore store : stores) {
+            store.close();
+        }
     }
 
     public void e(int id, DiagnosticWrapper diagnostic) {
@@ -92,26 +151,41 @@ public class LogViewModel extends ViewModel {
      * @param diagnosticWrapper the DiagnosticWrapper to add
      */
     private void add(int id, DiagnosticWrapper diagnosticWrapper) {
-        List<DiagnosticWrapper> list = getLogs(id).getValue();
-        if (list == null) {
-            list = new ArrayList<>();
-        }
-        list.add(diagnosticWrapper);
-        maybePost(id, list);
+        init();
+        pipelines.get(id).publish(diagnosticWrapper);
     }
 
     /**
-     * Checks if the current thread is the main thread and does not post it if so
-     *
-     * @param id      log id to set the value to
-     * @param current Value to set to the ViewModel
+     * Called on the consumer thread of the pipeline with the entries added since the last
+     * batch, the visible list is updated with a single post to the main thread.
      */
-    private void maybePost(int id, List<DiagnosticWrapper> current) {
-        if (Thread.currentThread() != Looper.getMainLooper().getThread()) {
-            // Using postValue will ignore all values except the last one, we don't want that
-            mainHandler.post(() -> log.get(id).setValue(current));
-        } else {
-            log.get(id).setValue(current);
+    private void onBatch(int id, LogStore store, List<DiagnosticWrapper> batch) {
+        // DiagnosticWrapper overrides equals, the marker is compared by identity
+        int start = -1;
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            if (batch.get(i) == CLEAR) {
+                start = i;
+                break;
+            }
+        }
+        if (start != -1) {
+            store.clear();
+            batch = batch.subList(start + 1, batch.size());
         }
+        store.appendAll(batch);
+
+        boolean cleared = start != -1;
+        List<DiagnosticWrapper> added = batch;
+        mainHandler.post(() -> {
+            MutableLiveData<List<DiagnosticWrapper>> data = log.get(id);
+            List<DiagnosticWrapper> current = data.getValue();
+            List<DiagnosticWrapper> list = new ArrayList<>();
+            if (!cleared && current != null) {
+                int keep = Math.max(0, VISIBLE_LIMIT - added.size());
+                list.addAll(current.subList(Math.max(0, current.size() - keep), current.size()));
+            }
+            list.addAll(added.subList(Math.max(0, added.size() - VISIBLE_LIMIT), added.size()));
+            data.setValue(list);
+        });
     }
 }
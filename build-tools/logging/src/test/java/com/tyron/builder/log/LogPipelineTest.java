@@ -0,0 +1,158 @@
+package com.tyron.builder.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LogPipelineTest {
+
+    @Test
+    public void testSingleProducerOrder() {
+        List<Integer> received = new ArrayList<>();
+        LogPipeline<Integer> pipeline = new LogPipeline<>(16, received::addAll, 1);
+        for (int i = 0; i < 10_000; i++) {
+            pipeline.publish(i);
+        }
+        pipeline.close();
+
+        assertEquals(10_000, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i, (int) received.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersLoseNothing() throws InterruptedException {
+        int producers = 8;
+        int perProducer = 50_000;
+        List<long[]> received = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger batches = new AtomicInteger();
+        LogPipeline<long[]> pipeline = new LogPipeline<>(64, batch -> {
+            batches.incrementAndGet();
+            received.addAll(batch);
+        }, 16);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    pipeline.publish(new long[]{producer, i});
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        pipeline.close();
+
+        assertEquals(producers * perProducer, received.size());
+        // entries of the same producer are delivered in order
+        int[] next = new int[producers];
+        for (long[] entry : received) {
+            int producer = (int) entry[0];
+            assertEquals(next[producer], entry[1]);
+            next[producer]++;
+        }
+        // entries are coalesced instead of being delivered one by one
+        assertTrue("batches: " + batches.get(), batches.get() < received.size() / 10);
+    }
+
+    @Test
+    public void testPublishDoesNotBlockWhenTheRingIsFull() throws InterruptedException {
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        LogPipeline<Integer> pipeline = new LogPipeline<>(16, batch -> {
+            delivering.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.addAll(batch);
+        }, 1);
+
+        pipeline.publish(0);
+        delivering.await();
+        // the consumer is stuck in the listener, the ring fills up and the rest is spilled
+        for (int i = 1; i < 10_000; i++) {
+            pipeline.publish(i);
+        }
+        assertEquals(10_000, pipeline.getPendingCount());
+
+        release.countDown();
+        pipeline.close();
+        assertEquals(10_000, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i, (int) received.get(i));
+        }
+    }
+
+    @Test
+    public void testFailingListenerDoesNotStopDelivery() {
+        List<Integer> received = new ArrayList<>();
+        LogPipeline<Integer> pipeline = new LogPipeline<>(16, batch -> {
+            if (batch.contains(0)) {
+                throw new IllegalStateException("failed");
+            }
+            received.addAll(batch);
+        }, 1);
+        pipeline.publish(0);
+        pipeline.flush();
+        pipeline.publish(1);
+        pipeline.close();
+
+        assertEquals(Collections.singletonList(1), received);
+    }
+
+    @Test
+    public void testFlushDeliversPublishedEntries() {
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        LogPipeline<Integer> pipeline = new LogPipeline<>(8, received::addAll, 16);
+        pipeline.publish(1);
+        pipeline.publish(2);
+        pipeline.flush();
+
+        assertEquals(2, received.size());
+        assertEquals(0, pipeline.getPendingCount());
+
+        pipeline.publish(3);
+        pipeline.close();
+        assertEquals(3, received.size());
+    }
+
+    @Test
+    public void testRingBufferCapacity() {
+        LogRingBuffer<Integer> ring = new LogRingBuffer<>(5);
+        assertEquals(8, ring.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertEquals(false, ring.offer(8));
+        assertEquals(0, (int) ring.poll());
+        assertTrue(ring.offer(8));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(8, ring.drainTo(drained, Integer.MAX_VALUE));
+        assertEquals(1, (int) drained.get(0));
+        assertEquals(8, (int) drained.get(7));
+        assertTrue(ring.isEmpty());
+    }
+}
@@ -0,0 +1,128 @@
+package com.tyron.builder.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.model.DiagnosticWrapper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LogStoreTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRecentEntriesStayInMemory() throws Exception {
+        LogStore store = new LogStore(4, new File(mTemporaryFolder.getRoot(), "spill.bin"));
+        List<DiagnosticWrapper> entries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            DiagnosticWrapper entry = wrap("line " + i, Diagnostic.Kind.NOTE);
+            entries.add(entry);
+            store.append(entry);
+        }
+
+        assertEquals(10, store.size());
+        assertEquals(6, store.getSpilledCount());
+        assertEquals(entries.subList(6, 10), store.getRecent());
+        assertSame(entries.get(9), store.get(9));
+        store.close();
+    }
+
+    @Test
+    public void testSpilledEntriesAreReadBack() throws Exception {
+        LogStore store = new LogStore(2, new File(mTemporaryFolder.getRoot(), "spill.bin"));
+        DiagnosticWrapper error = wrap("error", Diagnostic.Kind.ERROR);
+        error.setSource(new File("/project/Main.java"));
+        error.setLineNumber(42);
+        store.append(error);
+        store.append(new DiagnosticWrapper());
+        store.append(wrap("third", Diagnostic.Kind.OTHER));
+        store.append(wrap("fourth", Diagnostic.Kind.OTHER));
+
+        DiagnosticWrapper first = store.get(0);
+        assertEquals(Diagnostic.Kind.ERROR, first.getKind());
+        assertEquals("error", first.getMessageCharSequence().toString());
+        assertEquals(new File("/project/Main.java"), first.getSource());
+        assertEquals(42, first.getLineNumber());
+
+        DiagnosticWrapper second = store.get(1);
+        assertNull(second.getKind());
+        assertNull(second.getMessageCharSequence());
+        assertNull(second.getSource());
+        store.close();
+    }
+
+    @Test
+    public void testRangeSpansTheSpillFileAndTheMemory() throws Exception {
+        LogStore store = new LogStore(300, new File(mTemporaryFolder.getRoot(), "spill.bin"));
+        List<DiagnosticWrapper> entries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            DiagnosticWrapper entry = wrap("line " + i, Diagnostic.Kind.NOTE);
+            entries.add(entry);
+            store.append(entry);
+        }
+
+        List<DiagnosticWrapper> range = store.get(250, 800);
+        assertEquals(550, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            assertEquals("line " + (250 + i), range.get(i).getMessageCharSequence().toString());
+        }
+        assertSame(entries.get(799), range.get(range.size() - 1));
+        assertEquals(entries.subList(700, 1000), store.get(700, 1000));
+        assertTrue(store.get(10, 10).isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void testMillionLinesUseBoundedMemory() throws Exception {
+        int capacity = 1000;
+        int count = 1_000_000;
+        File spillFile = new File(mTemporaryFolder.getRoot(), "spill.bin");
+        LogStore store = new LogStore(capacity, spillFile);
+        List<DiagnosticWrapper> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batch.add(wrap("w: warning number " + i, Diagnostic.Kind.WARNING));
+            if (batch.size() == 512) {
+                store.appendAll(batch);
+                batch.clear();
+            }
+        }
+        store.appendAll(batch);
+
+        assertEquals(count, store.size());
+        assertEquals(capacity, store.getRecent().size());
+        assertEquals(count - capacity, store.getSpilledCount());
+        for (int i : new int[]{0, 1, 255, 256, 257, 123_456, count - capacity - 1, count - 1}) {
+            assertEquals("w: warning number " + i,
+                    store.get(i).getMessageCharSequence().toString());
+        }
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertFalse(spillFile.exists());
+
+        store.append(wrap("after clear", Diagnostic.Kind.NOTE));
+        assertEquals(1, store.size());
+        assertTrue(store.getRecent().get(0).getMessageCharSequence().toString().startsWith("after"));
+        store.close();
+    }
+
+    private static DiagnosticWrapper wrap(String message, Diagnostic.Kind kind) {
+        DiagnosticWrapper wrapper = new DiagnosticWrapper();
+        wrapper.setMessage(message);
+        wrapper.setKind(kind);
+        return wrapper;
+    }
+}
@@ -10,15 +10,19 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.tyron.builder.compiler.manifest.blame.SourceFile;
 import com.tyron.builder.compiler.manifest.blame.SourceFilePosition;
 import com.tyron.builder.compiler.manifest.blame.SourcePosition;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.util.SdkUtils;
 import com.tyron.builder.util.XmlUtils;
 
+import org.openjdk.javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -53,10 +57,50 @@ public class ManifestMerger2 {
 
     private boolean mVerbose = false;
 
+    @Nullable
+    private DocumentProvider mDocumentProvider;
+
     private void setVerbose(boolean verbose) {
         mVerbose = verbose;
     }
 
+    private void setDocumentProvider(@Nullable DocumentProvider documentProvider) {
+        mDocumentProvider = documentProvider;
+    }
+
+    /**
+     * Provides the parsed documents of the manifest files, for instance from a cache of
+     * previously parsed manifests.
+     */
+    public interface DocumentProvider {
+
+        /**
+         * @param file the manifest file
+         * @return a document with the contents of the file, as returned by
+         * {@link com.tyron.builder.util.PositionXmlParser}. The merger modifies it, so the
+         * returned document must not be shared.
+         */
+        @NotNull
+        Document loadDocument(@NotNull File file)
+                throws IOException, SAXException, ParserConfigurationException;
+    }
+
+    private XmlDocument loadDocument(
+            KeyResolver<String> selectors,
+            String displayName,
+            File file,
+            XmlDocument.Type type,
+            Optional<String> mainManifestPackageName)
+            throws IOException, SAXException, ParserConfigurationException {
+        if (mDocumentProvider == null) {
+            return XmlLoader.load(selectors, mSystemPropertyResolver, displayName, file, type,
+                    mainManifestPackageName);
+        }
+        return XmlLoader.load(selectors, mSystemPropertyResolver,
+                new SourceFile(file, displayName), mDocumentProvider.loadDocument(file), type,
+                mainManifestPackageName);
+    }
+
     private ManifestMerger2(
             @NotNull ILogger logger,
             @NotNull File mainManifestFile,
@@ -372,8 +416,7 @@ public class ManifestMerger2 {
 
         XmlDocument xmlDocument;
         try {
-            xmlDocument = XmlLoader.load(selectors,
-                    mSystemPropertyResolver,
+            xmlDocument = loadDocument(selectors,
                     manifestInfo.mName,
                     manifestInfo.mLocation,
                     manifestInfo.getType(),
@@ -484,8 +527,7 @@ public class ManifestMerger2 {
                     XmlDocument.Type.LIBRARY, Optional.<String>absent());
             XmlDocument libraryDocument;
             try {
-                libraryDocument = XmlLoader.load(selectors,
-                        mSystemPropertyResolver,
+                libraryDocument = loadDocument(selectors,
                         manifestInfo.mName, manifestInfo.mLocation,
                         XmlDocument.Type.LIBRARY,
                         Optional.<String>absent()  /* mainManifestPackageName */);
@@ -805,6 +847,8 @@ public class ManifestMerger2 {
 
         @Nullable private File mReportFile;
 
+        @Nullable private DocumentProvider mDocumentProvider;
+
         /**
          * Sets a value for a {@link ManifestMerger2.SystemProperty}
          * @param override the property to set
@@ -957,6 +1001,17 @@ public class ManifestMerger2 {
             return thisAsT();
         }
 
+        /**
+         * Sets the provider of the parsed manifest documents. If not called, every manifest
+         * file is parsed on each merge.
+         * @param documentProvider the provider of the documents.
+         * @return itself.
+         */
+        public Invoker withDocumentProvider(@NotNull DocumentProvider documentProvider) {
+            mDocumentProvider = documentProvider;
+            return thisAsT();
+        }
+
         /**
          * Sets some optional features for the merge tool.
          *
@@ -1006,6 +1061,7 @@ public class ManifestMerger2 {
                             mMergeType,
                             Optional.fromNullable(mReportFile));
             manifestMerger.setVerbose(mVerbose);
+            manifestMerger.setDocumentProvider(mDocumentProvider);
             return manifestMerger.merge();
         }
 
@@ -80,4 +80,27 @@ public final class XmlLoader {
                 mainManifestPackageName)
                 : null;
     }
+
+    /**
+     * Creates a {@link XmlDocument} from an already parsed document, the document is modified
+     * by the merger.
+     * @param sourceFile the source location to use for logging and record collection.
+     * @param domDocument the parsed xml.
+     * @return the initialized {@link XmlDocument}
+     */
+    public static XmlDocument load(
+            KeyResolver<String> selectors,
+            PlaceholderHandler.KeyBasedValueResolver<ManifestMerger2.SystemProperty> systemPropertyResolver,
+            SourceFile sourceFile,
+            Document domDocument,
+            XmlDocument.Type type,
+            Optional<String> mainManifestPackageName) {
+        return new XmlDocument(
+                sourceFile,
+                selectors,
+                systemPropertyResolver,
+                domDocument.getDocumentElement(),
+                type,
+                mainManifestPackageName);
+    }
 }
@@ -191,6 +191,44 @@ public class PositionXmlParser {
         return parseInternal(xml, namespaceAware);
     }
 
+    /**
+     * Copies a document returned by one of the parse methods. Unlike {@link Node#cloneNode},
+     * the copy keeps the positions of its nodes, so it can be modified in place of parsing the
+     * same XML again.
+     *
+     * @param document the document to copy
+     * @return a new document with the same nodes and positions
+     * @throws ParserConfigurationException if a document builder is not available
+     */
+    @NotNull
+    public static Document copy(@NotNull Document document) throws ParserConfigurationException {
+        Document copy = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+        copy.setUserData(CONTENT_KEY, document.getUserData(CONTENT_KEY), null);
+        NodeList children = document.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.DOCUMENT_TYPE_NODE) {
+                continue;
+            }
+            Node imported = copy.importNode(child, true);
+            copy.appendChild(imported);
+            copyPositions(child, imported);
+        }
+        return copy;
+    }
+
+    private static void copyPositions(@NotNull Node from, @NotNull Node to) {
+        Object position = from.getUserData(POS_KEY);
+        if (position != null) {
+            to.setUserData(POS_KEY, position, null);
+        }
+        NodeList fromChildren = from.getChildNodes();
+        NodeList toChildren = to.getChildNodes();
+        for (int i = 0; i < fromChildren.getLength(); i++) {
+            copyPositions(fromChildren.item(i), toChildren.item(i));
+        }
+    }
+
     @NotNull
     private static Document parseInternal(@NotNull String xml, boolean namespaceAware)
             throws ParserConfigurationException, SAXException, IOException {
@@ -40,6 +40,10 @@ public class ModuleSettings implements SharedPreferences {
     public static final String JAVA_TARGET_VERSION = "javaTargetVersion";
     public static final String JAVA_SOURCE_VERSION = "javaSourceVersion";
     public static final String MODULE_TYPE = "moduleType";
+    /**
+     * @deprecated APKs are always aligned while they are being signed, this setting is ignored.
+     */
+    @Deprecated
     public static final String ZIP_ALIGN_ENABLED = "zipAlignEnabled";
     public static final String VIEW_BINDING_ENABLED = "viewBindingEnabled";
     public static final String PACKAGE_NAME = "packageName";
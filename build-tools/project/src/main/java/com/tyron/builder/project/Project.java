@@ -13,6 +13,7 @@ import com.google.common.graph.MutableGraph;
 import com.tyron.builder.model.ProjectSettings;
 import com.tyron.builder.project.api.Module;
 import com.tyron.builder.project.impl.AndroidModuleImpl;
+import com.tyron.builder.project.util.CompactPackageTrie;
 
 import org.jetbrains.kotlin.com.intellij.util.messages.MessageBusConnection;
 import org.jetbrains.kotlin.com.intellij.util.messages.MessageBusFactory;
@@ -94,6 +95,14 @@ public class Project {
         }
     }
 
+    /**
+     * Releases the state shared by the modules of this project, called when the project is
+     * closed.
+     */
+    public void close() {
+        CompactPackageTrie.release(mRoot);
+    }
+
     /**
      * @return All the modules from the main module, order is not guaranteed
      */
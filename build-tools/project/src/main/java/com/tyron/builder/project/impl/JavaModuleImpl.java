@@ -7,6 +7,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.tyron.builder.model.Library;
 import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.util.CompactPackageTrie;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.StringSearch;
 
@@ -18,19 +19,17 @@ import org.jetbrains.kotlin.com.intellij.util.ReflectionUtil;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
-    // Map of fully qualified names and the jar they are contained in
-    private final Map<String, File> mClassFiles;
     private final Map<String, File> mJavaFiles;
     private final Map<String, Library> mLibraryHashMap;
     private final Map<String, File> mInjectedClassesMap;
@@ -38,11 +37,12 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
     // the index of all the class files in this module
     private final PackageTrie mClassIndex = new PackageTrie();
+    // the classes of the bootstrap jar and the libraries, mapped from the build directory
+    private volatile CompactPackageTrie mJarIndex;
 
     public JavaModuleImpl(File root) {
         super(root);
         mJavaFiles = new HashMap<>();
-        mClassFiles = new HashMap<>();
         mLibraries = new HashSet<>();
         mInjectedClassesMap = new HashMap<>();
         mLibraryHashMap = new HashMap<>();
@@ -97,7 +97,10 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public Set<String> getAllClasses() {
         Set<String> classes = new HashSet<>();
         classes.addAll(mJavaFiles.keySet());
-        classes.addAll(mClassFiles.keySet());
+        CompactPackageTrie jarIndex = mJarIndex;
+        if (jarIndex != null) {
+            classes.addAll(jarIndex.getClassNames());
+        }
         classes.addAll(mInjectedClassesMap.keySet());
         return classes;
     }
@@ -107,47 +110,41 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         return ImmutableList.copyOf(mLibraries);
     }
 
+    /**
+     * Adds a library to the module, its classes are added to the class index the next time
+     * the module is indexed.
+     */
     @Override
     public void addLibrary(@NonNull File jar) {
         if (!jar.getName().endsWith(".jar")) {
             return;
         }
-        try {
-            // noinspection unused, used to check if jar is valid.
-            JarFile jarFile = new JarFile(jar);
-            putJar(jar);
+        // used to check if jar is valid.
+        try (JarFile ignored = new JarFile(jar)) {
             mLibraries.add(jar);
         } catch (IOException e) {
             // ignored, don't put the jar
         }
     }
 
-    private void putJar(File file) throws IOException {
-        if (file == null) {
-            return;
-        }
-        try (JarFile jar = new JarFile(file)) {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-
-                if (!entry.getName().endsWith(".class")) {
-                    continue;
-                }
-
-                // We only want top level classes, if it contains $ then
-                // its an inner class, we ignore it
-                if (entry.getName().contains("$")) {
-                    continue;
-                }
-
-                String packageName = entry.getName().replace("/", ".")
-                        .substring(0, entry.getName().length() - ".class".length());
-
-                mClassFiles.put(packageName, file);
-                mClassIndex.add(packageName);
-            }
+    /**
+     * Indexes the classes of the bootstrap jar and the libraries in a single trie, the jars are
+     * only read when one of them changed since the trie was written.
+     */
+    private void indexJars() {
+        List<File> jars = new ArrayList<>(mLibraries);
+        // sorted so the same libraries always match the trie that was written
+        jars.sort(Comparator.comparing(File::getAbsolutePath));
+        File bootstrapJar = getBootstrapJarFile();
+        if (bootstrapJar != null) {
+            jars.add(0, bootstrapJar);
         }
+        File indexFile = new File(getBuildDirectory(), "intermediate/index/classes.trie");
+        // the modules of a project are in its root directory
+        File projectRoot = getRootFile().getParentFile();
+        CompactPackageTrie jarIndex = CompactPackageTrie.obtain(projectRoot, indexFile, jars);
+        mJarIndex = jarIndex;
+        mClassIndex.setIndex(jarIndex);
     }
 
     @NonNull
@@ -243,12 +240,6 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
     @Override
     public void index() {
-        try {
-            putJar(getBootstrapJarFile());
-        } catch (IOException e) {
-            // ignored
-        }
-
         if (getJavaDirectory().exists()) {
             FileUtils.iterateFiles(getJavaDirectory(),
                     FileFilterUtils.suffixFileFilter(".java"),
@@ -266,6 +257,8 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
                 }
             }
         }
+
+        indexJars();
     }
 
     @Override
@@ -18,6 +18,7 @@ import org.jetbrains.kotlin.com.intellij.util.keyFMap.KeyFMap;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -32,6 +33,7 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
 
     private final KeyFMap mDataMap = KeyFMap.EMPTY_MAP;
     private final Map<String, File> mJavaFiles = new HashMap<>();
+    private final List<File> mLibraries = new ArrayList<>();
 
     private final FileManager mFileManager;
     private final File mRootDir;
@@ -73,12 +75,12 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
 
     @Override
     public List<File> getLibraries() {
-        return Collections.emptyList();
+        return mLibraries;
     }
 
     @Override
     public void addLibrary(@NonNull File jar) {
-        throw new UnsupportedOperationException();
+        mLibraries.add(jar);
     }
 
     @Override
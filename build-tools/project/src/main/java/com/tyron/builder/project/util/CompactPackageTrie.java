@@ -0,0 +1,571 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * An immutable {@link PackageTrie} of the classes of the jars of a module, stored in a flat
+ * buffer that can be memory mapped.
+ * <p>
+ * Every distinct package segment is stored once, and a chain of packages that only contain
+ * one package, such as {@code com.google.common}, is stored as a single node. The buffer is
+ * laid out as:
+ * <pre>
+ *     header:  magic, version, fingerprint of the jars (long), string count, label count,
+ *              node count
+ *     strings: string count + 1 offsets into the string data, sorted by code point
+ *     labels:  the string index of every segment of every node
+ *     nodes:   label start, label length | leaf flag, first child, child count
+ *              the children of a node are consecutive and sorted by their first segment
+ *     the utf-8 bytes of the strings
+ * </pre>
+ * The trie files are never modified once written, they are replaced by renaming a new file
+ * so a mapped buffer stays valid.
+ */
+public class CompactPackageTrie {
+
+    private static final int MAGIC = 0x50545249;
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 2 * 4 + 8 + 3 * 4;
+    private static final int NODE_SIZE = 4 * 4;
+    private static final int LEAF = 0x80000000;
+
+    /**
+     * The tries that were obtained, by the root of their project and then by their index file
+     */
+    private static final Map<File, Map<File, CompactPackageTrie>> sLoaded = new HashMap<>();
+
+    /**
+     * Returns the trie of the classes of the given jars, mapped from the index file if it was
+     * built from the current versions of the jars. Otherwise the jars are read and the trie is
+     * written to the index file, or kept in the heap if the file cannot be written. Tries are
+     * shared by every module that uses the same file until their project is
+     * {@link #release(File) released}.
+     *
+     * @param projectRoot the root of the project of the module
+     * @param indexFile   the file the trie of the jars is stored in
+     * @param jars        the jars the classes are read from, a jar that cannot be read is
+     *                    skipped
+     */
+    @NonNull
+    public static CompactPackageTrie obtain(@NonNull File projectRoot, @NonNull File indexFile,
+                                            @NonNull List<File> jars) {
+        long fingerprint = getFingerprint(jars);
+        synchronized (sLoaded) {
+            Map<File, CompactPackageTrie> loaded =
+                    sLoaded.computeIfAbsent(projectRoot, root -> new HashMap<>());
+            CompactPackageTrie trie = loaded.get(indexFile);
+            if (trie != null && trie.getFingerprint() == fingerprint) {
+                return trie;
+            }
+            try {
+                trie = indexFile.exists() ? map(indexFile) : null;
+            } catch (IOException e) {
+                trie = null;
+            }
+            if (trie == null || trie.getFingerprint() != fingerprint) {
+                List<String> classNames = new ArrayList<>();
+                for (File jar : jars) {
+                    try {
+                        classNames.addAll(getClassNames(jar));
+                    } catch (IOException e) {
+                        // ignored, the jar is not valid
+                    }
+                }
+                trie = build(classNames, fingerprint);
+                try {
+                    trie.write(indexFile);
+                } catch (IOException e) {
+                    // ignored, the trie stays in the heap
+                }
+            }
+            loaded.put(indexFile, trie);
+            return trie;
+        }
+    }
+
+    /**
+     * Forgets the tries of a project when it is closed, they are mapped again from their index
+     * files when the project is opened again. The modules that still use a trie keep it.
+     */
+    public static void release(@NonNull File projectRoot) {
+        synchronized (sLoaded) {
+            sLoaded.remove(projectRoot);
+        }
+    }
+
+    public static CompactPackageTrie build(@NonNull Collection<String> classNames) {
+        return build(classNames, 0);
+    }
+
+    private static CompactPackageTrie build(Collection<String> classNames, long fingerprint) {
+        return new Builder(classNames).build(fingerprint);
+    }
+
+    /**
+     * @return the fully qualified names of the top level classes of a jar
+     */
+    public static List<String> getClassNames(@NonNull File file) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        try (JarFile jar = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+
+                // We only want top level classes, if it contains $ then
+                // its an inner class, we ignore it
+                if (!name.endsWith(".class") || name.contains("$")) {
+                    continue;
+                }
+                classNames.add(name.replace("/", ".")
+                        .substring(0, name.length() - ".class".length()));
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * @return a hash of the path, size and modification time of every jar, in order
+     */
+    private static long getFingerprint(List<File> jars) {
+        long hash = 1;
+        for (File jar : jars) {
+            hash = 31 * hash + jar.getAbsolutePath().hashCode();
+            hash = 31 * hash + jar.length();
+            hash = 31 * hash + jar.lastModified();
+        }
+        return hash;
+    }
+
+    /**
+     * @return the trie stored in the file, or null if it is not a valid trie
+     */
+    @Nullable
+    public static CompactPackageTrie map(@NonNull File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return wrap(buffer);
+        }
+    }
+
+    /**
+     * @return the trie stored in the buffer, or null if it is not a valid trie
+     */
+    @Nullable
+    public static CompactPackageTrie wrap(@NonNull ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+            || buffer.getInt(4) != VERSION) {
+            return null;
+        }
+        int stringCount = buffer.getInt(16);
+        int labelCount = buffer.getInt(20);
+        int nodeCount = buffer.getInt(24);
+        if (stringCount < 0 || labelCount < 0 || nodeCount < 1) {
+            return null;
+        }
+        long data = HEADER_SIZE + (stringCount + 1L) * 4 + labelCount * 4L
+                    + (long) nodeCount * NODE_SIZE;
+        if (data > buffer.capacity()) {
+            return null;
+        }
+        CompactPackageTrie trie = new CompactPackageTrie(buffer);
+        if (data + trie.stringOffset(stringCount) != buffer.capacity()) {
+            return null;
+        }
+        return trie;
+    }
+
+    private final ByteBuffer mBuffer;
+    private final int mStringCount;
+    private final int mLabelCount;
+    private final int mNodeCount;
+    private final int mStrings;
+    private final int mLabels;
+    private final int mNodes;
+    private final int mData;
+
+    private CompactPackageTrie(ByteBuffer buffer) {
+        mBuffer = buffer;
+        mStringCount = buffer.getInt(16);
+        mLabelCount = buffer.getInt(20);
+        mNodeCount = buffer.getInt(24);
+        mStrings = HEADER_SIZE;
+        mLabels = mStrings + (mStringCount + 1) * 4;
+        mNodes = mLabels + mLabelCount * 4;
+        mData = mNodes + mNodeCount * NODE_SIZE;
+    }
+
+    private long getFingerprint() {
+        return mBuffer.getLong(8);
+    }
+
+    /**
+     * @return the size of the trie in bytes
+     */
+    public int getSize() {
+        return mBuffer.capacity();
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[mBuffer.capacity()];
+        ByteBuffer duplicate = mBuffer.duplicate();
+        duplicate.clear();
+        duplicate.get(bytes);
+        return bytes;
+    }
+
+    public void write(@NonNull File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        Files.write(temp.toPath(), toByteArray());
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return a cursor at the root of the trie
+     */
+    PackageTrie.Cursor getRoot() {
+        return new NodeCursor(0, 0);
+    }
+
+    /**
+     * @return the fully qualified names of every class in the trie
+     */
+    public List<String> getClassNames() {
+        List<String> classNames = new ArrayList<>();
+        addClassNames(0, new StringBuilder(), classNames);
+        return classNames;
+    }
+
+    private void addClassNames(int node, StringBuilder name, List<String> classNames) {
+        int length = name.length();
+        int start = labelStart(node);
+        for (int i = start; i < start + labelLength(node); i++) {
+            if (name.length() > 0) {
+                name.append('.');
+            }
+            name.append(getString(getLabel(i)));
+        }
+        if (isLeaf(node)) {
+            classNames.add(name.toString());
+        }
+        int first = firstChild(node);
+        for (int child = first; child < first + childCount(node); child++) {
+            addClassNames(child, name, classNames);
+        }
+        name.setLength(length);
+    }
+
+    private int stringOffset(int index) {
+        return mBuffer.getInt(mStrings + index * 4);
+    }
+
+    private String getString(int index) {
+        int start = stringOffset(index);
+        int length = stringOffset(index + 1) - start;
+        byte[] bytes = new byte[length];
+        ByteBuffer duplicate = mBuffer.duplicate();
+        duplicate.position(mData + start);
+        duplicate.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares a string of the trie with the given string by code point, without decoding it.
+     */
+    private int compareString(int index, String string) {
+        int position = mData + stringOffset(index);
+        int end = mData + stringOffset(index + 1);
+        int i = 0;
+        while (position < end && i < string.length()) {
+            int first = mBuffer.get(position) & 0xff;
+            int codePoint;
+            if (first < 0x80) {
+                codePoint = first;
+                position++;
+            } else if (first < 0xe0) {
+                codePoint = (first & 0x1f) << 6 | mBuffer.get(position + 1) & 0x3f;
+                position += 2;
+            } else if (first < 0xf0) {
+                codePoint = (first & 0x0f) << 12 | (mBuffer.get(position + 1) & 0x3f) << 6
+                            | mBuffer.get(position + 2) & 0x3f;
+                position += 3;
+            } else {
+                codePoint = (first & 0x07) << 18 | (mBuffer.get(position + 1) & 0x3f) << 12
+                            | (mBuffer.get(position + 2) & 0x3f) << 6
+                            | mBuffer.get(position + 3) & 0x3f;
+                position += 4;
+            }
+            int other = string.codePointAt(i);
+            if (codePoint != other) {
+                return Integer.compare(codePoint, other);
+            }
+            i += Character.charCount(other);
+        }
+        return (position < end ? 1 : 0) - (i < string.length() ? 1 : 0);
+    }
+
+    /**
+     * Compares strings by code point, the order of their utf-8 bytes.
+     */
+    private static int compareCodePoints(String first, String second) {
+        int i = 0;
+        int j = 0;
+        while (i < first.length() && j < second.length()) {
+            int a = first.codePointAt(i);
+            int b = second.codePointAt(j);
+            if (a != b) {
+                return Integer.compare(a, b);
+            }
+            i += Character.charCount(a);
+            j += Character.charCount(b);
+        }
+        return (i < first.length() ? 1 : 0) - (j < second.length() ? 1 : 0);
+    }
+
+    /**
+     * @return the index of the string, or -1 if the trie does not contain it
+     */
+    private int findString(String string) {
+        int low = 0;
+        int high = mStringCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = compareString(middle, string);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int getLabel(int index) {
+        return mBuffer.getInt(mLabels + index * 4);
+    }
+
+    private int labelStart(int node) {
+        return mBuffer.getInt(mNodes + node * NODE_SIZE);
+    }
+
+    private int labelLength(int node) {
+        return mBuffer.getInt(mNodes + node * NODE_SIZE + 4) & ~LEAF;
+    }
+
+    private boolean isLeaf(int node) {
+        return (mBuffer.getInt(mNodes + node * NODE_SIZE + 4) & LEAF) != 0;
+    }
+
+    private int firstChild(int node) {
+        return mBuffer.getInt(mNodes + node * NODE_SIZE + 8);
+    }
+
+    private int childCount(int node) {
+        return mBuffer.getInt(mNodes + node * NODE_SIZE + 12);
+    }
+
+    /**
+     * A position in the trie, after the given number of segments of the label of a node.
+     */
+    private class NodeCursor implements PackageTrie.Cursor {
+
+        private final int mNode;
+        private final int mOffset;
+
+        NodeCursor(int node, int offset) {
+            mNode = node;
+            mOffset = offset;
+        }
+
+        private boolean isAtEnd() {
+            return mOffset == labelLength(mNode);
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return isAtEnd() && CompactPackageTrie.this.isLeaf(mNode);
+        }
+
+        @Nullable
+        @Override
+        public PackageTrie.Cursor getChild(String segment) {
+            if (!isAtEnd()) {
+                int next = getLabel(labelStart(mNode) + mOffset);
+                return compareString(next, segment) == 0 ? new NodeCursor(mNode, mOffset + 1) : null;
+            }
+            int string = findString(segment);
+            if (string == -1) {
+                return null;
+            }
+            int low = firstChild(mNode);
+            int high = low + childCount(mNode) - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int first = getLabel(labelStart(middle));
+                if (first < string) {
+                    low = middle + 1;
+                } else if (first > string) {
+                    high = middle - 1;
+                } else {
+                    return new NodeCursor(middle, 1);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public List<String> getChildNames() {
+            if (!isAtEnd()) {
+                return Arrays.asList(getString(getLabel(labelStart(mNode) + mOffset)));
+            }
+            int first = firstChild(mNode);
+            int count = childCount(mNode);
+            List<String> names = new ArrayList<>(count);
+            for (int child = first; child < first + count; child++) {
+                names.add(getString(getLabel(labelStart(child))));
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Builds the flat buffer of a trie from a temporary tree of the class names.
+     */
+    private static class Builder {
+
+        private static class Node {
+            final TreeMap<String, Node> children = new TreeMap<>(CompactPackageTrie::compareCodePoints);
+            boolean leaf;
+        }
+
+        private final Node mRoot = new Node();
+        private final TreeSet<String> mStringSet = new TreeSet<>(CompactPackageTrie::compareCodePoints);
+
+        Builder(Collection<String> classNames) {
+            for (String className : classNames) {
+                Node current = mRoot;
+                for (String part : PackageTrie.getParts(className)) {
+                    Node child = current.children.get(part);
+                    if (child == null) {
+                        child = new Node();
+                        current.children.put(part, child);
+                        mStringSet.add(part);
+                    }
+                    current = child;
+                }
+                current.leaf = true;
+            }
+        }
+
+        CompactPackageTrie build(long fingerprint) {
+            List<String> strings = new ArrayList<>(mStringSet);
+            Map<String, Integer> stringIndexes = new HashMap<>();
+            for (int i = 0; i < strings.size(); i++) {
+                stringIndexes.put(strings.get(i), i);
+            }
+
+            // nodes in breadth first order so the children of a node are consecutive
+            List<List<String>> labels = new ArrayList<>();
+            List<Node> ends = new ArrayList<>();
+            labels.add(new ArrayList<>());
+            ends.add(mRoot);
+            List<int[]> children = new ArrayList<>();
+            for (int i = 0; i < ends.size(); i++) {
+                Node end = ends.get(i);
+                children.add(new int[]{ends.size(), end.children.size()});
+                for (Map.Entry<String, Node> entry : end.children.entrySet()) {
+                    List<String> label = new ArrayList<>();
+                    label.add(entry.getKey());
+                    Node node = entry.getValue();
+                    // a package that only contains one package is merged with it
+                    while (!node.leaf && node.children.size() == 1) {
+                        Map.Entry<String, Node> only = node.children.firstEntry();
+                        label.add(only.getKey());
+                        node = only.getValue();
+                    }
+                    labels.add(label);
+                    ends.add(node);
+                }
+            }
+
+            byte[][] stringBytes = new byte[strings.size()][];
+            int dataSize = 0;
+            for (int i = 0; i < strings.size(); i++) {
+                stringBytes[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                dataSize += stringBytes[i].length;
+            }
+            int labelCount = 0;
+            for (List<String> label : labels) {
+                labelCount += label.size();
+            }
+            int nodeCount = ends.size();
+            int size = HEADER_SIZE + (strings.size() + 1) * 4 + labelCount * 4
+                       + nodeCount * NODE_SIZE + dataSize;
+
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(fingerprint);
+            buffer.putInt(strings.size());
+            buffer.putInt(labelCount);
+            buffer.putInt(nodeCount);
+
+            int offset = 0;
+            for (byte[] bytes : stringBytes) {
+                buffer.putInt(offset);
+                offset += bytes.length;
+            }
+            buffer.putInt(offset);
+
+            for (List<String> label : labels) {
+                for (String segment : label) {
+                    buffer.putInt(stringIndexes.get(segment));
+                }
+            }
+
+            int labelStart = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                int labelLength = labels.get(i).size();
+                buffer.putInt(labelStart);
+                buffer.putInt(ends.get(i).leaf ? labelLength | LEAF : labelLength);
+                buffer.putInt(children.get(i)[0]);
+                buffer.putInt(children.get(i)[1]);
+                labelStart += labelLength;
+            }
+
+            for (byte[] bytes : stringBytes) {
+                buffer.put(bytes);
+            }
+            buffer.clear();
+            return new CompactPackageTrie(buffer);
+        }
+    }
+}
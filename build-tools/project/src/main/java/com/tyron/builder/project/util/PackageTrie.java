@@ -1,14 +1,16 @@
 package com.tyron.builder.project.util;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
 
 /**
  * A trie that stores package segments to a node.
@@ -21,15 +23,48 @@ import java.util.function.Function;
  *     /  \
  * String Object
  * </p>
+ *
+ * The classes of the jars are added as a single {@link CompactPackageTrie} which is never
+ * modified, the classes added one by one such as the sources of a project are kept in an
+ * overlay. Queries see the classes of both.
  */
 public class PackageTrie {
 
+    /**
+     * A position in a trie, after the segments of a package name.
+     */
+    interface Cursor {
+
+        boolean isLeaf();
+
+        /**
+         * @return the position after the segment, or null if no class name continues with it
+         */
+        @Nullable
+        Cursor getChild(String segment);
+
+        Collection<String> getChildNames();
+    }
+
     private final Node mRoot;
+    private volatile CompactPackageTrie mIndex;
+
+    // the names of the top level nodes, computed again after the top level changes
+    private volatile Set<String> mTopLevelNodes;
 
     public PackageTrie() {
         mRoot = new Node();
     }
 
+    /**
+     * Sets the compact trie of the classes of the jars, replacing the previous one. Removing a
+     * class only removes it from the overlay, the classes of a compact trie cannot be removed.
+     */
+    public void setIndex(@Nullable CompactPackageTrie index) {
+        mIndex = index;
+        mTopLevelNodes = null;
+    }
+
     /**
      * Add the fully qualified name to the index.
      *
@@ -43,6 +78,10 @@ public class PackageTrie {
         }
         // this is the end node, so mark it as a leaf
         current.isLeaf = true;
+        Set<String> topLevelNodes = mTopLevelNodes;
+        if (topLevelNodes != null && !topLevelNodes.contains(parts[0])) {
+            mTopLevelNodes = null;
+        }
     }
 
     public void remove(@NonNull String fqn) {
@@ -81,19 +120,21 @@ public class PackageTrie {
                 current = next;
             }
         }
+        mTopLevelNodes = null;
     }
 
     public List<String> getMatchingPackages(String packageQuery) {
         List<String> result = new ArrayList<>();
         StringBuilder currentPackage = new StringBuilder();
         String[] parts = getParts(packageQuery);
-        Node current = mRoot;
+        List<Cursor> current = getRoots();
         for (String part : parts) {
-            if (current == null || current.getChildren() == null || !current.getChildren().containsKey(part)) {
+            List<Cursor> next = getChildren(current, part);
+            if (next.isEmpty()) {
                 return result;
             }
 
-            if (current.isLeaf) {
+            if (isLeaf(current)) {
                 String fqn = currentPackage.length() > 0
                         ? currentPackage + "." + part
                         : part;
@@ -106,54 +147,89 @@ public class PackageTrie {
                 currentPackage.append(part);
             }
 
-            current = current.getChildren().get(part);
+            current = next;
         }
 
-        if (current.getChildren() != null) {
-            for (Node node : current.getChildren().values()) {
-                recurse(node, currentPackage.toString(), result);
-            }
+        for (String name : getChildNames(current)) {
+            recurse(name, getChildren(current, name), currentPackage.toString(), result);
         }
 
         return result;
     }
 
     public Set<String> getTopLevelNonLeafNodes() {
-        if (mRoot.getChildren() == null) {
-            return Collections.emptySet();
+        Set<String> names = mTopLevelNodes;
+        if (names == null) {
+            names = Collections.unmodifiableSet(getChildNames(getRoots()));
+            mTopLevelNodes = names;
         }
-
-        return mRoot.getChildren().keySet();
+        return names;
     }
 
-    private void recurse(Node node, String currentPackage, List<String> result) {
-        if (node.isLeaf) {
+    private void recurse(String name, List<Cursor> nodes, String currentPackage,
+                         List<String> result) {
+        if (isLeaf(nodes)) {
             String newResult = currentPackage.length() > 0
-                    ? currentPackage + "." + node.getValue()
-                    : node.getValue();
+                    ? currentPackage + "." + name
+                    : name;
             result.add(newResult);
         } else {
             currentPackage = currentPackage.isEmpty()
-                    ? node.getValue()
-                    : currentPackage + "." + node.getValue();
+                    ? name
+                    : currentPackage + "." + name;
         }
 
-        if (node.getChildren() == null) {
-            return;
+        for (String child : getChildNames(nodes)) {
+            recurse(child, getChildren(nodes, child), currentPackage, result);
         }
-        for (Node child : node.getChildren().values()) {
-            recurse(child, currentPackage, result);
+    }
+
+    private List<Cursor> getRoots() {
+        CompactPackageTrie index = mIndex;
+        List<Cursor> roots = new ArrayList<>(2);
+        roots.add(mRoot);
+        if (index != null) {
+            roots.add(index.getRoot());
         }
+        return roots;
     }
 
-    private String[] getParts(String fqn) {
+    private static List<Cursor> getChildren(List<Cursor> cursors, String segment) {
+        List<Cursor> children = new ArrayList<>(1);
+        for (Cursor cursor : cursors) {
+            Cursor child = cursor.getChild(segment);
+            if (child != null) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private static boolean isLeaf(List<Cursor> cursors) {
+        for (Cursor cursor : cursors) {
+            if (cursor.isLeaf()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> getChildNames(List<Cursor> cursors) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Cursor cursor : cursors) {
+            names.addAll(cursor.getChildNames());
+        }
+        return names;
+    }
+
+    static String[] getParts(String fqn) {
         if (fqn.contains(".")) {
             return fqn.split("\\.");
         }
         return new String[]{fqn};
     }
 
-    private static class Node {
+    private static class Node implements Cursor {
 
         private Map<String, Node> mChildren;
 
@@ -185,6 +261,22 @@ public class PackageTrie {
             return mValue;
         }
 
+        @Override
+        public boolean isLeaf() {
+            return isLeaf;
+        }
+
+        @Nullable
+        @Override
+        public Cursor getChild(String segment) {
+            return mChildren == null ? null : mChildren.get(segment);
+        }
+
+        @Override
+        public Collection<String> getChildNames() {
+            return mChildren == null ? Collections.emptySet() : mChildren.keySet();
+        }
+
         @Override
         public String toString() {
             return "Node{" + "isLeaf=" + isLeaf + ", mValue='" + mValue + '\'' + '}';
@@ -0,0 +1,291 @@
+package com.tyron.builder.project.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class CompactPackageTrieTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testMatchesPackageTrie() {
+        List<String> classNames = Arrays.asList(
+                "java.lang.String",
+                "java.lang.Object",
+                "java.util.concurrent.atomic.AtomicInteger",
+                "something.Class",
+                "something.another.Class",
+                "a.b",
+                "a.b.c",
+                "a.b.c.d.e.Class",
+                "Unnamed");
+
+        PackageTrie expected = new PackageTrie();
+        classNames.forEach(expected::add);
+        PackageTrie actual = new PackageTrie();
+        actual.setIndex(CompactPackageTrie.build(classNames));
+
+        assertSameResults(expected, actual, getQueries(classNames));
+    }
+
+    @Test
+    public void testMatchesPackageTrieForJar() throws IOException {
+        List<String> classNames = getClassNames(getJar(Test.class));
+        assert !classNames.isEmpty();
+
+        PackageTrie expected = new PackageTrie();
+        classNames.forEach(expected::add);
+        PackageTrie actual = new PackageTrie();
+        actual.setIndex(CompactPackageTrie.build(classNames));
+
+        assertSameResults(expected, actual, getQueries(classNames));
+    }
+
+    @Test
+    public void testOverlay() {
+        List<String> classNames = Arrays.asList(
+                "com.test.Main",
+                "com.test.util.Strings",
+                "com.other.Other");
+        List<String> sources = Arrays.asList(
+                "com.test.util.Files",
+                "com.test.Main",
+                "com.source.Source");
+
+        PackageTrie expected = new PackageTrie();
+        classNames.forEach(expected::add);
+        sources.forEach(expected::add);
+        PackageTrie actual = new PackageTrie();
+        actual.setIndex(CompactPackageTrie.build(classNames));
+        sources.forEach(actual::add);
+
+        List<String> queries = getQueries(classNames);
+        queries.addAll(getQueries(sources));
+        assertSameResults(expected, actual, queries);
+
+        actual.remove("com.source.Source");
+        assert !actual.getMatchingPackages("com").contains("com.source.Source");
+        assert actual.getMatchingPackages("com").contains("com.other.Other");
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        File jar = getJar(Test.class);
+        List<String> classNames = getClassNames(jar);
+        File indexFile = new File(mFolder.getRoot(), "index/junit.trie");
+
+        CompactPackageTrie built = CompactPackageTrie.obtain(mFolder.getRoot(), indexFile,
+                Collections.singletonList(jar));
+        assert indexFile.exists();
+        CompactPackageTrie mapped = CompactPackageTrie.map(indexFile);
+        assert mapped != null;
+        assert Arrays.equals(built.toByteArray(), mapped.toByteArray());
+
+        // the index file is reused as long as the jar does not change
+        assert CompactPackageTrie.obtain(mFolder.getRoot(), indexFile,
+                Collections.singletonList(jar)) == built;
+
+        // a released project maps the index file again
+        CompactPackageTrie.release(mFolder.getRoot());
+        CompactPackageTrie reopened = CompactPackageTrie.obtain(mFolder.getRoot(), indexFile,
+                Collections.singletonList(jar));
+        assert reopened != built;
+        assert Arrays.equals(built.toByteArray(), reopened.toByteArray());
+
+        PackageTrie expected = new PackageTrie();
+        classNames.forEach(expected::add);
+        PackageTrie actual = new PackageTrie();
+        actual.setIndex(mapped);
+        assertSameResults(expected, actual, getQueries(classNames));
+    }
+
+    @Test
+    public void testJarsAreMergedInOneTrie() throws IOException {
+        File junit = getJar(Test.class);
+        File invalid = mFolder.newFile("invalid.jar");
+        File other = writeJar("other.jar", "org.junit.Other", "com.other.Other", "Unnamed");
+        List<String> classNames = getClassNames(junit);
+        classNames.addAll(getClassNames(other));
+        File indexFile = new File(mFolder.getRoot(), "index/classes.trie");
+
+        CompactPackageTrie trie = CompactPackageTrie.obtain(mFolder.getRoot(), indexFile,
+                Arrays.asList(junit, invalid, other));
+        assert new HashSet<>(trie.getClassNames()).equals(new HashSet<>(classNames));
+
+        PackageTrie expected = new PackageTrie();
+        classNames.forEach(expected::add);
+        PackageTrie actual = new PackageTrie();
+        actual.setIndex(trie);
+        assertSameResults(expected, actual, getQueries(classNames));
+
+        // a jar that is no longer used is not in the trie that replaces it
+        CompactPackageTrie withoutOther = CompactPackageTrie.obtain(mFolder.getRoot(),
+                indexFile, Collections.singletonList(junit));
+        assert withoutOther != trie;
+        actual.setIndex(withoutOther);
+        assert !actual.getTopLevelNonLeafNodes().contains("com");
+        assert actual.getMatchingPackages("com.other").isEmpty();
+    }
+
+    @Test
+    public void testNonAsciiNames() {
+        List<String> classNames = Arrays.asList(
+                "a.Zeta",
+                "a.\u00e9t\u00e9",
+                "a.\u4e2d\u6587",
+                "a.\ud83d\ude00",
+                "a.\uffe0",
+                "\u00e9.Class");
+
+        PackageTrie expected = new PackageTrie();
+        classNames.forEach(expected::add);
+        PackageTrie actual = new PackageTrie();
+        actual.setIndex(CompactPackageTrie.build(classNames));
+
+        assertSameResults(expected, actual, getQueries(classNames));
+    }
+
+    @Test
+    public void testTopLevelNodesFollowTheOverlay() {
+        PackageTrie trie = new PackageTrie();
+        trie.setIndex(CompactPackageTrie.build(Arrays.asList("java.lang.Object", "a.B")));
+        Set<String> topLevel = trie.getTopLevelNonLeafNodes();
+        assert topLevel.equals(new HashSet<>(Arrays.asList("java", "a")));
+        // not computed again while the top level does not change
+        trie.add("java.util.List");
+        assert trie.getTopLevelNonLeafNodes() == topLevel;
+
+        trie.add("com.test.Main");
+        assert trie.getTopLevelNonLeafNodes().contains("com");
+        trie.remove("com", false);
+        assert !trie.getTopLevelNonLeafNodes().contains("com");
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        File file = mFolder.newFile("invalid.trie");
+        byte[] bytes = CompactPackageTrie.build(Arrays.asList("a.b.C", "a.D")).toByteArray();
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+        assert CompactPackageTrie.map(file) == null;
+    }
+
+    @Test
+    public void testBenchmark() throws IOException {
+        List<String> classNames = new ArrayList<>();
+        for (String className : getClassNames(getJar(Test.class))) {
+            // spread the classes of the jar over many packages so the trie is jar sized
+            for (int i = 0; i < 50; i++) {
+                classNames.add("p" + i + "." + className);
+            }
+        }
+        List<String> queries = getQueries(classNames);
+
+        System.gc();
+        long before = usedMemory();
+        long start = System.nanoTime();
+        PackageTrie expected = new PackageTrie();
+        classNames.forEach(expected::add);
+        long treeBuild = System.nanoTime() - start;
+        System.gc();
+        long treeHeap = usedMemory() - before;
+
+        start = System.nanoTime();
+        CompactPackageTrie compact = CompactPackageTrie.build(classNames);
+        long compactBuild = System.nanoTime() - start;
+        PackageTrie actual = new PackageTrie();
+        actual.setIndex(compact);
+
+        long treeLookup = lookup(expected, queries);
+        long compactLookup = lookup(actual, queries);
+
+        System.out.println(classNames.size() + " classes, build: " + treeBuild / 1_000_000
+                + " ms tree, " + compactBuild / 1_000_000 + " ms compact");
+        System.out.println("size: ~" + treeHeap / 1024 + " KB tree heap, "
+                + compact.getSize() / 1024 + " KB compact");
+        System.out.println(queries.size() + " lookups: " + treeLookup / 1_000_000 + " ms tree, "
+                + compactLookup / 1_000_000 + " ms compact");
+        assert expected.getTopLevelNonLeafNodes().size() == 50;
+    }
+
+    private static long lookup(PackageTrie trie, List<String> queries) {
+        long start = System.nanoTime();
+        for (String query : queries) {
+            trie.getMatchingPackages(query);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void assertSameResults(PackageTrie expected, PackageTrie actual,
+                                          List<String> queries) {
+        assert expected.getTopLevelNonLeafNodes().equals(actual.getTopLevelNonLeafNodes());
+        for (String query : queries) {
+            List<String> expectedPackages = new ArrayList<>(expected.getMatchingPackages(query));
+            List<String> actualPackages = new ArrayList<>(actual.getMatchingPackages(query));
+            Collections.sort(expectedPackages);
+            Collections.sort(actualPackages);
+            assert expectedPackages.equals(actualPackages)
+                    : query + ": expected " + expectedPackages + " but was " + actualPackages;
+        }
+    }
+
+    /**
+     * @return every package and class name of the given classes, and names that are not in
+     * the trie
+     */
+    private static List<String> getQueries(List<String> classNames) {
+        Set<String> queries = new HashSet<>();
+        for (String className : classNames) {
+            String[] parts = PackageTrie.getParts(className);
+            StringBuilder name = new StringBuilder();
+            for (String part : parts) {
+                if (name.length() > 0) {
+                    name.append('.');
+                }
+                name.append(part);
+                queries.add(name.toString());
+                queries.add(name + ".Missing");
+            }
+        }
+        queries.add("missing");
+        return new ArrayList<>(queries);
+    }
+
+    private File writeJar(String name, String... classNames) throws IOException {
+        File file = mFolder.newFile(name);
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(file))) {
+            for (String className : classNames) {
+                jar.putNextEntry(new JarEntry(className.replace('.', '/') + ".class"));
+                jar.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private static File getJar(Class<?> type) {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().getPath());
+    }
+
+    private static List<String> getClassNames(File file) throws IOException {
+        return CompactPackageTrie.getClassNames(file);
+    }
+}
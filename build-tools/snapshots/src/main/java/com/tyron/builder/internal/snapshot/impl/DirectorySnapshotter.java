@@ -28,17 +28,25 @@ import java.io.UncheckedIOException;
 import java.nio.file.FileSystemLoopException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -72,12 +80,25 @@ public class DirectorySnapshotter {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    @Nullable
+    private final Executor hashingExecutor;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, null);
+    }
+
+    /**
+     * @param hashingExecutor When not {@code null}, the regular files of each visited directory are hashed
+     *                        concurrently on this executor while the walk continues. The walk itself and the
+     *                        assembly of the snapshot stay on the calling thread, so the resulting snapshot is
+     *                        identical to the one produced without an executor.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, @Nullable Executor hashingExecutor) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.hashingExecutor = hashingExecutor;
     }
 
     /**
@@ -100,8 +121,12 @@ public class DirectorySnapshotter {
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered, Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer) {
         try {
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer);
-            Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, hashingExecutor, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer);
+            try {
+                Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+            } finally {
+                visitor.cancelPendingHashes();
+            }
             return visitor.getResult();
         } catch (IOException e) {
             throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", absolutePath), e);
@@ -231,6 +256,13 @@ public class DirectorySnapshotter {
         private final SnapshottingFilter.DirectoryWalkerPredicate predicate;
         private final AtomicBoolean hasBeenFiltered;
         private final FileHasher hasher;
+        @Nullable
+        private final Executor hashingExecutor;
+        private final Map<Path, PendingHash> pendingHashes = new HashMap<>();
+        /** Regular files rejected by the predicate when their directory was entered. */
+        private final Set<Path> rejectedFiles = new HashSet<>();
+        /** The files scheduled for hashing in each directory being visited, innermost first. */
+        private final Deque<List<Path>> scheduledFiles = new ArrayDeque<>();
         private final Interner<String> stringInterner;
         private final DefaultExcludes defaultExcludes;
         private final SymbolicLinkMapping symbolicLinkMapping;
@@ -242,6 +274,7 @@ public class DirectorySnapshotter {
                 @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
                 AtomicBoolean hasBeenFiltered,
                 FileHasher hasher,
+                @Nullable Executor hashingExecutor,
                 Interner<String> stringInterner,
                 DefaultExcludes defaultExcludes,
                 DirectorySnapshotterStatistics.Collector statisticsCollector,
@@ -253,6 +286,7 @@ public class DirectorySnapshotter {
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
             this.hasher = hasher;
+            this.hashingExecutor = hashingExecutor;
             this.stringInterner = stringInterner;
             this.defaultExcludes = defaultExcludes;
             this.symbolicLinkMapping = symbolicLinkMapping;
@@ -276,6 +310,9 @@ public class DirectorySnapshotter {
             if (shouldVisitDirectory(dir, fileName)) {
                 builder.enterDirectory(AccessType.DIRECT, intern(symbolicLinkMapping.remapAbsolutePath(dir)), fileName, DirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS);
                 parentDirectories.addFirst(dir.toString());
+                if (hashingExecutor != null) {
+                    scheduleHashingOfRegularFiles(dir);
+                }
                 return FileVisitResult.CONTINUE;
             } else {
                 pathTracker.leave();
@@ -298,6 +335,10 @@ public class DirectorySnapshotter {
                 filteredDirectorySnapshots.add(currentLevel);
             }
             parentDirectories.removeFirst();
+            if (hashingExecutor != null) {
+                // every file of the directory has been visited, drop the ones the walk skipped
+                forgetScheduledFiles(scheduledFiles.removeFirst());
+            }
             return FileVisitResult.CONTINUE;
         }
 
@@ -349,12 +390,17 @@ public class DirectorySnapshotter {
                             predicate,
                             symlinkHasBeenFiltered,
                             hasher,
+                            hashingExecutor,
                             stringInterner,
                             defaultExcludes,
                             collector,
                             symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
                             unfilteredSnapshotConsumer);
-                    Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
+                    try {
+                        Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
+                    } finally {
+                        subtreeVisitor.cancelPendingHashes();
+                    }
                     return (DirectorySnapshot) subtreeVisitor.getResult();
                 } else {
                     return null;
@@ -380,6 +426,14 @@ public class DirectorySnapshotter {
         }
 
         private boolean shouldVisitFile(Path file, String internedName) {
+            // the predicate has already been asked when the hashing of the file was scheduled
+            if (pendingHashes.containsKey(file)) {
+                return true;
+            }
+            if (rejectedFiles.remove(file)) {
+                markFiltered();
+                return false;
+            }
             return shouldVisit(file, internedName, false);
         }
 
@@ -403,10 +457,102 @@ public class DirectorySnapshotter {
             long lastModified = attrs.lastModifiedTime().toMillis();
             long fileLength = attrs.size();
             FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
-            HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
+            HashCode hash = hash(absoluteFilePath, fileLength, lastModified);
             return new RegularFileSnapshot(internedRemappedAbsoluteFilePath, internedName, hash, metadata);
         }
 
+        /**
+         * Starts hashing the regular files directly inside the given directory on the hashing executor,
+         * so that the hashes are (mostly) available once the walk reaches the files.
+         * Files which are excluded or rejected by the predicate are not hashed, the answer of the predicate
+         * is kept so the walk does not ask it again.
+         * Any problem listing the directory is left for the walk itself to report.
+         */
+        private void scheduleHashingOfRegularFiles(Path dir) {
+            List<Path> scheduled = new ArrayList<>();
+            scheduledFiles.addFirst(scheduled);
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (!attrs.isRegularFile()) {
+                        continue;
+                    }
+                    String internedName = getInternedFileName(child);
+                    if (defaultExcludes.excludeFile(internedName)) {
+                        continue;
+                    }
+                    scheduled.add(child);
+                    if (!isAcceptedByPredicate(child, internedName)) {
+                        rejectedFiles.add(child);
+                        continue;
+                    }
+                    long lastModified = attrs.lastModifiedTime().toMillis();
+                    long fileLength = attrs.size();
+                    File file = child.toFile();
+                    CompletableFuture<HashCode> hash = CompletableFuture.supplyAsync(() -> hasher.hash(file, fileLength, lastModified), hashingExecutor);
+                    pendingHashes.put(child, new PendingHash(fileLength, lastModified, hash));
+                }
+            } catch (IOException ignored) {
+                // The walk reports the failure when visiting the directory or the file
+            }
+        }
+
+        private boolean isAcceptedByPredicate(Path file, String internedName) {
+            if (predicate == null) {
+                return true;
+            }
+            pathTracker.enter(internedName);
+            try {
+                return predicate.test(file, internedName, false, symbolicLinkMapping.getRemappedSegments(pathTracker.getSegments()));
+            } finally {
+                pathTracker.leave();
+            }
+        }
+
+        private void forgetScheduledFiles(List<Path> files) {
+            for (Path file : files) {
+                rejectedFiles.remove(file);
+                PendingHash pendingHash = pendingHashes.remove(file);
+                if (pendingHash != null) {
+                    // a hash which has not started yet is never computed
+                    pendingHash.hash.cancel(false);
+                }
+            }
+        }
+
+        /**
+         * Cancels the hashing of the files the walk did not reach, e.g. when it failed.
+         */
+        public void cancelPendingHashes() {
+            for (PendingHash pendingHash : pendingHashes.values()) {
+                pendingHash.hash.cancel(false);
+            }
+            pendingHashes.clear();
+            rejectedFiles.clear();
+            scheduledFiles.clear();
+        }
+
+        private HashCode hash(Path absoluteFilePath, long fileLength, long lastModified) {
+            PendingHash pendingHash = pendingHashes.remove(absoluteFilePath);
+            if (pendingHash != null) {
+                if (pendingHash.length != fileLength || pendingHash.lastModified != lastModified) {
+                    // the file changed after its directory was listed
+                    pendingHash.hash.cancel(false);
+                } else {
+                    try {
+                        return pendingHash.hash.join();
+                    } catch (CompletionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        throw e;
+                    }
+                }
+            }
+            return hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
+        }
+
         /** unlistable directories (and maybe some locked files) will stop here */
         @Override
         protected FileVisitResult doVisitFileFailed(Path file, IOException exc) {
@@ -455,12 +601,16 @@ public class DirectorySnapshotter {
             }
             boolean allowed = predicate.test(path, internedName, isDirectory, symbolicLinkMapping.getRemappedSegments(pathTracker.getSegments()));
             if (!allowed) {
-                builder.markCurrentLevelAsFiltered();
-                hasBeenFiltered.set(true);
+                markFiltered();
             }
             return allowed;
         }
 
+        private void markFiltered() {
+            builder.markCurrentLevelAsFiltered();
+            hasBeenFiltered.set(true);
+        }
+
         private String getInternedFileName(Path dir) {
             Path fileName = dir.getFileName();
             return fileName == null ? "" : intern(fileName.toString());
@@ -470,4 +620,16 @@ public class DirectorySnapshotter {
             return builder.getResult();
         }
     }
+
+    private static class PendingHash {
+        private final long length;
+        private final long lastModified;
+        private final CompletableFuture<HashCode> hash;
+
+        public PendingHash(long length, long lastModified, CompletableFuture<HashCode> hash) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
 }
\ No newline at end of file
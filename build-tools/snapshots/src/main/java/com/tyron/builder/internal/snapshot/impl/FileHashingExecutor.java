@@ -0,0 +1,48 @@
+package com.tyron.builder.internal.snapshot.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool used by {@link DirectorySnapshotter} to hash files while a directory is being walked.
+ *
+ * Idle threads are released, so keeping an instance around between builds costs nothing.
+ */
+public class FileHashingExecutor implements Executor, Closeable {
+    private final ExecutorService executor;
+
+    public FileHashingExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public FileHashingExecutor(int maxThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                maxThreads,
+                maxThreads,
+                10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("File hashing thread %d")
+                        .setDaemon(true)
+                        .build()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
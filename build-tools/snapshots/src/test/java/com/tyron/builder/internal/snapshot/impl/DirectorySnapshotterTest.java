@@ -0,0 +1,203 @@
+package com.tyron.builder.internal.snapshot.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Interners;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.tyron.builder.internal.hash.FileHasher;
+import com.tyron.builder.internal.snapshot.FileSystemLocationSnapshot;
+import com.tyron.builder.internal.snapshot.SnapshotVisitResult;
+import com.tyron.builder.internal.snapshot.SnapshottingFilter;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DirectorySnapshotterTest {
+
+    private static final List<String> DEFAULT_EXCLUDES = Arrays.asList("**/.git/**", "**/*~");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<FileHashingExecutor> executors = new ArrayList<>();
+
+    @After
+    public void closeExecutors() {
+        for (FileHashingExecutor executor : executors) {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentHashingProducesTheSameSnapshot() throws IOException {
+        File root = createTree(5, 40, 1024);
+
+        Snapshot serial = snapshot(createSnapshotter(0), root, null);
+        Snapshot concurrent = snapshot(createSnapshotter(4), root, null);
+
+        assertEquals(serial.entries, concurrent.entries);
+        assertEquals(serial.unfiltered, concurrent.unfiltered);
+        assertFalse(concurrent.filtered);
+        assertFalse(serial.entries.toString().contains(".git"));
+    }
+
+    @Test
+    public void testConcurrentHashingProducesTheSameFilteredSnapshot() throws IOException {
+        File root = createTree(5, 40, 1024);
+        SnapshottingFilter.DirectoryWalkerPredicate predicate = (path, name, isDirectory, relativePath) ->
+                isDirectory || !name.endsWith("3.txt");
+
+        Snapshot serial = snapshot(createSnapshotter(0), root, predicate);
+        Snapshot concurrent = snapshot(createSnapshotter(4), root, predicate);
+
+        assertTrue(serial.filtered);
+        assertTrue(concurrent.filtered);
+        assertEquals(serial.entries, concurrent.entries);
+        assertEquals(serial.unfiltered, concurrent.unfiltered);
+        assertFalse(concurrent.entries.toString().contains("3.txt"));
+    }
+
+    @Test
+    public void testPredicateIsAskedOncePerFile() throws IOException {
+        File root = createTree(3, 20, 16);
+        Map<Path, Integer> calls = new HashMap<>();
+        SnapshottingFilter.DirectoryWalkerPredicate predicate = (path, name, isDirectory, relativePath) -> {
+            calls.merge(path, 1, Integer::sum);
+            return !name.startsWith("file1");
+        };
+
+        snapshot(createSnapshotter(4), root, predicate);
+
+        assertFalse(calls.isEmpty());
+        for (Map.Entry<Path, Integer> entry : calls.entrySet()) {
+            assertEquals(entry.getKey().toString(), 1, (int) entry.getValue());
+        }
+    }
+
+    /**
+     * Snapshots the same tree serially and with 1 to N hashing threads. The snapshots must be
+     * the same, and on a machine with more than one core hashing on the executor must be faster
+     * than hashing on the walking thread.
+     */
+    @Test
+    public void testBenchmark() throws IOException {
+        File root = createTree(4, 100, 64 * 1024);
+        DirectorySnapshotter serialSnapshotter = createSnapshotter(0);
+        Snapshot expected = snapshot(serialSnapshotter, root, null);
+        long serial = fastestOf(3, serialSnapshotter, root, expected);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        Map<Integer, Long> concurrent = new HashMap<>();
+        for (int threads = 1; threads <= processors; threads *= 2) {
+            concurrent.put(threads, fastestOf(3, createSnapshotter(threads), root, expected));
+        }
+
+        if (processors > 1) {
+            long fastest = concurrent.values().stream().min(Long::compare).get();
+            assertTrue("serial: " + serial + " ns, by thread count: " + concurrent,
+                    fastest < serial);
+        }
+    }
+
+    private long fastestOf(int runs, DirectorySnapshotter snapshotter, File root, Snapshot expected) {
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            Snapshot snapshot = snapshot(snapshotter, root, null);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+            assertEquals(expected.entries, snapshot.entries);
+        }
+        return fastest;
+    }
+
+    /**
+     * Creates {@code directories} nested directories with {@code filesPerDirectory} files each,
+     * plus files which the default excludes leave out.
+     */
+    private File createTree(int directories, int filesPerDirectory, int fileSize) throws IOException {
+        Random random = new Random(7);
+        File root = temporaryFolder.newFolder("root");
+        File directory = root;
+        for (int i = 0; i < directories; i++) {
+            directory = new File(directory, "dir" + i);
+            File sibling = new File(root, "sibling" + i);
+            for (File parent : Arrays.asList(directory, sibling)) {
+                Files.createDirectories(parent.toPath());
+                for (int j = 0; j < filesPerDirectory; j++) {
+                    byte[] content = new byte[fileSize];
+                    random.nextBytes(content);
+                    Files.write(new File(parent, "file" + j + ".txt").toPath(), content);
+                }
+                Files.write(new File(parent, "backup~").toPath(), new byte[]{1});
+            }
+        }
+        File git = new File(root, ".git");
+        Files.createDirectories(git.toPath());
+        Files.write(new File(git, "HEAD").toPath(), new byte[]{1});
+        return root;
+    }
+
+    private DirectorySnapshotter createSnapshotter(int hashingThreads) {
+        FileHashingExecutor executor = null;
+        if (hashingThreads > 0) {
+            executor = new FileHashingExecutor(hashingThreads);
+            executors.add(executor);
+        }
+        return new DirectorySnapshotter(new ContentHasher(), Interners.newStrongInterner(),
+                DEFAULT_EXCLUDES, new DirectorySnapshotterStatistics.Collector(), executor);
+    }
+
+    private static Snapshot snapshot(DirectorySnapshotter snapshotter, File root,
+                                     SnapshottingFilter.DirectoryWalkerPredicate predicate) {
+        Snapshot snapshot = new Snapshot();
+        AtomicBoolean hasBeenFiltered = new AtomicBoolean();
+        FileSystemLocationSnapshot result = snapshotter.snapshot(root.getAbsolutePath(), predicate,
+                hasBeenFiltered, unfiltered -> snapshot.unfiltered.add(unfiltered.getAbsolutePath()));
+        result.accept(entry -> {
+            snapshot.entries.add(entry.getAbsolutePath() + " " + entry.getType() + " " + entry.getHash());
+            return SnapshotVisitResult.CONTINUE;
+        });
+        snapshot.filtered = hasBeenFiltered.get();
+        return snapshot;
+    }
+
+    private static class Snapshot {
+        private final List<String> entries = new ArrayList<>();
+        private final List<String> unfiltered = new ArrayList<>();
+        private boolean filtered;
+    }
+
+    private static class ContentHasher implements FileHasher {
+        @Override
+        public HashCode hash(File file) {
+            try {
+                return com.google.common.io.Files.asByteSource(file).hash(Hashing.sha256());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public HashCode hash(File file, long length, long lastModified) {
+            return hash(file);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.tyron.xml.completion.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+import com.tyron.xml.completion.repository.parser.ResourceParser;
+import com.tyron.xml.completion.repository.parser.ValuesXmlParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the resource items each file contributed to a {@link ResourceTable} with the hash of
+ * the contents they were parsed from.
+ * <p>
+ * Updating a file whose contents did not change does nothing. When a values file changes, only
+ * the items of the elements that changed are removed from the table and added again, the items
+ * of the other elements are kept. The items of other files are replaced.
+ */
+class ResourceFileIndex {
+
+    private static class FileState {
+        private final HashCode mContentHash;
+        private final ResourceNamespace mNamespace;
+        private final String mLibraryName;
+        /**
+         * The items of a values file by the hash of the element they were parsed from, the items
+         * of other files have no hash.
+         */
+        private final ListMultimap<HashCode, ResourceItem> mItems = ArrayListMultimap.create();
+
+        private FileState(HashCode contentHash, ResourceNamespace namespace, String libraryName) {
+            mContentHash = contentHash;
+            mNamespace = namespace;
+            mLibraryName = libraryName;
+        }
+    }
+
+    private static final HashCode NO_HASH = HashCode.fromInt(0);
+
+    private final ResourceTable mTable;
+    private final Multimap<File, ResourceItem> mFileItems;
+    private final Map<File, FileState> mFiles = new HashMap<>();
+
+    ResourceFileIndex(ResourceTable table, Multimap<File, ResourceItem> fileItems) {
+        mTable = table;
+        mFileItems = fileItems;
+    }
+
+    /**
+     * Parses the file if its contents changed and updates the table with the items that
+     * changed.
+     *
+     * @return whether the items of the file changed
+     */
+    boolean update(@NotNull ResourceParser parser,
+                   @NotNull File file,
+                   @Nullable String contents,
+                   @NotNull String folderName,
+                   @NotNull ResourceNamespace namespace,
+                   @Nullable String libraryName) throws IOException {
+        HashCode contentHash = contents == null
+                ? null
+                : Hashing.murmur3_128().hashString(contents, StandardCharsets.UTF_8);
+        FileState previous = mFiles.get(file);
+        if (previous != null
+            && Objects.equals(previous.mContentHash, contentHash)
+            && previous.mNamespace.equals(namespace)
+            && Objects.equals(previous.mLibraryName, libraryName)) {
+            return false;
+        }
+
+        FileState current = new FileState(contentHash, namespace, libraryName);
+        List<ResourceItem> added = new ArrayList<>();
+        if (parser instanceof ValuesXmlParser) {
+            List<ValuesXmlParser.Entry> entries = ((ValuesXmlParser) parser)
+                    .parseEntries(file, contents, namespace, libraryName);
+            boolean reuse = previous != null
+                            && previous.mNamespace.equals(namespace)
+                            && Objects.equals(previous.mLibraryName, libraryName);
+            for (ValuesXmlParser.Entry entry : entries) {
+                List<ResourceItem> candidates = reuse
+                        ? previous.mItems.get(entry.getHash())
+                        : Collections.emptyList();
+                ResourceItem item;
+                if (candidates.isEmpty()) {
+                    ResourceValue value = entry.getValue();
+                    if (value == null) {
+                        continue;
+                    }
+                    item = new SimpleResourceItem(value, folderName);
+                    added.add(item);
+                } else {
+                    // the element did not change, keep the item that is in the table without
+                    // parsing its value
+                    item = candidates.remove(0);
+                }
+                current.mItems.put(entry.getHash(), item);
+            }
+        } else {
+            List<ResourceValue> values = parser.parse(file, contents, namespace, libraryName);
+            if (values != null) {
+                for (ResourceValue value : values) {
+                    ResourceItem item = new SimpleResourceItem(value, folderName);
+                    added.add(item);
+                    current.mItems.put(NO_HASH, item);
+                }
+            }
+        }
+
+        if (previous != null) {
+            // the items that were reused were removed from the previous state
+            previous.mItems.values().forEach(mTable::remove);
+        }
+        for (ResourceItem item : added) {
+            mTable.getOrPutEmpty(item.getNamespace(), item.getType()).put(item.getName(), item);
+        }
+        mFiles.put(file, current);
+        mFileItems.replaceValues(file, current.mItems.values());
+        return true;
+    }
+
+    /**
+     * Removes the items of the file from the table.
+     */
+    void remove(@NotNull File file) {
+        FileState previous = mFiles.remove(file);
+        if (previous != null) {
+            previous.mItems.values().forEach(mTable::remove);
+        }
+        Collection<ResourceItem> items = mFileItems.removeAll(file);
+        if (previous == null) {
+            items.forEach(mTable::remove);
+        }
+    }
+}
@@ -41,8 +41,6 @@ import java.util.Set;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
 
-import jdk.internal.org.jline.utils.Colors;
-
 public class SimpleResourceRepository implements Repository {
 
     private static final ImmutableMap<ResourceFolderType, ResourceParser> sParsers;
@@ -68,6 +66,7 @@ public class SimpleResourceRepository implements Repository {
     private final ResourceNamespace mNamespace;
     protected final ResourceTable mTable = new ResourceTable();
     protected final Multimap<File, ResourceItem> mFileItems = ArrayListMultimap.create();
+    private final ResourceFileIndex mFileIndex = new ResourceFileIndex(mTable, mFileItems);
 
     private FolderConfiguration mConfiguration;
 
@@ -121,34 +120,20 @@ public class SimpleResourceRepository implements Repository {
                            @NotNull String folderName,
                            @NotNull ResourceNamespace namespace,
                            @Nullable String libraryName) throws IOException {
-        List<ResourceValue> values = parser.parse(xmlFile, contents, namespace, libraryName);
-        for (ResourceValue value : values) {
-            ListMultimap<String, ResourceItem> tableValue =
-                    mTable.getOrPutEmpty(value.getNamespace(), value.getResourceType());
-            SimpleResourceItem resourceItem = new SimpleResourceItem(value, folderName);
-            tableValue.put(value.getName(), resourceItem);
-
-            mFileItems.put(xmlFile, resourceItem);
-        }
+        mFileIndex.update(parser, xmlFile, contents, folderName, namespace, libraryName);
     }
 
+    /**
+     * Updates the resources of the file, only the resources of the file that changed since it
+     * was last parsed are replaced.
+     */
     @Override
     public void updateFile(@NotNull File file, @Nullable String contents) throws IOException {
-        Collection<ResourceItem> existingItems = mFileItems.get(file);
-        if (existingItems != null) {
-            existingItems.stream()
-                    .filter(Objects::nonNull)
-                    .forEach(mTable::remove);
-        }
-
         File parent = file.getParentFile();
-        if (parent == null) {
-            return;
-        }
-
-        ResourceParser parser = getParser(parent);
+        ResourceParser parser = parent == null ? null : getParser(parent);
         if (parser == null) {
-            // should not happen, but return just in case
+            // should not happen, but remove the resources of the file just in case
+            mFileIndex.remove(file);
             return;
         }
 
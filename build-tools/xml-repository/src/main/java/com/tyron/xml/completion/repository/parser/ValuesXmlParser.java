@@ -1,6 +1,7 @@
 package com.tyron.xml.completion.repository.parser;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
 import com.google.common.primitives.Ints;
 import com.tyron.builder.compiler.manifest.SdkConstants;
 import com.tyron.builder.compiler.manifest.resources.ResourceType;
@@ -16,13 +17,8 @@ import com.tyron.xml.completion.repository.api.StyleItemResourceValueImpl;
 import com.tyron.xml.completion.repository.api.StyleResourceValueImpl;
 import com.tyron.xml.completion.repository.api.StyleableResourceValue;
 import com.tyron.xml.completion.repository.api.StyleableResourceValueImpl;
-import com.tyron.xml.completion.util.DOMUtils;
+import com.tyron.xml.completion.repository.parser.ValuesXmlReader.Node;
 
-import org.eclipse.lemminx.dom.DOMComment;
-import org.eclipse.lemminx.dom.DOMDocument;
-import org.eclipse.lemminx.dom.DOMNode;
-import org.eclipse.lemminx.dom.DOMParser;
-import org.eclipse.lemminx.dom.DOMProcessingInstruction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -35,61 +31,113 @@ import java.util.Set;
 
 import kotlin.io.FilesKt;
 
+/**
+ * Parses the values of a values file. The file is read one child of the resources tag at a
+ * time by {@link ValuesXmlReader} instead of being parsed into a document, values files can
+ * contain thousands of strings and are parsed again every time they are edited.
+ */
 public class ValuesXmlParser implements ResourceParser {
 
+    /**
+     * An element and the hash of its source. Elements with the same hash give the same value,
+     * so the value is only parsed when it is requested, which is not needed when the hash did
+     * not change since the file was last parsed.
+     */
+    public class Entry {
+
+        private final HashCode mHash;
+        private final ResourceType mType;
+        private final Node mNode;
+        private final ResourceNamespace mNamespace;
+        private final String mLibraryName;
+        private ResourceValue mValue;
+        private boolean mParsed;
+
+        private Entry(HashCode hash,
+                      ResourceType type,
+                      Node node,
+                      ResourceNamespace namespace,
+                      String libraryName) {
+            mHash = hash;
+            mType = type;
+            mNode = node;
+            mNamespace = namespace;
+            mLibraryName = libraryName;
+        }
+
+        @NotNull
+        public HashCode getHash() {
+            return mHash;
+        }
+
+        /**
+         * @return the value of the element, or null if the element is not a valid resource
+         */
+        @Nullable
+        public ResourceValue getValue() {
+            if (!mParsed) {
+                mValue = parseType(mType, mNode, mNamespace, mLibraryName);
+                mParsed = true;
+            }
+            return mValue;
+        }
+    }
+
     @Override
     public List<ResourceValue> parse(@NotNull File file,
                                      @Nullable String contents,
                                      @NotNull ResourceNamespace namespace,
                                      @Nullable String name) throws IOException {
-        if (!"xml".equals(FilesKt.getExtension(file)) || contents == null) {
-            return Collections.emptyList();
-        }
-
-        DOMDocument document =
-                DOMParser.getInstance().parse(contents, file.toURI().toString(), null);
-        DOMUtils.setNamespace(document, namespace);
-        List<DOMNode> roots = document.getRoots();
-        for (DOMNode root : roots) {
-            if (root instanceof DOMProcessingInstruction) {
-                continue;
-            }
-
-            if (SdkConstants.TAG_RESOURCES.equals(root.getNodeName())) {
-                return parseResourceTag(root, namespace, name);
+        List<Entry> entries = parseEntries(file, contents, namespace, name);
+        List<ResourceValue> values = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            ResourceValue value = entry.getValue();
+            if (value != null) {
+                values.add(value);
             }
         }
-        return Collections.emptyList();
+        return values;
     }
 
-    private List<ResourceValue> parseResourceTag(DOMNode root,
-                                                 ResourceNamespace namespace,
-                                                 String name) {
-        List<DOMNode> children = root.getChildren();
-        if (children == null) {
+    /**
+     * @return the resource elements of the file, their values are parsed when they are requested
+     */
+    @NotNull
+    public List<Entry> parseEntries(@NotNull File file,
+                                    @Nullable String contents,
+                                    @NotNull ResourceNamespace namespace,
+                                    @Nullable String name) {
+        if (!"xml".equals(FilesKt.getExtension(file)) || contents == null) {
             return Collections.emptyList();
         }
 
-        List<ResourceValue> resourceValues = new ArrayList<>();
-
-        for (DOMNode child : children) {
-            ResourceType type = ResourceType.fromXmlTag(child);
+        List<Entry> entries = new ArrayList<>();
+        ValuesXmlReader reader = new ValuesXmlReader(contents);
+        Node child;
+        while ((child = reader.next()) != null) {
+            ResourceType type = getType(child);
             if (type == null) {
                 continue;
             }
-
-            ResourceValue value = parseType(type, child, namespace, name);
-
-            if (value != null) {
-                resourceValues.add(value);
-            }
+            entries.add(new Entry(reader.getHash(), type, child, namespace, name));
         }
+        return entries;
+    }
 
-        return resourceValues;
+    @Nullable
+    private static ResourceType getType(Node node) {
+        if (!node.isElement()) {
+            return null;
+        }
+        String localName = node.getLocalName();
+        if (localName == null) {
+            return null;
+        }
+        return ResourceType.fromXmlTag(node, it -> localName, Node::getAttribute);
     }
 
     private ResourceValue parseType(ResourceType resourceType,
-                                    DOMNode child,
+                                    Node child,
                                     ResourceNamespace namespace,
                                     String name) {
         switch (resourceType) {
@@ -117,7 +165,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private ResourceValue parseId(DOMNode child, ResourceNamespace namespace, String libraryName) {
+    private ResourceValue parseId(Node child, ResourceNamespace namespace, String libraryName) {
         String name = child.getAttribute("name");
         if (name == null) {
             return null;
@@ -129,7 +177,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private ResourceValue parsePublic(DOMNode child,
+    private ResourceValue parsePublic(Node child,
                                       ResourceNamespace namespace,
                                       String libraryName) {
         String type = child.getAttribute("type");
@@ -150,7 +198,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private ResourceValue parseColor(DOMNode child,
+    private ResourceValue parseColor(Node child,
                                      ResourceNamespace namespace,
                                      String libraryName) {
         String name = child.getAttribute("name");
@@ -158,7 +206,7 @@ public class ValuesXmlParser implements ResourceParser {
             return null;
         }
 
-        DOMNode firstChild = child.getFirstChild();
+        Node firstChild = child.getFirstChild();
         if (firstChild == null) {
             return null;
         }
@@ -172,7 +220,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private ResourceValue parseString(DOMNode node,
+    private ResourceValue parseString(Node node,
                                       ResourceNamespace namespace,
                                       String libraryName) {
         String name = node.getAttribute("name");
@@ -180,7 +228,7 @@ public class ValuesXmlParser implements ResourceParser {
             return null;
         }
 
-        DOMNode firstChild = node.getFirstChild();
+        Node firstChild = node.getFirstChild();
         if (firstChild == null) {
             return null;
         }
@@ -194,7 +242,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private ResourceValue parseBoolean(DOMNode node,
+    private ResourceValue parseBoolean(Node node,
                                        ResourceNamespace namespace,
                                        String libraryName) {
         String name = node.getAttribute("name");
@@ -202,7 +250,7 @@ public class ValuesXmlParser implements ResourceParser {
             return null;
         }
 
-        DOMNode firstChild = node.getFirstChild();
+        Node firstChild = node.getFirstChild();
         if (firstChild == null) {
             return null;
         }
@@ -216,7 +264,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private ResourceValue parseInteger(DOMNode node,
+    private ResourceValue parseInteger(Node node,
                                        ResourceNamespace namespace,
                                        String libraryName) {
         String name = node.getAttribute("name");
@@ -224,7 +272,7 @@ public class ValuesXmlParser implements ResourceParser {
             return null;
         }
 
-        DOMNode firstChild = node.getFirstChild();
+        Node firstChild = node.getFirstChild();
         if (firstChild == null) {
             return null;
         }
@@ -238,7 +286,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private ResourceValue parseStyle(DOMNode node,
+    private ResourceValue parseStyle(Node node,
                                      ResourceNamespace namespace,
                                      String libraryName) {
         String name = node.getAttribute("name");
@@ -250,12 +298,12 @@ public class ValuesXmlParser implements ResourceParser {
         StyleResourceValueImpl styleResource =
                 new StyleResourceValueImpl(namespace, name, parent, libraryName);
 
-        List<DOMNode> children = node.getChildren();
-        if (children == null) {
+        List<Node> children = node.getChildren();
+        if (children.isEmpty()) {
             return styleResource;
         }
 
-        for (DOMNode child : children) {
+        for (Node child : children) {
             String nodeName = child.getNodeName();
             if (!SdkConstants.TAG_ITEM.equals(nodeName)) {
                 continue;
@@ -271,7 +319,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private StyleItemResourceValue parseStyleItem(DOMNode node,
+    private StyleItemResourceValue parseStyleItem(Node node,
                                                   ResourceNamespace namespace,
                                                   String libraryName) {
         String attributeName = node.getAttribute("name");
@@ -279,7 +327,7 @@ public class ValuesXmlParser implements ResourceParser {
             return null;
         }
 
-        DOMNode firstChild = node.getFirstChild();
+        Node firstChild = node.getFirstChild();
         if (firstChild == null || !firstChild.isText()) {
             return null;
         }
@@ -289,7 +337,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private StyleableResourceValue parseStyleable(DOMNode node,
+    private StyleableResourceValue parseStyleable(Node node,
                                                   ResourceNamespace namespace,
                                                   String libraryName) {
         String name = node.getAttribute("name");
@@ -300,13 +348,13 @@ public class ValuesXmlParser implements ResourceParser {
         StyleableResourceValueImpl resourceValue =
                 new StyleableResourceValueImpl(namespace, name, null, null);
 
-        List<DOMNode> children = node.getChildren();
-        if (children == null) {
+        List<Node> children = node.getChildren();
+        if (children.isEmpty()) {
             return resourceValue;
         }
 
-        for (DOMNode child : children) {
-            ResourceType type = ResourceType.fromXmlTag(child);
+        for (Node child : children) {
+            ResourceType type = getType(child);
 
             if (ResourceType.ATTR.equals(type)) {
                 AttrResourceValue attr = parseAttrResourceValue(child, namespace, libraryName);
@@ -320,7 +368,7 @@ public class ValuesXmlParser implements ResourceParser {
     }
 
     @Nullable
-    private AttrResourceValue parseAttrResourceValue(DOMNode node,
+    private AttrResourceValue parseAttrResourceValue(Node node,
                                                      ResourceNamespace namespace,
                                                      String libraryName) {
         String name = node.getAttribute("name");
@@ -336,11 +384,12 @@ public class ValuesXmlParser implements ResourceParser {
             resourceValue.setFormats(parse);
         }
 
-        List<DOMNode> children = node.getChildren();
+        List<Node> children = node.getChildren();
         boolean hasEnum = false;
         boolean hasFlag = false;
-        if (children != null) {
-            for (DOMNode child : children) {
+        if (!children.isEmpty()) {
+            for (int i = 0; i < children.size(); i++) {
+                Node child = children.get(i);
                 String nodeName = child.getNodeName();
                 if (nodeName == null) {
                     continue;
@@ -366,10 +415,9 @@ public class ValuesXmlParser implements ResourceParser {
                 }
                 Integer integer = Ints.tryParse(value);
                 String description = null;
-                DOMNode previous = child.getPreviousSibling();
+                Node previous = i > 0 ? children.get(i - 1) : null;
                 if (previous != null && previous.isComment()) {
-                    DOMComment comment = (DOMComment) previous;
-                    description = comment.getTextContent();
+                    description = previous.getTextContent();
                 }
                 resourceValue.addValue(attributeName, integer, description);
             }
@@ -0,0 +1,384 @@
+package com.tyron.xml.completion.repository.parser;
+
+import com.google.common.hash.HashCode;
+import com.tyron.builder.compiler.manifest.SdkConstants;
+
+import org.eclipse.lemminx.dom.DOMAttr;
+import org.eclipse.lemminx.dom.parser.Scanner;
+import org.eclipse.lemminx.dom.parser.TokenType;
+import org.eclipse.lemminx.dom.parser.XMLScanner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the children of the resources tag of a values file one at a time from the tokens of
+ * the scanner of {@link org.eclipse.lemminx.dom.DOMParser}, without building the document.
+ * <p>
+ * The elements are built the way DOMParser builds them so malformed files, which are common
+ * while a file is being edited, give the same values: an element that is not closed contains
+ * the elements that follow it, an end tag closes every element up to the one it matches and
+ * an end tag that matches no element is an empty element.
+ */
+class ValuesXmlReader {
+
+    /**
+     * A node of a child of the resources tag.
+     */
+    static class Node {
+
+        private static final short ELEMENT = 1;
+        private static final short TEXT = 2;
+        private static final short CDATA = 3;
+        private static final short COMMENT = 4;
+        private static final short PROCESSING_INSTRUCTION = 5;
+
+        private final short mType;
+        private final Node mParent;
+        private List<Node> mChildren;
+        private List<String> mAttributes;
+        private String mName;
+        private String mText;
+        private boolean mClosed;
+
+        private Node(short type, Node parent) {
+            mType = type;
+            mParent = parent;
+        }
+
+        private void addChild(Node child) {
+            if (mChildren == null) {
+                mChildren = new ArrayList<>(1);
+            }
+            mChildren.add(child);
+        }
+
+        public boolean isElement() {
+            return mType == ELEMENT;
+        }
+
+        public boolean isText() {
+            return mType == TEXT;
+        }
+
+        public boolean isComment() {
+            return mType == COMMENT;
+        }
+
+        /**
+         * @return the tag name of an element, or the name DOMParser gives to other nodes
+         */
+        @Nullable
+        public String getNodeName() {
+            switch (mType) {
+                case TEXT:
+                case CDATA:
+                    return "#text";
+                case COMMENT:
+                    return "#comment";
+                default:
+                    return mName;
+            }
+        }
+
+        /**
+         * @return the tag name of an element without its prefix
+         */
+        @Nullable
+        public String getLocalName() {
+            if (mName == null) {
+                return null;
+            }
+            int colon = mName.indexOf(':');
+            return colon > 0 ? mName.substring(colon + 1) : mName;
+        }
+
+        /**
+         * @return the value of the first attribute with the name, without its quotes
+         */
+        @Nullable
+        public String getAttribute(@NotNull String name) {
+            if (mAttributes == null) {
+                return null;
+            }
+            for (int i = 0; i < mAttributes.size(); i += 2) {
+                if (name.equals(mAttributes.get(i))) {
+                    return DOMAttr.convertToQuotelessValue(mAttributes.get(i + 1));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the raw text of a text node or a comment
+         */
+        @Nullable
+        public String getTextContent() {
+            return mText;
+        }
+
+        @NotNull
+        public List<Node> getChildren() {
+            return mChildren == null ? Collections.emptyList() : mChildren;
+        }
+
+        @Nullable
+        public Node getFirstChild() {
+            return mChildren == null ? null : mChildren.get(0);
+        }
+    }
+
+    private final String mContents;
+    private final Scanner mScanner;
+
+    private Node mCurrent;
+    private int mDepth;
+    private Node mResources;
+    private boolean mResourcesHasChildren;
+
+    private Node mChild;
+    private int mChildStart;
+    private Node mFinished;
+    private HashCode mFinishedHash;
+
+    private int mEndTagOpenOffset;
+    private Node mAttributeOwner;
+    private Node mPendingWhitespace;
+    private boolean mDone;
+
+    ValuesXmlReader(@NotNull String contents) {
+        mContents = contents;
+        mScanner = XMLScanner.createScanner(contents);
+        mCurrent = new Node((short) 0, null);
+    }
+
+    /**
+     * @return the next child element of the resources tag, or null if there are no more
+     */
+    @Nullable
+    Node next() {
+        while (!mDone) {
+            TokenType token = mScanner.scan();
+            if (token == TokenType.EOS) {
+                mDone = true;
+                if (mChild != null) {
+                    finishChild(mContents.length());
+                }
+            } else {
+                handle(token);
+                if (mResources != null && mDepth == 0) {
+                    // the rest of the document is not read by the parser
+                    mDone = true;
+                }
+            }
+
+            if (mFinished != null) {
+                Node finished = mFinished;
+                mFinished = null;
+                return finished;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the hash of the source of the child last returned by {@link #next()}, children
+     * with the same hash have the same nodes
+     */
+    @NotNull
+    HashCode getHash() {
+        return mFinishedHash;
+    }
+
+    private void handle(TokenType token) {
+        if (mPendingWhitespace != null && token != TokenType.EndTagOpen) {
+            mPendingWhitespace = null;
+        }
+
+        switch (token) {
+            case StartTagOpen:
+                if (mCurrent.mClosed) {
+                    pop(mScanner.getTokenOffset());
+                }
+                push(new Node(Node.ELEMENT, mCurrent), mScanner.getTokenOffset());
+                break;
+            case StartTag:
+                mCurrent.mName = mScanner.getTokenText();
+                if (mResources == null && mDepth == 1
+                    && SdkConstants.TAG_RESOURCES.equals(mCurrent.mName)) {
+                    mResources = mCurrent;
+                }
+                break;
+            case StartTagSelfClose:
+                if (mCurrent.mParent != null) {
+                    mCurrent.mClosed = true;
+                    pop(mScanner.getTokenEnd());
+                }
+                break;
+            case EndTagClose:
+                if (mCurrent.mParent != null) {
+                    pop(mScanner.getTokenEnd());
+                }
+                break;
+            case EndTagOpen:
+                mEndTagOpenOffset = mScanner.getTokenOffset();
+                if (mPendingWhitespace != null) {
+                    append(mCurrent, mPendingWhitespace);
+                    mPendingWhitespace = null;
+                }
+                break;
+            case EndTag:
+                endTag(mScanner.getTokenText());
+                break;
+            case AttributeName:
+                mAttributeOwner = mCurrent;
+                if (mCurrent.mAttributes == null) {
+                    mCurrent.mAttributes = new ArrayList<>(4);
+                }
+                mCurrent.mAttributes.add(mScanner.getTokenText());
+                mCurrent.mAttributes.add(null);
+                break;
+            case AttributeValue:
+                if (mAttributeOwner == mCurrent && mCurrent.mAttributes != null) {
+                    mCurrent.mAttributes.set(mCurrent.mAttributes.size() - 1,
+                            mScanner.getTokenText());
+                }
+                mAttributeOwner = null;
+                break;
+            case CDATATagOpen:
+                push(new Node(Node.CDATA, mCurrent), mScanner.getTokenOffset());
+                break;
+            case CDATAContent:
+                mCurrent.mText = mScanner.getTokenText();
+                break;
+            case StartPrologOrPI:
+                push(new Node(Node.PROCESSING_INSTRUCTION, mCurrent), mScanner.getTokenOffset());
+                break;
+            case PIName:
+            case PrologName:
+                mCurrent.mName = mScanner.getTokenText();
+                break;
+            case StartCommentTag:
+                if (mCurrent.mClosed) {
+                    pop(mScanner.getTokenOffset());
+                }
+                push(new Node(Node.COMMENT, mCurrent), mScanner.getTokenOffset());
+                break;
+            case Comment:
+                mCurrent.mText = mScanner.getTokenText();
+                break;
+            case CDATATagClose:
+            case PIEnd:
+            case PrologEnd:
+            case EndCommentTag:
+                mCurrent.mClosed = true;
+                pop(mScanner.getTokenEnd());
+                break;
+            case Content: {
+                Node text = new Node(Node.TEXT, mCurrent);
+                text.mText = mScanner.getTokenText();
+                if (!isWhitespace(text.mText)) {
+                    append(mCurrent, text);
+                } else if (!hasChildren(mCurrent)) {
+                    // kept only if the element contains nothing else
+                    mPendingWhitespace = text;
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Closes the elements up to the one with the same tag, if there is none the end tag is an
+     * empty element.
+     */
+    private void endTag(String tag) {
+        Node node = mCurrent;
+        int depth = mDepth;
+        while (!(node.isElement() && tag.equals(node.mName)) && node.mParent != null) {
+            node = node.mParent;
+            depth--;
+        }
+        if (node.mParent != null) {
+            node.mClosed = true;
+            mCurrent = node;
+            mDepth = depth;
+            if (mChild != null && mDepth < 2) {
+                finishChild(mScanner.getTokenEnd());
+            }
+            return;
+        }
+
+        Node element = new Node(Node.ELEMENT, mCurrent);
+        element.mName = tag;
+        push(element, mEndTagOpenOffset);
+        if (mResources == null && mDepth == 1 && SdkConstants.TAG_RESOURCES.equals(tag)) {
+            mResources = element;
+        }
+    }
+
+    private void push(Node node, int offset) {
+        append(mCurrent, node);
+        if (node.mType == Node.ELEMENT && mCurrent == mResources && mResources != null) {
+            mChild = node;
+            mChildStart = offset;
+        }
+        mCurrent = node;
+        mDepth++;
+    }
+
+    private void pop(int offset) {
+        mCurrent = mCurrent.mParent;
+        mDepth--;
+        if (mChild != null && mDepth < 2) {
+            finishChild(offset);
+        }
+    }
+
+    private void finishChild(int end) {
+        mFinished = mChild;
+        mFinishedHash = hash(mContents, mChildStart, end);
+        mChild = null;
+    }
+
+    /**
+     * FNV-1a of the chars in the range. 64 bits are plenty to tell the elements of a file apart,
+     * and it does not copy the range like hashing it with Guava would, which cost more than
+     * scanning the file.
+     */
+    private static HashCode hash(String contents, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= contents.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return HashCode.fromLong(hash);
+    }
+
+    private void append(Node parent, Node child) {
+        if (parent == mResources) {
+            // the children are returned one at a time and are not kept
+            mResourcesHasChildren = true;
+        } else {
+            parent.addChild(child);
+        }
+    }
+
+    private boolean hasChildren(Node node) {
+        return node == mResources ? mResourcesHasChildren : node.mChildren != null;
+    }
+
+    private static boolean isWhitespace(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,26 +2,52 @@ package com.tyron.resolver;
 
 import android.text.TextUtils;
 
+import androidx.annotation.Nullable;
+
 import com.tyron.resolver.model.Dependency;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.repository.RepositoryManager;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class DependencyResolver {
 
+    /**
+     * The number of pom files retrieved at the same time when no executor is given,
+     * retrieving is mostly waiting on the network
+     */
+    private static final int DEFAULT_PARALLELISM = 8;
+
     private final RepositoryManager repository;
     private final Map<Pom, String> resolvedPoms;
 
+    @Nullable
+    private final ExecutorService executor;
+
     private ResolveListener mListener;
 
     public DependencyResolver(RepositoryManager repository) {
+        this(repository, null);
+    }
+
+    /**
+     * @param executor The executor used to retrieve pom files in parallel, if null a
+     *                 temporary one is created for every resolution.
+     */
+    public DependencyResolver(RepositoryManager repository, @Nullable ExecutorService executor) {
         this.repository = repository;
         this.resolvedPoms = new HashMap<>();
+        this.executor = executor;
     }
 
     public void setResolveListener(ResolveListener listener) {
@@ -35,24 +61,37 @@ public class DependencyResolver {
     }
 
     public List<Pom> resolveDependencies(List<Dependency> declaredDependencies) {
-        List<Pom> poms = new ArrayList<>();
-        for (Dependency dependency : declaredDependencies) {
-            if (mListener != null) {
-                mListener.onResolve("Getting POM: " + dependency);
+        ExecutorService executor = getExecutor();
+        try {
+            List<CompletableFuture<Pom>> futures = new ArrayList<>();
+            for (Dependency dependency : declaredDependencies) {
+                futures.add(getPomAsync(dependency.toString(), executor));
             }
 
-            Pom pom = repository.getPom(dependency.toString());
-            if (pom != null) {
-                pom.setExcludes(dependency.getExcludes());
-                pom.setUserDefined(true);
-                poms.add(pom);
-            } else {
+            List<Pom> poms = new ArrayList<>();
+            for (int i = 0; i < declaredDependencies.size(); i++) {
+                Dependency dependency = declaredDependencies.get(i);
                 if (mListener != null) {
-                    mListener.onFailure("Unable to retrieve POM of " + dependency);
+                    mListener.onResolve("Getting POM: " + dependency);
+                }
+
+                Pom pom = join(futures.get(i));
+                if (pom != null) {
+                    pom.setExcludes(dependency.getExcludes());
+                    pom.setUserDefined(true);
+                    poms.add(pom);
+                } else {
+                    if (mListener != null) {
+                        mListener.onFailure("Unable to retrieve POM of " + dependency);
+                    }
                 }
             }
+            return resolve(poms, executor);
+        } finally {
+            if (executor != this.executor) {
+                executor.shutdown();
+            }
         }
-        return resolve(poms);
     }
 
     /**
@@ -60,12 +99,81 @@ public class DependencyResolver {
      * the conflicting libraries
      */
     public List<Pom> resolve(List<Pom> declaredDependencies) {
+        ExecutorService executor = getExecutor();
+        try {
+            return resolve(declaredDependencies, executor);
+        } finally {
+            if (executor != this.executor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private List<Pom> resolve(List<Pom> declaredDependencies, ExecutorService executor) {
+        prefetch(declaredDependencies, executor);
+
+        // the poms are now cached by the repository, version conflicts are still
+        // resolved in declaration order so the result does not depend on the scheduling
         for (Pom pom : declaredDependencies) {
             resolve(pom);
         }
         return new ArrayList<>(resolvedPoms.keySet());
     }
 
+    /**
+     * Retrieves the pom files of the whole dependency graph level by level, all the poms of
+     * one level are retrieved in parallel. Exclusions are not applied here, an excluded pom
+     * is only retrieved and is skipped by the resolution afterwards.
+     */
+    private void prefetch(List<Pom> poms, ExecutorService executor) {
+        Set<String> visited = new HashSet<>();
+        List<Pom> level = poms;
+        while (!level.isEmpty()) {
+            List<CompletableFuture<Pom>> futures = new ArrayList<>();
+            for (Pom pom : level) {
+                for (Dependency dependency : pom.getDependencies()) {
+                    if ("test".equals(dependency.getScope())) {
+                        continue;
+                    }
+                    String declaration = dependency.toString();
+                    if (visited.add(declaration)) {
+                        futures.add(getPomAsync(declaration, executor));
+                    }
+                }
+            }
+
+            List<Pom> next = new ArrayList<>();
+            for (CompletableFuture<Pom> future : futures) {
+                Pom pom = join(future);
+                if (pom != null) {
+                    next.add(pom);
+                }
+            }
+            level = next;
+        }
+    }
+
+    private CompletableFuture<Pom> getPomAsync(String declaration, ExecutorService executor) {
+        return CompletableFuture.supplyAsync(() -> repository.getPom(declaration), executor);
+    }
+
+    @Nullable
+    private Pom join(CompletableFuture<Pom> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // failures are reported when the dependency is resolved
+            return null;
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor != null) {
+            return executor;
+        }
+        return Executors.newFixedThreadPool(DEFAULT_PARALLELISM);
+    }
+
     private void resolve(Pom pom) {
         if (resolvedPoms.containsKey(pom)) {
             if (pom.isUserDefined()) {
@@ -2,11 +2,14 @@ package com.tyron.resolver.model;
 
 import androidx.annotation.NonNull;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
-public class Dependency {
+public class Dependency implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     public static Dependency valueOf(String declaration) {
         String[] names = declaration.split(":");
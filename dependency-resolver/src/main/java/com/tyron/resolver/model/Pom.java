@@ -5,6 +5,7 @@ import androidx.annotation.Nullable;
 
 import com.google.common.collect.ImmutableList;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -12,17 +13,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
-public class Pom {
+public class Pom implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String artifactId;
     private String groupId;
     private String versionName;
     private String packaging;
 
-    private boolean userDefined;
+    // resolution state, not part of the pom metadata
+    private transient boolean userDefined;
 
     private List<Dependency> dependencies;
-    private List<Dependency> excludes;
+    private transient List<Dependency> excludes;
 
     private final Map<String, String> properties = new HashMap<>();
     private Pom parent;
@@ -0,0 +1,204 @@
+package com.tyron.resolver.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.common.logging.IdeLog;
+import com.tyron.resolver.model.Pom;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Stores parsed {@link Pom} files on the disk so that subsequent runs do not need to read
+ * and parse the xml again, along with the paths that were not found on any repository.
+ *
+ * Released pom files never change, so entries are kept until the cache directory is cleared.
+ * Snapshot versions are never stored. A path is only recorded as missing for the repository
+ * that reported it as not found, failed downloads are never recorded. Missing paths expire
+ * after {@link #ABSENT_EXPIRY_MILLIS} since the file may be published later.
+ */
+class PomMetadataStore {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(PomMetadataStore.class);
+
+    private static final String METADATA_SUFFIX = ".metadata";
+    private static final String ABSENT_FILE_NAME = "absent.txt";
+    private static final long ABSENT_EXPIRY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final File directory;
+    private final File absentFile;
+    private final Map<String, Long> absentPaths = new ConcurrentHashMap<>();
+
+    PomMetadataStore(@NonNull File directory) {
+        this.directory = directory;
+        this.absentFile = new File(directory, ABSENT_FILE_NAME);
+        loadAbsentPaths();
+    }
+
+    /**
+     * @param path The path of the pom file relative to the repository root
+     * @return the stored pom, or null if it has not been stored or can no longer be read
+     */
+    @Nullable
+    Pom read(@NonNull String path) {
+        File file = getMetadataFile(path);
+        if (!file.exists()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            return (Pom) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // the model has changed since this was written, parse it again
+            FileUtils.deleteQuietly(file);
+            return null;
+        }
+    }
+
+    void write(@NonNull String path, @NonNull Pom pom) {
+        String versionName = pom.getVersionName();
+        if (versionName == null || versionName.endsWith("-SNAPSHOT")) {
+            return;
+        }
+
+        File file = getMetadataFile(path);
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            FileUtils.forceMkdirParent(file);
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeObject(pom);
+            }
+            if (!temp.renameTo(file)) {
+                FileUtils.deleteQuietly(temp);
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(temp);
+            sLogger.warning("Unable to store metadata of " + pom + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param repository The name of the repository, see {@link #getRepositoryKey(Repository)}
+     * @param path The path of the pom file relative to the repository root
+     * @return whether the repository has recently reported that the path does not exist
+     */
+    boolean isKnownAbsent(@NonNull String repository, @NonNull String path) {
+        String key = getAbsentKey(repository, path);
+        Long time = absentPaths.get(key);
+        if (time == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - time > ABSENT_EXPIRY_MILLIS) {
+            absentPaths.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that the repository reported that the path does not exist. Must not be called
+     * when the file could not be retrieved for any other reason.
+     */
+    void markAbsent(@NonNull String repository, @NonNull String path) {
+        long time = System.currentTimeMillis();
+        absentPaths.put(getAbsentKey(repository, path), time);
+        synchronized (absentFile) {
+            try {
+                FileUtils.forceMkdirParent(absentFile);
+                try (Writer writer = new OutputStreamWriter(
+                        new FileOutputStream(absentFile, true), StandardCharsets.UTF_8)) {
+                    writer.write(time + "\t" + repository + "\t" + path + "\n");
+                }
+            } catch (IOException e) {
+                sLogger.warning("Unable to record missing file " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the name under which missing paths of the repository are recorded
+     */
+    @NonNull
+    static String getRepositoryKey(@NonNull Repository repository) {
+        String name = repository.getName();
+        if (name == null) {
+            return repository.getClass().getName();
+        }
+        return name;
+    }
+
+    private static String getAbsentKey(String repository, String path) {
+        return repository + '\t' + path;
+    }
+
+    private void loadAbsentPaths() {
+        if (!absentFile.exists()) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = FileUtils.readLines(absentFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(absentFile);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        StringBuilder retained = new StringBuilder();
+        boolean expired = false;
+        for (String line : lines) {
+            // entries written before missing paths were recorded per repository have no
+            // repository name, they are dropped
+            String[] parts = line.split("\t", 3);
+            if (parts.length != 3) {
+                expired = true;
+                continue;
+            }
+            long time;
+            try {
+                time = Long.parseLong(parts[0]);
+            } catch (NumberFormatException e) {
+                expired = true;
+                continue;
+            }
+            if (now - time > ABSENT_EXPIRY_MILLIS) {
+                expired = true;
+                continue;
+            }
+            absentPaths.put(getAbsentKey(parts[1], parts[2]), time);
+            retained.append(line).append('\n');
+        }
+
+        // drop the expired entries so the file does not grow forever
+        if (expired) {
+            try {
+                FileUtils.writeStringToFile(absentFile, retained.toString(),
+                        StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                // ignored, the expired entries are skipped when read anyway
+            }
+        }
+    }
+
+    private File getMetadataFile(String path) {
+        return new File(directory, path + METADATA_SUFFIX);
+    }
+}
@@ -6,9 +6,12 @@ import androidx.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 
 public class RemoteRepository extends DefaultRepository {
 
@@ -68,18 +71,32 @@ public class RemoteRepository extends DefaultRepository {
         return mLocalRepository.getCachedFile(path);
     }
 
+    /**
+     * @return the downloaded file, or null if the repository reported that it does not exist
+     * @throws IOException if the file could not be downloaded for any other reason, such as a
+     * network failure or a server error. These are not a proof that the file is missing.
+     */
     private File getFileInternal(String path) throws IOException {
         String downloadUrl = mUrl + path;
         URL url = new URL(downloadUrl);
-        try {
-            InputStream inputStream = url.openStream();
-            if (inputStream != null) {
-                // save the file to cache, and then return the one from there
-                return mLocalRepository.save(path, inputStream);
+        URLConnection connection = url.openConnection();
+        if (connection instanceof HttpURLConnection) {
+            int responseCode = ((HttpURLConnection) connection).getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND
+                || responseCode == HttpURLConnection.HTTP_GONE) {
+                return null;
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response " + responseCode + " for " +
+                                      downloadUrl);
             }
-        } catch (IOException e) {
-            // ignored, return null
         }
-        return null;
+        try (InputStream inputStream = connection.getInputStream()) {
+            // save the file to cache, and then return the one from there
+            return mLocalRepository.save(path, inputStream);
+        } catch (FileNotFoundException e) {
+            // not an http url, the file does not exist
+            return null;
+        }
     }
 }
@@ -12,8 +12,9 @@ public interface Repository {
     /**
      * Retrieve an {@link InputStream} from this repository
      * @param path The path of the file relative to the url
-     * @return the input stream for the file
-     * @throws IOException if there is an error while retrieving the file
+     * @return the input stream for the file, or null if the repository does not have the file
+     * @throws IOException if there is an error while retrieving the file, the file may still
+     * exist on the repository
      */
     @Nullable
     InputStream getInputStream(String path) throws IOException;
@@ -9,9 +9,6 @@ import com.tyron.common.util.FileUtilsEx;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.parser.PomParser;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.SuffixFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.xml.sax.SAXException;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -22,8 +19,10 @@ import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarFile;
 import java.util.logging.Logger;
 import java.util.zip.ZipFile;
@@ -36,13 +35,29 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
     private File cacheDir;
     private final List<Repository> repositories;
-    private final List<Pom> pomFiles;
+
+    /**
+     * Parsed pom files keyed by their {@code groupId:artifactId:version} declaration
+     */
+    private final Map<String, Pom> pomFiles;
+
+    /**
+     * Pom files currently being retrieved, so concurrent requests for the same declaration
+     * wait for a single download instead of fetching it again
+     */
+    private final Map<String, CompletableFuture<Pom>> pendingPomFiles;
+
+    private PomMetadataStore metadataStore;
 
     public RepositoryManagerImpl() {
         this.repositories = new ArrayList<>();
-        this.pomFiles = new ArrayList<>();
+        this.pomFiles = new ConcurrentHashMap<>();
+        this.pendingPomFiles = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Safe to call from multiple threads, a pom is only retrieved and parsed once.
+     */
     @Override
     @Nullable
     public Pom getPom(String declaration) {
@@ -50,55 +65,88 @@ public class RepositoryManagerImpl implements RepositoryManager {
         if (pomNames == null) {
             return null;
         }
-        for (Pom pom : pomFiles) {
-            if (!pomNames[0].equals(pom.getGroupId())) {
-                continue;
-            }
-            if (!pomNames[1].equals(pom.getArtifactId())) {
-                continue;
-            }
-            if (!pomNames[2].equals(pom.getVersionName())) {
-                continue;
+        String key = pomNames[0] + ":" + pomNames[1] + ":" + pomNames[2];
+        Pom pom = pomFiles.get(key);
+        if (pom != null) {
+            return pom;
+        }
+
+        CompletableFuture<Pom> future = new CompletableFuture<>();
+        CompletableFuture<Pom> pending = pendingPomFiles.putIfAbsent(key, future);
+        if (pending != null) {
+            return pending.join();
+        }
+        try {
+            pom = pomFiles.get(key);
+            if (pom == null) {
+                pom = getPomFromUrls(pomNames);
+                if (pom != null) {
+                    pomFiles.put(key, pom);
+                }
             }
+            future.complete(pom);
             return pom;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingPomFiles.remove(key, future);
         }
-        return getPomFromUrls(pomNames);
     }
 
     private Pom getPomFromUrls(String[] names) {
-        InputStream is = getFromUrls(getPathFromDeclaration(names) + ".pom");
-        if (is != null) {
-            String contents;
-            try {
-                contents = CharStreams.toString(new InputStreamReader(is));
-                Pom parsed = new PomParser(this).parse(contents);
-                parsed.setGroupId(names[0]);
-                parsed.setArtifactId(names[1]);
-                parsed.setVersionName(names[2]);
-                pomFiles.add(parsed);
-                return parsed;
-            } catch (IOException | XmlPullParserException | SAXException e) {
-                String message = "Failed to parse input stream.\n" +
-                                 "Declaration: " + Arrays.toString(names) + "\n" +
-                                 "Reason: " + e.getMessage();
-                sLogger.severe(message);
+        String path = getPathFromDeclaration(names) + ".pom";
+        if (metadataStore != null) {
+            Pom stored = metadataStore.read(path);
+            if (stored != null) {
+                return stored;
             }
         }
+
+        try (InputStream is = getFromUrls(path)) {
+            if (is == null) {
+                return null;
+            }
+            String contents = CharStreams.toString(new InputStreamReader(is));
+            Pom parsed = new PomParser(this).parse(contents);
+            parsed.setGroupId(names[0]);
+            parsed.setArtifactId(names[1]);
+            parsed.setVersionName(names[2]);
+            if (metadataStore != null) {
+                metadataStore.write(path, parsed);
+            }
+            return parsed;
+        } catch (IOException | XmlPullParserException | SAXException e) {
+            String message = "Failed to parse input stream.\n" +
+                             "Declaration: " + Arrays.toString(names) + "\n" +
+                             "Reason: " + e.getMessage();
+            sLogger.severe(message);
+        }
         return null;
     }
 
+    /**
+     * Repositories that recently reported the path as not found are skipped. A repository
+     * that fails to respond is not recorded, it is asked again on the next request.
+     */
     private InputStream getFromUrls(String appendUrl) {
         for (int i = 0; i < repositories.size(); i++) {
             Repository repository = repositories.get(i);
+            String repositoryKey = PomMetadataStore.getRepositoryKey(repository);
+            if (metadataStore != null && metadataStore.isKnownAbsent(repositoryKey, appendUrl)) {
+                continue;
+            }
             try {
                 InputStream is = repository.getInputStream(appendUrl);
                 if (is != null) {
                     return is;
                 }
-            } catch (IOException e) {
-                if (i == repositories.size() - 1) {
-                    sLogger.warning("Dependency " + appendUrl + " is not found.");
+                if (metadataStore != null) {
+                    metadataStore.markAbsent(repositoryKey, appendUrl);
                 }
+            } catch (IOException e) {
+                sLogger.warning("Unable to retrieve " + appendUrl + " from " + repositoryKey +
+                                ": " + e.getMessage());
             }
         }
         return null;
@@ -149,12 +197,21 @@ public class RepositoryManagerImpl implements RepositoryManager {
         }
 
         // cannot find file from disk, try from network
+        IOException failure = null;
         for (Repository repository : repositories) {
-            File file = repository.getFile(sb.toString());
-            if (file != null && file.exists()) {
-                return file;
+            try {
+                File file = repository.getFile(sb.toString());
+                if (file != null && file.exists()) {
+                    return file;
+                }
+            } catch (IOException e) {
+                // try the other repositories before reporting the failure
+                failure = e;
             }
         }
+        if (failure != null) {
+            throw failure;
+        }
         return null;
     }
 
@@ -205,28 +262,9 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
         for (Repository repository : repositories) {
             repository.setCacheDirectory(cacheDir);
-
-            File rootDirectory = repository.getRootDirectory();
-            if (rootDirectory == null || !rootDirectory.exists()) {
-                continue;
-            }
-            Iterator<File> pomFiles = FileUtils.iterateFiles(rootDirectory,
-                    new SuffixFileFilter(".pom"), TrueFileFilter.INSTANCE);
-
-            // save pom files for later
-            while (pomFiles.hasNext()) {
-                File pom = pomFiles.next();
-                PomParser parser = new PomParser(this);
-                try {
-                    Pom parsed = parser.parse(pom);
-                    this.pomFiles.add(parsed);
-                } catch (XmlPullParserException | IOException | SAXException e) {
-                    // ignored
-                    // TODO: should the file be deleted if its corrupt?
-                    sLogger.severe("Unable to parse file " + pom + "\n" +
-                                   "Reason: " + e.getMessage());
-                }
-            }
         }
+
+        // pom files are parsed lazily, previously parsed ones are read from the metadata store
+        metadataStore = new PomMetadataStore(getPomCacheDirectory());
     }
 }
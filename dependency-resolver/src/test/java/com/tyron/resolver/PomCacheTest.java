@@ -0,0 +1,312 @@
+package com.tyron.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.resolver.model.Dependency;
+import com.tyron.resolver.model.Pom;
+import com.tyron.resolver.parser.PomParser;
+import com.tyron.resolver.repository.DefaultRepository;
+import com.tyron.resolver.repository.Repository;
+import com.tyron.resolver.repository.RepositoryManager;
+import com.tyron.resolver.repository.RepositoryManagerImpl;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PomCacheTest {
+
+    private static final int LIBRARY_COUNT = 300;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File repositoryDir;
+
+    @Before
+    public void setUp() throws IOException {
+        repositoryDir = temporaryFolder.newFolder("repository");
+
+        // a binary tree of libraries, two of them depend on different versions of the same
+        // library and one depends on a library that does not exist
+        for (int i = 0; i < LIBRARY_COUNT; i++) {
+            StringBuilder dependencies = new StringBuilder();
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < LIBRARY_COUNT; child++) {
+                dependencies.append(dependency("lib" + child, "1.0"));
+            }
+            if (i == 0) {
+                dependencies.append(dependency("shared", "1.0"));
+            } else if (i == 5) {
+                dependencies.append(dependency("shared", "2.0"));
+            } else if (i == 3) {
+                dependencies.append(dependency("missing", "1.0"));
+            }
+            writePom("lib" + i, "1.0", dependencies.toString());
+        }
+        writePom("shared", "1.0", "");
+        writePom("shared", "2.0", "");
+    }
+
+    @Test
+    public void testParallelResolutionMatchesSequential() throws IOException {
+        SequentialDependencyResolver sequentialResolver =
+                new SequentialDependencyResolver(new ParsingRepositoryManager());
+        Map<String, String> sequential = getVersions(sequentialResolver.resolveDependencies(
+                Collections.singletonList(Dependency.valueOf("com.example:lib0:1.0"))));
+        Map<String, String> parallel = resolve(temporaryFolder.newFolder("parallel"),
+                new CountingRepository(), Executors.newFixedThreadPool(8));
+
+        assertEquals(LIBRARY_COUNT + 1, sequential.size());
+        assertEquals("2.0", sequential.get("com.example:shared"));
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testWarmResolutionDoesNotReadRepository() throws IOException {
+        File cacheDir = temporaryFolder.newFolder("cache");
+
+        CountingRepository cold = new CountingRepository();
+        Map<String, String> first = resolve(cacheDir, cold, Executors.newFixedThreadPool(8));
+        // every pom is requested once, including the missing one
+        assertEquals(LIBRARY_COUNT + 3, cold.requests.get());
+
+        CountingRepository warm = new CountingRepository();
+        Map<String, String> second = resolve(cacheDir, warm, Executors.newFixedThreadPool(8));
+        assertEquals(0, warm.requests.get());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testMissingPomIsNotRequestedAgain() throws IOException {
+        CountingRepository counting = new CountingRepository();
+        RepositoryManagerImpl repository =
+                createRepository(temporaryFolder.newFolder("cache"), counting);
+
+        assertNull(repository.getPom("com.example:missing:1.0"));
+        assertNull(repository.getPom("com.example:missing:1.0"));
+        assertEquals(1, counting.requests.get());
+
+        assertNotNull(repository.getPom("com.example:lib0:1.0"));
+        assertNotNull(repository.getPom("com.example:lib0:1.0"));
+        assertEquals(2, counting.requests.get());
+    }
+
+    @Test
+    public void testFailedRequestIsNotRecordedAsMissing() throws IOException {
+        File cacheDir = temporaryFolder.newFolder("cache");
+        FailingRepository failing = new FailingRepository();
+        RepositoryManagerImpl repository = createRepository(cacheDir, failing);
+        assertNull(repository.getPom("com.example:lib0:1.0"));
+
+        // asked again on the next request, and by the next run
+        failing.failing = false;
+        assertNotNull(repository.getPom("com.example:lib0:1.0"));
+        assertEquals(2, failing.requests.get());
+
+        failing.failing = true;
+        assertNull(createRepository(cacheDir, failing).getPom("com.example:lib1:1.0"));
+        failing.failing = false;
+        assertNotNull(createRepository(cacheDir, failing).getPom("com.example:lib1:1.0"));
+        assertEquals(4, failing.requests.get());
+    }
+
+    @Test
+    public void testMissingPomIsRecordedPerRepository() throws IOException {
+        File cacheDir = temporaryFolder.newFolder("cache");
+        File emptyDir = temporaryFolder.newFolder("empty");
+        CountingRepository empty = new CountingRepository("empty", emptyDir);
+        assertNull(createRepository(cacheDir, empty).getPom("com.example:lib0:1.0"));
+        assertEquals(1, empty.requests.get());
+
+        // another repository that has the pom is still asked, the missing one is not
+        CountingRepository counting = new CountingRepository();
+        RepositoryManagerImpl repository = createRepository(cacheDir, empty);
+        repository.addRepository(counting);
+        repository.initialize();
+        assertNotNull(repository.getPom("com.example:lib0:1.0"));
+        assertEquals(1, empty.requests.get());
+        assertEquals(1, counting.requests.get());
+    }
+
+    private Map<String, String> resolve(File cacheDir, CountingRepository counting,
+                                        ExecutorService executor) {
+        try {
+            RepositoryManagerImpl repository = createRepository(cacheDir, counting);
+            DependencyResolver resolver = new DependencyResolver(repository, executor);
+            return getVersions(resolver.resolveDependencies(
+                    Collections.singletonList(Dependency.valueOf("com.example:lib0:1.0"))));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Map<String, String> getVersions(List<Pom> poms) {
+        Map<String, String> versions = new HashMap<>();
+        for (Pom pom : poms) {
+            versions.put(pom.getGroupId() + ":" + pom.getArtifactId(), pom.getVersionName());
+        }
+        return versions;
+    }
+
+    private RepositoryManagerImpl createRepository(File cacheDir, CountingRepository counting) {
+        RepositoryManagerImpl repository = new RepositoryManagerImpl();
+        repository.addRepository(counting);
+        repository.setCacheDirectory(cacheDir);
+        repository.initialize();
+        return repository;
+    }
+
+    private void writePom(String artifactId, String version, String dependencies)
+            throws IOException {
+        String pom = "<project>\n" +
+                     "  <groupId>com.example</groupId>\n" +
+                     "  <artifactId>" + artifactId + "</artifactId>\n" +
+                     "  <version>" + version + "</version>\n" +
+                     "  <dependencies>\n" + dependencies + "  </dependencies>\n" +
+                     "</project>\n";
+        String path = "com/example/" + artifactId + "/" + version + "/" +
+                      artifactId + "-" + version + ".pom";
+        FileUtils.writeStringToFile(new File(repositoryDir, path), pom,
+                StandardCharsets.UTF_8);
+    }
+
+    private static String dependency(String artifactId, String version) {
+        return "    <dependency>\n" +
+               "      <groupId>com.example</groupId>\n" +
+               "      <artifactId>" + artifactId + "</artifactId>\n" +
+               "      <version>" + version + "</version>\n" +
+               "    </dependency>\n";
+    }
+
+    private class CountingRepository extends DefaultRepository {
+
+        private final String name;
+        private final File directory;
+        final AtomicInteger requests = new AtomicInteger();
+
+        CountingRepository() {
+            this(null, repositoryDir);
+        }
+
+        CountingRepository(String name, File directory) {
+            this.name = name;
+            this.directory = directory;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Nullable
+        @Override
+        public InputStream getInputStream(String path) throws IOException {
+            requests.incrementAndGet();
+            File file = new File(directory, path);
+            if (!file.exists()) {
+                return null;
+            }
+            return new FileInputStream(file);
+        }
+    }
+
+    /**
+     * A repository that cannot be reached while {@link #failing} is set
+     */
+    private class FailingRepository extends CountingRepository {
+
+        private volatile boolean failing = true;
+
+        @Nullable
+        @Override
+        public InputStream getInputStream(String path) throws IOException {
+            if (failing) {
+                requests.incrementAndGet();
+                throw new IOException("Connection reset");
+            }
+            return super.getInputStream(path);
+        }
+    }
+
+    /**
+     * Parses the poms of the test repository directly, the way the repository manager did
+     * before poms were cached and retrieved in parallel.
+     */
+    private class ParsingRepositoryManager implements RepositoryManager {
+
+        private final Map<String, Pom> poms = new HashMap<>();
+
+        @Nullable
+        @Override
+        public Pom getPom(String declaration) {
+            if (poms.containsKey(declaration)) {
+                return poms.get(declaration);
+            }
+            String[] names = declaration.split(":");
+            File file = new File(repositoryDir, names[0].replace('.', '/') + "/" + names[1] +
+                                                "/" + names[2] + "/" + names[1] + "-" +
+                                                names[2] + ".pom");
+            Pom pom = null;
+            if (file.exists()) {
+                try {
+                    pom = new PomParser(this).parse(file);
+                } catch (IOException | XmlPullParserException | SAXException e) {
+                    throw new AssertionError(e);
+                }
+                pom.setGroupId(names[0]);
+                pom.setArtifactId(names[1]);
+                pom.setVersionName(names[2]);
+            }
+            poms.put(declaration, pom);
+            return pom;
+        }
+
+        @Nullable
+        @Override
+        public File getLibrary(Pom pom) {
+            return null;
+        }
+
+        @Override
+        public void setCacheDirectory(File directory) {
+
+        }
+
+        @Override
+        public void addRepository(@NonNull String name, @NonNull String url) {
+
+        }
+
+        @Override
+        public void addRepository(@NonNull Repository repository) {
+
+        }
+
+        @Override
+        public void initialize() {
+
+        }
+    }
+}
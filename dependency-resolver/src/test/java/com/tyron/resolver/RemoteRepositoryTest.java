@@ -1,17 +1,32 @@
 package com.tyron.resolver;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpServer;
 import com.tyron.common.TestUtil;
 import com.tyron.resolver.repository.FileType;
 import com.tyron.resolver.repository.RemoteRepository;
 
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 
 public class RemoteRepositoryTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void test() throws IOException {
         File cacheDir = new File(TestUtil.getResourcesDirectory(), "cache");
@@ -27,4 +42,43 @@ public class RemoteRepositoryTest {
                 "/material/1.4.0/material-1.4.0.pom");
         assert inputStream != null;
     }
+
+    @Test
+    public void testMissingFileAndFailedRequest() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            int code = path.endsWith("found.pom") ? 200 : path.endsWith("missing.pom") ? 404 : 500;
+            byte[] body = ("<project>" + path + "</project>").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(code, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            RemoteRepository repository = new RemoteRepository("test",
+                    "http://localhost:" + server.getAddress().getPort());
+            repository.setCacheDirectory(temporaryFolder.newFolder("cache"));
+
+            try (InputStream inputStream = repository.getInputStream("a/found.pom")) {
+                assertNotNull(inputStream);
+                assertEquals("<project>/a/found.pom</project>",
+                        IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+            }
+
+            // only a not found response means that the file does not exist
+            assertNull(repository.getInputStream("a/missing.pom"));
+            try {
+                repository.getInputStream("a/error.pom");
+                fail("A server error must not be reported as a missing file");
+            } catch (IOException expected) {
+                // expected
+            }
+            assertNull(repository.getCachedFile("a/missing.pom"));
+            assertNull(repository.getCachedFile("a/error.pom"));
+        } finally {
+            server.stop(0);
+        }
+    }
 }
@@ -0,0 +1,48 @@
+package com.tyron.eclipse.formatter;
+
+/**
+ * A single replacement produced by the formatter, offsets are relative to the source
+ * that was formatted.
+ */
+public class FormatEdit {
+
+    private final int offset;
+    private final int length;
+    private final String text;
+
+    public FormatEdit(int offset, int length, String text) {
+        this.offset = offset;
+        this.length = length;
+        this.text = text;
+    }
+
+    /**
+     * @return the start index of the replaced range
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the length of the replaced range
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the text that replaces the range
+     */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "FormatEdit{" +
+               "offset=" + offset +
+               ", length=" + length +
+               ", text='" + text + '\'' +
+               '}';
+    }
+}
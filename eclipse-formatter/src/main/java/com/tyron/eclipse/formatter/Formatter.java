@@ -1,23 +1,43 @@
 package com.tyron.eclipse.formatter;
 
-import org.eclipse.jdt.core.dom.AST;
-import org.eclipse.jdt.core.dom.ASTParser;
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.ImportDeclaration;
-import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
-import org.eclipse.jdt.core.dom.rewrite.ListRewrite;
 import org.eclipse.jdt.internal.formatter.DefaultCodeFormatter;
 import org.eclipse.jdt.internal.formatter.DefaultCodeFormatterOptions;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * Formats java source files using the eclipse formatter.
  */
 public class Formatter {
 
+    private static final Map<String, String> DEFAULT_OPTIONS =
+            Collections.unmodifiableMap(DefaultCodeFormatterOptions.getEclipseDefaultSettings().getMap());
+
+    /**
+     * Creating a {@link DefaultCodeFormatter} is expensive, so one is kept for each option set.
+     * The formatter is not thread safe, so each thread has its own instances.
+     */
+    private static final ThreadLocal<Map<Map<String, String>, DefaultCodeFormatter>> FORMATTERS =
+            ThreadLocal.withInitial(HashMap::new);
+
     /**
      * Formats the given source using the default java convention options
      * Returns the original string if the source cannot be formatted.
@@ -43,9 +63,7 @@ public class Formatter {
      * @return Formatted java source
      */
     public static String format(String source, int indentLevel, int start, int length) {
-        DefaultCodeFormatterOptions options =
-                DefaultCodeFormatterOptions.getEclipseDefaultSettings();
-        return format(source, indentLevel, start, length, options);
+        return format(source, indentLevel, start, length, DEFAULT_OPTIONS);
     }
 
     /**
@@ -63,9 +81,19 @@ public class Formatter {
                                 int start,
                                 int length,
                                 DefaultCodeFormatterOptions options) {
-        DefaultCodeFormatter formatter = new DefaultCodeFormatter(options);
-        TextEdit format = formatter
+        return format(source, indentLevel, start, length, options.getMap());
+    }
+
+    private static String format(String source,
+                                 int indentLevel,
+                                 int start,
+                                 int length,
+                                 Map<String, String> options) {
+        TextEdit format = getFormatter(options)
                 .format(DefaultCodeFormatter.K_COMPILATION_UNIT, source, start, length, indentLevel, "\n");
+        if (format == null) {
+            return source;
+        }
 
         IDocument document = new Document(source);
         try {
@@ -75,4 +103,160 @@ public class Formatter {
         }
         return document.get();
     }
-}
\ No newline at end of file
+
+    /**
+     * Formats the given source at the given range with the default eclipse java convention
+     * settings, returning only the replacements that actually change the source.
+     *
+     * @param source The java source contents
+     * @param start the start index
+     * @param length the length of the source to format
+     * @return The edits sorted by offset, empty if the source is already formatted or
+     * cannot be formatted
+     */
+    public static List<FormatEdit> formatEdits(String source, int start, int length) {
+        return formatEdits(source, 0, start, length, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * @see #formatEdits(String, int, int)
+     */
+    public static List<FormatEdit> formatEdits(String source,
+                                               int indentLevel,
+                                               int start,
+                                               int length,
+                                               DefaultCodeFormatterOptions options) {
+        return formatEdits(source, indentLevel, start, length, options.getMap());
+    }
+
+    private static List<FormatEdit> formatEdits(String source,
+                                                int indentLevel,
+                                                int start,
+                                                int length,
+                                                Map<String, String> options) {
+        TextEdit format = getFormatter(options)
+                .format(DefaultCodeFormatter.K_COMPILATION_UNIT, source, start, length, indentLevel, "\n");
+        if (format == null) {
+            return Collections.emptyList();
+        }
+        List<FormatEdit> edits = new ArrayList<>();
+        collectEdits(source, format, edits);
+        return edits;
+    }
+
+    private static void collectEdits(String source, TextEdit edit, List<FormatEdit> edits) {
+        if (edit instanceof ReplaceEdit) {
+            ReplaceEdit replace = (ReplaceEdit) edit;
+            int offset = replace.getOffset();
+            int length = replace.getLength();
+            String text = replace.getText();
+            // the formatter also reports the whitespace it leaves untouched
+            if (!source.regionMatches(offset, text, 0, text.length()) || length != text.length()) {
+                edits.add(new FormatEdit(offset, length, text));
+            }
+        } else if (edit instanceof MultiTextEdit || edit.hasChildren()) {
+            for (TextEdit child : edit.getChildren()) {
+                collectEdits(source, child, edits);
+            }
+        }
+    }
+
+    /**
+     * Formats the given files in parallel with the default eclipse java convention settings.
+     * A file is only written if its formatted contents differ.
+     *
+     * @param files the java files to format
+     * @param threads the maximum number of files formatted at the same time
+     * @return the result for each file, in the same order as the given files
+     */
+    public static List<FileResult> formatFiles(List<File> files, int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<FileResult>> futures = new ArrayList<>(files.size());
+            for (File file : files) {
+                futures.add(executor.submit(() -> formatFile(file)));
+            }
+            List<FileResult> results = new ArrayList<>(files.size());
+            for (Future<FileResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // formatFile reports its own failures
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static FileResult formatFile(File file) {
+        long start = System.currentTimeMillis();
+        try {
+            String source = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            String formatted = format(source, 0, 0, source.length(), DEFAULT_OPTIONS);
+            boolean changed = !source.equals(formatted);
+            if (changed) {
+                Files.write(file.toPath(), formatted.getBytes(StandardCharsets.UTF_8));
+            }
+            return new FileResult(file, changed, System.currentTimeMillis() - start, null);
+        } catch (IOException | RuntimeException e) {
+            return new FileResult(file, false, System.currentTimeMillis() - start, e);
+        }
+    }
+
+    private static DefaultCodeFormatter getFormatter(Map<String, String> options) {
+        Map<Map<String, String>, DefaultCodeFormatter> formatters = FORMATTERS.get();
+        DefaultCodeFormatter formatter = formatters.get(options);
+        if (formatter == null) {
+            // copy the options so later changes to the caller's map cannot alter the key
+            Map<String, String> key = new HashMap<>(options);
+            formatter = new DefaultCodeFormatter(new DefaultCodeFormatterOptions(key));
+            formatters.put(key, formatter);
+        }
+        return formatter;
+    }
+
+    /**
+     * The outcome of formatting a single file with {@link #formatFiles(List, int)}
+     */
+    public static class FileResult {
+        private final File file;
+        private final boolean changed;
+        private final long durationMillis;
+        private final Exception error;
+
+        FileResult(File file, boolean changed, long durationMillis, Exception error) {
+            this.file = file;
+            this.changed = changed;
+            this.durationMillis = durationMillis;
+            this.error = error;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return whether the file was rewritten
+         */
+        public boolean isChanged() {
+            return changed;
+        }
+
+        /**
+         * @return the time spent reading, formatting and writing the file
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return the exception that prevented the file from being formatted, if any
+         */
+        public Exception getError() {
+            return error;
+        }
+    }
+}
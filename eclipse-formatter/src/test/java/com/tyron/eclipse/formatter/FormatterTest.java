@@ -1,14 +1,121 @@
 package com.tyron.eclipse.formatter;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class FormatterTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testFormatInvalidCode() {
         String source = "pub static void main() { }";
         String formatted = Formatter.format(source, 0, source.length());
         System.out.println(formatted);
     }
+
+    @Test
+    public void testFormatEditsMatchFormattedSource() {
+        String source = "public class Test {\n" +
+                        "    public void a() {\n" +
+                        "        int  a =1;\n" +
+                        "    }\n" +
+                        "}\n";
+        String formatted = Formatter.format(source, 0, source.length());
+
+        List<FormatEdit> edits = Formatter.formatEdits(source, 0, source.length());
+        StringBuilder applied = new StringBuilder(source);
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            FormatEdit edit = edits.get(i);
+            applied.replace(edit.getOffset(), edit.getOffset() + edit.getLength(), edit.getText());
+        }
+        assertEquals(formatted, applied.toString());
+        // only the badly formatted statement needs edits
+        for (FormatEdit edit : edits) {
+            assertTrue(edit.getOffset() > source.indexOf("int"));
+        }
+    }
+
+    @Test
+    public void testFormattedSourceHasNoEdits() {
+        String source = "public class Test {\n}\n";
+        String formatted = Formatter.format(source, 0, source.length());
+        assertTrue(Formatter.formatEdits(formatted, 0, formatted.length()).isEmpty());
+    }
+
+    @Test
+    public void testFormatFilesMatchesSequentialFormat() throws IOException, InterruptedException {
+        List<File> files = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String source = createSource(i);
+            File file = temporaryFolder.newFile("Test" + i + ".java");
+            Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+            expected.add(Formatter.format(source, 0, source.length()));
+        }
+        // already formatted, must not be rewritten
+        File formattedFile = temporaryFolder.newFile("Formatted.java");
+        Files.write(formattedFile.toPath(), expected.get(0).getBytes(StandardCharsets.UTF_8));
+        files.add(formattedFile);
+        expected.add(expected.get(0));
+
+        List<Formatter.FileResult> results = Formatter.formatFiles(files, 4);
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < files.size(); i++) {
+            Formatter.FileResult result = results.get(i);
+            assertEquals(files.get(i), result.getFile());
+            assertNull(result.getError());
+            String actual = new String(Files.readAllBytes(files.get(i).toPath()),
+                    StandardCharsets.UTF_8);
+            assertEquals(files.get(i).getName(), expected.get(i), actual);
+        }
+        assertFalse(results.get(files.size() - 1).isChanged());
+        assertTrue(results.get(0).isChanged());
+
+        // formatting the output again changes nothing
+        for (Formatter.FileResult result : Formatter.formatFiles(files, 4)) {
+            assertFalse(result.getFile().getName(), result.isChanged());
+        }
+    }
+
+    @Test
+    public void testFormatFilesReportsMissingFile() throws InterruptedException {
+        File missing = new File(temporaryFolder.getRoot(), "Missing.java");
+        List<Formatter.FileResult> results =
+                Formatter.formatFiles(Collections.singletonList(missing), 2);
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).isChanged());
+        assertTrue(results.get(0).getError() instanceof IOException);
+    }
+
+    private static String createSource(int index) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("package test;\n")
+                .append("public class Test").append(index).append(" {\n");
+        for (int i = 0; i <= index % 5; i++) {
+            builder.append("public int method").append(i).append("(int a,int b){\n")
+                    .append("if(a>b){return a-b;}\n")
+                    .append("   for (int j=0;j<a;j++)   b+=j;\n")
+                    .append("return  a+b;}\n");
+        }
+        builder.append("}\n");
+        return builder.toString();
+    }
 }
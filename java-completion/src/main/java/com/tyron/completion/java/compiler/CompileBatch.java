@@ -52,8 +52,22 @@ public class CompileBatch implements AutoCloseable {
     public final List<CompilationUnitTree> roots;
 
     public CompileBatch(JavaCompilerService parent, Collection<? extends JavaFileObject> files) {
+        this(parent, batchTask(parent, files));
+    }
+
+    /**
+     * Compiles the files with a compiler other than the one of the parent, so the cached
+     * compilation of the parent is kept. The diagnostics are not reported to the parent.
+     */
+    CompileBatch(JavaCompilerService parent, ReusableCompiler compiler,
+                 Collection<? extends JavaFileObject> files) {
+        this(parent, compiler.getTask(parent.mSourceFileManager, diagnostic -> {},
+                options(parent.classPath, parent.addExports), Collections.emptyList(), files));
+    }
+
+    private CompileBatch(JavaCompilerService parent, ReusableCompiler.Borrow borrow) {
         this.parent = parent;
-        this.borrow = batchTask(parent, files);
+        this.borrow = borrow;
         this.task = borrow.task;
         this.trees = Trees.instance(borrow.task);
         this.elements = borrow.task.getElements();
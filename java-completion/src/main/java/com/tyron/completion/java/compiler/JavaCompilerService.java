@@ -44,12 +44,18 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class JavaCompilerService implements CompilerProvider {
 
+    /**
+     * The maximum number of files compiled at once when indexing references
+     */
+    private static final int MAX_INDEX_BATCH_SIZE = 64;
+
     private DiagnosticListener<? super JavaFileObject> mDiagnosticListener;
     public final SourceFileManager mSourceFileManager;
 
@@ -65,6 +71,7 @@ public class JavaCompilerService implements CompilerProvider {
     private final CompilerContainer mContainer = new CompilerContainer();
     private CompileBatch cachedCompile;
     private final Map<JavaFileObject, Long> cachedModified = new HashMap<>();
+    private ReferenceIndex mReferenceIndex;
 
     public final ReentrantLock mLock = new ReentrantLock();
 
@@ -259,9 +266,18 @@ public class JavaCompilerService implements CompilerProvider {
         return Collections.emptyList();
     }
 
+    /**
+     * @return the source files of the project that contain the query as a word
+     */
     @Override
     public Iterable<Path> search(String query) {
-        return null;
+        List<Path> found = new ArrayList<>();
+        for (Path file : getSourceFiles()) {
+            if (containsWord(file, query)) {
+                found.add(file);
+            }
+        }
+        return found;
     }
 
     /**
@@ -415,14 +431,113 @@ public class JavaCompilerService implements CompilerProvider {
         return Optional.ofNullable(source);
     }
 
+    /**
+     * Finds the source files that reference a type, the files that were modified since they
+     * were last indexed are compiled first if they contain the simple name of the type.
+     *
+     * @param className fully qualified name of the type
+     */
     @Override
     public Path[] findTypeReferences(String className) {
-        return null;
+        String simpleName = simpleName(className);
+        return findReferences(file -> containsWord(file, simpleName),
+                index -> index.findTypeReferences(className));
     }
 
+    /**
+     * Finds the source files that reference a member of a type
+     *
+     * @param className  fully qualified name of the type that declares the member
+     * @param memberName name of the field or method, {@code <init>} for constructors
+     */
     @Override
     public Path[] findMemberReferences(String className, String memberName) {
-        return null;
+        String word = "<init>".equals(memberName) ? simpleName(className) : memberName;
+        return findReferences(file -> containsWord(file, word),
+                index -> index.findMemberReferences(className, memberName));
+    }
+
+    private Path[] findReferences(Predicate<Path> mayReference,
+                                  Function<ReferenceIndex, Set<Path>> query) {
+        ReferenceIndex index = getReferenceIndex();
+        Set<Path> sources = getSourceFiles();
+        List<Path> stale = new ArrayList<>();
+        for (Path file : sources) {
+            if (!index.isIndexed(file) && mayReference.test(file)) {
+                stale.add(file);
+            }
+        }
+        indexFiles(stale);
+
+        List<Path> found = new ArrayList<>();
+        for (Path file : query.apply(index)) {
+            if (sources.contains(file) && index.isIndexed(file)) {
+                found.add(file);
+            }
+        }
+        return found.toArray(new Path[0]);
+    }
+
+    private void indexFiles(List<Path> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        ReferenceIndex index = getReferenceIndex();
+        // the files are compiled with a compiler of their own, the compilation cached for the
+        // editor is kept. Holding the container keeps the editor from compiling at the same
+        // time, the source file manager is shared.
+        ReusableCompiler indexCompiler = new ReusableCompiler();
+        mContainer.run(unused -> {
+            for (int i = 0; i < files.size(); i += MAX_INDEX_BATCH_SIZE) {
+                List<JavaFileObject> sources = new ArrayList<>();
+                for (Path file : files.subList(i, Math.min(files.size(), i + MAX_INDEX_BATCH_SIZE))) {
+                    sources.add(new SourceFileObject(file, mCurrentModule));
+                }
+                CompileBatch batch = new CompileBatch(this, indexCompiler, sources);
+                try {
+                    for (CompilationUnitTree root : batch.roots) {
+                        index.update(batch.trees, root);
+                    }
+                } finally {
+                    batch.close();
+                    batch.borrow.close();
+                }
+            }
+        });
+        index.save();
+    }
+
+    @NonNull
+    public ReferenceIndex getReferenceIndex() {
+        if (mReferenceIndex == null) {
+            File indexFile = mCurrentModule == null
+                    ? null
+                    : new File(mCurrentModule.getBuildDirectory(),
+                            "intermediate/java-references.bin");
+            mReferenceIndex = new ReferenceIndex(indexFile);
+        }
+        return mReferenceIndex;
+    }
+
+    /**
+     * @return the java source files of the current module and its dependencies
+     */
+    private Set<Path> getSourceFiles() {
+        Set<Module> modules = new HashSet<>(mProject.getDependencies(mCurrentModule));
+        if (mCurrentModule != null) {
+            modules.add(mCurrentModule);
+        }
+        Set<Path> files = new HashSet<>();
+        for (Module module : modules) {
+            if (module instanceof JavaModule) {
+                for (File file : ((JavaModule) module).getJavaFiles().values()) {
+                    if (file.getName().endsWith(".java")) {
+                        files.add(file.getAbsoluteFile().toPath());
+                    }
+                }
+            }
+        }
+        return files;
     }
 
     private final Cache<String, ParseTask> parseCache = new Cache<>();
@@ -0,0 +1,290 @@
+package com.tyron.completion.java.compiler;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Reverse index of the types and members referenced by every source file of a project.
+ * <p>
+ * The references of a file are collected from the attributed trees of a {@link CompileBatch},
+ * so they are exact, and are kept until the file is modified. Finding the references of a
+ * symbol then only needs to compile the files that changed since they were indexed instead of
+ * every file of the project.
+ * <p>
+ * Types are recorded by their fully qualified name and members as
+ * {@code fully.qualified.Owner#name}, constructors use the name {@code <init>}.
+ */
+public class ReferenceIndex {
+
+    private static final String TAG = ReferenceIndex.class.getSimpleName();
+
+    private static final int VERSION = 1;
+
+    private static class Entry {
+        final long modified;
+        final Set<String> types;
+        final Set<String> members;
+
+        Entry(long modified, Set<String> types, Set<String> members) {
+            this.modified = modified;
+            this.types = types;
+            this.members = members;
+        }
+    }
+
+    private final File mIndexFile;
+    private final Map<Path, Entry> mEntries = new HashMap<>();
+
+    private boolean mLoaded;
+    private boolean mDirty;
+    private int mIndexedCount;
+
+    /**
+     * @param indexFile The file the index is persisted to, may be null to keep the index
+     *                  in memory only
+     */
+    public ReferenceIndex(File indexFile) {
+        mIndexFile = indexFile;
+    }
+
+    /**
+     * @return whether the references of the file are indexed and the file has not been
+     * modified since
+     */
+    public synchronized boolean isIndexed(@NonNull Path file) {
+        load();
+        Entry entry = mEntries.get(file.toAbsolutePath());
+        return entry != null && entry.modified == file.toFile().lastModified();
+    }
+
+    /**
+     * Records the references of a compiled file, replacing its previous references.
+     */
+    public synchronized void update(@NonNull Trees trees, @NonNull CompilationUnitTree root) {
+        if (!"file".equals(root.getSourceFile().toUri().getScheme())) {
+            return;
+        }
+        Path file = Paths.get(root.getSourceFile().toUri());
+        Set<String> types = new HashSet<>();
+        Set<String> members = new HashSet<>();
+        new ReferenceScanner(trees, types, members).scan(root, null);
+
+        load();
+        mEntries.put(file, new Entry(file.toFile().lastModified(), types, members));
+        mIndexedCount++;
+        mDirty = true;
+    }
+
+    public synchronized void remove(@NonNull Path file) {
+        load();
+        if (mEntries.remove(file.toAbsolutePath()) != null) {
+            mDirty = true;
+        }
+    }
+
+    /**
+     * @return the indexed files that reference the given type
+     */
+    public synchronized Set<Path> findTypeReferences(@NonNull String className) {
+        load();
+        Set<Path> found = new HashSet<>();
+        for (Map.Entry<Path, Entry> entry : mEntries.entrySet()) {
+            if (entry.getValue().types.contains(className)) {
+                found.add(entry.getKey());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the indexed files that reference a member with the given name of the given type
+     */
+    public synchronized Set<Path> findMemberReferences(@NonNull String className,
+                                                       @NonNull String memberName) {
+        load();
+        String signature = className + "#" + memberName;
+        Set<Path> found = new HashSet<>();
+        for (Map.Entry<Path, Entry> entry : mEntries.entrySet()) {
+            if (entry.getValue().members.contains(signature)) {
+                found.add(entry.getKey());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Writes the index to its file if it changed since it was loaded
+     */
+    public synchronized void save() {
+        if (mIndexFile == null || !mDirty) {
+            return;
+        }
+        File parent = mIndexFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log.w(TAG, "Unable to create " + parent);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(mIndexFile)))) {
+            out.writeInt(VERSION);
+            out.writeInt(mEntries.size());
+            for (Map.Entry<Path, Entry> entry : mEntries.entrySet()) {
+                out.writeUTF(entry.getKey().toString());
+                out.writeLong(entry.getValue().modified);
+                writeStrings(out, entry.getValue().types);
+                writeStrings(out, entry.getValue().members);
+            }
+            mDirty = false;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save the reference index", e);
+        }
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mLoaded = true;
+        mDirty = true;
+    }
+
+    /**
+     * @return the number of files that were indexed by this instance
+     */
+    @VisibleForTesting
+    public synchronized int getIndexedCount() {
+        return mIndexedCount;
+    }
+
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (mIndexFile == null || !mIndexFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mIndexFile)))) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Path file = Paths.get(in.readUTF());
+                long modified = in.readLong();
+                Set<String> types = readStrings(in);
+                Set<String> members = readStrings(in);
+                mEntries.put(file, new Entry(modified, types, members));
+            }
+        } catch (IOException e) {
+            // the files are indexed again when they are needed
+            Log.w(TAG, "Unable to load the reference index", e);
+            mEntries.clear();
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, Set<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static Set<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Set<String> strings = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    /**
+     * Collects the types and members that the names of a compilation unit resolve to.
+     * Declarations are not references, their names are not trees.
+     */
+    private static class ReferenceScanner extends TreePathScanner<Void, Void> {
+
+        private final Trees mTrees;
+        private final Set<String> mTypes;
+        private final Set<String> mMembers;
+
+        ReferenceScanner(Trees trees, Set<String> types, Set<String> members) {
+            mTrees = trees;
+            mTypes = types;
+            mMembers = members;
+        }
+
+        @Override
+        public Void visitIdentifier(IdentifierTree node, Void unused) {
+            record(mTrees.getElement(getCurrentPath()));
+            return super.visitIdentifier(node, unused);
+        }
+
+        @Override
+        public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+            record(mTrees.getElement(getCurrentPath()));
+            return super.visitMemberSelect(node, unused);
+        }
+
+        @Override
+        public Void visitMemberReference(MemberReferenceTree node, Void unused) {
+            record(mTrees.getElement(getCurrentPath()));
+            return super.visitMemberReference(node, unused);
+        }
+
+        @Override
+        public Void visitNewClass(NewClassTree node, Void unused) {
+            record(mTrees.getElement(getCurrentPath()));
+            return super.visitNewClass(node, unused);
+        }
+
+        private void record(Element element) {
+            if (element == null) {
+                return;
+            }
+            if (element instanceof TypeElement) {
+                mTypes.add(((TypeElement) element).getQualifiedName().toString());
+                return;
+            }
+            ElementKind kind = element.getKind();
+            if (kind != ElementKind.METHOD && kind != ElementKind.CONSTRUCTOR
+                    && kind != ElementKind.FIELD && kind != ElementKind.ENUM_CONSTANT) {
+                return;
+            }
+            Element owner = element.getEnclosingElement();
+            if (owner instanceof TypeElement) {
+                mMembers.add(((TypeElement) owner).getQualifiedName() + "#"
+                        + element.getSimpleName());
+            }
+        }
+    }
+}
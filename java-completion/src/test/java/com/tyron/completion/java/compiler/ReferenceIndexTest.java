@@ -0,0 +1,314 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static com.tyron.completion.TestUtil.resolveBasePath;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.completion.java.CompletionModule;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+
+@RunWith(RobolectricTestRunner.class)
+public class ReferenceIndexTest {
+
+    private static final String[][] SOURCES = {
+            {"com/test/model/Shape.java",
+                    "package com.test.model;\n" +
+                    "public abstract class Shape {\n" +
+                    "    public static final int SIDES = 0;\n" +
+                    "    public abstract double area();\n" +
+                    "}\n"},
+            {"com/test/model/Circle.java",
+                    "package com.test.model;\n" +
+                    "public class Circle extends Shape {\n" +
+                    "    public double radius;\n" +
+                    "    public Circle(double radius) { this.radius = radius; }\n" +
+                    "    @Override public double area() { return Math.PI * radius * radius; }\n" +
+                    "}\n"},
+            {"com/test/model/Color.java",
+                    "package com.test.model;\n" +
+                    "public enum Color { RED, GREEN }\n"},
+            {"com/test/util/Geometry.java",
+                    "package com.test.util;\n" +
+                    "import com.test.model.Circle;\n" +
+                    "import com.test.model.Shape;\n" +
+                    "public class Geometry {\n" +
+                    "    public static double total(Shape... shapes) {\n" +
+                    "        double total = 0;\n" +
+                    "        for (Shape shape : shapes) total += shape.area();\n" +
+                    "        return total;\n" +
+                    "    }\n" +
+                    "    public static Circle unit() { return new Circle(1); }\n" +
+                    "}\n"},
+            {"com/test/app/Main.java",
+                    "package com.test.app;\n" +
+                    "import com.test.model.Color;\n" +
+                    "import com.test.util.Geometry;\n" +
+                    "public class Main {\n" +
+                    "    public static void main(String[] args) {\n" +
+                    "        double radius = Geometry.unit().radius;\n" +
+                    "        Color color = Color.RED;\n" +
+                    "        java.util.function.DoubleSupplier supplier = Geometry.unit()::area;\n" +
+                    "    }\n" +
+                    "}\n"},
+            {"com/test/app/Drawing.java",
+                    "package com.test.app;\n" +
+                    "import com.test.model.*;\n" +
+                    "class Drawing {\n" +
+                    "    Shape shape = new com.test.model.Circle(2);\n" +
+                    "    int sides = Shape.SIDES;\n" +
+                    "}\n"},
+            {"com/test/other/Circle.java",
+                    "package com.test.other;\n" +
+                    "public class Circle {\n" +
+                    "    public double radius;\n" +
+                    "    public double area() { return radius; }\n" +
+                    "}\n"},
+            {"com/test/other/Canvas.java",
+                    "package com.test.other;\n" +
+                    "class Canvas {\n" +
+                    "    Circle circle = new Circle();\n" +
+                    "    double area = circle.area();\n" +
+                    "}\n"},
+    };
+
+    private static final String[] TYPES = {
+            "com.test.model.Shape",
+            "com.test.model.Circle",
+            "com.test.model.Color",
+            "com.test.util.Geometry",
+            "com.test.other.Circle",
+            "com.test.app.Main",
+    };
+
+    private static final String[][] MEMBERS = {
+            {"com.test.model.Shape", "area"},
+            {"com.test.model.Shape", "SIDES"},
+            {"com.test.model.Circle", "radius"},
+            {"com.test.model.Circle", "area"},
+            {"com.test.model.Circle", "<init>"},
+            {"com.test.model.Color", "RED"},
+            {"com.test.util.Geometry", "unit"},
+            {"com.test.other.Circle", "area"},
+            {"com.test.other.Circle", "<init>"},
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private Project mProject;
+    private AndroidModule mModule;
+    private File mJavaDirectory;
+    private Set<File> mJavaFiles;
+
+    @Before
+    public void setup() throws IOException {
+        CompletionModule.setAndroidJar(new File(resolveBasePath(), "classpath/rt.jar"));
+        CompletionModule.setLambdaStubs(new File(resolveBasePath(),
+                "classpath/core-lambda-stubs" + ".jar"));
+
+        File root = mFolder.newFolder("ReferencesProject");
+        mProject = new Project(root);
+        mModule = new MockAndroidModule(new File(root, "app"), new MockFileManager(root));
+        mJavaDirectory = new File(root, "app/src/main/java");
+
+        mJavaFiles = new HashSet<>();
+        for (String[] source : SOURCES) {
+            File file = new File(mJavaDirectory, source[0]);
+            FileUtils.writeStringToFile(file, source[1], StandardCharsets.UTF_8);
+            mJavaFiles.add(file);
+            mModule.addJavaFile(file);
+        }
+    }
+
+    @Test
+    public void testMatchesFullCompile() {
+        JavaCompilerService service = getNewService();
+        for (String type : TYPES) {
+            assertWithMessage(type)
+                    .that(asSet(service.findTypeReferences(type)))
+                    .isEqualTo(bruteForce(type, null));
+        }
+        for (String[] member : MEMBERS) {
+            assertWithMessage(member[0] + "#" + member[1])
+                    .that(asSet(service.findMemberReferences(member[0], member[1])))
+                    .isEqualTo(bruteForce(member[0], member[1]));
+        }
+    }
+
+    @Test
+    public void testTextMatchesAreNotReferences() {
+        JavaCompilerService service = getNewService();
+        assertThat(asSet(service.findTypeReferences("com.test.other.Circle")))
+                .containsExactly(file("com/test/other/Canvas.java"));
+        assertThat(asSet(service.search("Circle")))
+                .hasSize(5);
+    }
+
+    @Test
+    public void testEditReindexesOnlyChangedFile() throws IOException {
+        JavaCompilerService service = getNewService();
+        service.findTypeReferences("com.test.model.Color");
+        int indexed = service.getReferenceIndex().getIndexedCount();
+        assertThat(indexed).isGreaterThan(0);
+
+        // nothing changed, nothing is compiled again
+        service.findTypeReferences("com.test.model.Color");
+        assertThat(service.getReferenceIndex().getIndexedCount())
+                .isEqualTo(indexed);
+
+        File main = file("com/test/app/Main.java").toFile();
+        FileUtils.writeStringToFile(main,
+                "package com.test.app;\n" +
+                "public class Main {\n" +
+                "    public static void main(String[] args) {\n" +
+                "        System.out.println(\"Color\");\n" +
+                "    }\n" +
+                "}\n", StandardCharsets.UTF_8);
+        assertThat(main.setLastModified(main.lastModified() + 2000)).isTrue();
+
+        assertThat(asSet(service.findTypeReferences("com.test.model.Color")))
+                .isEqualTo(bruteForce("com.test.model.Color", null));
+        assertThat(service.getReferenceIndex().getIndexedCount())
+                .isEqualTo(indexed + 1);
+    }
+
+    @Test
+    public void testIndexingKeepsTheCachedCompile() {
+        JavaCompilerService service = getNewService();
+        Path main = file("com/test/app/Main.java");
+        service.compile(main).run(task -> assertThat(task.root(main)).isNotNull());
+        CompileBatch cached = service.getCompileBatch();
+
+        assertThat(asSet(service.findTypeReferences("com.test.model.Color")))
+                .isEqualTo(bruteForce("com.test.model.Color", null));
+        assertThat(service.getReferenceIndex().getIndexedCount())
+                .isGreaterThan(1);
+
+        // the editor compiles the same file again without compiling it
+        service.compile(main).run(task -> assertThat(task.root(main)).isNotNull());
+        assertThat(service.getCompileBatch())
+                .isSameInstanceAs(cached);
+    }
+
+    @Test
+    public void testIndexIsPersisted() {
+        getNewService().findTypeReferences("com.test.model.Circle");
+
+        JavaCompilerService service = getNewService();
+        assertThat(asSet(service.findTypeReferences("com.test.model.Circle")))
+                .isEqualTo(bruteForce("com.test.model.Circle", null));
+        assertThat(service.getReferenceIndex().getIndexedCount())
+                .isEqualTo(0);
+    }
+
+    /**
+     * Compiles every file of the project and returns the files containing a name that
+     * resolves to the type, or to the member of the type if the member name is not null.
+     */
+    private Set<Path> bruteForce(String className, String memberName) {
+        Set<Path> found = new HashSet<>();
+        JavaCompilerService service = getNewService();
+        service.compile(mJavaFiles.stream().map(File::toPath).toArray(Path[]::new)).run(task -> {
+            Trees trees = task.getTrees();
+            for (CompilationUnitTree root : task.roots) {
+                new TreePathScanner<Void, Void>() {
+                    @Override
+                    public Void visitIdentifier(IdentifierTree node, Void unused) {
+                        check(getCurrentPath());
+                        return super.visitIdentifier(node, unused);
+                    }
+
+                    @Override
+                    public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+                        check(getCurrentPath());
+                        return super.visitMemberSelect(node, unused);
+                    }
+
+                    @Override
+                    public Void visitMemberReference(MemberReferenceTree node, Void unused) {
+                        check(getCurrentPath());
+                        return super.visitMemberReference(node, unused);
+                    }
+
+                    @Override
+                    public Void visitNewClass(NewClassTree node, Void unused) {
+                        check(getCurrentPath());
+                        return super.visitNewClass(node, unused);
+                    }
+
+                    private void check(TreePath path) {
+                        Element element = trees.getElement(path);
+                        if (element == null) {
+                            return;
+                        }
+                        Element type = memberName == null
+                                ? element
+                                : element.getEnclosingElement();
+                        if (memberName != null
+                                && !element.getSimpleName().contentEquals(memberName)) {
+                            return;
+                        }
+                        if (type instanceof TypeElement && ((TypeElement) type)
+                                .getQualifiedName().contentEquals(className)) {
+                            found.add(Paths.get(root.getSourceFile().toUri()));
+                        }
+                    }
+                }.scan(root, null);
+            }
+        });
+        return found;
+    }
+
+    private JavaCompilerService getNewService() {
+        JavaCompilerService service = new JavaCompilerService(mProject, mJavaFiles,
+                Collections.emptySet(), Collections.emptySet());
+        service.setCurrentModule(mModule);
+        return service;
+    }
+
+    private Path file(String name) {
+        return new File(mJavaDirectory, name).toPath();
+    }
+
+    private static Set<Path> asSet(Path[] paths) {
+        return new HashSet<>(Arrays.asList(paths));
+    }
+
+    private static Set<Path> asSet(Iterable<Path> paths) {
+        Set<Path> set = new HashSet<>();
+        paths.forEach(set::add);
+        return set;
+    }
+}
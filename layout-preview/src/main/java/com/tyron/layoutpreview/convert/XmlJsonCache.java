@@ -0,0 +1,97 @@
+package com.tyron.layoutpreview.convert;
+
+import androidx.annotation.NonNull;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the JSON converted from xml files. An entry is reused as long as the contents of its
+ * file hash to the same value, so refreshing the preview only converts the files that changed.
+ */
+public class XmlJsonCache {
+
+    private static final int MAX_ENTRIES = 512;
+
+    private static final XmlJsonCache sInstance = new XmlJsonCache(MAX_ENTRIES);
+
+    public static XmlJsonCache getInstance() {
+        return sInstance;
+    }
+
+    private static class Entry {
+        final long hash;
+        final int length;
+        final String json;
+
+        Entry(long hash, int length, String json) {
+            this.hash = hash;
+            this.length = length;
+            this.json = json;
+        }
+    }
+
+    private final Map<String, Entry> mEntries;
+
+    public XmlJsonCache(int maxEntries) {
+        mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the JSON of the given file, converting its contents only if they changed since
+     * the last call for this file.
+     *
+     * @param file     The file the contents belong to
+     * @param contents The current contents of the file
+     */
+    @NonNull
+    public String getJson(@NonNull File file, @NonNull String contents) throws IOException, XmlPullParserException, ConvertException {
+        String key = file.getAbsolutePath();
+        long hash = hash(contents);
+        synchronized (mEntries) {
+            Entry entry = mEntries.get(key);
+            if (entry != null && entry.hash == hash && entry.length == contents.length()) {
+                return entry.json;
+            }
+        }
+
+        String json = new XmlToJsonConverter().convertToJson(contents);
+        synchronized (mEntries) {
+            mEntries.put(key, new Entry(hash, contents.length(), json));
+        }
+        return json;
+    }
+
+    public void invalidate(@NonNull File file) {
+        synchronized (mEntries) {
+            mEntries.remove(file.getAbsolutePath());
+        }
+    }
+
+    public void clear() {
+        synchronized (mEntries) {
+            mEntries.clear();
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the characters of the string
+     */
+    private static long hash(String contents) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < contents.length(); i++) {
+            hash ^= contents.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -2,8 +2,12 @@ package com.tyron.layoutpreview.convert;
 
 import android.util.Pair;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -14,6 +18,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -22,6 +27,14 @@ import java.util.Set;
 
 public class XmlToJsonConverter {
 
+    /**
+     * Writes {@link JsonObject} trees with the same settings as {@link JsonObject#toString()}.
+     */
+    private static final Gson GSON = new GsonBuilder()
+            .disableHtmlEscaping()
+            .serializeNulls()
+            .create();
+
     private final Set<String> mAttributesToSkip = new HashSet<>();
 
     private final String[] ANDROID_WIDGET = new String[] {"TextView", "Button", "ImageView",
@@ -73,6 +86,103 @@ public class XmlToJsonConverter {
         return json;
     }
 
+    /**
+     * Converts the xml string to its JSON representation without building a {@link JsonObject}
+     * tree. The result is the same as {@code convert(contents).toString()}.
+     *
+     * @param contents The xml string to parse
+     * @return The JSON string parsed from XML
+     * @throws IOException if an error has occurred while reading the string content
+     * @throws XmlPullParserException if the XML content is malformed
+     * @throws ConvertException if the XML cannot be converted to JSON
+     */
+    public String convertToJson(String contents) throws IOException, XmlPullParserException, ConvertException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(new StringReader(contents));
+        advanceToRootNode(parser);
+
+        return convertToJson(parser);
+    }
+
+    public String convertToJson(XmlPullParser parser) throws IOException, XmlPullParserException, ConvertException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.setLenient(true);
+        convert(parser, writer);
+        writer.flush();
+        return out.toString();
+    }
+
+    /**
+     * Writes the element at the current position of the parser and its children to the writer,
+     * the parser is left at the end tag of the element.
+     */
+    public void convert(XmlPullParser parser, JsonWriter writer) throws IOException, XmlPullParserException, ConvertException {
+        if (getAttributeValue(parser, "children") != null) {
+            // the tree replaces the attribute with the children array in place, that cannot
+            // be done once the attribute has been written
+            try {
+                GSON.toJson(convert(parser), writer);
+            } catch (JsonIOException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+            return;
+        }
+
+        writer.beginObject();
+
+        // an attribute named type replaces the tag name but keeps its position
+        String type = getAttributeValue(parser, "type");
+        writer.name("type").value(type != null ? type : parser.getName());
+
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            String name = parser.getAttributeName(i);
+            if (mAttributesToSkip.contains(name) || "type".equals(name)) {
+                continue;
+            }
+            writer.name(name).value(parser.getAttributeValue(i));
+        }
+
+        boolean hasChildren = false;
+        final int depth = parser.getDepth();
+        int eventType;
+        while (((eventType = parser.next()) != XmlPullParser.END_TAG ||
+                parser.getDepth() > depth) && eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType != XmlPullParser.START_TAG) {
+                continue;
+            }
+            if (!hasChildren) {
+                writer.name("children").beginArray();
+                hasChildren = true;
+            }
+            convert(parser, writer);
+        }
+        if (hasChildren) {
+            writer.endArray();
+        }
+
+        writer.endObject();
+    }
+
+    /**
+     * @return the value of the attribute with the given name of the current element, or null
+     * if the element does not have it or it is skipped
+     */
+    private String getAttributeValue(XmlPullParser parser, String name) {
+        if (mAttributesToSkip.contains(name)) {
+            return null;
+        }
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            if (name.equals(parser.getAttributeName(i))) {
+                return parser.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
     /**
      * Used to get the children of the current xml, it is then added to the {@code children}
      * attribute of the parent
@@ -219,9 +219,11 @@ public class PreviewLayoutInflater {
     @Deprecated
     public ProteusView inflate(String xml) throws InflateException {
         try {
-            JsonObject object = new XmlToJsonConverter()
-                    .convert(xml);
-            return inflate(object);
+            String json = new XmlToJsonConverter()
+                    .convertToJson(xml);
+            Value value = new ProteusTypeAdapterFactory(mContext)
+                    .VALUE_TYPE_ADAPTER.read(new JsonReader(new StringReader(json)), false);
+            return inflate(value.getAsLayout());
         } catch (Exception e) {
             throw new InflateException("Unable to inflate layout: " + e.getMessage());
         }
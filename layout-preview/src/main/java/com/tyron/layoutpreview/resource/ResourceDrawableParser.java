@@ -6,11 +6,10 @@ import com.flipkart.android.proteus.ProteusContext;
 import com.flipkart.android.proteus.value.DrawableValue;
 import com.flipkart.android.proteus.value.ObjectValue;
 import com.flipkart.android.proteus.value.Value;
-import com.google.gson.JsonObject;
 import com.google.gson.stream.JsonReader;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.layoutpreview.convert.ConvertException;
-import com.tyron.layoutpreview.convert.XmlToJsonConverter;
+import com.tyron.layoutpreview.convert.XmlJsonCache;
 import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
 import com.tyron.vectorparser.VectorValue;
 
@@ -83,10 +82,9 @@ public class ResourceDrawableParser {
         Optional<CharSequence> contents = mFileManager.getFileContent(file);
         if (contents.isPresent()) {
             String contentsString = contents.get().toString();
-            JsonObject converted = new XmlToJsonConverter()
-                    .convert(contentsString);
+            String json = XmlJsonCache.getInstance().getJson(file, contentsString);
             Value value = new ProteusTypeAdapterFactory(mContext)
-                    .VALUE_TYPE_ADAPTER.read(new JsonReader(new StringReader(converted.toString())), true);
+                    .VALUE_TYPE_ADAPTER.read(new JsonReader(new StringReader(json)), true);
             ObjectValue objectValue = value.getAsObject();
             if (objectValue != null) {
                 if ("vector".equals(objectValue.getAsString("type"))) {
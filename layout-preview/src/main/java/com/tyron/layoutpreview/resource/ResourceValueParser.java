@@ -20,7 +20,6 @@ import com.flipkart.android.proteus.value.DrawableValue;
 import com.flipkart.android.proteus.value.ObjectValue;
 import com.flipkart.android.proteus.value.Style;
 import com.flipkart.android.proteus.value.Value;
-import com.google.gson.JsonObject;
 import com.google.gson.stream.JsonReader;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.layoutpreview.convert.ConvertException;
@@ -239,9 +238,9 @@ public class ResourceValueParser {
             XmlPullParserException {
         XmlToJsonConverter converter = new XmlToJsonConverter();
         try {
-            JsonObject jsonObjects = converter.convert(parser);
+            String json = converter.convertToJson(parser);
             Value read =
-                    new ProteusTypeAdapterFactory(mContext).VALUE_TYPE_ADAPTER.read(new JsonReader(new StringReader(jsonObjects.toString())), true);
+                    new ProteusTypeAdapterFactory(mContext).VALUE_TYPE_ADAPTER.read(new JsonReader(new StringReader(json)), true);
             if (read.isObject()) {
                 ObjectValue objectValue = read.getAsObject();
                 Array children = objectValue.getAsArray("children");
@@ -8,6 +8,24 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
 @RunWith(RobolectricTestRunner.class)
 public class TestXmlToJson {
 
@@ -59,10 +77,135 @@ public class TestXmlToJson {
             "            android:inputType=\"none\"/>\n" +
             "    </com.google.android.material.textfield.TextInputLayout>\n" +
             "</androidx.constraintlayout.widget.ConstraintLayout>";
+    private static final File TEST_DIRECTORY = new File("src/test");
+
     @Test
     public void testConvert() throws Exception {
         JsonObject object = new XmlToJsonConverter().convert(TEST_LAYOUT);
         assertThat(object)
                 .isNotNull();
     }
+
+    /**
+     * The streaming conversion must produce the same JSON as the tree conversion for every
+     * sample xml file.
+     */
+    @Test
+    public void testStreamingConvertMatchesTree() throws Exception {
+        List<String> samples = getSamples();
+        assertThat(samples.size())
+                .isGreaterThan(1);
+
+        for (String sample : samples) {
+            String expected = new XmlToJsonConverter().convert(sample).toString();
+            String actual = new XmlToJsonConverter().convertToJson(sample);
+            assertThat(actual)
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        XmlJsonCache cache = new XmlJsonCache(4);
+        File file = new File("test.xml");
+
+        String json = cache.getJson(file, TEST_LAYOUT);
+        assertThat(json)
+                .isEqualTo(new XmlToJsonConverter().convert(TEST_LAYOUT).toString());
+        assertThat(cache.getJson(file, new String(TEST_LAYOUT.toCharArray())))
+                .isSameInstanceAs(json);
+
+        String changed = TEST_LAYOUT.replace("match_parent", "wrap_content");
+        assertThat(cache.getJson(file, changed))
+                .isEqualTo(new XmlToJsonConverter().convert(changed).toString());
+    }
+
+    /**
+     * Compares the time and the memory allocated by the tree and the streaming conversion of
+     * the sample files, including the conversion of the tree to a string.
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        List<String> samples = getSamples();
+        XmlToJsonConverter converter = new XmlToJsonConverter();
+        for (int i = 0; i < 3; i++) {
+            long[] tree = measure(() -> {
+                for (String sample : samples) {
+                    converter.convert(sample).toString();
+                }
+            });
+            long[] streaming = measure(() -> {
+                for (String sample : samples) {
+                    converter.convertToJson(sample);
+                }
+            });
+            System.out.println("Converted " + samples.size() + " files, tree: " + tree[0]
+                    + " ms, " + (tree[1] >> 10) + " KiB, streaming: " + streaming[0] + " ms, "
+                    + (streaming[1] >> 10) + " KiB");
+        }
+    }
+
+    private interface Conversion {
+        void run() throws Exception;
+    }
+
+    /**
+     * @return the time in milliseconds and the bytes allocated by the current thread, the
+     * bytes are -1 if the JVM cannot measure them
+     */
+    private static long[] measure(Conversion conversion) throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        boolean allocations = bean instanceof com.sun.management.ThreadMXBean;
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocations
+                ? ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(threadId) : 0;
+        long start = System.nanoTime();
+        conversion.run();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long allocated = allocations
+                ? ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(threadId)
+                - allocatedBefore : -1;
+        return new long[]{millis, allocated};
+    }
+
+    /**
+     * @return the test layout, the xml files of the test resources and the framework values
+     * of the android-xml asset
+     */
+    private static List<String> getSamples() throws IOException {
+        List<String> samples = new ArrayList<>();
+        samples.add(TEST_LAYOUT);
+
+        try (Stream<Path> files = Files.walk(Paths.get(TEST_DIRECTORY.getPath(), "resources"))) {
+            for (Path path : files.filter(p -> p.toString().endsWith(".xml"))
+                    .sorted()
+                    .collect(Collectors.toList())) {
+                samples.add(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            }
+        }
+
+        File zip = new File(TEST_DIRECTORY, "assets/android-xml.zip");
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".xml")) {
+                    try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                        samples.add(read(inputStream));
+                    }
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
 }
@@ -1,5 +1,6 @@
 package com.tyron.terminal;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 
 /**
@@ -7,6 +8,10 @@ import java.util.Arrays;
  * history.
  * <p>
  * See {@link #externalToInternalRow(int)} for how to map from logical screen rows to array indices.
+ * <p>
+ * Rows that scroll off the screen into the transcript are {@link TerminalRow#pack() packed}, which keeps a full
+ * transcript small. Transcript rows that are read again, e.g. for rendering, are unpacked and a bounded number of
+ * them is kept that way.
  */
 public final class TerminalBuffer {
 
@@ -19,6 +24,8 @@ public final class TerminalBuffer {
     private int mActiveTranscriptRows = 0;
     /** The index in the circular buffer where the visible screen starts. */
     private int mScreenFirstRow = 0;
+    /** Transcript rows that were unpacked to be read, oldest first. */
+    private final ArrayDeque<TerminalRow> mUnpackedTranscriptRows = new ArrayDeque<>();
 
     /**
      * Create a transcript screen.
@@ -79,7 +86,7 @@ public final class TerminalBuffer {
             } else {
                 x2 = columns;
             }
-            TerminalRow lineObject = mLines[externalToInternalRow(row)];
+            TerminalRow lineObject = allocateFullLineIfNecessary(externalToInternalRow(row));
             int x1Index = lineObject.findStartOfColumn(x1);
             int x2Index = (x2 < mColumns) ? lineObject.findStartOfColumn(x2) : lineObject.getSpaceUsed();
             if (x2Index == x1Index) {
@@ -215,6 +222,7 @@ public final class TerminalBuffer {
             // Copy away old state and update new:
             TerminalRow[] oldLines = mLines;
             mLines = new TerminalRow[newTotalRows];
+            mUnpackedTranscriptRows.clear();
             for (int i = 0; i < newTotalRows; i++)
                 mLines[i] = new TerminalRow(newColumns, currentStyle);
 
@@ -246,6 +254,9 @@ public final class TerminalBuffer {
                 internalOldRow = (internalOldRow < 0) ? (oldTotalRows + internalOldRow) : (internalOldRow % oldTotalRows);
 
                 TerminalRow oldLine = oldLines[internalOldRow];
+                if (oldLine != null) {
+                    oldLine.unpack();
+                }
                 boolean cursorAtThisRow = externalOldRow == oldCursorRow;
                 // The cursor may only be on a non-null line, which we should not skip:
                 if (oldLine == null || (!(!newCursorPlaced && cursorAtThisRow)) && oldLine.isBlank()) {
@@ -407,6 +418,14 @@ public final class TerminalBuffer {
         } else {
             mLines[blankRow].clear(style);
         }
+
+        // The line that scrolled off the screen is now only read when rendering the transcript:
+        if (mActiveTranscriptRows > 0) {
+            TerminalRow scrolledOut = mLines[externalToInternalRow(-1)];
+            if (scrolledOut != null) {
+                scrolledOut.pack();
+            }
+        }
     }
 
     /**
@@ -458,8 +477,33 @@ public final class TerminalBuffer {
                 setChar(sx + x, sy + y, val, style);
     }
 
+    /** Get the row at the given internal index, allocating it if necessary and unpacking it if it was packed. */
     public TerminalRow allocateFullLineIfNecessary(int row) {
-        return (mLines[row] == null) ? (mLines[row] = new TerminalRow(mColumns, 0)) : mLines[row];
+        TerminalRow line = mLines[row];
+        if (line == null) {
+            return mLines[row] = new TerminalRow(mColumns, 0);
+        }
+        if (line.isPacked()) {
+            line.unpack();
+            mUnpackedTranscriptRows.addLast(line);
+            // Enough for a screen of transcript to be rendered without packing and unpacking rows on every frame:
+            while (mUnpackedTranscriptRows.size() > 2 * mScreenRows) {
+                TerminalRow oldest = mUnpackedTranscriptRows.removeFirst();
+                if (!isOnScreen(oldest)) {
+                    oldest.pack();
+                }
+            }
+        }
+        return line;
+    }
+
+    private boolean isOnScreen(TerminalRow line) {
+        for (int i = 0; i < mScreenRows; i++) {
+            if (mLines[(mScreenFirstRow + i) % mTotalRows] == line) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public void setChar(int column, int row, int codePoint, long style) {
@@ -477,6 +521,24 @@ public final class TerminalBuffer {
         allocateFullLineIfNecessary(row).setChar(column, codePoint, style);
     }
 
+    /** Set a run of printable ASCII characters, see {@link TerminalRow#setAsciiChars(int, byte[], int, int, long)}. */
+    public void setAsciiChars(int column, int row, byte[] chars, int offset, int length, long style) {
+        if (row >= mScreenRows || column + length > mColumns) {
+            throw new IllegalArgumentException("row=" +
+                                               row +
+                                               ", column=" +
+                                               column +
+                                               ", length=" +
+                                               length +
+                                               ", mScreenRows=" +
+                                               mScreenRows +
+                                               ", mColumns=" +
+                                               mColumns);
+        }
+        row = externalToInternalRow(row);
+        allocateFullLineIfNecessary(row).setAsciiChars(column, chars, offset, length, style);
+    }
+
     public long getStyleAt(int externalRow, int column) {
         return allocateFullLineIfNecessary(externalToInternalRow(externalRow)).getStyle(column);
     }
@@ -485,7 +547,7 @@ public final class TerminalBuffer {
     public void setOrClearEffect(int bits, boolean setOrClear, boolean reverse, boolean rectangular, int leftMargin, int rightMargin, int top, int left,
                                  int bottom, int right) {
         for (int y = top; y < bottom; y++) {
-            TerminalRow line = mLines[externalToInternalRow(y)];
+            TerminalRow line = allocateFullLineIfNecessary(externalToInternalRow(y));
             int startOfLine = (rectangular || y == top) ? left : leftMargin;
             int endOfLine = (rectangular || y + 1 == bottom) ? right : rightMargin;
             for (int x = startOfLine; x < endOfLine; x++) {
@@ -514,6 +576,7 @@ public final class TerminalBuffer {
             Arrays.fill(mLines, mScreenFirstRow - mActiveTranscriptRows, mScreenFirstRow, null);
         }
         mActiveTranscriptRows = 0;
+        mUnpackedTranscriptRows.clear();
     }
 
 }
\ No newline at end of file
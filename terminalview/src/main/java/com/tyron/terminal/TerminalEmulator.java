@@ -491,8 +491,67 @@ public final class TerminalEmulator {
      * @param length the number of bytes in the array to process
      */
     public void append(byte[] buffer, int length) {
-        for (int i = 0; i < length; i++)
-            processByte(buffer[i]);
+        for (int i = 0; i < length; ) {
+            if (canEmitAsciiRun()) {
+                int end = i;
+                while (end < length && isPrintableAscii(buffer[end])) {
+                    end++;
+                }
+                if (end > i) {
+                    emitAsciiRun(buffer, i, end);
+                    i = end;
+                    continue;
+                }
+            }
+            processByte(buffer[i++]);
+        }
+    }
+
+    private static boolean isPrintableAscii(byte b) {
+        return b >= 32 && b < 127;
+    }
+
+    /**
+     * If printable ASCII would currently be emitted as is, one cell per byte. This is the common case for program
+     * output, see {@link #emitAsciiRun(byte[], int, int)}.
+     */
+    private boolean canEmitAsciiRun() {
+        return mUtf8ToFollow == 0
+               && mEscapeState == ESC_NONE
+               && !mInsertMode
+               && !(mUseLineDrawingUsesG0 ? mUseLineDrawingG0 : mUseLineDrawingG1)
+               && isDecsetInternalBitSet(DECSET_BIT_AUTOWRAP)
+               && mCursorCol < mRightMargin;
+    }
+
+    /**
+     * Emit a run of printable ASCII bytes, writing as many of them as fit before the right margin straight into the
+     * current row. This has the same effect as calling {@link #emitCodePoint(int)} for each byte, which has to look
+     * up the display width and the character set of every code point.
+     */
+    private void emitAsciiRun(byte[] buffer, int start, int end) {
+        mContinueSequence = false;
+        final long style = getStyle();
+        while (start < end) {
+            if (mCursorCol == mRightMargin - 1 && mAboutToAutoWrap) {
+                mScreen.setLineWrap(mCursorRow);
+                mCursorCol = mLeftMargin;
+                if (mCursorRow + 1 < mBottomMargin) {
+                    mCursorRow++;
+                } else {
+                    scrollDownOneLine();
+                }
+            }
+
+            int length = Math.min(end - start, mRightMargin - mCursorCol);
+            mScreen.setAsciiChars(mCursorCol, mCursorRow, buffer, start, length, style);
+            start += length;
+
+            int lastColumn = mCursorCol + length - 1;
+            mAboutToAutoWrap = lastColumn == mRightMargin - 1;
+            mCursorCol = Math.min(lastColumn + 1, mRightMargin - 1);
+        }
+        mLastEmittedCodePoint = buffer[end - 1];
     }
 
     private void processByte(byte byteToProcess) {
@@ -5,24 +5,29 @@ import java.util.Arrays;
 /**
  * A row in a terminal, composed of a fixed number of cells.
  * <p>
- * The text in the row is stored in a char[] array, {@link #mText}, for quick access during rendering.
+ * The text in the row is stored in a char[] array, {@link #mText}, for quick access during rendering. Rows in the
+ * transcript may be {@link #pack() packed} into a single byte array, they are unpacked again when accessed.
  */
 public final class TerminalRow {
 
     private static final float SPARE_CAPACITY_FACTOR = 1.5f;
+    /** Flag of a packed row whose text is stored with one byte per char. */
+    private static final int PACKED_ASCII = 1;
 
     /** The number of columns in this terminal row. */
     private final int mColumns;
-    /** The text filling this terminal row. */
+    /** The text filling this terminal row, null while the row is packed. */
     public char[] mText;
     /** The number of java char:s used in {@link #mText}. */
     private short mSpaceUsed;
     /** If this row has been line wrapped due to text output at the end of line. */
     boolean mLineWrap;
-    /** The style bits of each cell in the row. See {@link TextStyle}. */
-    final long[] mStyle;
+    /** The style bits of each cell in the row, null while the row is packed. See {@link TextStyle}. */
+    long[] mStyle;
     /** If this row might contain chars with width != 1, used for deactivating fast path */
     boolean mHasNonOneWidthOrSurrogateChars;
+    /** The contents of {@link #mText} and {@link #mStyle} while the row is packed, see {@link #pack()}. */
+    private byte[] mPacked;
 
     /** Construct a blank row (containing only whitespace, ' ') with a specified style. */
     public TerminalRow(int columns, long style) {
@@ -32,8 +37,132 @@ public final class TerminalRow {
         clear(style);
     }
 
+    boolean isPacked() {
+        return mPacked != null;
+    }
+
+    /**
+     * Pack the text and the styles of this row into a single byte array. Trailing spaces are dropped, text that is
+     * only ASCII is stored with one byte per char and the styles are run-length encoded, so a typical row of output
+     * takes a few dozen bytes instead of a char[] and a long[] sized after the number of columns.
+     * <p>
+     * Layout: flags (1 byte), space used (2 bytes), stored text length (2 bytes), the text, the number of style runs
+     * (2 bytes) followed by each run as its length (2 bytes) and its style (8 bytes).
+     */
+    void pack() {
+        if (mPacked != null) {
+            return;
+        }
+        final char[] text = mText;
+        final long[] style = mStyle;
+
+        int textLength = mSpaceUsed;
+        while (textLength > 0 && text[textLength - 1] == ' ') {
+            textLength--;
+        }
+        boolean ascii = true;
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        int runs = 1;
+        for (int i = 1; i < mColumns; i++) {
+            if (style[i] != style[i - 1]) {
+                runs++;
+            }
+        }
+
+        byte[] packed = new byte[7 + textLength * (ascii ? 1 : 2) + runs * 10];
+        int index = 0;
+        packed[index++] = (byte) (ascii ? PACKED_ASCII : 0);
+        index = putShort(packed, index, mSpaceUsed);
+        index = putShort(packed, index, textLength);
+        for (int i = 0; i < textLength; i++) {
+            char c = text[i];
+            if (!ascii) {
+                packed[index++] = (byte) (c >>> 8);
+            }
+            packed[index++] = (byte) c;
+        }
+        index = putShort(packed, index, runs);
+        int runStart = 0;
+        for (int i = 1; i <= mColumns; i++) {
+            if (i == mColumns || style[i] != style[runStart]) {
+                index = putShort(packed, index, i - runStart);
+                long runStyle = style[runStart];
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    packed[index++] = (byte) (runStyle >>> shift);
+                }
+                runStart = i;
+            }
+        }
+
+        mPacked = packed;
+        mText = null;
+        mStyle = null;
+    }
+
+    /** Restore {@link #mText} and {@link #mStyle} of a row that was packed with {@link #pack()}. */
+    void unpack() {
+        final byte[] packed = mPacked;
+        if (packed == null) {
+            return;
+        }
+        int index = 0;
+        boolean ascii = (packed[index++] & PACKED_ASCII) != 0;
+        int spaceUsed = getShort(packed, index);
+        index += 2;
+        int textLength = getShort(packed, index);
+        index += 2;
+
+        char[] text = new char[Math.max((int) (SPARE_CAPACITY_FACTOR * mColumns), spaceUsed)];
+        for (int i = 0; i < textLength; i++) {
+            if (ascii) {
+                text[i] = (char) (packed[index++] & 0xFF);
+            } else {
+                text[i] = (char) (((packed[index] & 0xFF) << 8) | (packed[index + 1] & 0xFF));
+                index += 2;
+            }
+        }
+        Arrays.fill(text, textLength, text.length, ' ');
+
+        long[] style = new long[mColumns];
+        int runs = getShort(packed, index);
+        index += 2;
+        int column = 0;
+        for (int run = 0; run < runs; run++) {
+            int length = getShort(packed, index);
+            index += 2;
+            long runStyle = 0;
+            for (int i = 0; i < 8; i++) {
+                runStyle = (runStyle << 8) | (packed[index++] & 0xFF);
+            }
+            Arrays.fill(style, column, column + length, runStyle);
+            column += length;
+        }
+
+        mText = text;
+        mStyle = style;
+        mSpaceUsed = (short) spaceUsed;
+        mPacked = null;
+    }
+
+    private static int putShort(byte[] bytes, int index, int value) {
+        bytes[index] = (byte) (value >>> 8);
+        bytes[index + 1] = (byte) value;
+        return index + 2;
+    }
+
+    private static int getShort(byte[] bytes, int index) {
+        return ((bytes[index] & 0xFF) << 8) | (bytes[index + 1] & 0xFF);
+    }
+
     /** NOTE: The sourceX2 is exclusive. */
     public void copyInterval(TerminalRow line, int sourceX1, int sourceX2, int destinationX) {
+        unpack();
+        line.unpack();
         mHasNonOneWidthOrSurrogateChars |= line.mHasNonOneWidthOrSurrogateChars;
         final int x1 = line.findStartOfColumn(sourceX1);
         final int x2 = line.findStartOfColumn(sourceX2);
@@ -59,11 +188,13 @@ public final class TerminalRow {
     }
 
     public int getSpaceUsed() {
+        unpack();
         return mSpaceUsed;
     }
 
     /** Note that the column may end of second half of wide character. */
     public int findStartOfColumn(int column) {
+        unpack();
         if (column == mColumns) {
             return getSpaceUsed();
         }
@@ -122,6 +253,11 @@ public final class TerminalRow {
     }
 
     public void clear(long style) {
+        if (mPacked != null) {
+            mPacked = null;
+            mText = new char[(int) (SPARE_CAPACITY_FACTOR * mColumns)];
+            mStyle = new long[mColumns];
+        }
         Arrays.fill(mText, ' ');
         Arrays.fill(mStyle, style);
         mSpaceUsed = (short) mColumns;
@@ -130,6 +266,7 @@ public final class TerminalRow {
 
     // https://github.com/steven676/Android-Terminal-Emulator/commit/9a47042620bec87617f0b4f5d50568535668fe26
     public void setChar(int columnToSet, int codePoint, long style) {
+        unpack();
         mStyle[columnToSet] = style;
 
         final int newCodePointDisplayWidth = WcWidth.width(codePoint);
@@ -247,6 +384,7 @@ public final class TerminalRow {
     }
 
     boolean isBlank() {
+        unpack();
         for (int charIndex = 0, charLen = getSpaceUsed(); charIndex < charLen; charIndex++)
             if (mText[charIndex] != ' ') {
                 return false;
@@ -255,7 +393,27 @@ public final class TerminalRow {
     }
 
     public final long getStyle(int column) {
+        unpack();
         return mStyle[column];
     }
 
+    /**
+     * Set a run of printable ASCII characters, which all have a display width of one, starting at the given column.
+     * The run must fit in the row.
+     */
+    public void setAsciiChars(int column, byte[] chars, int offset, int length, long style) {
+        unpack();
+        if (mHasNonOneWidthOrSurrogateChars) {
+            for (int i = 0; i < length; i++) {
+                setChar(column + i, chars[offset + i], style);
+            }
+            return;
+        }
+        final char[] text = mText;
+        for (int i = 0; i < length; i++) {
+            text[column + i] = (char) chars[offset + i];
+        }
+        Arrays.fill(mStyle, column, column + length, style);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+package com.tyron.terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Replays terminal output through {@link TerminalEmulator#append(byte[], int)} and compares the resulting screen
+ * with the one obtained by processing the same output one code point at a time.
+ */
+public class TerminalEmulatorAppendTest {
+
+    private static final int COLUMNS = 80;
+    private static final int ROWS = 24;
+    private static final int TRANSCRIPT_ROWS = 500;
+
+    private static final int[] CHUNK_SIZES = {1, 3, 64, 4096};
+
+    @Test
+    public void testColoredLogOutput() {
+        StringBuilder builder = new StringBuilder();
+        String[] colors = {"\033[32m", "\033[33m", "\033[31;1m", "\033[38;5;208m", "\033[48;2;10;20;30m"};
+        for (int i = 0; i < 1000; i++) {
+            builder.append(colors[i % colors.length])
+                    .append("I/ActivityManager( ").append(1000 + i).append("): ")
+                    .append("\033[0m")
+                    .append("Start proc ").append(i).append(":com.example.app/u0a").append(i % 97)
+                    .append(" for activity {com.example.app/com.example.app.MainActivity}");
+            if (i % 7 == 0) {
+                // long enough to wrap several times
+                for (int j = 0; j < 3; j++) {
+                    builder.append(" at com.example.app.Lib").append(j).append(".method(Lib.java:").append(i)
+                            .append(")");
+                }
+            }
+            builder.append("\r\n");
+        }
+        assertSameScreen(builder.toString());
+    }
+
+    @Test
+    public void testProgressOutput() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i <= 100; i++) {
+            builder.append("\r[").append(String.format("%3d", i)).append("%] Building CXX object src/file")
+                    .append(i).append(".o\033[K");
+            if (i % 25 == 0) {
+                builder.append("\n");
+            }
+        }
+        builder.append("\tdone\t\tok\r\n\033[2J\033[H\033[7mreverse\033[27m normal\033[1;3H over");
+        assertSameScreen(builder.toString());
+    }
+
+    @Test
+    public void testUnicodeMixedWithAscii() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("line ").append(i).append(" héllo 世界 ✓ é 😀 ascii tail ")
+                    .append(i % 3 == 0 ? "世界世界世界世界世界世界世界世界世界世界世界世界世界世界世界世界世界世界世界世界世界世界世界" : "")
+                    .append("\r\n");
+        }
+        // overwrite wide characters with ascii
+        builder.append("世界世界世界\r abcdef\033[3;1H世\rX");
+        assertSameScreen(builder.toString());
+    }
+
+    @Test
+    public void testModesAndMargins() {
+        StringBuilder builder = new StringBuilder();
+        // scrolling region
+        builder.append("\033[5;10r\033[5;1H");
+        for (int i = 0; i < 40; i++) {
+            builder.append("region line ").append(i).append("\r\n");
+        }
+        builder.append("\033[r");
+        // autowrap disabled
+        builder.append("\033[?7l\033[12;1H");
+        for (int i = 0; i < 30; i++) {
+            builder.append("no wrap ");
+        }
+        builder.append("\033[?7h");
+        // insert mode
+        builder.append("\033[14;1Hinserted text\033[14;3H\033[4hXYZ\033[4l");
+        // line drawing character set
+        builder.append("\033[16;1H\033(0lqqqqk\033(B plain \016xx\017 done");
+        // left and right margins
+        builder.append("\033[?69h\033[10;40s\033[18;10H");
+        for (int i = 0; i < 20; i++) {
+            builder.append("margin").append(i).append(' ');
+        }
+        builder.append("\033[?69l");
+        // repeat the last character
+        builder.append("\033[20;1Hab\033[5b");
+        // incomplete escape sequences and utf-8 split over chunks are covered by the chunk sizes
+        builder.append("\033[21;1H\033[1;31mred\033[0m\033[22;75Hwrapping at the end");
+        assertSameScreen(builder.toString());
+    }
+
+    @Test
+    public void testResizeKeepsPackedTranscript() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            builder.append("\033[3").append(i % 8).append("mrow ").append(i).append(" 世界 é\033[0m\r\n");
+        }
+        String output = builder.toString();
+
+        TerminalEmulator expected = createEmulator();
+        processCodePoints(expected, output);
+        TerminalEmulator actual = createEmulator();
+        append(actual, output, 4096);
+        assertTrue(hasPackedRows(actual.getScreen()));
+
+        expected.resize(60, 20);
+        actual.resize(60, 20);
+        assertEquals(snapshot(expected), snapshot(actual));
+
+        expected.resize(60, 30);
+        actual.resize(60, 30);
+        assertEquals(snapshot(expected), snapshot(actual));
+        assertEquals(expected.getScreen().getTranscriptText(), actual.getScreen().getTranscriptText());
+    }
+
+    @Test
+    public void testPackedRowRoundTrip() {
+        TerminalRow row = new TerminalRow(COLUMNS, TextStyle.NORMAL);
+        String text = "plain 世界 é 😀 end";
+        int column = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            long style = TextStyle.encode(i % 5, TextStyle.COLOR_INDEX_BACKGROUND, i % 3);
+            row.setChar(column, codePoint, style);
+            column += Math.max(0, WcWidth.width(codePoint));
+            i += Character.charCount(codePoint);
+        }
+        row.mLineWrap = true;
+
+        char[] expectedText = Arrays.copyOf(row.mText, row.getSpaceUsed());
+        long[] expectedStyle = row.mStyle.clone();
+
+        row.pack();
+        assertTrue(row.isPacked());
+        row.unpack();
+        assertFalse(row.isPacked());
+
+        assertEquals(new String(expectedText), new String(row.mText, 0, row.getSpaceUsed()));
+        assertTrue(Arrays.equals(expectedStyle, row.mStyle));
+        assertTrue(row.mLineWrap);
+
+        // a packed row can be written to directly
+        row.pack();
+        row.setChar(0, 'P', TextStyle.NORMAL);
+        assertEquals('P', row.mText[0]);
+    }
+
+    /**
+     * Not a strict benchmark, prints the throughput of appending log output and the heap retained by a full
+     * transcript of 10k lines.
+     */
+    @Test
+    public void testThroughputAndRetainedHeap() {
+        int lines = 10_000;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            builder.append("\033[32mD/Build\033[0m: compiling com/example/app/SomeClass").append(i)
+                    .append(".java, 12 warnings\r\n");
+        }
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+
+        long start = System.nanoTime();
+        TerminalEmulator emulator = new TerminalEmulator(new NoOpOutput(), COLUMNS, ROWS, lines + ROWS,
+                new TerminalSessionClientAdapter());
+        emulator.append(bytes, bytes.length);
+        long elapsed = System.nanoTime() - start;
+
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+
+        TerminalBuffer screen = emulator.getScreen();
+        assertEquals(lines - ROWS + 1, screen.getActiveTranscriptRows());
+        int packed = 0;
+        for (int row = -screen.getActiveTranscriptRows(); row < 0; row++) {
+            if (screen.mLines[screen.externalToInternalRow(row)].isPacked()) {
+                packed++;
+            }
+        }
+        assertEquals(screen.getActiveTranscriptRows(), packed);
+
+        System.out.println("Appended " + bytes.length / 1024 + " KiB in " + elapsed / 1_000_000 + "ms, " +
+                           "retained about " + (after - before) / 1024 + " KiB for " + lines + " lines");
+    }
+
+    private static void assertSameScreen(String output) {
+        TerminalEmulator expected = createEmulator();
+        processCodePoints(expected, output);
+        String expectedSnapshot = snapshot(expected);
+
+        for (int chunkSize : CHUNK_SIZES) {
+            TerminalEmulator actual = createEmulator();
+            append(actual, output, chunkSize);
+            assertEquals("chunk size " + chunkSize, expectedSnapshot, snapshot(actual));
+        }
+    }
+
+    private static TerminalEmulator createEmulator() {
+        return new TerminalEmulator(new NoOpOutput(), COLUMNS, ROWS, TRANSCRIPT_ROWS,
+                new TerminalSessionClientAdapter());
+    }
+
+    /** The code point by code point path that the emulator used for all input before the ASCII fast path. */
+    private static void processCodePoints(TerminalEmulator emulator, String output) {
+        output.codePoints().forEach(emulator::processCodePoint);
+    }
+
+    private static void append(TerminalEmulator emulator, String output, int chunkSize) {
+        byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, bytes.length - offset);
+            emulator.append(Arrays.copyOfRange(bytes, offset, offset + length), length);
+        }
+    }
+
+    private static boolean hasPackedRows(TerminalBuffer screen) {
+        for (TerminalRow row : screen.mLines) {
+            if (row != null && row.isPacked()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String snapshot(TerminalEmulator emulator) {
+        TerminalBuffer screen = emulator.getScreen();
+        StringBuilder builder = new StringBuilder();
+        builder.append("cursor ").append(emulator.getCursorRow()).append(',').append(emulator.getCursorCol())
+                .append(" transcript ").append(screen.getActiveTranscriptRows()).append('\n');
+        for (int row = -screen.getActiveTranscriptRows(); row < emulator.mRows; row++) {
+            TerminalRow line = screen.allocateFullLineIfNecessary(screen.externalToInternalRow(row));
+            builder.append(screen.getLineWrap(row) ? 'W' : '-')
+                    .append(new String(line.mText, 0, line.getSpaceUsed()))
+                    .append('|');
+            for (int column = 0; column < emulator.mColumns; column++) {
+                builder.append(Long.toHexString(line.getStyle(column))).append(',');
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static class NoOpOutput extends TerminalOutput {
+
+        @Override
+        public void write(byte[] data, int offset, int count) {
+        }
+
+        @Override
+        public void titleChanged(String oldTitle, String newTitle) {
+        }
+
+        @Override
+        public void onCopyTextToClipboard(String text) {
+        }
+
+        @Override
+        public void onPasteTextFromClipboard() {
+        }
+
+        @Override
+        public void onBell() {
+        }
+
+        @Override
+        public void onColorsChanged() {
+        }
+    }
+}